@@ -0,0 +1,77 @@
+package de.iisys.libinterface.processor;
+
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Types;
+
+/**
+ * Class that works as element service for the annotation processor, the
+ * counterpart of {@link de.iisys.libinterface.service.ReflectionService} at
+ * compile time. Fields and methods are looked up in a class and its super
+ * classes, like at runtime.
+ */
+public class ElementService {
+
+    private final Types types;
+
+    /**
+     * Initializes {@link #types} with the given type utilities.
+     * @param types the type utilities of the processing environment
+     */
+    public ElementService(Types types) {
+        this.types = types;
+    }
+
+    /**
+     * Finds the field with the given name in the class or its super classes.
+     * @param type the class
+     * @param fieldName the field name
+     * @return the field or null
+     */
+    public VariableElement findField(TypeElement type, String fieldName) {
+        for (TypeElement current = type; current != null; current = getSuperclass(current)) {
+            for (VariableElement field : ElementFilter.fieldsIn(current.getEnclosedElements())) {
+                if (field.getSimpleName().contentEquals(fieldName)) {
+                    return field;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finds the method without parameters with the given name in the class or
+     * its super classes.
+     * @param type the class
+     * @param methodName the method name
+     * @return the method or null
+     */
+    public ExecutableElement findMethod(TypeElement type, String methodName) {
+        for (TypeElement current = type; current != null; current = getSuperclass(current)) {
+            for (ExecutableElement method : ElementFilter.methodsIn(current.getEnclosedElements())) {
+                if (method.getSimpleName().contentEquals(methodName) && method.getParameters().isEmpty()) {
+                    return method;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the super class of the given class.
+     * @param type the class
+     * @return the super class or null
+     */
+    public TypeElement getSuperclass(TypeElement type) {
+        TypeMirror superclass = type.getSuperclass();
+        if (superclass.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        return (TypeElement) types.asElement(superclass);
+    }
+
+}
@@ -0,0 +1,267 @@
+package de.iisys.libinterface.processor;
+
+import de.iisys.libinterface.message.annotation.Callback;
+import de.iisys.libinterface.message.annotation.ECC;
+import de.iisys.libinterface.message.annotation.MessageTemplate;
+import de.iisys.libinterface.parser.MessageTemplateCompiler;
+import de.iisys.libinterface.parser.codec.GeneratedMessageCodec;
+import de.iisys.libinterface.parser.node.ECCBlockNode;
+import de.iisys.libinterface.parser.node.ECCCalculationNode;
+import de.iisys.libinterface.parser.node.ParserNode;
+import de.iisys.libinterface.parser.node.ParserPlan;
+import de.iisys.libinterface.parser.node.ReflectionFieldNode;
+import de.iisys.libinterface.parser.service.MessageParserService;
+import de.iisys.libinterface.service.ECCService;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import org.parboiled.errors.ParsingException;
+
+/**
+ * Annotation processor that checks every {@link MessageTemplate} at compile
+ * time and generates a {@link GeneratedMessageCodec} for its message class.<br>
+ * Errors in the template, missing fields, callback methods and ecc methods are
+ * reported as compile errors. The codec is written by the
+ * {@link MessageCodecWriter} and is picked up by the
+ * {@link MessageParserService} at runtime.
+ */
+@SupportedAnnotationTypes("de.iisys.libinterface.message.annotation.MessageTemplate")
+public class MessageCodecProcessor extends AbstractProcessor {
+
+    private MessageParserService messageParserService;
+    private ElementService elementService;
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+        messageParserService = new MessageParserService(new MessageTemplateCompiler());
+        elementService = new ElementService(processingEnv.getTypeUtils());
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(MessageTemplate.class)) {
+            if (element.getKind() == ElementKind.CLASS) {
+                process((TypeElement) element);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Parses and checks the template of the given message class and writes
+     * its codec if the class can be used by generated code.
+     * @param type the message class
+     */
+    protected void process(TypeElement type) {
+        String template = type.getAnnotation(MessageTemplate.class).value();
+
+        ParserPlan plan;
+        try {
+            plan = messageParserService.getTemplateCache().get(template);
+        } catch (ParsingException ex) {
+            error(type, "Invalid message template '" + template + "': " + ex.getMessage().trim());
+            return;
+        }
+
+        if (check(type, plan.getRoot()) && isGeneratable(type)) {
+            write(type, new MessageCodecWriter(processingEnv, elementService, type, plan));
+        }
+    }
+
+    /**
+     * Checks the callback method of the class and all nodes of the template.
+     * @param type the message class
+     * @param root the root node of the template
+     * @return whether there were no errors
+     */
+    protected boolean check(TypeElement type, ParserNode root) {
+        boolean valid = true;
+
+        Callback callback = type.getAnnotation(Callback.class);
+        if (callback != null && elementService.findMethod(type, callback.value()) == null) {
+            error(type, "Could not find callback method '" + callback.value() + "' in '" + type.getQualifiedName() + "'.");
+            valid = false;
+        }
+
+        List<ParserNode> nodes = new ArrayList<>();
+        collect(root, nodes);
+
+        boolean ecc = false;
+        for (ParserNode node : nodes) {
+            if (node instanceof ReflectionFieldNode) {
+                valid &= checkField(type, ((ReflectionFieldNode) node).getFieldName());
+            } else if (node instanceof ECCCalculationNode) {
+                valid &= checkECCReference(type, nodes, ((ECCCalculationNode) node).getReference());
+                ecc = true;
+            }
+        }
+
+        if (ecc) {
+            valid &= checkECCMethod(type);
+        }
+        return valid;
+    }
+
+    /**
+     * Checks that the field and its callback method exist.
+     * @param type the message class
+     * @param fieldName the field name
+     * @return whether there were no errors
+     */
+    protected boolean checkField(TypeElement type, String fieldName) {
+        VariableElement field = elementService.findField(type, fieldName);
+        if (field == null) {
+            error(type, "Could not find field '" + fieldName + "' in '" + type.getQualifiedName() + "'.");
+            return false;
+        }
+
+        Callback callback = field.getAnnotation(Callback.class);
+        if (callback != null && elementService.findMethod(type, callback.value()) == null) {
+            error(field, "Could not find callback method '" + callback.value() + "' in '" + type.getQualifiedName() + "'.");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Checks that there is an ecc block with the given reference.
+     * @param type the message class
+     * @param nodes all nodes of the template
+     * @param reference the reference
+     * @return whether there were no errors
+     */
+    protected boolean checkECCReference(TypeElement type, List<ParserNode> nodes, String reference) {
+        for (ParserNode node : nodes) {
+            if (node instanceof ECCBlockNode && ((ECCBlockNode) node).getReference().equals(reference)) {
+                return true;
+            }
+        }
+
+        error(type, "Could not find ECCBlock with reference '" + reference + "'.");
+        return false;
+    }
+
+    /**
+     * Checks that the ecc class of the message exists and declares a static
+     * ecc method with a single string parameter.
+     * @param type the message class
+     * @return whether there were no errors
+     */
+    protected boolean checkECCMethod(TypeElement type) {
+        String className = ECCService.class.getName();
+        String methodName = ECCService.XOR;
+
+        ECC eccAnnotation = type.getAnnotation(ECC.class);
+        if (eccAnnotation != null) {
+            className = eccAnnotation.clazz();
+            methodName = eccAnnotation.method();
+        }
+
+        TypeElement serviceType = processingEnv.getElementUtils().getTypeElement(className.replace('$', '.'));
+        if (serviceType == null) {
+            error(type, "Could not find ecc class '" + className + "'.");
+            return false;
+        }
+
+        TypeMirror stringType = processingEnv.getElementUtils().getTypeElement(String.class.getName()).asType();
+        for (ExecutableElement method : ElementFilter.methodsIn(serviceType.getEnclosedElements())) {
+            if (method.getSimpleName().contentEquals(methodName) && method.getModifiers().contains(Modifier.STATIC)
+                    && method.getParameters().size() == 1
+                    && processingEnv.getTypeUtils().isSameType(method.getParameters().get(0).asType(), stringType)) {
+                return true;
+            }
+        }
+
+        error(type, "Could not find static ecc method '" + methodName + "(String)' in '" + className + "'.");
+        return false;
+    }
+
+    /**
+     * Returns whether generated code in the package of the class can refer to
+     * the class and create instances of its codec.
+     * @param type the message class
+     * @return whether a codec can be generated
+     */
+    protected boolean isGeneratable(TypeElement type) {
+        if (type.getModifiers().contains(Modifier.ABSTRACT)) {
+            return false;
+        }
+
+        TypeMirror messageType = processingEnv.getElementUtils().getTypeElement("de.iisys.libinterface.message.interfaces.Message").asType();
+        if (!processingEnv.getTypeUtils().isAssignable(type.asType(), messageType)) {
+            return false;
+        }
+
+        for (Element current = type; current instanceof TypeElement; current = current.getEnclosingElement()) {
+            TypeElement currentType = (TypeElement) current;
+            if (currentType.getNestingKind() == NestingKind.LOCAL || currentType.getNestingKind() == NestingKind.ANONYMOUS
+                    || currentType.getModifiers().contains(Modifier.PRIVATE)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the codec of the given class.
+     * @param type the message class
+     * @param codecWriter the writer of the codec source
+     */
+    protected void write(TypeElement type, MessageCodecWriter codecWriter) {
+        String codecName = GeneratedMessageCodec.getCodecName(processingEnv.getElementUtils().getBinaryName(type).toString());
+        try {
+            JavaFileObject sourceFile = processingEnv.getFiler().createSourceFile(codecName, type);
+            try (Writer writer = sourceFile.openWriter()) {
+                writer.write(codecWriter.write(codecName.substring(codecName.lastIndexOf('.') + 1)));
+            }
+        } catch (IOException ex) {
+            error(type, "Could not write codec '" + codecName + "': " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Adds the given node and all of its descendants to the list.
+     * @param node the node
+     * @param nodes the list of nodes
+     */
+    protected void collect(ParserNode node, List<ParserNode> nodes) {
+        nodes.add(node);
+        for (ParserNode child : node.getChildren()) {
+            collect(child, nodes);
+        }
+    }
+
+    /**
+     * Reports an error at the given element.
+     * @param element the element
+     * @param message the error message
+     */
+    protected void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+}
@@ -0,0 +1,590 @@
+package de.iisys.libinterface.processor;
+
+import de.iisys.libinterface.message.annotation.Callback;
+import de.iisys.libinterface.message.annotation.Representation;
+import de.iisys.libinterface.message.annotation.Represented;
+import de.iisys.libinterface.parser.codec.GeneratedMessageCodec;
+import de.iisys.libinterface.parser.codec.LinearTemplate;
+import de.iisys.libinterface.parser.codec.MessageCodecs;
+import de.iisys.libinterface.parser.codec.MessageSegments;
+import de.iisys.libinterface.parser.node.ArrayNode;
+import de.iisys.libinterface.parser.node.ContentNode;
+import de.iisys.libinterface.parser.node.ECCBlockNode;
+import de.iisys.libinterface.parser.node.ECCCalculationNode;
+import de.iisys.libinterface.parser.node.MessageCharacterNode;
+import de.iisys.libinterface.parser.node.OptionalNode;
+import de.iisys.libinterface.parser.node.ParserNode;
+import de.iisys.libinterface.parser.node.ParserPlan;
+import de.iisys.libinterface.parser.node.ReflectionFieldNode;
+import de.iisys.libinterface.parser.service.LiteralScanner;
+import de.iisys.libinterface.parser.service.SizeEstimate;
+import de.iisys.libinterface.service.CallbackInvoker;
+import de.iisys.libinterface.service.FieldAccessor;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.util.ElementFilter;
+
+/**
+ * Class that writes the source of the {@link GeneratedMessageCodec} of a
+ * message class.<br>
+ * Templates that only consist of contents, message characters and fields are
+ * written as straight code with every field and callback method resolved once
+ * and the representations as switch statements. Every other template is
+ * written as the node tree of its plan, so that it does not have to be parsed
+ * at runtime. Both kinds of codecs read a {@link CharSequence} in place, so a
+ * message in a char array or byte buffer is not copied into a string.
+ */
+public class MessageCodecWriter {
+
+    private final ProcessingEnvironment processingEnv;
+    private final ElementService elementService;
+    private final TypeElement type;
+    private final ParserPlan plan;
+
+    private final String packageName;
+    private final String typeName;
+
+    private final StringBuilder source = new StringBuilder();
+    private final TreeSet<String> imports = new TreeSet<>();
+    private final Map<String, String> constants = new LinkedHashMap<>();
+
+    /**
+     * Initializes the writer for the given class and its parsed template.
+     * @param processingEnv the processing environment
+     * @param elementService the element service of the processor
+     * @param type the message class
+     * @param plan the plan of the message template
+     */
+    public MessageCodecWriter(ProcessingEnvironment processingEnv, ElementService elementService, TypeElement type, ParserPlan plan) {
+        this.processingEnv = processingEnv;
+        this.elementService = elementService;
+        this.type = type;
+        this.plan = plan;
+        this.packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        this.typeName = type.getQualifiedName().toString();
+    }
+
+    /**
+     * Writes the source of the codec.
+     * @param codecName the simple name of the codec class
+     * @return source of the codec
+     */
+    public String write(String codecName) {
+        source.setLength(0);
+        imports.clear();
+        constants.clear();
+
+        imports.add(GeneratedMessageCodec.class.getName());
+
+        List<Part> parts = createParts();
+        StringBuilder body = new StringBuilder();
+        if (parts != null) {
+            writeLinear(body, parts);
+        } else {
+            writePlan(body);
+        }
+
+        if (!packageName.isEmpty()) {
+            source.append("package ").append(packageName).append(";\n\n");
+        }
+        for (String importName : imports) {
+            source.append("import ").append(importName).append(";\n");
+        }
+        source.append('\n');
+        source.append("/**\n");
+        source.append(" * Codec for {@link ").append(typeName).append("}, generated by the libinterface-processor.\n");
+        source.append(" */\n");
+        source.append("public final class ").append(codecName).append(" extends GeneratedMessageCodec<").append(typeName).append("> {\n\n");
+        source.append("    private static final String TEMPLATE = ").append(literal(plan.getTemplate())).append(";\n\n");
+        source.append(body);
+        source.append("    @Override\n");
+        source.append("    public String getMessageTemplate() {\n");
+        source.append("        return TEMPLATE;\n");
+        source.append("    }\n\n");
+        source.append("}\n");
+        return source.toString();
+    }
+
+    /**
+     * Writes the node tree of the plan and delegates to it.
+     * @param body the body to write to
+     */
+    protected void writePlan(StringBuilder body) {
+        imports.add(ParserNode.class.getName());
+        imports.add(ParserPlan.class.getName());
+
+        body.append("    private static final ParserPlan PLAN = new ParserPlan(TEMPLATE, ");
+        writeNode(body, plan.getRoot(), 1);
+        body.append(");\n\n");
+
+        body.append("    @Override\n");
+        body.append("    public String serialize(").append(typeName).append(" message) {\n");
+        body.append("        return PLAN.serialize(message);\n");
+        body.append("    }\n\n");
+        body.append("    @Override\n");
+        body.append("    public void serialize(").append(typeName).append(" message, StringBuilder string) {\n");
+        body.append("        PLAN.serialize(message, string);\n");
+        body.append("    }\n\n");
+        body.append("    @Override\n");
+        body.append("    public ").append(typeName).append(" deserialize(String message, ").append(typeName).append(" object) {\n");
+        body.append("        return (").append(typeName).append(") PLAN.deserialize(object, message);\n");
+        body.append("    }\n\n");
+        body.append("    @Override\n");
+        body.append("    public ").append(typeName).append(" deserialize(CharSequence message, ").append(typeName).append(" object) {\n");
+        body.append("        return (").append(typeName).append(") PLAN.deserialize(object, message);\n");
+        body.append("    }\n\n");
+    }
+
+    /**
+     * Writes the constructor call of the given node and its children.
+     * @param body the body to write to
+     * @param node the node
+     * @param level the indentation level of the children
+     */
+    protected void writeNode(StringBuilder body, ParserNode node, int level) {
+        Class<? extends ParserNode> nodeClass = node.getClass();
+        imports.add(nodeClass.getName());
+
+        List<String> arguments = new ArrayList<>();
+        if (nodeClass == ContentNode.class) {
+            arguments.add(literal(((ContentNode) node).getContent()));
+        } else if (nodeClass == MessageCharacterNode.class) {
+            arguments.add(literal(((MessageCharacterNode) node).getMessageCharacterName()));
+        } else if (nodeClass == ReflectionFieldNode.class) {
+            arguments.add(literal(((ReflectionFieldNode) node).getFieldName()));
+            arguments.add(Integer.toString(((ReflectionFieldNode) node).getFieldLength()));
+        } else if (nodeClass == ArrayNode.class) {
+            arguments.add(literal(((ArrayNode) node).getDelimiter()));
+        } else if (nodeClass == ECCBlockNode.class) {
+            arguments.add(literal(((ECCBlockNode) node).getReference()));
+        } else if (nodeClass == ECCCalculationNode.class) {
+            arguments.add(literal(((ECCCalculationNode) node).getReference()));
+        } else if (nodeClass != ParserNode.class && nodeClass != OptionalNode.class) {
+            throw new IllegalArgumentException("Can not write node '" + nodeClass.getName() + "'.");
+        }
+
+        body.append("new ").append(nodeClass.getSimpleName()).append('(').append(String.join(", ", arguments));
+        List<ParserNode> children = node.getChildren();
+        for (int i = 0; i < children.size(); i++) {
+            if (i > 0 || !arguments.isEmpty()) {
+                body.append(',');
+            }
+            body.append("\n    ");
+            for (int j = 0; j < level; j++) {
+                body.append("        ");
+            }
+            writeNode(body, children.get(i), level + 1);
+        }
+        body.append(')');
+    }
+
+    /**
+     * Writes the straight serialization and deserialization of the parts.
+     * @param body the body to write to
+     * @param parts the parts of the template
+     */
+    protected void writeLinear(StringBuilder body, List<Part> parts) {
+        imports.add(FieldAccessor.class.getName());
+        imports.add(MessageCodecs.class.getName());
+        imports.add(MessageSegments.class.getName());
+        imports.add(SizeEstimate.class.getName());
+
+        int minimumLength = 0;
+        boolean fixed = true;
+        for (Part part : parts) {
+            minimumLength += part.literal != null ? part.literal.length() : Math.max(part.fieldLength, 0);
+            fixed &= part.literal != null || part.fieldLength >= 0;
+        }
+
+        for (Map.Entry<String, String> constant : constants.entrySet()) {
+            if (constant.getValue().startsWith("MessageCodecs.method(")) {
+                imports.add(CallbackInvoker.class.getName());
+                body.append("    private static final CallbackInvoker ");
+            } else if (constant.getValue().startsWith("MessageCodecs.scanner(")) {
+                imports.add(LiteralScanner.class.getName());
+                body.append("    private static final LiteralScanner ");
+            } else {
+                body.append("    private static final FieldAccessor ");
+            }
+            body.append(constant.getKey()).append(" = ").append(constant.getValue()).append(";\n");
+        }
+        int literals = 0;
+        for (Part part : parts) {
+            if (part.literal != null) {
+                body.append("    private static final MessageSegments.Literal LITERAL_").append(literals++).append(" = new MessageSegments.Literal(").append(literal(part.literal)).append(");\n");
+            }
+        }
+        body.append("    private static final SizeEstimate SIZE = new SizeEstimate(").append(fixed ? minimumLength : minimumLength + 16).append(");\n\n");
+
+        body.append("    @Override\n");
+        body.append("    public String serialize(").append(typeName).append(" message) {\n");
+        if (parts.size() == 1 && parts.get(0).literal != null) {
+            body.append("        return ").append(literal(parts.get(0).literal)).append(";\n");
+        } else {
+            body.append("        StringBuilder string = new StringBuilder(SIZE.get());\n");
+            body.append("        serialize(message, string);\n");
+            body.append("        return string.toString();\n");
+        }
+        body.append("    }\n\n");
+
+        body.append("    @Override\n");
+        body.append("    public void serialize(").append(typeName).append(" message, StringBuilder string) {\n");
+        body.append("        int start = string.length();\n");
+        body.append("        SIZE.presize(string);\n");
+        for (Part part : parts) {
+            if (part.literal != null) {
+                body.append("        string.append(").append(literal(part.literal)).append(");\n");
+            } else {
+                writeAppend(body, part);
+            }
+        }
+        body.append("        SIZE.record(string.length() - start);\n");
+        body.append("    }\n\n");
+
+        body.append("    @Override\n");
+        body.append("    public void serialize(").append(typeName).append(" message, MessageSegments segments) {\n");
+        body.append("        StringBuilder string = segments.getString();\n");
+        literals = 0;
+        for (Part part : parts) {
+            if (part.literal != null) {
+                body.append("        segments.addLiteral(LITERAL_").append(literals++).append(");\n");
+            } else {
+                writeAppend(body, part);
+            }
+        }
+        body.append("    }\n\n");
+
+        body.append("    @Override\n");
+        body.append("    public ").append(typeName).append(" deserialize(String message, ").append(typeName).append(" object) {\n");
+        body.append("        return deserialize((CharSequence) message, object);\n");
+        body.append("    }\n\n");
+
+        body.append("    @Override\n");
+        body.append("    public ").append(typeName).append(" deserialize(CharSequence message, ").append(typeName).append(" object) {\n");
+        body.append("        int position = 0;\n");
+        body.append("        int length;\n");
+        for (Part part : parts) {
+            if (part.literal != null) {
+                body.append("        position = MessageCodecs.match(message, position, ").append(literal(part.literal)).append(");\n");
+                continue;
+            }
+
+            if (part.fieldLength >= 0) {
+                body.append("        length = ").append(part.fieldLength).append(";\n");
+            } else if (part.terminator == null) {
+                body.append("        length = message.length() - position;\n");
+            } else {
+                String terminator = part.terminatorConstant != null ? part.terminatorConstant : literal(part.terminator);
+                body.append("        length = MessageCodecs.length(message, position, ").append(terminator).append(");\n");
+            }
+            body.append("        if (MessageCodecs.defined(message, position, length)) {\n");
+            if (part.represented) {
+                body.append("            String value = message.subSequence(position, position + length).toString();\n");
+                body.append("            MessageCodecs.set(").append(part.fieldConstant).append(", object, parse").append(part.methodSuffix).append("(value), value);\n");
+            } else {
+                body.append("            MessageCodecs.set(").append(part.fieldConstant).append(", object, message, position, length);\n");
+            }
+            if (part.callbackConstant != null) {
+                body.append("            MessageCodecs.callback(").append(part.callbackConstant).append(", object, ").append(literal(part.fieldName)).append(");\n");
+            }
+            body.append("        }\n");
+            body.append("        position += length;\n");
+        }
+        body.append("        return object;\n");
+        body.append("    }\n\n");
+
+        List<String> written = new ArrayList<>();
+        for (Part part : parts) {
+            if (part.represented && !written.contains(part.methodSuffix)) {
+                written.add(part.methodSuffix);
+                writeRepresentations(body, part);
+            }
+        }
+    }
+
+    /**
+     * Writes the statements that append the field of the given part to the
+     * variable {@code string}.
+     * @param body the body to write to
+     * @param part the part of the field
+     */
+    protected void writeAppend(StringBuilder body, Part part) {
+        if (part.callbackConstant != null) {
+            body.append("        MessageCodecs.callback(").append(part.callbackConstant).append(", message, ").append(literal(part.fieldName)).append(");\n");
+        }
+        if (part.represented) {
+            String content = "represent" + part.methodSuffix + "(MessageCodecs.get(" + part.fieldConstant + ", message))";
+            body.append("        MessageCodecs.append(string, ").append(literal(part.fieldName)).append(", ").append(content).append(", ").append(part.fieldLength).append(");\n");
+        } else {
+            body.append("        MessageCodecs.append(string, ").append(part.fieldConstant).append(", message, ").append(part.fieldLength).append(");\n");
+        }
+    }
+
+    /**
+     * Writes the methods that represent and parse the content of a represented
+     * field.
+     * @param body the body to write to
+     * @param part the part of the field
+     */
+    protected void writeRepresentations(StringBuilder body, Part part) {
+        body.append("    private static Object represent").append(part.methodSuffix).append("(Object content) {\n");
+        if (!part.representations.isEmpty()) {
+            body.append("        if (content != null) {\n");
+            body.append("            switch (content.toString()) {\n");
+            for (Map.Entry<String, String> representation : part.representations.entrySet()) {
+                body.append("                case ").append(literal(representation.getKey())).append(":\n");
+                body.append("                    return ").append(literal(representation.getValue())).append(";\n");
+            }
+            body.append("            }\n");
+            body.append("        }\n");
+        }
+        body.append("        return content;\n");
+        body.append("    }\n\n");
+
+        body.append("    private static Object parse").append(part.methodSuffix).append("(String value) {\n");
+        String defaultContent = part.defaultContent != null ? part.defaultContent : "value";
+        if (!part.contents.isEmpty()) {
+            body.append("        switch (value) {\n");
+            for (Map.Entry<String, String> content : part.contents.entrySet()) {
+                body.append("            case ").append(literal(content.getKey())).append(":\n");
+                body.append("                return ").append(content.getValue()).append(";\n");
+            }
+            body.append("            default:\n");
+            body.append("                return ").append(defaultContent).append(";\n");
+            body.append("        }\n");
+        } else {
+            body.append("        return ").append(defaultContent).append(";\n");
+        }
+        body.append("    }\n\n");
+    }
+
+    /**
+     * Creates the parts of the {@link LinearTemplate} of the plan.
+     * @return the parts or null if the template can not be written as
+     * straight code
+     */
+    protected List<Part> createParts() {
+        LinearTemplate template = LinearTemplate.of(plan);
+        if (template == null) {
+            return null;
+        }
+
+        List<Part> parts = new ArrayList<>();
+        for (LinearTemplate.Part templatePart : template.getParts()) {
+            Part part = templatePart.isLiteral()
+                    ? new Part(templatePart.getLiteral())
+                    : createFieldPart(templatePart.getFieldName(), templatePart.getFieldLength(), templatePart.getTerminator());
+            if (part == null) {
+                return null;
+            }
+            parts.add(part);
+        }
+        return parts;
+    }
+
+    /**
+     * Creates the part of a field with its callback method and
+     * representations.
+     * @param fieldName the field name
+     * @param fieldLength the fixed field length or -1
+     * @param terminator the literal that follows the field or null
+     * @return the part or null if the field can not be written as straight code
+     */
+    protected Part createFieldPart(String fieldName, int fieldLength, String terminator) {
+        VariableElement field = elementService.findField(type, fieldName);
+        if (field == null) {
+            return null;
+        }
+
+        Part part = new Part(fieldName, fieldLength, terminator);
+        part.fieldConstant = constant(getConstantName(fieldName) + "_FIELD", "MessageCodecs.field(" + typeName + ".class, " + literal(fieldName) + ")");
+        if (fieldLength < 0 && terminator != null && !terminator.isEmpty()) {
+            part.terminatorConstant = constant(getConstantName(fieldName) + "_TERMINATOR", "MessageCodecs.scanner(" + literal(terminator) + ")");
+        }
+
+        Callback callback = field.getAnnotation(Callback.class);
+        if (callback != null) {
+            part.callbackConstant = constant(getConstantName(callback.value()) + "_CALLBACK", "MessageCodecs.method(" + typeName + ".class, " + literal(callback.value()) + ")");
+        }
+
+        if (field.getAnnotation(Represented.class) != null) {
+            if (field.asType().getKind() != TypeKind.DECLARED) {
+                return null;
+            }
+
+            part.represented = true;
+            part.methodSuffix = Character.toUpperCase(fieldName.charAt(0)) + fieldName.substring(1);
+
+            TypeElement fieldType = (TypeElement) processingEnv.getTypeUtils().asElement(field.asType());
+            for (TypeElement current = fieldType; current != null; current = elementService.getSuperclass(current)) {
+                for (VariableElement representationField : ElementFilter.fieldsIn(current.getEnclosedElements())) {
+                    Representation representation = representationField.getAnnotation(Representation.class);
+                    if (representation == null) {
+                        continue;
+                    }
+                    if (!representationField.getModifiers().contains(Modifier.STATIC) || !isAccessible(representationField)) {
+                        return null;
+                    }
+
+                    String representationContent = ((TypeElement) representationField.getEnclosingElement()).getQualifiedName() + "." + representationField.getSimpleName();
+                    if (representation.value().equals(Representation.DEFAULT)) {
+                        part.defaultContent = representationContent;
+                    } else {
+                        part.representations.putIfAbsent(representationField.getSimpleName().toString(), representation.value());
+                        part.contents.remove(representation.value());
+                        part.contents.put(representation.value(), representationContent);
+                    }
+                }
+            }
+        }
+        return part;
+    }
+
+    /**
+     * Adds a constant with the given initializer, or gets the name of the
+     * constant that already has this initializer.
+     * @param name the preferred name
+     * @param initializer the initializer
+     * @return name of the constant
+     */
+    protected String constant(String name, String initializer) {
+        for (Map.Entry<String, String> constant : constants.entrySet()) {
+            if (constant.getValue().equals(initializer)) {
+                return constant.getKey();
+            }
+        }
+
+        String constantName = name;
+        for (int i = 2; constants.containsKey(constantName); i++) {
+            constantName = name + i;
+        }
+        constants.put(constantName, initializer);
+        return constantName;
+    }
+
+    /**
+     * Returns whether generated code in the package of the message class can
+     * refer to the given element.
+     * @param element the element
+     * @return whether the element is accessible
+     */
+    protected boolean isAccessible(Element element) {
+        PackageElement elementPackage = processingEnv.getElementUtils().getPackageOf(element);
+        boolean samePackage = elementPackage.getQualifiedName().contentEquals(packageName);
+
+        for (Element current = element; !(current instanceof PackageElement); current = current.getEnclosingElement()) {
+            if (current.getModifiers().contains(Modifier.PRIVATE) || !samePackage && !current.getModifiers().contains(Modifier.PUBLIC)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Converts a camel case name into an upper case constant name.
+     * @param name the name
+     * @return constant name
+     */
+    protected static String getConstantName(String name) {
+        StringBuilder constantName = new StringBuilder(name.length() + 4);
+        for (int i = 0; i < name.length(); i++) {
+            char character = name.charAt(i);
+            if (Character.isUpperCase(character) && i > 0 && !Character.isUpperCase(name.charAt(i - 1))) {
+                constantName.append('_');
+            }
+            constantName.append(Character.isJavaIdentifierPart(character) ? Character.toUpperCase(character) : '_');
+        }
+        return constantName.toString();
+    }
+
+    /**
+     * Creates the Java string literal of the given string.
+     * @param string the string
+     * @return string literal
+     */
+    protected static String literal(String string) {
+        if (string == null) {
+            return "null";
+        }
+
+        StringBuilder literal = new StringBuilder(string.length() + 2).append('"');
+        for (int i = 0; i < string.length(); i++) {
+            char character = string.charAt(i);
+            switch (character) {
+                case '"':
+                    literal.append("\\\"");
+                    break;
+                case '\\':
+                    literal.append("\\\\");
+                    break;
+                case '\n':
+                    literal.append("\\n");
+                    break;
+                case '\r':
+                    literal.append("\\r");
+                    break;
+                case '\t':
+                    literal.append("\\t");
+                    break;
+                default:
+                    if (character < 0x20 || character == 0x7f) {
+                        literal.append(String.format("\\%03o", (int) character));
+                    } else if (character > 0x7f) {
+                        literal.append(String.format("\\u%04x", (int) character));
+                    } else {
+                        literal.append(character);
+                    }
+            }
+        }
+        return literal.append('"').toString();
+    }
+
+    /**
+     * Part of a template that is written as straight code, either a literal or
+     * a field.
+     */
+    protected static class Part {
+
+        private final String literal;
+
+        private final String fieldName;
+        private final int fieldLength;
+        private final String terminator;
+
+        private String fieldConstant;
+        private String callbackConstant;
+        private String terminatorConstant;
+
+        private boolean represented;
+        private String methodSuffix;
+        private final Map<String, String> representations = new LinkedHashMap<>();
+        private final Map<String, String> contents = new LinkedHashMap<>();
+        private String defaultContent;
+
+        private Part(String literal) {
+            this.literal = literal;
+            this.fieldName = null;
+            this.fieldLength = -1;
+            this.terminator = null;
+        }
+
+        private Part(String fieldName, int fieldLength, String terminator) {
+            this.literal = null;
+            this.fieldName = fieldName;
+            this.fieldLength = fieldLength;
+            this.terminator = terminator;
+        }
+
+    }
+
+}
@@ -0,0 +1,277 @@
+package de.iisys.libinterface.processor;
+
+import de.iisys.libinterface.message.interfaces.Message;
+import de.iisys.libinterface.parser.MessageTemplateCompiler;
+import de.iisys.libinterface.parser.codec.GeneratedMessageCodec;
+import de.iisys.libinterface.parser.service.MessageParserService;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import static org.junit.Assert.*;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.parboiled.errors.ParsingException;
+
+/**
+ * Class to test the annotation processor with the test messages of
+ * libinterface and with broken message classes.
+ */
+public class MessageCodecProcessorTest {
+
+    private static final String MESSAGE_PACKAGE = "de.iisys.libinterface.message";
+    private static final File MESSAGE_SOURCES = new File("../libinterface/src/test/java/de/iisys/libinterface/message");
+
+    private static final String[] MESSAGES = {"ArrayMessage", "CallbackMessage", "ContentMessage", "ECCMessage",
+        "EndingMessage", "EnumContentMessage", "MegaMessage", "MessageCharacterMessage", "MyNameMessage",
+        "OptionalContentMessage", "StringContentMessage"};
+
+    private static List<Diagnostic<? extends JavaFileObject>> diagnostics;
+    private static ClassLoader classLoader;
+
+    @BeforeClass
+    public static void setUpClass() throws IOException {
+        File output = Files.createTempDirectory("libinterface-processor").toFile();
+        List<File> sources = new ArrayList<>();
+        for (String message : MESSAGES) {
+            sources.add(new File(MESSAGE_SOURCES, message + ".java"));
+        }
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null)) {
+            diagnostics = compile(compiler, fileManager.getJavaFileObjectsFromFiles(sources), output);
+        }
+        classLoader = new URLClassLoader(new URL[]{output.toURI().toURL()}, MessageCodecProcessorTest.class.getClassLoader());
+    }
+
+    /**
+     * Tests that the test messages compile without errors.
+     */
+    @Test
+    public void testNoErrors() {
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics) {
+            assertNotEquals(diagnostic.getMessage(Locale.ROOT), Diagnostic.Kind.ERROR, diagnostic.getKind());
+        }
+    }
+
+    /**
+     * Tests that a codec is generated for every test message.
+     * @throws ClassNotFoundException if a message class was not compiled
+     */
+    @Test
+    public void testGeneratedCodecs() throws ClassNotFoundException {
+        for (String message : MESSAGES) {
+            Class<? extends Message> clazz = loadMessage(message);
+            GeneratedMessageCodec<? extends Message> codec = GeneratedMessageCodec.getCodec(clazz);
+            assertNotNull(message, codec);
+            assertEquals(clazz.getName() + GeneratedMessageCodec.SUFFIX, codec.getClass().getName());
+        }
+    }
+
+    /**
+     * Tests serialization and deserialization with generated codecs.
+     * @throws ReflectiveOperationException if a message could not be created
+     */
+    @Test
+    public void testGeneratedRoundTrip() throws ReflectiveOperationException {
+        MessageParserService messageParserService = new MessageParserService(new MessageTemplateCompiler());
+        assertTrue(messageParserService.isGeneratedCodecs());
+
+        Class<? extends Message> myNameClass = loadMessage("MyNameMessage");
+        Message myNameMessage = myNameClass.getConstructor(String.class).newInstance("John Doe");
+        assertEquals("my-{name}-is-John Doe", messageParserService.serialize(myNameMessage));
+        assertEquals("John Doe", myNameClass.getMethod("getMyName").invoke(messageParserService.deserialize("my-{name}-is-John Doe", myNameClass)));
+
+        Class<? extends Message> eccClass = loadMessage("ECCMessage");
+        String ecc = messageParserService.serialize(eccClass.getConstructor(String.class).newInstance("test"));
+        assertEquals("test", eccClass.getMethod("getPart").invoke(messageParserService.deserialize(ecc, eccClass)));
+    }
+
+    /**
+     * Tests that generated codecs read a CharSequence in place and never copy
+     * the whole message.
+     * @throws ReflectiveOperationException if a message could not be created
+     */
+    @Test
+    public void testGeneratedCharSequence() throws ReflectiveOperationException {
+        MessageParserService messageParserService = new MessageParserService(new MessageTemplateCompiler());
+        Class<? extends Message> myNameClass = loadMessage("MyNameMessage");
+
+        final String message = "my-{name}-is-John Doe";
+        CharSequence sequence = new CharSequence() {
+
+            @Override
+            public int length() {
+                return message.length();
+            }
+
+            @Override
+            public char charAt(int index) {
+                return message.charAt(index);
+            }
+
+            @Override
+            public CharSequence subSequence(int start, int end) {
+                return message.subSequence(start, end);
+            }
+
+            @Override
+            public String toString() {
+                throw new UnsupportedOperationException("The message must not be copied.");
+            }
+
+        };
+        assertEquals("John Doe", myNameClass.getMethod("getMyName").invoke(messageParserService.deserialize(sequence, myNameClass)));
+    }
+
+    /**
+     * Tests the compile error of an invalid template.
+     * @throws IOException if the compiler could not be closed
+     */
+    @Test
+    public void testInvalidTemplate() throws IOException {
+        assertError("Invalid message template '{broken'",
+                "@MessageTemplate(\"{broken\")\n"
+                + "public class BrokenMessage implements Message {\n"
+                + "}\n");
+    }
+
+    /**
+     * Tests the compile error of a missing field.
+     * @throws IOException if the compiler could not be closed
+     */
+    @Test
+    public void testMissingField() throws IOException {
+        assertError("Could not find field 'missing' in '" + MESSAGE_PACKAGE + ".BrokenMessage'.",
+                "@MessageTemplate(\"broken-{missing}\")\n"
+                + "public class BrokenMessage implements Message {\n"
+                + "}\n");
+    }
+
+    /**
+     * Tests the compile error of a missing callback method.
+     * @throws IOException if the compiler could not be closed
+     */
+    @Test
+    public void testMissingCallback() throws IOException {
+        assertError("Could not find callback method 'missing' in '" + MESSAGE_PACKAGE + ".BrokenMessage'.",
+                "@MessageTemplate(\"broken-{content}\")\n"
+                + "public class BrokenMessage implements Message {\n"
+                + "    @Callback(\"missing\")\n"
+                + "    private String content;\n"
+                + "}\n");
+    }
+
+    /**
+     * Tests the compile error of a missing ecc method.
+     * @throws IOException if the compiler could not be closed
+     */
+    @Test
+    public void testMissingECCMethod() throws IOException {
+        assertError("Could not find static ecc method 'missing(String)' in 'java.lang.String'.",
+                "@MessageTemplate(\"~broken-{content}:eccRef~!eccRef!\")\n"
+                + "@ECC(clazz = \"java.lang.String\", method = \"missing\")\n"
+                + "public class BrokenMessage implements Message {\n"
+                + "    private String content;\n"
+                + "}\n");
+    }
+
+    /**
+     * Compiles the given source of the class BrokenMessage and asserts that
+     * the processor reports the expected error.
+     * @param expected start of the expected error message
+     * @param source the class source without package and imports
+     * @throws IOException if the compiler could not be closed
+     */
+    private static void assertError(String expected, String source) throws IOException {
+        String content = "package " + MESSAGE_PACKAGE + ";\n"
+                + "import de.iisys.libinterface.message.annotation.*;\n"
+                + "import de.iisys.libinterface.message.interfaces.Message;\n"
+                + source;
+        JavaFileObject file = new SimpleJavaFileObject(URI.create("string:///" + MESSAGE_PACKAGE.replace('.', '/') + "/BrokenMessage.java"), JavaFileObject.Kind.SOURCE) {
+
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return content;
+            }
+
+        };
+
+        List<String> errors = new ArrayList<>();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : compile(ToolProvider.getSystemJavaCompiler(), Collections.singletonList(file),
+                Files.createTempDirectory("libinterface-processor").toFile())) {
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                errors.add(diagnostic.getMessage(Locale.ROOT));
+                if (diagnostic.getMessage(Locale.ROOT).startsWith(expected)) {
+                    return;
+                }
+            }
+        }
+        fail("Expected error '" + expected + "' but got " + errors);
+    }
+
+    /**
+     * Compiles the given sources with the {@link MessageCodecProcessor}.
+     * @param compiler the java compiler
+     * @param sources the sources
+     * @param output the class output directory
+     * @return the diagnostics of the compiler
+     * @throws IOException if the file manager could not be closed
+     */
+    private static List<Diagnostic<? extends JavaFileObject>> compile(JavaCompiler compiler, Iterable<? extends JavaFileObject> sources,
+            File output) throws IOException {
+        DiagnosticCollector<JavaFileObject> collector = new DiagnosticCollector<>();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(collector, null, null)) {
+            List<String> options = Arrays.asList("-classpath", getClassPath(Message.class, ParsingException.class),
+                    "-d", output.getPath(), "-s", output.getPath());
+            JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, collector, options, null, sources);
+            task.setProcessors(Collections.singletonList(new MessageCodecProcessor()));
+            task.call();
+        }
+        return collector.getDiagnostics();
+    }
+
+    /**
+     * Gets the class path of the locations of the given classes, the class
+     * path of the test is not used as it may be a manifest jar.
+     * @param classes the classes
+     * @return the class path
+     */
+    private static String getClassPath(Class<?>... classes) {
+        StringBuilder classPath = new StringBuilder();
+        for (Class<?> clazz : classes) {
+            try {
+                classPath.append(new File(clazz.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath()).append(File.pathSeparatorChar);
+            } catch (URISyntaxException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+        return classPath.toString();
+    }
+
+    /**
+     * Loads the compiled test message with the given simple name.
+     * @param message the simple name
+     * @return the message class
+     * @throws ClassNotFoundException if the message was not compiled
+     */
+    private static Class<? extends Message> loadMessage(String message) throws ClassNotFoundException {
+        return Class.forName(MESSAGE_PACKAGE + "." + message, true, classLoader).asSubclass(Message.class);
+    }
+
+}
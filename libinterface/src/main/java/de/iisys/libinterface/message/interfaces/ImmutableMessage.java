@@ -0,0 +1,28 @@
+package de.iisys.libinterface.message.interfaces;
+
+/**
+ * Interface of messages that do not change after they were constructed, so
+ * their serialized form can be kept by the message.<br>
+ * The {@link de.iisys.libinterface.parser.service.MessageParserService}
+ * serializes an immutable message once, including its callback, and sets the
+ * serialized form, every further serialization writes the kept form. The form
+ * should be kept in a transient field, which is not part of the message.
+ */
+public interface ImmutableMessage extends Message {
+
+    /**
+     * Gets the serialized form that was set by
+     * {@link #setSerializedForm(java.lang.String) }.
+     * @return the serialized form or null if the message was not serialized
+     * yet
+     */
+    String getSerializedForm();
+
+    /**
+     * Sets the serialized form after the message was serialized the first
+     * time.
+     * @param serializedForm the serialized form
+     */
+    void setSerializedForm(String serializedForm);
+
+}
@@ -1,6 +1,7 @@
 package de.iisys.libinterface.message.interfaces;
 
 import de.iisys.libinterface.message.annotation.MessageTemplate;
+import de.iisys.libinterface.service.ReflectionService;
 import java.io.Serializable;
 
 /**
@@ -14,8 +15,9 @@ public interface Message extends Serializable {
      * @return {@link MessageTemplate#value()}
      */
     default String getMessageTemplate() {
-        if (getClass().isAnnotationPresent(MessageTemplate.class)) {
-            return getClass().getAnnotation(MessageTemplate.class).value();
+        MessageTemplate messageTemplate = ReflectionService.getAnnotation(getClass(), MessageTemplate.class);
+        if (messageTemplate != null) {
+            return messageTemplate.value();
         }
 
         throw new UnsupportedOperationException(getClass().getName() + " has to be annotated with @" + MessageTemplate.class.getSimpleName() + ".");
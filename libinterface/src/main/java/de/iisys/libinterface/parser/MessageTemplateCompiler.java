@@ -0,0 +1,356 @@
+package de.iisys.libinterface.parser;
+
+import de.iisys.libinterface.parser.node.ArrayNode;
+import de.iisys.libinterface.parser.node.ContentNode;
+import de.iisys.libinterface.parser.node.ECCBlockNode;
+import de.iisys.libinterface.parser.node.ECCCalculationNode;
+import de.iisys.libinterface.parser.node.MessageCharacterNode;
+import de.iisys.libinterface.parser.node.OptionalNode;
+import de.iisys.libinterface.parser.node.ParserNode;
+import de.iisys.libinterface.parser.node.ReflectionFieldNode;
+import de.iisys.libinterface.parser.service.MessageCharacters;
+import org.parboiled.errors.ParsingException;
+
+/**
+ * Class that compiles message templates by recursive descent, without
+ * generating a parboiled parser at runtime.<br>
+ * It accepts the same templates as the {@link MessageParser} and creates the
+ * same {@link ParserNode} trees, including the backtracking of its rules: a
+ * part that can not be completed is tried as the next kind of part, and a
+ * message ends before the first part that can not be read at all. Control and
+ * escape characters are looked up in a table and the names of the
+ * {@link MessageCharacters} in a trie, which chooses the same name as the
+ * ordered choice of the {@link MessageParser}. The compiler does not hold any
+ * state between templates, so it can be shared by many threads.
+ */
+public class MessageTemplateCompiler {
+
+    /**
+     * The escape character, like {@link MessageParser#Escape() }.
+     */
+    public static final char ESCAPE = '\\';
+
+    /**
+     * The control characters, like {@link MessageParser#ControlCharacters() }.
+     */
+    public static final String CONTROL_CHARACTERS = "()[]{}<>:~!";
+
+    private static final boolean[] CONTROL = new boolean[128];
+
+    static {
+        for (int i = 0; i < CONTROL_CHARACTERS.length(); i++) {
+            CONTROL[CONTROL_CHARACTERS.charAt(i)] = true;
+        }
+    }
+
+    private static final NameNode NAMES = createNames();
+
+    /**
+     * Creates the trie of the names of all message characters. Every name
+     * keeps its index, since the first name of
+     * {@link MessageCharacters#allNamesArray() } that matches is chosen.
+     * @return root of the trie
+     */
+    private static NameNode createNames() {
+        NameNode root = new NameNode();
+        String[] names = MessageCharacters.allNamesArray();
+        for (int i = 0; i < names.length; i++) {
+            NameNode node = root;
+            for (int j = 0; j < names[i].length(); j++) {
+                char character = names[i].charAt(j);
+                if (node.children[character] == null) {
+                    node.children[character] = new NameNode();
+                }
+                node = node.children[character];
+            }
+            if (node.name == null) {
+                node.name = names[i];
+                node.index = i;
+            }
+        }
+        return root;
+    }
+
+    /**
+     * Returns whether the given character is a control character.
+     * @param character the character
+     * @return whether it is a control character
+     */
+    public static boolean isControlCharacter(char character) {
+        return character < CONTROL.length && CONTROL[character];
+    }
+
+    /**
+     * Compiles the given message template to the root node of its parts.
+     * @param template the message template
+     * @return root node
+     * @throws ParsingException if the template is invalid
+     */
+    public ParserNode compile(String template) {
+        Cursor cursor = new Cursor(template);
+        ParserNode root = cursor.message();
+        if (root == null || cursor.position < template.length()) {
+            throw cursor.error();
+        }
+        return root;
+    }
+
+    /**
+     * Position in a single template, with the methods of the rules of the
+     * {@link MessageParser}. Every rule returns null and leaves the position
+     * unchanged if it does not match.
+     */
+    private static class Cursor {
+
+        private final String template;
+        private final int length;
+        private int position;
+        private int errorPosition;
+
+        private Cursor(String template) {
+            this.template = template;
+            this.length = template.length();
+        }
+
+        /**
+         * Creates the error for the furthest position where a rule did not
+         * match.
+         * @return the exception
+         */
+        private ParsingException error() {
+            int index = Math.max(errorPosition, position);
+            String input = index < length ? "'" + template.charAt(index) + "'" : "end of input";
+            return new ParsingException("InvalidInputError: 'Invalid input " + input + "'"
+                    + " from " + index + " to " + Math.min(index + 1, length)
+                    + " in '" + template.substring(0, Math.min(index + 1, length)) + "'");
+        }
+
+        /**
+         * Resets the position to the given start and returns null.
+         * @param start the start of the rule
+         * @return null
+         */
+        private <T> T fail(int start) {
+            if (position > errorPosition) {
+                errorPosition = position;
+            }
+            position = start;
+            return null;
+        }
+
+        private boolean accept(char character) {
+            if (position < length && template.charAt(position) == character) {
+                position++;
+                return true;
+            }
+            if (position > errorPosition) {
+                errorPosition = position;
+            }
+            return false;
+        }
+
+        private ParserNode message() {
+            ParserNode messageNode = new ParserNode();
+            ParserNode part;
+            while ((part = part()) != null) {
+                messageNode.addChild(messageNode.getChildren().size(), part);
+            }
+            return messageNode.getChildren().isEmpty() ? null : messageNode;
+        }
+
+        private ParserNode[] children(ParserNode messageNode) {
+            return messageNode.getChildren().toArray(new ParserNode[messageNode.getChildren().size()]);
+        }
+
+        private ParserNode part() {
+            if (position >= length) {
+                return null;
+            }
+            switch (template.charAt(position)) {
+                case '~':
+                    return eccBlock();
+                case '!':
+                    return eccCalculation();
+                case '[':
+                    return optionalExpression();
+                case '(':
+                    return arrayExpression();
+                case '{':
+                    return reflectionFieldExpression();
+                case '<':
+                    return messageCharacterExpression();
+                default:
+                    return content();
+            }
+        }
+
+        private ParserNode eccBlock() {
+            int start = position++;
+            ParserNode messageNode = message();
+            if (messageNode == null || !accept(':')) {
+                return fail(start);
+            }
+            String reference = text('~');
+            if (reference == null || !accept('~')) {
+                return fail(start);
+            }
+            return new ECCBlockNode(reference, children(messageNode));
+        }
+
+        private ParserNode eccCalculation() {
+            int start = position++;
+            String reference = text('!');
+            if (reference == null || !accept('!')) {
+                return fail(start);
+            }
+            return new ECCCalculationNode(reference);
+        }
+
+        private ParserNode optionalExpression() {
+            int start = position++;
+            ParserNode messageNode = message();
+            if (messageNode == null || !accept(']')) {
+                return fail(start);
+            }
+            return new OptionalNode(children(messageNode));
+        }
+
+        private ParserNode arrayExpression() {
+            int start = position++;
+            ParserNode messageNode = message();
+            if (messageNode == null || !accept(':')) {
+                return fail(start);
+            }
+            String delimiter = text(')');
+            if (delimiter == null || !accept(')')) {
+                return fail(start);
+            }
+            return new ArrayNode(MessageCharacters.parseString(delimiter), children(messageNode));
+        }
+
+        private ParserNode reflectionFieldExpression() {
+            int start = position++;
+
+            int fieldLength = -1;
+            int digits = position;
+            while (position < length && template.charAt(position) >= '0' && template.charAt(position) <= '9') {
+                position++;
+            }
+            if (position > digits && position < length && template.charAt(position) == ':') {
+                try {
+                    fieldLength = Integer.parseInt(template.substring(digits, position));
+                } catch (NumberFormatException ex) {
+                    return fail(start);
+                }
+                position++;
+            } else {
+                position = digits;
+            }
+
+            int name = position;
+            if (position >= length || !Character.isJavaIdentifierStart(template.charAt(position))) {
+                return fail(start);
+            }
+            position++;
+            while (position < length && Character.isJavaIdentifierPart(template.charAt(position))) {
+                position++;
+            }
+            String fieldName = template.substring(name, position);
+            if (!accept('}')) {
+                return fail(start);
+            }
+            return new ReflectionFieldNode(fieldName, fieldLength);
+        }
+
+        private ParserNode messageCharacterExpression() {
+            int start = position++;
+
+            NameNode node = NAMES;
+            NameNode match = null;
+            int end = position;
+            for (int i = position; i < length; i++) {
+                char character = template.charAt(i);
+                node = character < node.children.length ? node.children[character] : null;
+                if (node == null) {
+                    break;
+                }
+                if (node.name != null && (match == null || node.index < match.index)) {
+                    match = node;
+                    end = i + 1;
+                }
+            }
+            if (match == null) {
+                return fail(start);
+            }
+            position = end;
+            if (!accept('>')) {
+                return fail(start);
+            }
+            return new MessageCharacterNode(match.name);
+        }
+
+        private ParserNode content() {
+            StringBuilder content = new StringBuilder();
+            while (position < length) {
+                char character = template.charAt(position);
+                if (character == ESCAPE) {
+                    if (position + 1 >= length) {
+                        break;
+                    }
+                    content.append(template.charAt(position + 1));
+                    position += 2;
+                } else if (isControlCharacter(character)) {
+                    break;
+                } else {
+                    content.append(character);
+                    position++;
+                }
+            }
+            if (content.length() == 0) {
+                return fail(position);
+            }
+            return new ContentNode(content.toString());
+        }
+
+        /**
+         * Reads the text until the given unescaped terminator, the escape
+         * characters are kept.
+         * @param terminator the terminator
+         * @return the text or null if it is empty
+         */
+        private String text(char terminator) {
+            int start = position;
+            while (position < length) {
+                char character = template.charAt(position);
+                if (character == ESCAPE) {
+                    if (position + 1 >= length) {
+                        break;
+                    }
+                    position += 2;
+                } else if (character == terminator) {
+                    break;
+                } else {
+                    position++;
+                }
+            }
+            if (position == start) {
+                return fail(start);
+            }
+            return template.substring(start, position);
+        }
+
+    }
+
+    /**
+     * Node of the trie of the message character names, which only consist of
+     * ASCII characters.
+     */
+    private static class NameNode {
+
+        private final NameNode[] children = new NameNode[128];
+        private String name;
+        private int index;
+
+    }
+
+}
@@ -0,0 +1,156 @@
+package de.iisys.libinterface.parser.codec;
+
+import de.iisys.libinterface.message.interfaces.Message;
+import de.iisys.libinterface.parser.node.ParserPlan;
+import de.iisys.libinterface.parser.service.CharSequences;
+import de.iisys.libinterface.parser.service.SizeEstimate;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Base class of the codecs that the {@link MessageCodecGenerator} compiles to
+ * bytecode at runtime.<br>
+ * A subclass is generated for a single message class and plan, it reads and
+ * writes the whole message in one method each, so the node tree is not
+ * walked. This class only presizes the string with the size estimate of the
+ * plan and returns the constant of templates without fields.<br>
+ * Templates without an ecc are also written into byte buffers with one byte
+ * per character, so ISO-8859-1 and US-ASCII messages are encoded without a
+ * string in between.
+ *
+ * @param <C> message type
+ */
+public abstract class CompiledMessageCodec<C extends Message> implements MessageCodec<C> {
+
+    private final ParserPlan plan;
+    private final SizeEstimate sizeEstimate;
+    private final String constant;
+    private final boolean encodable;
+
+    /**
+     * Initializes {@link #plan} with the plan the codec was generated from.
+     * @param plan the plan
+     * @param encodable whether the codec writes into byte buffers
+     */
+    protected CompiledMessageCodec(ParserPlan plan, boolean encodable) {
+        this.plan = plan;
+        this.sizeEstimate = plan.getSizeEstimate();
+        this.constant = plan.getConstant();
+        this.encodable = encodable;
+    }
+
+    public ParserPlan getPlan() {
+        return plan;
+    }
+
+    /**
+     * Returns whether messages are written into byte buffers directly by
+     * {@link #serialize(de.iisys.libinterface.message.interfaces.Message, java.nio.ByteBuffer, java.nio.charset.Charset) }.
+     * @return whether the codec writes into byte buffers
+     */
+    public boolean isEncodable() {
+        return encodable || constant != null;
+    }
+
+    /**
+     * Writes the message into the given string. Top level literals are added
+     * to the segments instead, if they are given.
+     * @param object the message
+     * @param string the string to append to
+     * @param segments the segments or null
+     */
+    protected abstract void write(Object object, StringBuilder string, MessageSegments segments);
+
+    /**
+     * Writes the message into the given buffer with one byte per character,
+     * characters above the maximum are replaced by '?'. Only generated for
+     * codecs that are encodable.
+     * @param object the message
+     * @param buffer the buffer to write to
+     * @param maximum the largest character of the charset
+     */
+    protected void write(Object object, ByteBuffer buffer, char maximum) {
+        throw new UnsupportedOperationException("Codec of '" + plan.getTemplate() + "' does not write into byte buffers.");
+    }
+
+    /**
+     * Reads the message into the given object.
+     * @param message the message
+     * @param object the object
+     */
+    protected abstract void read(CharSequence message, Object object);
+
+    @Override
+    public String serialize(C message) {
+        if (constant != null) {
+            return constant;
+        }
+        StringBuilder string = new StringBuilder(sizeEstimate.get());
+        serialize(message, string);
+        return string.toString();
+    }
+
+    @Override
+    public void serialize(C message, StringBuilder string) {
+        if (constant != null) {
+            string.append(constant);
+            return;
+        }
+        int start = string.length();
+        sizeEstimate.presize(string);
+        write(message, string, null);
+        sizeEstimate.record(string.length() - start);
+    }
+
+    @Override
+    public void serialize(C message, MessageSegments segments) {
+        write(message, segments.getString(), segments);
+    }
+
+    /**
+     * Writes the message into the buffer from its position with ISO-8859-1
+     * or US-ASCII, without a string in between. If the message can not be
+     * serialized, the position of the buffer is not changed.
+     * @param message the message
+     * @param buffer the buffer
+     * @param charset ISO-8859-1 or US-ASCII
+     * @return the number of bytes written
+     * @throws java.nio.BufferOverflowException if the message does not fit
+     * into the buffer
+     * @throws IllegalArgumentException if the charset has more than one byte
+     * per character or the codec is not encodable
+     */
+    public int serialize(C message, ByteBuffer buffer, Charset charset) {
+        if (constant != null) {
+            return CharSequences.encode(constant, buffer, charset);
+        }
+
+        char maximum = CharSequences.getSingleByteMaximum(charset);
+        if (maximum == 0 || !encodable) {
+            throw new IllegalArgumentException("Codec of '" + plan.getTemplate() + "' can not write " + charset.name() + " into byte buffers.");
+        }
+
+        int start = buffer.position();
+        try {
+            write(message, buffer, maximum);
+        } catch (RuntimeException ex) {
+            buffer.position(start);
+            throw ex;
+        }
+        sizeEstimate.record(buffer.position() - start);
+        return buffer.position() - start;
+    }
+
+    @Override
+    public C deserialize(String message, C object) {
+        read(message, object);
+        return object;
+    }
+
+    @Override
+    public C deserialize(CharSequence message, C object) {
+        read(message, object);
+        return object;
+    }
+
+}
@@ -0,0 +1,78 @@
+package de.iisys.libinterface.parser.codec;
+
+import de.iisys.libinterface.message.interfaces.Message;
+import org.parboiled.errors.ParserRuntimeException;
+
+/**
+ * Base class of the codecs that are generated at compile time by the
+ * libinterface-processor for classes annotated with
+ * {@link de.iisys.libinterface.message.annotation.MessageTemplate}.<br>
+ * A generated codec is named like its message class with the suffix
+ * {@link #SUFFIX} and is only used for the template it was generated from. It
+ * is built of the operations of {@link MessageCodecs}.
+ *
+ * @param <C> message type
+ */
+public abstract class GeneratedMessageCodec<C extends Message> implements MessageCodec<C> {
+
+    /**
+     * Suffix of the generated codec classes.
+     */
+    public static final String SUFFIX = "_MessageCodec";
+
+    private static final ClassValue<GeneratedMessageCodec<?>[]> CODECS = new ClassValue<GeneratedMessageCodec<?>[]>() {
+
+        @Override
+        protected GeneratedMessageCodec<?>[] computeValue(Class<?> type) {
+            return new GeneratedMessageCodec<?>[]{load(type)};
+        }
+
+    };
+
+    /**
+     * Gets the template the codec was generated from.
+     * @return the message template
+     */
+    public abstract String getMessageTemplate();
+
+    /**
+     * Gets the binary name of the generated codec for the given binary name
+     * of a message class, nested classes are joined with {@code '_'}.
+     * @param binaryName binary name of the message class
+     * @return binary name of the codec class
+     */
+    public static String getCodecName(String binaryName) {
+        int packageEnd = binaryName.lastIndexOf('.');
+        return binaryName.substring(0, packageEnd + 1) + binaryName.substring(packageEnd + 1).replace('$', '_') + SUFFIX;
+    }
+
+    /**
+     * Gets the generated codec of the given class, the codec is loaded once
+     * per class.
+     * @param <C> message type
+     * @param clazz the message class
+     * @return the generated codec or null if there is none
+     */
+    public static <C extends Message> GeneratedMessageCodec<C> getCodec(Class<C> clazz) {
+        return (GeneratedMessageCodec<C>) CODECS.get(clazz)[0];
+    }
+
+    /**
+     * Loads and instantiates the generated codec of the given class.
+     * @param clazz the message class
+     * @return the generated codec or null if there is none
+     */
+    private static GeneratedMessageCodec<?> load(Class<?> clazz) {
+        try {
+            Class<?> codecClass = Class.forName(getCodecName(clazz.getName()), true, clazz.getClassLoader());
+            if (GeneratedMessageCodec.class.isAssignableFrom(codecClass)) {
+                return (GeneratedMessageCodec<?>) codecClass.newInstance();
+            }
+        } catch (ClassNotFoundException | LinkageError ex) {
+        } catch (InstantiationException | IllegalAccessException ex) {
+            throw new ParserRuntimeException("Could not instantiate generated codec for '" + clazz.getName() + "'.", ex);
+        }
+        return null;
+    }
+
+}
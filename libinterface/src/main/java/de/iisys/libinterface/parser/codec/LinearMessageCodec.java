@@ -0,0 +1,349 @@
+package de.iisys.libinterface.parser.codec;
+
+import de.iisys.libinterface.message.annotation.Callback;
+import de.iisys.libinterface.message.annotation.Represented;
+import de.iisys.libinterface.message.interfaces.Message;
+import de.iisys.libinterface.parser.service.LiteralScanner;
+import de.iisys.libinterface.parser.service.SizeEstimate;
+import de.iisys.libinterface.service.CallbackInvoker;
+import de.iisys.libinterface.service.FieldAccessor;
+import de.iisys.libinterface.service.Representations;
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Codec for templates that only consist of contents, message characters and
+ * reflection fields.<br>
+ * The template is compiled into a flat list of steps, adjacent contents and
+ * message characters become a single literal and every field is resolved once,
+ * so that a message is processed straight from the first to the last step
+ * without walking the node tree. A template without fields becomes a single
+ * literal, which is returned as serialized message. The steps are built of
+ * the operations of {@link MessageCodecs}, like the generated codecs. The
+ * steps are merged by a {@link de.iisys.libinterface.parser.service.MessageSet}.
+ *
+ * @param <C> message type
+ */
+public class LinearMessageCodec<C extends Message> implements MessageCodec<C> {
+
+    private final Step[] steps;
+    private final SizeEstimate sizeEstimate;
+    private final String constant;
+
+    /**
+     * Initializes {@link #steps} with the given steps.
+     * @param steps the steps
+     */
+    public LinearMessageCodec(List<Step> steps) {
+        this.steps = steps.toArray(new Step[steps.size()]);
+
+        int length = 0;
+        boolean fixed = true;
+        for (Step step : steps) {
+            length += step.getMinimumLength();
+            fixed &= !(step instanceof FieldStep) || ((FieldStep) step).fieldLength >= 0;
+        }
+        this.sizeEstimate = new SizeEstimate(fixed ? length : length + 16);
+        this.constant = this.steps.length == 1 && this.steps[0] instanceof LiteralStep ? ((LiteralStep) this.steps[0]).getLiteral() : null;
+    }
+
+    public List<Step> getSteps() {
+        return Arrays.asList(steps);
+    }
+
+    public SizeEstimate getSizeEstimate() {
+        return sizeEstimate;
+    }
+
+    @Override
+    public String serialize(C message) {
+        if (constant != null) {
+            return constant;
+        }
+        StringBuilder string = new StringBuilder(sizeEstimate.get());
+        serialize(message, string);
+        return string.toString();
+    }
+
+    @Override
+    public void serialize(C message, StringBuilder string) {
+        int start = string.length();
+        sizeEstimate.presize(string);
+        for (Step step : steps) {
+            step.serialize(message, string);
+        }
+        sizeEstimate.record(string.length() - start);
+    }
+
+    @Override
+    public void serialize(C message, MessageSegments segments) {
+        for (Step step : steps) {
+            step.serialize(message, segments);
+        }
+    }
+
+    @Override
+    public C deserialize(String message, C object) {
+        return deserialize((CharSequence) message, object);
+    }
+
+    @Override
+    public C deserialize(CharSequence message, C object) {
+        int position = 0;
+        for (Step step : steps) {
+            position = step.deserialize(object, message, position);
+        }
+        return object;
+    }
+
+    /**
+     * Reads the fields of a message whose literals were already compared and
+     * whose fields were already measured, like by a
+     * {@link de.iisys.libinterface.parser.service.MessageSet}.
+     * @param message the message
+     * @param object the object
+     * @param positions the positions of the fields in the order of the steps
+     * @param lengths the lengths of the fields in the order of the steps
+     * @return the object
+     */
+    public C deserialize(CharSequence message, C object, int[] positions, int[] lengths) {
+        int field = 0;
+        for (Step step : steps) {
+            if (step instanceof FieldStep) {
+                ((FieldStep) step).read(object, message, positions[field], lengths[field]);
+                field++;
+            }
+        }
+        return object;
+    }
+
+    /**
+     * Single step of a {@link LinearMessageCodec}.
+     */
+    public abstract static class Step {
+
+        /**
+         * Gets the minimum length that the step writes.
+         * @return minimum length
+         */
+        protected abstract int getMinimumLength();
+
+        /**
+         * Appends the step for the given object.
+         * @param object the object
+         * @param string the string to append to
+         */
+        protected abstract void serialize(Object object, StringBuilder string);
+
+        /**
+         * Adds the step for the given object to the given segments, by
+         * default it is appended to the string of the segments.
+         * @param object the object
+         * @param segments the segments to add to
+         */
+        protected void serialize(Object object, MessageSegments segments) {
+            serialize(object, segments.getString());
+        }
+
+        /**
+         * Reads the step of the message at the given position.
+         * @param object the object
+         * @param message the message
+         * @param position the position
+         * @return position after the step
+         */
+        protected abstract int deserialize(Object object, CharSequence message, int position);
+
+    }
+
+    /**
+     * Step that writes and compares a literal.
+     */
+    public static class LiteralStep extends Step {
+
+        private final String literal;
+        private final MessageSegments.Literal segment;
+
+        /**
+         * Initializes {@link #literal} with the given literal.
+         * @param literal the literal
+         */
+        public LiteralStep(String literal) {
+            this.literal = literal;
+            this.segment = new MessageSegments.Literal(literal);
+        }
+
+        public String getLiteral() {
+            return literal;
+        }
+
+        @Override
+        protected int getMinimumLength() {
+            return literal.length();
+        }
+
+        @Override
+        protected void serialize(Object object, StringBuilder string) {
+            string.append(literal);
+        }
+
+        @Override
+        protected void serialize(Object object, MessageSegments segments) {
+            segments.addLiteral(segment);
+        }
+
+        @Override
+        protected int deserialize(Object object, CharSequence message, int position) {
+            return MessageCodecs.match(message, position, literal);
+        }
+
+    }
+
+    /**
+     * Step that writes and reads a field, the field, its representations and
+     * its callback method are resolved on creation.
+     */
+    public static class FieldStep extends Step {
+
+        private final FieldAccessor accessor;
+        private final Field field;
+        private final int fieldLength;
+        private final String terminator;
+        private final LiteralScanner terminatorScanner;
+
+        private final CallbackInvoker callbackInvoker;
+
+        private final boolean represented;
+        private final Representations representations;
+
+        /**
+         * Resolves the field of the given class and its callback method and
+         * representations.
+         * @param clazz the message class
+         * @param fieldName the field name
+         * @param fieldLength the fixed field length or -1
+         * @param terminator the content that follows the field or null
+         * @throws NoSuchFieldException
+         * @throws NoSuchMethodException
+         * @throws IllegalAccessException
+         */
+        public FieldStep(Class<?> clazz, String fieldName, int fieldLength, String terminator) throws NoSuchFieldException, NoSuchMethodException, IllegalAccessException {
+            this.accessor = FieldAccessor.get(clazz, fieldName);
+            this.field = accessor.getField();
+            this.fieldLength = fieldLength;
+            this.terminator = terminator;
+            this.terminatorScanner = terminator != null && !terminator.isEmpty() ? LiteralScanner.get(terminator) : null;
+
+            if (field.isAnnotationPresent(Callback.class)) {
+                callbackInvoker = CallbackInvoker.get(clazz, field.getAnnotation(Callback.class).value());
+            } else {
+                callbackInvoker = null;
+            }
+
+            represented = field.isAnnotationPresent(Represented.class);
+            representations = represented ? Representations.get(field.getType()) : null;
+        }
+
+        public Field getField() {
+            return field;
+        }
+
+        public FieldAccessor getAccessor() {
+            return accessor;
+        }
+
+        @Override
+        protected int getMinimumLength() {
+            return Math.max(fieldLength, 0);
+        }
+
+        /**
+         * Invokes the callback method of the field if there is one.
+         * @param object the object
+         */
+        protected void invokeCallbackMethod(Object object) {
+            if (callbackInvoker != null) {
+                MessageCodecs.callback(callbackInvoker, object, field.getName());
+            }
+        }
+
+        /**
+         * Gets the representation of the given content, if the field is
+         * represented and the content has a representation.
+         * @param content the content
+         * @return representation or the content
+         */
+        protected Object represent(Object content) {
+            if (content != null && represented) {
+                return Representations.represent(content);
+            }
+            return content;
+        }
+
+        @Override
+        protected void serialize(Object object, StringBuilder string) {
+            invokeCallbackMethod(object);
+
+            if (represented) {
+                MessageCodecs.append(string, field.getName(), represent(MessageCodecs.get(accessor, object)), fieldLength);
+            } else {
+                MessageCodecs.append(string, accessor, object, fieldLength);
+            }
+        }
+
+        public int getFieldLength() {
+            return fieldLength;
+        }
+
+        public String getTerminator() {
+            return terminator;
+        }
+
+        /**
+         * Gets the length of the field in the message at the given position,
+         * which is the fixed field length, the distance to the terminator or
+         * the rest of the message.
+         * @param message the message
+         * @param position the position
+         * @return length of the field
+         */
+        public int getLength(CharSequence message, int position) {
+            if (fieldLength >= 0) {
+                return fieldLength;
+            } else if (terminatorScanner != null) {
+                return MessageCodecs.length(message, position, terminatorScanner);
+            }
+            return MessageCodecs.length(message, position, terminator);
+        }
+
+        /**
+         * Sets the field to the content of the message at the given position
+         * and length, if the message contains it.
+         * @param object the object
+         * @param message the message
+         * @param position the position
+         * @param length the length
+         */
+        public void read(Object object, CharSequence message, int position, int length) {
+            if (MessageCodecs.defined(message, position, length)) {
+                if (represented) {
+                    String value = message.subSequence(position, position + length).toString();
+                    MessageCodecs.set(accessor, object, representations.parse(value), value);
+                } else {
+                    MessageCodecs.set(accessor, object, message, position, length);
+                }
+                invokeCallbackMethod(object);
+            }
+        }
+
+        @Override
+        protected int deserialize(Object object, CharSequence message, int position) {
+            int length = getLength(message, position);
+            read(object, message, position, length);
+            return position + length;
+        }
+
+    }
+
+}
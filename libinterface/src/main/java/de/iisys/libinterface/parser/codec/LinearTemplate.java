@@ -0,0 +1,145 @@
+package de.iisys.libinterface.parser.codec;
+
+import de.iisys.libinterface.parser.node.ContentNode;
+import de.iisys.libinterface.parser.node.MessageCharacterNode;
+import de.iisys.libinterface.parser.node.ParserNode;
+import de.iisys.libinterface.parser.node.ParserPlan;
+import de.iisys.libinterface.parser.node.ReflectionFieldNode;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Template that only consists of {@link ContentNode}s,
+ * {@link MessageCharacterNode}s and {@link ReflectionFieldNode}s, as the list
+ * of its parts from the first to the last.<br>
+ * Adjacent contents and message characters are merged into a single literal
+ * part. The terminator of a field is the literal of the node that follows it
+ * only, like for the node tree. This is the layout of a
+ * {@link LinearMessageCodec} and of the straight codecs of the
+ * libinterface-processor.
+ */
+public class LinearTemplate {
+
+    private final List<Part> parts;
+
+    private LinearTemplate(List<Part> parts) {
+        this.parts = Collections.unmodifiableList(parts);
+    }
+
+    /**
+     * Gets the parts of the plan if its template is linear.
+     * @param plan the plan of the message template
+     * @return the linear template or null if the template has other nodes
+     */
+    public static LinearTemplate of(ParserPlan plan) {
+        ParserNode root = plan.getRoot();
+        if (root.getClass() != ParserNode.class) {
+            return null;
+        }
+
+        List<Part> parts = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+
+        List<ParserNode> children = root.getChildren();
+        for (int i = 0; i < children.size(); i++) {
+            ParserNode child = children.get(i);
+
+            String content = getLiteral(child);
+            if (content != null) {
+                literal.append(content);
+            } else if (child.getClass() == ReflectionFieldNode.class) {
+                if (literal.length() > 0) {
+                    parts.add(new Part(literal.toString(), null, -1, null));
+                    literal.setLength(0);
+                }
+
+                ReflectionFieldNode fieldNode = (ReflectionFieldNode) child;
+                String terminator = i + 1 < children.size() ? getLiteral(children.get(i + 1)) : null;
+                parts.add(new Part(null, fieldNode.getFieldName(), fieldNode.getFieldLength(), terminator));
+            } else {
+                return null;
+            }
+        }
+
+        if (literal.length() > 0) {
+            parts.add(new Part(literal.toString(), null, -1, null));
+        }
+        return new LinearTemplate(parts);
+    }
+
+    /**
+     * Gets the literal of the given node if it is a {@link ContentNode} or a
+     * {@link MessageCharacterNode}.
+     * @param node the node
+     * @return the literal or null
+     */
+    public static String getLiteral(ParserNode node) {
+        if (node.getClass() == ContentNode.class) {
+            return ((ContentNode) node).getContent();
+        } else if (node.getClass() == MessageCharacterNode.class) {
+            return ((MessageCharacterNode) node).getContent();
+        }
+        return null;
+    }
+
+    public List<Part> getParts() {
+        return parts;
+    }
+
+    /**
+     * Part of a linear template, either a literal or a field.
+     */
+    public static final class Part {
+
+        private final String literal;
+        private final String fieldName;
+        private final int fieldLength;
+        private final String terminator;
+
+        private Part(String literal, String fieldName, int fieldLength, String terminator) {
+            this.literal = literal;
+            this.fieldName = fieldName;
+            this.fieldLength = fieldLength;
+            this.terminator = terminator;
+        }
+
+        /**
+         * Returns whether the part is a literal.
+         * @return whether the part is a literal
+         */
+        public boolean isLiteral() {
+            return literal != null;
+        }
+
+        /**
+         * Gets the literal of a literal part.
+         * @return the literal or null for a field
+         */
+        public String getLiteral() {
+            return literal;
+        }
+
+        public String getFieldName() {
+            return fieldName;
+        }
+
+        /**
+         * Gets the fixed length of a field.
+         * @return the field length or -1
+         */
+        public int getFieldLength() {
+            return fieldLength;
+        }
+
+        /**
+         * Gets the literal that follows a field.
+         * @return the terminator or null if the field ends the message
+         */
+        public String getTerminator() {
+            return terminator;
+        }
+
+    }
+
+}
@@ -0,0 +1,63 @@
+package de.iisys.libinterface.parser.codec;
+
+import de.iisys.libinterface.message.interfaces.Message;
+
+/**
+ * Interface for serializers and deserializers that are bound to a single
+ * message class and its template.
+ *
+ * @param <C> message type
+ */
+public interface MessageCodec<C extends Message> {
+
+    /**
+     * Serializes the message.
+     * @param message the message
+     * @return serialized message
+     */
+    String serialize(C message);
+
+    /**
+     * Serializes the message into the given string. Codecs that can append
+     * to the string directly override this, the others append the string of
+     * {@link #serialize(de.iisys.libinterface.message.interfaces.Message) }.
+     * @param message the message
+     * @param string the string to append to
+     */
+    default void serialize(C message, StringBuilder string) {
+        string.append(serialize(message));
+    }
+
+    /**
+     * Serializes the message into the given segments. Codecs that know the
+     * literals of their template override this and add them as shared
+     * buffers, the others append the whole message to the string of the
+     * segments.
+     * @param message the message
+     * @param segments the segments to add to
+     */
+    default void serialize(C message, MessageSegments segments) {
+        serialize(message, segments.getString());
+    }
+
+    /**
+     * Deserializes the message into the given object.
+     * @param message the message
+     * @param object the object
+     * @return deserialized object
+     */
+    C deserialize(String message, C object);
+
+    /**
+     * Deserializes the message into the given object. Codecs that can read a
+     * {@link CharSequence} in place override this, the others read it as a
+     * string.
+     * @param message the message
+     * @param object the object
+     * @return deserialized object
+     */
+    default C deserialize(CharSequence message, C object) {
+        return deserialize(message.toString(), object);
+    }
+
+}
@@ -0,0 +1,120 @@
+package de.iisys.libinterface.parser.codec;
+
+import de.iisys.libinterface.message.interfaces.Message;
+import de.iisys.libinterface.parser.node.ParserPlan;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class that compiles and caches a {@link MessageCodec} per message class.<br>
+ * Codecs are generated by the {@link MessageCodecGenerator} and only for
+ * plans that can be compiled, for every other plan
+ * {@link #getCodec(java.lang.Class, de.iisys.libinterface.parser.node.ParserPlan) }
+ * returns null and the plan has to be used. The codecs are stored in a
+ * {@link ClassValue}, so they do not keep their classes from being unloaded.
+ * A class whose template changes is not compiled anymore, its plans are used
+ * from then on, so templates that are built dynamically do not generate a new
+ * class for every change.
+ */
+public class MessageCodecFactory {
+
+    private static final Entry DYNAMIC = new Entry(null, null);
+
+    private final ClassValue<Entry[]> codecs = new ClassValue<Entry[]>() {
+
+        @Override
+        protected Entry[] computeValue(Class<?> type) {
+            return new Entry[1];
+        }
+
+    };
+
+    /**
+     * Gets the codec of the given class for the given plan, compiles the codec
+     * if the class was not compiled for this plan yet. A new plan of the same
+     * template, like after the template cache was cleared, is compiled again,
+     * a plan of another template marks the class as dynamic.
+     * @param <C> message type
+     * @param clazz the message class
+     * @param plan the plan of the message template
+     * @return the codec or null if the plan can not be compiled or the
+     * template of the class changed
+     */
+    public <C extends Message> MessageCodec<C> getCodec(Class<C> clazz, ParserPlan plan) {
+        Entry[] classEntry = codecs.get(clazz);
+
+        Entry entry = classEntry[0];
+        if (entry == DYNAMIC) {
+            return null;
+        } else if (entry != null && entry.plan != plan
+                && (entry.plan.getTemplate() == null || !entry.plan.getTemplate().equals(plan.getTemplate()))) {
+            classEntry[0] = DYNAMIC;
+            return null;
+        } else if (entry == null || entry.plan != plan) {
+            entry = new Entry(plan, createCodec(clazz, plan));
+            classEntry[0] = entry;
+        }
+
+        return (MessageCodec<C>) entry.codec;
+    }
+
+    /**
+     * Generates the codec of the given class for the given plan.
+     * @param <C> message type
+     * @param clazz the message class
+     * @param plan the plan of the message template
+     * @return the codec or null if the plan can not be compiled
+     */
+    protected <C extends Message> MessageCodec<C> createCodec(Class<C> clazz, ParserPlan plan) {
+        return MessageCodecGenerator.generate(clazz, plan);
+    }
+
+    /**
+     * Creates a {@link LinearMessageCodec} if the plan is a
+     * {@link LinearTemplate} and all fields and callback methods can be
+     * resolved. Its steps are merged by a
+     * {@link de.iisys.libinterface.parser.service.MessageSet}, they are not
+     * cached.
+     * @param <C> message type
+     * @param clazz the message class
+     * @param plan the plan of the message template
+     * @return the codec or null if the plan is not linear
+     */
+    public <C extends Message> LinearMessageCodec<C> createLinearCodec(Class<C> clazz, ParserPlan plan) {
+        LinearTemplate template = LinearTemplate.of(plan);
+        if (template == null) {
+            return null;
+        }
+
+        List<LinearMessageCodec.Step> steps = new ArrayList<>();
+        for (LinearTemplate.Part part : template.getParts()) {
+            if (part.isLiteral()) {
+                steps.add(new LinearMessageCodec.LiteralStep(part.getLiteral()));
+                continue;
+            }
+
+            try {
+                steps.add(new LinearMessageCodec.FieldStep(clazz, part.getFieldName(), part.getFieldLength(), part.getTerminator()));
+            } catch (NoSuchFieldException | NoSuchMethodException | IllegalAccessException | RuntimeException ex) {
+                return null;
+            }
+        }
+        return new LinearMessageCodec<>(steps);
+    }
+
+    /**
+     * Immutable pair of plan and compiled codec.
+     */
+    private static class Entry {
+
+        private final ParserPlan plan;
+        private final MessageCodec<?> codec;
+
+        private Entry(ParserPlan plan, MessageCodec<?> codec) {
+            this.plan = plan;
+            this.codec = codec;
+        }
+
+    }
+
+}
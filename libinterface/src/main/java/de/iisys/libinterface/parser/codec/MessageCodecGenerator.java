@@ -0,0 +1,1387 @@
+package de.iisys.libinterface.parser.codec;
+
+import de.iisys.libinterface.message.annotation.Callback;
+import de.iisys.libinterface.message.annotation.ECC;
+import de.iisys.libinterface.message.annotation.Represented;
+import de.iisys.libinterface.message.interfaces.Message;
+import de.iisys.libinterface.parser.node.ArrayNode;
+import de.iisys.libinterface.parser.node.ContentNode;
+import de.iisys.libinterface.parser.node.ECCBlockNode;
+import de.iisys.libinterface.parser.node.ECCCalculationNode;
+import de.iisys.libinterface.parser.node.LiteralNode;
+import de.iisys.libinterface.parser.node.MessageCharacterNode;
+import de.iisys.libinterface.parser.node.OptionalNode;
+import de.iisys.libinterface.parser.node.ParserNode;
+import de.iisys.libinterface.parser.node.ParserPlan;
+import de.iisys.libinterface.parser.node.ReflectionFieldNode;
+import de.iisys.libinterface.parser.service.CharSequences;
+import de.iisys.libinterface.parser.service.LiteralScanner;
+import de.iisys.libinterface.parser.service.MessageMismatchException;
+import de.iisys.libinterface.service.CallbackInvoker;
+import de.iisys.libinterface.service.FieldAccessor;
+import de.iisys.libinterface.service.Numbers;
+import de.iisys.libinterface.service.ReflectionService;
+import de.iisys.libinterface.service.Representations;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.parboiled.errors.ParserRuntimeException;
+import org.parboiled.errors.ParsingException;
+
+/**
+ * Class that compiles the plan of a message class to bytecode with ASM.<br>
+ * The generated class extends {@link CompiledMessageCodec} and reads and
+ * writes the whole message in one method each: literals are compared char by
+ * char, the ends of fields, optional contents, arrays and ecc blocks are
+ * searched with the scanners of the contents that follow them, which are
+ * known when the class is generated, and the cursors, slices and array
+ * positions are local variables instead of a {@link de.iisys.libinterface.parser.node.ParserContext}.
+ * The messages of mismatches and errors are the ones of the plan. Templates
+ * without an ecc get a second write method, which writes the message into a
+ * byte buffer with one byte per character.<br>
+ * Fields are read and written through the method handles of their
+ * {@link FieldAccessor}, which are static final constants of the generated
+ * class, so the JIT can inline them like a direct access. The generated code
+ * only refers to libinterface and the JDK, never to the message class, so it
+ * is defined by its own class loader below the one of libinterface and can be
+ * unloaded with its message class.<br>
+ * Templates are not compiled if they contain node classes other than the
+ * ones of the template compilers, arrays in arrays, an ecc calculation that
+ * is not behind its ecc block in the same node, or anything the plan can not
+ * process either, like a missing field, callback method or ecc method.
+ */
+public final class MessageCodecGenerator implements Opcodes {
+
+    private static final int INLINE_LENGTH = 16;
+
+    private static final String SIZE_MISMATCH = "Arrays or Lists in object all need to have same size, maybe add null elements in between.";
+
+    private static final String CHAR_SEQUENCE = Type.getInternalName(CharSequence.class);
+    private static final String STRING_BUILDER = Type.getInternalName(StringBuilder.class);
+    private static final String METHOD_HANDLE = Type.getInternalName(MethodHandle.class);
+    private static final String PARSING_EXCEPTION = Type.getInternalName(ParsingException.class);
+
+    private final Class<?> clazz;
+    private final ParserPlan plan;
+    private final String className;
+    private final ClassWriter classWriter;
+
+    private final List<Object> constants = new ArrayList<>();
+    private final List<String> constantDescriptors = new ArrayList<>();
+    private final Map<Object, String> constantNames = new HashMap<>();
+
+    private final Map<ReflectionFieldNode, FieldConstants> fields = new IdentityHashMap<>();
+    private final Map<ParserNode, Integer> arrayPositions = new IdentityHashMap<>();
+    private final Map<ParserNode, Integer> eccBlocks = new IdentityHashMap<>();
+    private String eccMethod;
+
+    private MethodVisitor method;
+    private int nextLocal;
+    private int objectLocal;
+    private boolean encode;
+
+    private MessageCodecGenerator(Class<?> clazz, ParserPlan plan) {
+        this.clazz = clazz;
+        this.plan = plan;
+        this.className = (clazz.getName() + "$$MessageCodec").replace('.', '/');
+        this.classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+    }
+
+    /**
+     * Generates the codec of the given class for the given plan.
+     * @param <C> message type
+     * @param clazz the message class
+     * @param plan the plan of the message template
+     * @return the codec or null if the template can not be compiled
+     */
+    public static <C extends Message> CompiledMessageCodec<C> generate(Class<C> clazz, ParserPlan plan) {
+        ParserNode root = plan.getRoot();
+        if (root.getClass() != ParserNode.class || !isSupported(plan, root, false)) {
+            return null;
+        }
+
+        MessageCodecGenerator generator = new MessageCodecGenerator(clazz, plan);
+        try {
+            generator.resolve(root);
+        } catch (NoSuchFieldException | NoSuchMethodException | ClassNotFoundException | IllegalAccessException | RuntimeException ex) {
+            return null;
+        }
+
+        byte[] bytes = generator.generate();
+        try {
+            CodecClassLoader loader = new CodecClassLoader(generator.constants.toArray());
+            Class<?> codecClass = loader.define(generator.className.replace('/', '.'), bytes);
+            return (CompiledMessageCodec<C>) codecClass.getConstructor(ParserPlan.class).newInstance(plan);
+        } catch (ReflectiveOperationException | LinkageError ex) {
+            throw new ParserRuntimeException("Could not generate codec for '" + clazz.getName() + "'.", ex);
+        }
+    }
+
+    /**
+     * Gets the constants of a generated class, which are handed to its static
+     * initializer by its class loader.
+     * @param codecClass the generated class
+     * @return the constants in the order of the static fields
+     */
+    public static Object[] getConstants(Class<?> codecClass) {
+        ClassLoader loader = codecClass.getClassLoader();
+        if (!(loader instanceof CodecClassLoader)) {
+            throw new IllegalArgumentException("Class '" + codecClass.getName() + "' was not generated.");
+        }
+        return ((CodecClassLoader) loader).constants.clone();
+    }
+
+    /**
+     * Returns whether the children of the given node can be compiled.
+     * @param plan the plan
+     * @param node the node
+     * @param array whether the node is part of an array
+     * @return whether the children can be compiled
+     */
+    private static boolean isSupported(ParserPlan plan, ParserNode node, boolean array) {
+        for (ParserNode child : node.getChildren()) {
+            Class<?> type = child.getClass();
+            if (type == ContentNode.class || type == MessageCharacterNode.class || type == ReflectionFieldNode.class) {
+                continue;
+            } else if (type == OptionalNode.class) {
+                if (!isSupported(plan, child, array)) {
+                    return false;
+                }
+            } else if (type == ArrayNode.class || type == ECCBlockNode.class) {
+                boolean nestedArray = type == ArrayNode.class;
+                if (nestedArray && array || !hasEnd(child) || !isSupported(plan, child, array || nestedArray)) {
+                    return false;
+                }
+            } else if (type == ECCCalculationNode.class) {
+                ECCBlockNode block = findBlock(plan, (ECCCalculationNode) child);
+                if (block == null || block.getParent() != node || node.getChildren().indexOf(block) > node.getChildren().indexOf(child)) {
+                    return false;
+                }
+            } else {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether the end of an array or ecc block is known, which needs
+     * the content that follows it or the content of its last child.
+     * @param node the node
+     * @return whether the end is known
+     */
+    private static boolean hasEnd(ParserNode node) {
+        return getFollowingContent(node, false) != null || node.getChildren().isEmpty()
+                || getContent(node.getChildren().get(node.getChildren().size() - 1)) != null;
+    }
+
+    /**
+     * Gets the ecc block the given calculation refers to.
+     * @param plan the plan
+     * @param calculation the ecc calculation
+     * @return the ecc block or null
+     */
+    private static ECCBlockNode findBlock(ParserPlan plan, ECCCalculationNode calculation) {
+        for (ECCBlockNode block : plan.getNodes(ECCBlockNode.class)) {
+            if (block.getReference().equals(calculation.getReference())) {
+                return block;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the content a node has in a run before it is deserialized, which
+     * is the content of a literal, the contents of the children of an
+     * optional content up to its first field or array, and null otherwise.
+     * @param node the node
+     * @return the content or null
+     */
+    private static String getContent(ParserNode node) {
+        if (node instanceof LiteralNode) {
+            return ((LiteralNode) node).getContent();
+        } else if (node.getClass() != OptionalNode.class && node.getClass() != ParserNode.class) {
+            return null;
+        }
+
+        StringBuilder content = new StringBuilder();
+        for (ParserNode child : node.getChildren()) {
+            if (child instanceof ReflectionFieldNode || child instanceof ArrayNode) {
+                break;
+            }
+            String childContent = getContent(child);
+            if (childContent != null) {
+                content.append(childContent);
+            }
+        }
+        return content.toString();
+    }
+
+    /**
+     * Gets the content of the node that follows the given node.
+     * @param node the node
+     * @param skipOptional whether following optional contents are skipped
+     * @return the content or null
+     */
+    private static String getFollowingContent(ParserNode node, boolean skipOptional) {
+        List<ParserNode> siblings = node.getParent().getChildren();
+        for (int i = siblings.indexOf(node) + 1; i < siblings.size(); i++) {
+            if (!skipOptional || siblings.get(i).getClass() != OptionalNode.class) {
+                return getContent(siblings.get(i));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the array the given node is part of.
+     * @param node the node
+     * @return the array or null
+     */
+    private static ParserNode findArray(ParserNode node) {
+        for (ParserNode current = node.getParent(); current != null; current = current.getParent()) {
+            if (current instanceof ArrayNode) {
+                return current;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns whether the given node is part of an optional content.
+     * @param node the node
+     * @return whether the node is optional
+     */
+    private static boolean isOptional(ParserNode node) {
+        for (ParserNode current = node; current != null; current = current.getParent()) {
+            if (current instanceof OptionalNode) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Resolves the fields, callback methods and the ecc method of the nodes.
+     * @param node the node
+     * @throws NoSuchFieldException if a field does not exist
+     * @throws NoSuchMethodException if a callback or ecc method does not exist
+     * @throws ClassNotFoundException if the ecc class does not exist
+     * @throws IllegalAccessException if the ecc method can not be accessed
+     */
+    private void resolve(ParserNode node) throws NoSuchFieldException, NoSuchMethodException, ClassNotFoundException, IllegalAccessException {
+        for (ParserNode child : node.getChildren()) {
+            if (child instanceof ReflectionFieldNode) {
+                fields.put((ReflectionFieldNode) child, new FieldConstants((ReflectionFieldNode) child));
+            } else if (child instanceof ECCCalculationNode && eccMethod == null) {
+                eccMethod = constant("ecc", resolveECCMethod(), MethodHandle.class);
+            }
+            resolve(child);
+        }
+    }
+
+    /**
+     * Resolves the ecc method of the class like the {@link ECCCalculationNode}.
+     * @return handle of type {@code (String)char}
+     * @throws NoSuchMethodException if the ecc method does not exist
+     * @throws ClassNotFoundException if the ecc class does not exist
+     * @throws IllegalAccessException if the ecc method can not be accessed
+     */
+    private MethodHandle resolveECCMethod() throws NoSuchMethodException, ClassNotFoundException, IllegalAccessException {
+        String eccClassName = (String) ECC.class.getMethod("clazz").getDefaultValue();
+        String eccMethodName = (String) ECC.class.getMethod("method").getDefaultValue();
+
+        ECC eccAnnotation = ReflectionService.getAnnotation(clazz, ECC.class);
+        if (eccAnnotation != null) {
+            eccClassName = eccAnnotation.clazz();
+            eccMethodName = eccAnnotation.method();
+        }
+
+        Method eccCalculation = Class.forName(eccClassName).getDeclaredMethod(eccMethodName, String.class);
+        eccCalculation.setAccessible(true);
+        return MethodHandles.lookup().unreflect(eccCalculation).asType(MethodType.methodType(char.class, String.class));
+    }
+
+    /**
+     * Adds a static final constant to the generated class, equal keys share
+     * the same constant.
+     * @param key the key of the constant
+     * @param value the value
+     * @param type the type of the static field
+     * @return the name of the static field
+     */
+    private String constant(Object key, Object value, Class<?> type) {
+        String name = constantNames.get(key);
+        if (name == null) {
+            name = "C" + constants.size();
+            constants.add(value);
+            constantDescriptors.add(Type.getDescriptor(type));
+            constantNames.put(key, name);
+        }
+        return name;
+    }
+
+    private String scanner(String content) {
+        return constant("scanner:" + content, LiteralScanner.get(content), LiteralScanner.class);
+    }
+
+    private String literal(String content) {
+        return constant("literal:" + content, new MessageSegments.Literal(content), MessageSegments.Literal.class);
+    }
+
+    /**
+     * Generates the class.
+     * @return the bytecode
+     */
+    private byte[] generate() {
+        classWriter.visit(V1_8, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, className, null, Type.getInternalName(CompiledMessageCodec.class), null);
+
+        boolean encodable = plan.getNodes(ECCBlockNode.class).isEmpty() && plan.getNodes(ECCCalculationNode.class).isEmpty();
+        method = classWriter.visitMethod(ACC_PUBLIC, "<init>", "(" + Type.getDescriptor(ParserPlan.class) + ")V", null, null);
+        method.visitCode();
+        method.visitVarInsn(ALOAD, 0);
+        method.visitVarInsn(ALOAD, 1);
+        push(encodable ? 1 : 0);
+        method.visitMethodInsn(INVOKESPECIAL, Type.getInternalName(CompiledMessageCodec.class), "<init>", "(" + Type.getDescriptor(ParserPlan.class) + "Z)V", false);
+        method.visitInsn(RETURN);
+        endMethod();
+
+        generateWrite();
+        if (encodable) {
+            generateEncode();
+        }
+        generateRead();
+        generateStaticInitializer();
+
+        for (int i = 0; i < constants.size(); i++) {
+            classWriter.visitField(ACC_PRIVATE | ACC_STATIC | ACC_FINAL, "C" + i, constantDescriptors.get(i), null, null).visitEnd();
+        }
+        classWriter.visitEnd();
+        return classWriter.toByteArray();
+    }
+
+    /**
+     * Generates the static initializer, which sets the constants.
+     */
+    private void generateStaticInitializer() {
+        method = classWriter.visitMethod(ACC_STATIC, "<clinit>", "()V", null, null);
+        method.visitCode();
+        method.visitLdcInsn(Type.getObjectType(className));
+        invokeStatic(MessageCodecGenerator.class, "getConstants", Object[].class, Class.class);
+        method.visitVarInsn(ASTORE, 0);
+        for (int i = 0; i < constants.size(); i++) {
+            method.visitVarInsn(ALOAD, 0);
+            push(i);
+            method.visitInsn(AALOAD);
+            method.visitTypeInsn(CHECKCAST, Type.getType(constantDescriptors.get(i)).getInternalName());
+            method.visitFieldInsn(PUTSTATIC, className, "C" + i, constantDescriptors.get(i));
+        }
+        method.visitInsn(RETURN);
+        endMethod();
+    }
+
+    /**
+     * Generates {@link CompiledMessageCodec#write(java.lang.Object, java.lang.StringBuilder, de.iisys.libinterface.parser.codec.MessageSegments) }
+     * with the object in local 1, the string in local 2 and the segments in
+     * local 3.
+     */
+    private void generateWrite() {
+        method = classWriter.visitMethod(ACC_PROTECTED, "write", Type.getMethodDescriptor(Type.VOID_TYPE, Type.getType(Object.class), Type.getType(StringBuilder.class), Type.getType(MessageSegments.class)), null, null);
+        method.visitCode();
+        objectLocal = 1;
+        nextLocal = 4;
+        arrayPositions.clear();
+        eccBlocks.clear();
+
+        writeChildren(plan.getRoot(), false, true);
+        method.visitInsn(RETURN);
+        endMethod();
+    }
+
+    /**
+     * Generates {@link CompiledMessageCodec#write(java.lang.Object, java.nio.ByteBuffer, char) }
+     * with the object in local 1, the buffer in local 2 and the largest
+     * character of the charset in local 3. Templates with an ecc are not
+     * encoded, as their ecc is calculated from the characters of the string.
+     */
+    private void generateEncode() {
+        method = classWriter.visitMethod(ACC_PROTECTED, "write", Type.getMethodDescriptor(Type.VOID_TYPE, Type.getType(Object.class), Type.getType(ByteBuffer.class), Type.CHAR_TYPE), null, null);
+        method.visitCode();
+        objectLocal = 1;
+        nextLocal = 4;
+        arrayPositions.clear();
+        eccBlocks.clear();
+
+        encode = true;
+        writeChildren(plan.getRoot(), false, false);
+        encode = false;
+        method.visitInsn(RETURN);
+        endMethod();
+    }
+
+    /**
+     * Generates {@link CompiledMessageCodec#read(java.lang.CharSequence, java.lang.Object) }
+     * with the message in local 1 and the object in local 2.
+     */
+    private void generateRead() {
+        method = classWriter.visitMethod(ACC_PROTECTED, "read", Type.getMethodDescriptor(Type.VOID_TYPE, Type.getType(CharSequence.class), Type.getType(Object.class)), null, null);
+        method.visitCode();
+        objectLocal = 2;
+        nextLocal = 3;
+        arrayPositions.clear();
+        eccBlocks.clear();
+
+        int cursor = newInt(0);
+        readChildren(plan.getRoot(), 1, cursor, false);
+        method.visitInsn(RETURN);
+        endMethod();
+    }
+
+    // serialization
+
+    private void writeChildren(ParserNode node, boolean optional, boolean top) {
+        List<ParserNode> children = node.getChildren();
+        for (int i = 0; i < children.size(); i++) {
+            ParserNode child = children.get(i);
+            if (child instanceof LiteralNode) {
+                StringBuilder run = new StringBuilder(((LiteralNode) child).getContent());
+                while (i + 1 < children.size() && children.get(i + 1) instanceof LiteralNode) {
+                    run.append(((LiteralNode) children.get(++i)).getContent());
+                }
+                writeLiteral(run.toString(), top);
+            } else if (child instanceof ReflectionFieldNode) {
+                writeField((ReflectionFieldNode) child, optional);
+            } else if (child instanceof OptionalNode) {
+                writeOptional(child);
+            } else if (child instanceof ArrayNode) {
+                writeArray((ArrayNode) child, optional);
+            } else if (child instanceof ECCBlockNode) {
+                writeECCBlock(child, optional);
+            } else if (child instanceof ECCCalculationNode) {
+                writeECCCalculation((ECCCalculationNode) child);
+            }
+        }
+    }
+
+    private void writeLiteral(String content, boolean top) {
+        Label done = new Label();
+        if (top) {
+            Label append = new Label();
+            method.visitVarInsn(ALOAD, 3);
+            method.visitJumpInsn(IFNULL, append);
+            method.visitVarInsn(ALOAD, 3);
+            method.visitFieldInsn(GETSTATIC, className, literal(content), Type.getDescriptor(MessageSegments.Literal.class));
+            invokeVirtual(MessageSegments.class, "addLiteral", void.class, MessageSegments.Literal.class);
+            method.visitJumpInsn(GOTO, done);
+            method.visitLabel(append);
+        }
+        appendLiteral(content);
+        method.visitLabel(done);
+    }
+
+    /**
+     * Appends the literal to the string, or writes it into the buffer, from
+     * a byte array constant if all its characters are ASCII.
+     * @param content the literal
+     */
+    private void appendLiteral(String content) {
+        method.visitVarInsn(ALOAD, 2);
+        if (!encode) {
+            method.visitLdcInsn(content);
+            append(String.class);
+        } else if (isASCII(content)) {
+            method.visitFieldInsn(GETSTATIC, className, constant("bytes:" + content, content.getBytes(StandardCharsets.US_ASCII), byte[].class), "[B");
+            invokeVirtual(ByteBuffer.class, "put", ByteBuffer.class, byte[].class);
+            method.visitInsn(POP);
+        } else {
+            method.visitLdcInsn(content);
+            method.visitVarInsn(ILOAD, 3);
+            invokeStatic(CharSequences.class, "put", void.class, ByteBuffer.class, CharSequence.class, char.class);
+        }
+    }
+
+    private static boolean isASCII(String content) {
+        for (int i = 0; i < content.length(); i++) {
+            if (content.charAt(i) > '\u007F') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void writeField(ReflectionFieldNode node, boolean optional) {
+        FieldConstants field = fields.get(node);
+        field.callback();
+
+        if (field.plain && field.type.isPrimitive()) {
+            int start = node.getFieldLength() >= 0 ? newLength() : -1;
+            method.visitVarInsn(ALOAD, 2);
+            field.get();
+            if (encode) {
+                encodePrimitive(field.type);
+            } else {
+                append(field.type == byte.class || field.type == short.class ? int.class : field.type);
+            }
+            if (start >= 0) {
+                pad(start, node.getFieldLength());
+            }
+            return;
+        }
+
+        if (field.type.isPrimitive()) {
+            field.accessor();
+            method.visitVarInsn(ALOAD, objectLocal);
+            invokeStatic(MessageCodecs.class, "get", Object.class, FieldAccessor.class, Object.class);
+        } else {
+            field.get();
+        }
+        if (field.represented) {
+            Label absent = new Label();
+            method.visitInsn(DUP);
+            method.visitJumpInsn(IFNULL, absent);
+            invokeStatic(Representations.class, "represent", Object.class, Object.class);
+            method.visitLabel(absent);
+        }
+        if (field.array != null) {
+            method.visitVarInsn(ILOAD, arrayPositions.get(field.array));
+            invokeStatic(ArrayNode.class, "getElement", Object.class, Object.class, int.class);
+        }
+        int content = nextLocal++;
+        method.visitVarInsn(ASTORE, content);
+
+        Label present = new Label();
+        method.visitVarInsn(ALOAD, content);
+        method.visitJumpInsn(IFNONNULL, present);
+        if (optional) {
+            method.visitFieldInsn(GETSTATIC, Type.getInternalName(MessageMismatchException.class), "SIGNAL", Type.getDescriptor(MessageMismatchException.class));
+        } else {
+            method.visitLdcInsn(node.getFieldName());
+            invokeStatic(MessageCodecs.class, "missing", MessageMismatchException.class, String.class);
+        }
+        method.visitInsn(ATHROW);
+        method.visitLabel(present);
+
+        method.visitVarInsn(ALOAD, 2);
+        method.visitLdcInsn(node.getFieldName());
+        method.visitVarInsn(ALOAD, content);
+        push(node.getFieldLength());
+        if (encode) {
+            method.visitVarInsn(ILOAD, 3);
+            invokeStatic(MessageCodecs.class, "append", void.class, ByteBuffer.class, String.class, Object.class, int.class, char.class);
+        } else {
+            invokeStatic(MessageCodecs.class, "append", void.class, StringBuilder.class, String.class, Object.class, int.class);
+        }
+    }
+
+    /**
+     * Writes the primitive on the stack into the buffer on the stack like
+     * {@link StringBuilder} appends it.
+     * @param type the primitive type
+     */
+    private void encodePrimitive(Class<?> type) {
+        if (type == int.class || type == short.class || type == byte.class || type == long.class) {
+            if (type != long.class) {
+                method.visitInsn(I2L);
+            }
+            invokeStatic(Numbers.class, "write", void.class, ByteBuffer.class, long.class);
+        } else if (type == char.class) {
+            method.visitVarInsn(ILOAD, 3);
+            invokeStatic(CharSequences.class, "put", void.class, ByteBuffer.class, char.class, char.class);
+        } else {
+            invokeStatic(String.class, "valueOf", String.class, type);
+            method.visitVarInsn(ILOAD, 3);
+            invokeStatic(CharSequences.class, "put", void.class, ByteBuffer.class, CharSequence.class, char.class);
+        }
+    }
+
+    private void writeOptional(ParserNode node) {
+        int start = newLength();
+        Label tryStart = new Label();
+        Label tryEnd = new Label();
+        Label handler = new Label();
+        Label done = new Label();
+
+        method.visitLabel(tryStart);
+        writeChildren(node, true, false);
+        method.visitLabel(tryEnd);
+        method.visitJumpInsn(GOTO, done);
+        method.visitLabel(handler);
+        method.visitInsn(POP);
+        method.visitVarInsn(ALOAD, 2);
+        method.visitVarInsn(ILOAD, start);
+        if (encode) {
+            invokeVirtual(Buffer.class, "position", Buffer.class, int.class);
+            method.visitInsn(POP);
+        } else {
+            invokeVirtual(StringBuilder.class, "setLength", void.class, int.class);
+        }
+        method.visitLabel(done);
+        method.visitTryCatchBlock(tryStart, tryEnd, handler, PARSING_EXCEPTION);
+    }
+
+    private void writeArray(ArrayNode node, boolean optional) {
+        List<ReflectionFieldNode> sizedFields = new ArrayList<>();
+        for (ReflectionFieldNode field : plan.getNodes(ReflectionFieldNode.class)) {
+            if (findArray(field) == node && !isOptional(field)) {
+                sizedFields.add(field);
+            }
+        }
+        if (sizedFields.isEmpty()) {
+            throwParsingException(SIZE_MISMATCH);
+            return;
+        }
+
+        int size = nextLocal++;
+        Label mismatch = new Label();
+        for (int i = 0; i < sizedFields.size(); i++) {
+            ReflectionFieldNode sizedField = sizedFields.get(i);
+            FieldConstants field = fields.get(sizedField);
+            if (field.type.isPrimitive()) {
+                field.accessor();
+                method.visitVarInsn(ALOAD, objectLocal);
+                invokeStatic(MessageCodecs.class, "get", Object.class, FieldAccessor.class, Object.class);
+            } else {
+                field.get();
+            }
+            method.visitLdcInsn(sizedField.getFieldName());
+            invokeStatic(ArrayNode.class, "getSize", int.class, Object.class, String.class);
+            if (i == 0) {
+                method.visitVarInsn(ISTORE, size);
+            } else {
+                method.visitVarInsn(ILOAD, size);
+                method.visitJumpInsn(IF_ICMPNE, mismatch);
+            }
+        }
+        if (sizedFields.size() > 1) {
+            Label sized = new Label();
+            method.visitJumpInsn(GOTO, sized);
+            method.visitLabel(mismatch);
+            throwParsingException(SIZE_MISMATCH);
+            method.visitLabel(sized);
+        }
+
+        int start = newLength();
+        int position = newInt(0);
+        arrayPositions.put(node, position);
+
+        Label loop = new Label();
+        Label end = new Label();
+        method.visitLabel(loop);
+        method.visitVarInsn(ILOAD, position);
+        method.visitVarInsn(ILOAD, size);
+        method.visitJumpInsn(IF_ICMPGE, end);
+        writeChildren(node, optional, false);
+        appendLiteral(node.getDelimiter());
+        method.visitIincInsn(position, 1);
+        method.visitJumpInsn(GOTO, loop);
+        method.visitLabel(end);
+
+        method.visitVarInsn(ALOAD, 2);
+        method.visitVarInsn(ILOAD, start);
+        method.visitLdcInsn(node.getDelimiter());
+        if (encode) {
+            method.visitVarInsn(ILOAD, 3);
+            invokeStatic(ArrayNode.class, "removeDelimiter", void.class, ByteBuffer.class, int.class, String.class, char.class);
+        } else {
+            invokeStatic(ArrayNode.class, "removeDelimiter", void.class, StringBuilder.class, int.class, String.class);
+        }
+    }
+
+    private void writeECCBlock(ParserNode node, boolean optional) {
+        int start = newLength();
+        writeChildren(node, optional, false);
+
+        int block = nextLocal++;
+        method.visitVarInsn(ALOAD, 2);
+        method.visitVarInsn(ILOAD, start);
+        invokeVirtual(StringBuilder.class, "substring", String.class, int.class);
+        method.visitVarInsn(ASTORE, block);
+        eccBlocks.put(node, block);
+    }
+
+    private void writeECCCalculation(ECCCalculationNode node) {
+        int calculated = calculateECC(node, false);
+        method.visitVarInsn(ALOAD, 2);
+        method.visitVarInsn(ILOAD, calculated);
+        append(char.class);
+    }
+
+    // deserialization
+
+    private void readChildren(ParserNode node, int message, int cursor, boolean optional) {
+        List<ParserNode> children = node.getChildren();
+        for (int i = 0; i < children.size(); i++) {
+            ParserNode child = children.get(i);
+            if (child instanceof LiteralNode) {
+                StringBuilder run = new StringBuilder(((LiteralNode) child).getContent());
+                while (i + 1 < children.size() && children.get(i + 1) instanceof LiteralNode) {
+                    run.append(((LiteralNode) children.get(++i)).getContent());
+                }
+                readLiteral(run.toString(), message, cursor, optional);
+            } else if (child instanceof ReflectionFieldNode) {
+                readField((ReflectionFieldNode) child, message, cursor);
+            } else if (child instanceof OptionalNode) {
+                readOptional(child, message, cursor);
+            } else if (child instanceof ArrayNode) {
+                readArray((ArrayNode) child, message, cursor, optional);
+            } else if (child instanceof ECCBlockNode) {
+                readECCBlock(child, message, cursor, optional);
+            } else if (child instanceof ECCCalculationNode) {
+                readECCCalculation((ECCCalculationNode) child, message, cursor);
+            }
+        }
+    }
+
+    private void readLiteral(String content, int message, int cursor, boolean optional) {
+        Label mismatch = new Label();
+        Label match = new Label();
+        if (content.length() <= INLINE_LENGTH) {
+            method.visitVarInsn(ILOAD, cursor);
+            push(content.length());
+            method.visitInsn(IADD);
+            method.visitVarInsn(ALOAD, message);
+            length();
+            method.visitJumpInsn(IF_ICMPGT, mismatch);
+            for (int i = 0; i < content.length(); i++) {
+                method.visitVarInsn(ALOAD, message);
+                method.visitVarInsn(ILOAD, cursor);
+                if (i > 0) {
+                    push(i);
+                    method.visitInsn(IADD);
+                }
+                charAt();
+                push(content.charAt(i));
+                method.visitJumpInsn(IF_ICMPNE, mismatch);
+            }
+            method.visitJumpInsn(GOTO, match);
+        } else {
+            method.visitVarInsn(ALOAD, message);
+            method.visitVarInsn(ILOAD, cursor);
+            method.visitLdcInsn(content);
+            invokeStatic(CharSequences.class, "regionMatches", boolean.class, CharSequence.class, int.class, String.class);
+            method.visitJumpInsn(IFNE, match);
+        }
+
+        method.visitLabel(mismatch);
+        if (optional) {
+            method.visitFieldInsn(GETSTATIC, Type.getInternalName(MessageMismatchException.class), "SIGNAL", Type.getDescriptor(MessageMismatchException.class));
+        } else {
+            method.visitVarInsn(ALOAD, message);
+            method.visitVarInsn(ILOAD, cursor);
+            method.visitLdcInsn(content);
+            invokeStatic(MessageCodecs.class, "mismatch", MessageMismatchException.class, CharSequence.class, int.class, String.class);
+        }
+        method.visitInsn(ATHROW);
+        method.visitLabel(match);
+        method.visitIincInsn(cursor, content.length());
+    }
+
+    private void readField(ReflectionFieldNode node, int message, int cursor) {
+        FieldConstants field = fields.get(node);
+
+        int length = nextLocal++;
+        if (node.getFieldLength() >= 0) {
+            push(node.getFieldLength());
+        } else {
+            end(message, cursor, getFollowingContent(node, false));
+            method.visitVarInsn(ILOAD, cursor);
+            method.visitInsn(ISUB);
+        }
+        method.visitVarInsn(ISTORE, length);
+
+        Label skip = new Label();
+        method.visitVarInsn(ALOAD, message);
+        length();
+        method.visitJumpInsn(IFLE, skip);
+        method.visitVarInsn(ILOAD, length);
+        method.visitJumpInsn(IFLE, skip);
+        method.visitVarInsn(ILOAD, cursor);
+        method.visitVarInsn(ILOAD, length);
+        method.visitInsn(IADD);
+        method.visitVarInsn(ALOAD, message);
+        length();
+        method.visitJumpInsn(IF_ICMPGT, skip);
+
+        Label tryStart = new Label();
+        Label tryEnd = new Label();
+        Label handler = new Label();
+        Label done = new Label();
+        method.visitLabel(tryStart);
+        if (field.plain) {
+            field.setter();
+            method.visitVarInsn(ALOAD, objectLocal);
+            parse(field.type, message, cursor, length);
+            method.visitMethodInsn(INVOKEVIRTUAL, METHOD_HANDLE, "invokeExact", Type.getMethodDescriptor(Type.VOID_TYPE, Type.getType(Object.class), Type.getType(field.handleType)), false);
+        } else {
+            int value = nextLocal++;
+            substring(message, cursor, length);
+            method.visitVarInsn(ASTORE, value);
+            if (field.represented) {
+                method.visitFieldInsn(GETSTATIC, className, field.representations, Type.getDescriptor(Representations.class));
+                method.visitVarInsn(ALOAD, value);
+                invokeVirtual(Representations.class, "parse", Object.class, Object.class);
+            } else {
+                method.visitVarInsn(ALOAD, value);
+            }
+            if (field.array != null) {
+                int element = nextLocal++;
+                method.visitVarInsn(ASTORE, element);
+                field.accessor();
+                method.visitVarInsn(ALOAD, objectLocal);
+                method.visitVarInsn(ILOAD, arrayPositions.get(field.array));
+                method.visitVarInsn(ALOAD, element);
+                invokeStatic(ArrayNode.class, "setElement", Object.class, FieldAccessor.class, Object.class, int.class, Object.class);
+            }
+            int content = nextLocal++;
+            method.visitVarInsn(ASTORE, content);
+            field.accessor();
+            method.visitVarInsn(ALOAD, objectLocal);
+            method.visitVarInsn(ALOAD, content);
+            method.visitVarInsn(ALOAD, value);
+            invokeStatic(MessageCodecs.class, "set", void.class, FieldAccessor.class, Object.class, Object.class, String.class);
+        }
+        method.visitLabel(tryEnd);
+        method.visitJumpInsn(GOTO, done);
+        method.visitLabel(handler);
+        int exception = nextLocal++;
+        method.visitVarInsn(ASTORE, exception);
+        field.accessor();
+        method.visitVarInsn(ALOAD, exception);
+        method.visitVarInsn(ALOAD, message);
+        method.visitVarInsn(ILOAD, cursor);
+        method.visitVarInsn(ILOAD, length);
+        invokeStatic(MessageCodecs.class, "failure", RuntimeException.class, FieldAccessor.class, Throwable.class, CharSequence.class, int.class, int.class);
+        method.visitInsn(ATHROW);
+        method.visitLabel(done);
+        method.visitTryCatchBlock(tryStart, tryEnd, handler, Type.getInternalName(Throwable.class));
+        field.callback();
+
+        method.visitLabel(skip);
+        method.visitVarInsn(ILOAD, cursor);
+        method.visitVarInsn(ILOAD, length);
+        method.visitInsn(IADD);
+        method.visitVarInsn(ISTORE, cursor);
+    }
+
+    private void readOptional(ParserNode node, int message, int cursor) {
+        String followingContent = getFollowingContent(node, false);
+        int end = nextLocal++;
+        if (followingContent != null && !followingContent.isEmpty()) {
+            Label found = new Label();
+            scan(message, cursor, followingContent);
+            method.visitInsn(DUP);
+            method.visitJumpInsn(IFGE, found);
+            method.visitInsn(POP);
+            end(message, cursor, getFollowingContent(node, true));
+            method.visitLabel(found);
+        } else {
+            end(message, cursor, followingContent);
+        }
+        method.visitVarInsn(ISTORE, end);
+
+        int length = newInt(0);
+        Label outerStart = new Label();
+        Label outerEnd = new Label();
+        Label outerHandler = new Label();
+        Label innerStart = new Label();
+        Label innerEnd = new Label();
+        Label innerHandler = new Label();
+        Label done = new Label();
+
+        method.visitLabel(outerStart);
+        int slice = slice(message, cursor, end);
+        int childCursor = newInt(0);
+        method.visitLabel(innerStart);
+        readChildren(node, slice, childCursor, true);
+        method.visitVarInsn(ILOAD, childCursor);
+        method.visitVarInsn(ISTORE, length);
+        method.visitLabel(innerEnd);
+        method.visitJumpInsn(GOTO, outerEnd);
+        method.visitLabel(innerHandler);
+        method.visitInsn(POP);
+        method.visitLabel(outerEnd);
+        method.visitJumpInsn(GOTO, done);
+        method.visitLabel(outerHandler);
+        wrapException();
+        method.visitLabel(done);
+        method.visitTryCatchBlock(innerStart, innerEnd, innerHandler, PARSING_EXCEPTION);
+        method.visitTryCatchBlock(outerStart, outerEnd, outerHandler, Type.getInternalName(IndexOutOfBoundsException.class));
+
+        method.visitVarInsn(ILOAD, cursor);
+        method.visitVarInsn(ILOAD, length);
+        method.visitInsn(IADD);
+        method.visitVarInsn(ISTORE, cursor);
+    }
+
+    private void readArray(ArrayNode node, int message, int cursor, boolean optional) {
+        int end = nextLocal++;
+        endOfChildren(node, message, cursor);
+        method.visitVarInsn(ISTORE, end);
+        int content = slice(message, cursor, end);
+
+        int position = newInt(0);
+        arrayPositions.put(node, position);
+        int start = newInt(0);
+        int index = newInt(0);
+
+        Label loop = new Label();
+        Label delimiter = new Label();
+        Label skip = new Label();
+        Label next = new Label();
+        Label done = new Label();
+        method.visitLabel(loop);
+        method.visitVarInsn(ILOAD, index);
+        method.visitVarInsn(ALOAD, content);
+        length();
+        method.visitJumpInsn(IF_ICMPGT, done);
+        method.visitVarInsn(ILOAD, index);
+        method.visitVarInsn(ALOAD, content);
+        length();
+        method.visitJumpInsn(IF_ICMPEQ, delimiter);
+        if (node.getDelimiter().isEmpty()) {
+            method.visitJumpInsn(GOTO, next);
+        } else if (node.getDelimiter().length() == 1) {
+            method.visitVarInsn(ALOAD, content);
+            method.visitVarInsn(ILOAD, index);
+            charAt();
+            push(node.getDelimiter().charAt(0));
+            method.visitJumpInsn(IF_ICMPNE, next);
+        } else {
+            method.visitLdcInsn(node.getDelimiter());
+            method.visitVarInsn(ALOAD, content);
+            method.visitVarInsn(ILOAD, index);
+            charAt();
+            invokeVirtual(String.class, "indexOf", int.class, int.class);
+            method.visitJumpInsn(IFLT, next);
+        }
+
+        method.visitLabel(delimiter);
+        method.visitVarInsn(ILOAD, index);
+        method.visitVarInsn(ILOAD, start);
+        method.visitJumpInsn(IF_ICMPLE, skip);
+        int token = slice(content, start, index);
+        int childCursor = newInt(0);
+        readChildren(node, token, childCursor, optional);
+        method.visitIincInsn(position, 1);
+        method.visitLabel(skip);
+        method.visitVarInsn(ILOAD, index);
+        push(1);
+        method.visitInsn(IADD);
+        method.visitVarInsn(ISTORE, start);
+        method.visitLabel(next);
+        method.visitIincInsn(index, 1);
+        method.visitJumpInsn(GOTO, loop);
+        method.visitLabel(done);
+
+        advance(cursor, content);
+    }
+
+    private void readECCBlock(ParserNode node, int message, int cursor, boolean optional) {
+        Label tryStart = new Label();
+        Label tryEnd = new Label();
+        Label handler = new Label();
+        Label done = new Label();
+
+        int end = nextLocal++;
+        method.visitLabel(tryStart);
+        endOfChildren(node, message, cursor);
+        method.visitVarInsn(ISTORE, end);
+        int block = slice(message, cursor, end);
+        int childCursor = newInt(0);
+        readChildren(node, block, childCursor, optional);
+        method.visitLabel(tryEnd);
+        method.visitJumpInsn(GOTO, done);
+        method.visitLabel(handler);
+        wrapException();
+        method.visitLabel(done);
+        method.visitTryCatchBlock(tryStart, tryEnd, handler, Type.getInternalName(IndexOutOfBoundsException.class));
+
+        advance(cursor, block);
+        eccBlocks.put(node, block);
+    }
+
+    private void readECCCalculation(ECCCalculationNode node, int message, int cursor) {
+        Label tryStart = new Label();
+        Label tryEnd = new Label();
+        Label handler = new Label();
+        Label done = new Label();
+
+        int end = nextLocal++;
+        method.visitLabel(tryStart);
+        endOfChildren(node, message, cursor);
+        method.visitVarInsn(ISTORE, end);
+        int ecc = slice(message, cursor, end);
+        method.visitLabel(tryEnd);
+        method.visitJumpInsn(GOTO, done);
+        method.visitLabel(handler);
+        wrapException();
+        method.visitLabel(done);
+        method.visitTryCatchBlock(tryStart, tryEnd, handler, Type.getInternalName(IndexOutOfBoundsException.class));
+
+        int calculated = calculateECC(node, true);
+        Label invalid = new Label();
+        Label valid = new Label();
+        method.visitVarInsn(ALOAD, ecc);
+        length();
+        push(1);
+        method.visitJumpInsn(IF_ICMPNE, invalid);
+        method.visitVarInsn(ALOAD, ecc);
+        push(0);
+        charAt();
+        method.visitVarInsn(ILOAD, calculated);
+        method.visitJumpInsn(IF_ICMPEQ, valid);
+        method.visitLabel(invalid);
+        method.visitVarInsn(ALOAD, ecc);
+        method.visitVarInsn(ILOAD, calculated);
+        invokeStatic(MessageCodecs.class, "eccMismatch", ParsingException.class, CharSequence.class, char.class);
+        method.visitInsn(ATHROW);
+        method.visitLabel(valid);
+
+        advance(cursor, ecc);
+    }
+
+    // shared instructions
+
+    /**
+     * Calculates the ecc of the block the given calculation refers to, errors
+     * of the ecc method become a {@link ParsingException}.
+     * @param node the ecc calculation
+     * @param read whether the block is a slice of the message instead of a
+     * string
+     * @return local of the calculated ecc
+     */
+    private int calculateECC(ECCCalculationNode node, boolean read) {
+        Label tryStart = new Label();
+        Label tryEnd = new Label();
+        Label handler = new Label();
+        Label done = new Label();
+
+        int calculated = nextLocal++;
+        method.visitLabel(tryStart);
+        method.visitFieldInsn(GETSTATIC, className, eccMethod, Type.getDescriptor(MethodHandle.class));
+        method.visitVarInsn(ALOAD, eccBlocks.get(findBlock(plan, node)));
+        if (read) {
+            invokeVirtual(Object.class, "toString", String.class);
+        }
+        method.visitMethodInsn(INVOKEVIRTUAL, METHOD_HANDLE, "invokeExact", "(Ljava/lang/String;)C", false);
+        method.visitVarInsn(ISTORE, calculated);
+        method.visitLabel(tryEnd);
+        method.visitJumpInsn(GOTO, done);
+        method.visitLabel(handler);
+        wrapException();
+        method.visitLabel(done);
+        method.visitTryCatchBlock(tryStart, tryEnd, handler, Type.getInternalName(Throwable.class));
+        return calculated;
+    }
+
+    /**
+     * Pushes the end of a node without children in the message: the end of
+     * the message if there is no content to search for, the cursor if the
+     * content is empty, otherwise the position of the content or the cursor
+     * if the message does not contain it.
+     * @param message local of the message
+     * @param cursor local of the cursor
+     * @param searchFor the content to search for or null
+     */
+    private void end(int message, int cursor, String searchFor) {
+        if (searchFor == null) {
+            method.visitVarInsn(ALOAD, message);
+            length();
+        } else if (searchFor.isEmpty()) {
+            method.visitVarInsn(ILOAD, cursor);
+        } else {
+            Label found = new Label();
+            scan(message, cursor, searchFor);
+            method.visitInsn(DUP);
+            method.visitJumpInsn(IFGE, found);
+            method.visitInsn(POP);
+            method.visitVarInsn(ILOAD, cursor);
+            method.visitLabel(found);
+        }
+    }
+
+    /**
+     * Pushes the end of a node with children, which is searched behind the
+     * content of its last child if there is no following content.
+     * @param node the node
+     * @param message local of the message
+     * @param cursor local of the cursor
+     */
+    private void endOfChildren(ParserNode node, int message, int cursor) {
+        String followingContent = getFollowingContent(node, false);
+        if (followingContent != null || node.getChildren().isEmpty()) {
+            end(message, cursor, followingContent);
+            return;
+        }
+
+        String lastContent = getContent(node.getChildren().get(node.getChildren().size() - 1));
+        end(message, cursor, lastContent);
+        push(lastContent.length());
+        method.visitInsn(IADD);
+    }
+
+    private void scan(int message, int cursor, String content) {
+        method.visitFieldInsn(GETSTATIC, className, scanner(content), Type.getDescriptor(LiteralScanner.class));
+        method.visitVarInsn(ALOAD, message);
+        method.visitVarInsn(ILOAD, cursor);
+        invokeVirtual(LiteralScanner.class, "indexOf", int.class, CharSequence.class, int.class);
+    }
+
+    /**
+     * Pushes the value of the given range of the message converted to the
+     * given field type, like the setters of the {@link FieldAccessor}.
+     * @param type the field type
+     * @param message local of the message
+     * @param cursor local of the start
+     * @param length local of the length
+     */
+    private void parse(Class<?> type, int message, int cursor, int length) {
+        if (type == char.class) {
+            method.visitVarInsn(ALOAD, message);
+            method.visitVarInsn(ILOAD, cursor);
+            charAt();
+        } else if (type == float.class) {
+            substring(message, cursor, length);
+            invokeStatic(Float.class, "parseFloat", float.class, String.class);
+        } else if (type == double.class) {
+            substring(message, cursor, length);
+            invokeStatic(Double.class, "parseDouble", double.class, String.class);
+        } else if (type.isPrimitive()) {
+            method.visitVarInsn(ALOAD, message);
+            method.visitVarInsn(ILOAD, cursor);
+            method.visitVarInsn(ILOAD, cursor);
+            method.visitVarInsn(ILOAD, length);
+            method.visitInsn(IADD);
+            String name = type.getName();
+            invokeStatic(Numbers.class, "parse" + Character.toUpperCase(name.charAt(0)) + name.substring(1), type, CharSequence.class, int.class, int.class);
+        } else {
+            substring(message, cursor, length);
+        }
+    }
+
+    private void substring(int message, int cursor, int length) {
+        method.visitVarInsn(ALOAD, message);
+        method.visitVarInsn(ILOAD, cursor);
+        method.visitVarInsn(ILOAD, cursor);
+        method.visitVarInsn(ILOAD, length);
+        method.visitInsn(IADD);
+        method.visitMethodInsn(INVOKEINTERFACE, CHAR_SEQUENCE, "subSequence", "(II)Ljava/lang/CharSequence;", true);
+        invokeVirtual(Object.class, "toString", String.class);
+    }
+
+    private int slice(int message, int start, int end) {
+        int slice = nextLocal++;
+        method.visitVarInsn(ALOAD, message);
+        method.visitVarInsn(ILOAD, start);
+        method.visitVarInsn(ILOAD, end);
+        invokeStatic(CharSequences.class, "slice", CharSequence.class, CharSequence.class, int.class, int.class);
+        method.visitVarInsn(ASTORE, slice);
+        return slice;
+    }
+
+    private void advance(int cursor, int content) {
+        method.visitVarInsn(ILOAD, cursor);
+        method.visitVarInsn(ALOAD, content);
+        length();
+        method.visitInsn(IADD);
+        method.visitVarInsn(ISTORE, cursor);
+    }
+
+    private void wrapException() {
+        int exception = nextLocal++;
+        method.visitVarInsn(ASTORE, exception);
+        method.visitTypeInsn(NEW, PARSING_EXCEPTION);
+        method.visitInsn(DUP);
+        method.visitVarInsn(ALOAD, exception);
+        method.visitMethodInsn(INVOKESPECIAL, PARSING_EXCEPTION, "<init>", "(Ljava/lang/Throwable;)V", false);
+        method.visitInsn(ATHROW);
+    }
+
+    private void throwParsingException(String message) {
+        method.visitTypeInsn(NEW, PARSING_EXCEPTION);
+        method.visitInsn(DUP);
+        method.visitLdcInsn(message);
+        method.visitMethodInsn(INVOKESPECIAL, PARSING_EXCEPTION, "<init>", "(Ljava/lang/String;)V", false);
+        method.visitInsn(ATHROW);
+    }
+
+    private void pad(int start, int fieldLength) {
+        method.visitVarInsn(ALOAD, 2);
+        method.visitVarInsn(ILOAD, start);
+        push(fieldLength);
+        invokeStatic(MessageCodecs.class, "pad", void.class, encode ? ByteBuffer.class : StringBuilder.class, int.class, int.class);
+    }
+
+    /**
+     * Stores the length of the string, or the position of the buffer, in a
+     * new local.
+     * @return the local
+     */
+    private int newLength() {
+        int local = nextLocal++;
+        method.visitVarInsn(ALOAD, 2);
+        if (encode) {
+            invokeVirtual(Buffer.class, "position", int.class);
+        } else {
+            invokeVirtual(StringBuilder.class, "length", int.class);
+        }
+        method.visitVarInsn(ISTORE, local);
+        return local;
+    }
+
+    private int newInt(int value) {
+        int local = nextLocal++;
+        push(value);
+        method.visitVarInsn(ISTORE, local);
+        return local;
+    }
+
+    private void append(Class<?> type) {
+        invokeVirtual(StringBuilder.class, "append", StringBuilder.class, type);
+        method.visitInsn(POP);
+    }
+
+    private void length() {
+        method.visitMethodInsn(INVOKEINTERFACE, CHAR_SEQUENCE, "length", "()I", true);
+    }
+
+    private void charAt() {
+        method.visitMethodInsn(INVOKEINTERFACE, CHAR_SEQUENCE, "charAt", "(I)C", true);
+    }
+
+    private void push(int value) {
+        if (value >= -1 && value <= 5) {
+            method.visitInsn(ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            method.visitIntInsn(BIPUSH, value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            method.visitIntInsn(SIPUSH, value);
+        } else {
+            method.visitLdcInsn(value);
+        }
+    }
+
+    private void invokeStatic(Class<?> owner, String name, Class<?> returnType, Class<?>... parameterTypes) {
+        method.visitMethodInsn(INVOKESTATIC, Type.getInternalName(owner), name, descriptor(returnType, parameterTypes), false);
+    }
+
+    private void invokeVirtual(Class<?> owner, String name, Class<?> returnType, Class<?>... parameterTypes) {
+        method.visitMethodInsn(INVOKEVIRTUAL, Type.getInternalName(owner), name, descriptor(returnType, parameterTypes), false);
+    }
+
+    private static String descriptor(Class<?> returnType, Class<?>... parameterTypes) {
+        Type[] types = new Type[parameterTypes.length];
+        for (int i = 0; i < parameterTypes.length; i++) {
+            types[i] = Type.getType(parameterTypes[i]);
+        }
+        return Type.getMethodDescriptor(Type.getType(returnType), types);
+    }
+
+    private void endMethod() {
+        method.visitMaxs(0, 0);
+        method.visitEnd();
+    }
+
+    /**
+     * Constants of a field of the template, which are resolved like by the
+     * {@link ReflectionFieldNode}.
+     */
+    private final class FieldConstants {
+
+        private final ReflectionFieldNode node;
+        private final Class<?> type;
+        private final Class<?> handleType;
+        private final boolean represented;
+        private final ParserNode array;
+        private final boolean plain;
+
+        private final String accessor;
+        private final String getter;
+        private final String setter;
+        private final String invoker;
+        private final String representations;
+
+        private FieldConstants(ReflectionFieldNode node) throws NoSuchFieldException, NoSuchMethodException {
+            this.node = node;
+            FieldAccessor fieldAccessor = FieldAccessor.get(clazz, node.getFieldName());
+            this.type = fieldAccessor.getField().getType();
+            this.handleType = type.isPrimitive() ? type : Object.class;
+            this.represented = fieldAccessor.getField().isAnnotationPresent(Represented.class);
+            this.array = findArray(node);
+            this.plain = !represented && array == null;
+
+            String key = "field:" + node.getFieldName();
+            this.accessor = constant(key, fieldAccessor, FieldAccessor.class);
+            this.getter = constant(key + ":getter", fieldAccessor.getGetter(), MethodHandle.class);
+            this.setter = constant(key + ":setter", fieldAccessor.getSetter(), MethodHandle.class);
+
+            Callback callback = fieldAccessor.getField().getAnnotation(Callback.class);
+            this.invoker = callback != null ? constant("callback:" + callback.value(), CallbackInvoker.get(clazz, callback.value()), CallbackInvoker.class) : null;
+            this.representations = represented ? constant("representations:" + type.getName(), Representations.get(type), Representations.class) : null;
+        }
+
+        private void accessor() {
+            method.visitFieldInsn(GETSTATIC, className, accessor, Type.getDescriptor(FieldAccessor.class));
+        }
+
+        private void setter() {
+            method.visitFieldInsn(GETSTATIC, className, setter, Type.getDescriptor(MethodHandle.class));
+        }
+
+        /**
+         * Pushes the data of the field, primitives are not boxed.
+         */
+        private void get() {
+            method.visitFieldInsn(GETSTATIC, className, getter, Type.getDescriptor(MethodHandle.class));
+            method.visitVarInsn(ALOAD, objectLocal);
+            method.visitMethodInsn(INVOKEVIRTUAL, METHOD_HANDLE, "invokeExact", Type.getMethodDescriptor(Type.getType(handleType), Type.getType(Object.class)), false);
+        }
+
+        /**
+         * Invokes the callback method of the field if there is one.
+         */
+        private void callback() {
+            if (invoker != null) {
+                method.visitFieldInsn(GETSTATIC, className, invoker, Type.getDescriptor(CallbackInvoker.class));
+                method.visitVarInsn(ALOAD, objectLocal);
+                method.visitLdcInsn(node.getFieldName());
+                invokeStatic(MessageCodecs.class, "callback", void.class, CallbackInvoker.class, Object.class, String.class);
+            }
+        }
+
+    }
+
+    /**
+     * Class loader of a single generated class, which hands the constants to
+     * its static initializer.
+     */
+    private static final class CodecClassLoader extends ClassLoader {
+
+        private final Object[] constants;
+
+        private CodecClassLoader(Object[] constants) {
+            super(MessageCodecGenerator.class.getClassLoader());
+            this.constants = constants;
+        }
+
+        private Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+
+    }
+
+}
@@ -0,0 +1,342 @@
+package de.iisys.libinterface.parser.codec;
+
+import de.iisys.libinterface.parser.service.CharSequences;
+import de.iisys.libinterface.parser.service.LiteralScanner;
+import de.iisys.libinterface.parser.service.MessageMismatchException;
+import de.iisys.libinterface.service.CallbackInvoker;
+import de.iisys.libinterface.service.FieldAccessor;
+import java.nio.ByteBuffer;
+import org.parboiled.errors.ParserRuntimeException;
+import org.parboiled.errors.ParsingException;
+
+/**
+ * Class with the operations that all codecs are built of, so the steps of a
+ * {@link LinearMessageCodec}, the {@link GeneratedMessageCodec}s and the
+ * classes of the {@link MessageCodecGenerator} read and write a message the
+ * same way.<br>
+ * Fields and callback methods are resolved once, when a codec is created. A
+ * message is read as {@link CharSequence} in place, fields are set from the
+ * range of the message without a string in between, where the field type
+ * allows it.
+ */
+public final class MessageCodecs {
+
+    private MessageCodecs() {
+    }
+
+    /**
+     * Resolves the accessor of the field of the given class.
+     * @param clazz the class
+     * @param fieldName the field name
+     * @return the field accessor
+     */
+    public static FieldAccessor field(Class<?> clazz, String fieldName) {
+        try {
+            return FieldAccessor.get(clazz, fieldName);
+        } catch (NoSuchFieldException ex) {
+            throw new ParserRuntimeException("Could not find field '" + fieldName + "'.", ex);
+        }
+    }
+
+    /**
+     * Resolves the invoker of the callback method of the given class.
+     * @param clazz the class
+     * @param methodName the method name
+     * @return the callback invoker
+     */
+    public static CallbackInvoker method(Class<?> clazz, String methodName) {
+        try {
+            return CallbackInvoker.get(clazz, methodName);
+        } catch (NoSuchMethodException ex) {
+            throw new ParserRuntimeException("Could not find method '" + methodName + "'.", ex);
+        }
+    }
+
+    /**
+     * Gets the scanner of the given terminator for a constant of a codec.
+     * @param terminator the terminator
+     * @return the scanner
+     */
+    public static LiteralScanner scanner(String terminator) {
+        return LiteralScanner.get(terminator);
+    }
+
+    /**
+     * Gets the data of the field.
+     * @param field the field accessor
+     * @param object the object
+     * @return the data
+     */
+    public static Object get(FieldAccessor field, Object object) {
+        try {
+            return field.get(object);
+        } catch (IllegalArgumentException ex) {
+            throw new ParserRuntimeException("Could not get data of '" + field.getName() + "'.", ex);
+        }
+    }
+
+    /**
+     * Sets the content of the field.
+     * @param field the field accessor
+     * @param object the object
+     * @param content the content
+     * @param value the value the content was read from
+     */
+    public static void set(FieldAccessor field, Object object, Object content, String value) {
+        try {
+            field.set(object, content);
+        } catch (IllegalArgumentException ex) {
+            throw new ParserRuntimeException("Could not set data of '" + field.getName() + "' to '" + value + "'.", ex);
+        }
+    }
+
+    /**
+     * Sets the field to the given range of the message, numbers are parsed
+     * without a string of the range.
+     * @param field the field accessor
+     * @param object the object
+     * @param message the message
+     * @param position the position
+     * @param length the length
+     */
+    public static void set(FieldAccessor field, Object object, CharSequence message, int position, int length) {
+        try {
+            field.setChars(object, message, position, position + length);
+        } catch (IllegalArgumentException ex) {
+            throw new ParserRuntimeException("Could not set data of '" + field.getName() + "' to '" + message.subSequence(position, position + length) + "'.", ex);
+        }
+    }
+
+    /**
+     * Invokes the callback method of a field.
+     * @param method the callback invoker
+     * @param object the object
+     * @param fieldName the field name
+     */
+    public static void callback(CallbackInvoker method, Object object, String fieldName) {
+        if (!method.invoke(object)) {
+            throw new ParserRuntimeException("Callback method for '" + fieldName + "' did return false, so something went wrong.");
+        }
+    }
+
+    /**
+     * Appends the content of a field, extended with spaces or cut off to the
+     * field length if it is not negative.
+     * @param string the string to append to
+     * @param fieldName the field name
+     * @param content the content
+     * @param fieldLength the field length
+     */
+    public static void append(StringBuilder string, String fieldName, Object content, int fieldLength) {
+        if (content == null) {
+            throw new MessageMismatchException(() -> "Could not serialize " + fieldName + " because there is no data set for it.");
+        }
+
+        int start = string.length();
+        string.append(content.toString());
+        pad(string, start, fieldLength);
+    }
+
+    /**
+     * Appends the data of a field without boxing primitives, extended with
+     * spaces or cut off to the field length if it is not negative.
+     * @param string the string to append to
+     * @param field the field accessor
+     * @param object the object
+     * @param fieldLength the field length
+     */
+    public static void append(StringBuilder string, FieldAccessor field, Object object, int fieldLength) {
+        int start = string.length();
+        boolean set;
+        try {
+            set = field.append(object, string);
+        } catch (IllegalArgumentException ex) {
+            throw new ParserRuntimeException("Could not get data of '" + field.getName() + "'.", ex);
+        }
+
+        if (!set) {
+            throw new MessageMismatchException(() -> "Could not serialize " + field.getName() + " because there is no data set for it.");
+        }
+        pad(string, start, fieldLength);
+    }
+
+    /**
+     * Extends the field that starts at the given position of the string with
+     * spaces or cuts it off to the field length if it is not negative.
+     * @param string the string
+     * @param start the start of the field
+     * @param fieldLength the field length
+     */
+    public static void pad(StringBuilder string, int start, int fieldLength) {
+        if (fieldLength >= 0) {
+            int end = start + fieldLength;
+            if (string.length() > end) {
+                string.setLength(end);
+            }
+            while (string.length() < end) {
+                string.append(' ');
+            }
+        }
+    }
+
+    /**
+     * Writes the content of a field into the buffer with one byte per
+     * character, extended with spaces or cut off to the field length if it
+     * is not negative, like
+     * {@link #append(java.lang.StringBuilder, java.lang.String, java.lang.Object, int) }.
+     * @param buffer the buffer to write to
+     * @param fieldName the field name
+     * @param content the content
+     * @param fieldLength the field length
+     * @param maximum the largest character of the charset
+     */
+    public static void append(ByteBuffer buffer, String fieldName, Object content, int fieldLength, char maximum) {
+        if (content == null) {
+            throw new MessageMismatchException(() -> "Could not serialize " + fieldName + " because there is no data set for it.");
+        }
+
+        String string = content.toString();
+        if (fieldLength >= 0 && string.length() > fieldLength) {
+            string = string.substring(0, fieldLength);
+        }
+        CharSequences.put(buffer, string, maximum);
+        for (int i = string.length(); i < fieldLength; i++) {
+            buffer.put((byte) ' ');
+        }
+    }
+
+    /**
+     * Extends the field that starts at the given position of the buffer with
+     * spaces or cuts it off to the field length if it is not negative.
+     * @param buffer the buffer
+     * @param start the start of the field
+     * @param fieldLength the field length
+     */
+    public static void pad(ByteBuffer buffer, int start, int fieldLength) {
+        if (fieldLength >= 0) {
+            int end = start + fieldLength;
+            if (buffer.position() > end) {
+                buffer.position(end);
+            }
+            while (buffer.position() < end) {
+                buffer.put((byte) ' ');
+            }
+        }
+    }
+
+    /**
+     * Compares the literal at the given position of the message, a mismatch
+     * is reported like by {@link #mismatch(java.lang.CharSequence, int, java.lang.String) }.
+     * @param message the message
+     * @param position the position
+     * @param literal the literal
+     * @return position after the literal
+     */
+    public static int match(CharSequence message, int position, String literal) {
+        if (!CharSequences.regionMatches(message, position, literal)) {
+            throw mismatch(message, position, literal);
+        }
+        return position + literal.length();
+    }
+
+    /**
+     * Creates the mismatch of a literal that is not at the given position of
+     * the message, like the {@link de.iisys.libinterface.parser.node.LiteralNode}s
+     * of a plan.
+     * @param message the message
+     * @param position the position
+     * @param literal the literal
+     * @return the mismatch
+     */
+    public static MessageMismatchException mismatch(CharSequence message, int position, String literal) {
+        if (position + literal.length() > message.length()) {
+            return new MessageMismatchException(() -> "Content does not match, expected '" + literal + "' but the message ends at " + message.length() + ".");
+        }
+        return new MessageMismatchException(() -> "Content does not match, expected '" + literal + "' but got '" + message.subSequence(position, position + literal.length()) + "'.");
+    }
+
+    /**
+     * Creates the mismatch of a field without data.
+     * @param fieldName the field name
+     * @return the mismatch
+     */
+    public static MessageMismatchException missing(String fieldName) {
+        return new MessageMismatchException(() -> "Could not serialize " + fieldName + " because there is no data set for it.");
+    }
+
+    /**
+     * Creates the exception of a field that could not be set to the given
+     * range of the message, wrong contents become a
+     * {@link ParserRuntimeException}, an index out of the message a
+     * {@link ParsingException}, other runtime exceptions and errors are kept.
+     * @param field the field accessor
+     * @param ex the throwable of the setter
+     * @param message the message
+     * @param position the position
+     * @param length the length
+     * @return the exception to throw
+     */
+    public static RuntimeException failure(FieldAccessor field, Throwable ex, CharSequence message, int position, int length) {
+        if (ex instanceof IllegalArgumentException || ex instanceof ClassCastException) {
+            return new ParserRuntimeException("Could not set data of '" + field.getName() + "' to '" + message.subSequence(position, position + length) + "'.", ex);
+        } else if (ex instanceof IndexOutOfBoundsException) {
+            return new ParsingException(ex);
+        } else if (ex instanceof RuntimeException) {
+            return (RuntimeException) ex;
+        } else if (ex instanceof Error) {
+            throw (Error) ex;
+        }
+        return new ParserRuntimeException("Could not set data of '" + field.getName() + "'.", ex);
+    }
+
+    /**
+     * Creates the exception of an ecc that differs from the calculated one.
+     * @param ecc the ecc of the message
+     * @param calculatedEcc the calculated ecc
+     * @return the exception
+     */
+    public static ParsingException eccMismatch(CharSequence ecc, char calculatedEcc) {
+        return new ParsingException("ECC was not valid, message is corrupted as we got '" + ecc + "' but expected '" + calculatedEcc + "'.");
+    }
+
+    /**
+     * Gets the length of a field up to the given terminator, or up to the end
+     * of the message if the terminator is null.
+     * @param message the message
+     * @param position the position
+     * @param terminator the terminator
+     * @return the field length
+     */
+    public static int length(CharSequence message, int position, String terminator) {
+        if (terminator == null) {
+            return message.length() - position;
+        } else if (terminator.isEmpty()) {
+            return 0;
+        }
+        return length(message, position, LiteralScanner.get(terminator));
+    }
+
+    /**
+     * Gets the length of a field up to the literal of the given scanner.
+     * @param message the message
+     * @param position the position
+     * @param terminator the scanner of the terminator
+     * @return the field length
+     */
+    public static int length(CharSequence message, int position, LiteralScanner terminator) {
+        int end = terminator.indexOf(message, position);
+        return end >= 0 ? end - position : 0;
+    }
+
+    /**
+     * Returns whether a field of the given length can be read at the position.
+     * @param message the message
+     * @param position the position
+     * @param length the length
+     * @return whether the field is defined
+     */
+    public static boolean defined(CharSequence message, int position, int length) {
+        return message.length() > 0 && length > 0 && position + length <= message.length();
+    }
+
+}
@@ -0,0 +1,228 @@
+package de.iisys.libinterface.parser.codec;
+
+import de.iisys.libinterface.parser.service.CharSequences;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+/**
+ * Serialized messages as a sequence of byte buffers for a gathering write,
+ * like {@link java.nio.channels.GatheringByteChannel#write(java.nio.ByteBuffer[]) }.
+ * <br>
+ * Literals of a template are added as shared read-only buffers of a
+ * {@link Literal}, which are encoded once per literal and charset. Everything else is appended to
+ * {@link #getString() } and encoded into a single buffer when the buffers are
+ * taken, each run of variable content between two literals becomes a slice of
+ * this buffer. Several messages can be added before the buffers are taken.
+ * Segments must only be used by one thread at a time and can be reused after
+ * {@link #clear() }.
+ */
+public class MessageSegments {
+
+    private final Charset charset;
+    private final StringBuilder string = new StringBuilder();
+
+    private ByteBuffer[] literals = new ByteBuffer[16];
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private int size;
+    private int runStart;
+
+    private ByteBuffer contentBuffer;
+
+    /**
+     * Initializes {@link #charset} with the given charset.
+     * @param charset the charset
+     */
+    public MessageSegments(Charset charset) {
+        this.charset = charset;
+    }
+
+    public Charset getCharset() {
+        return charset;
+    }
+
+    /**
+     * Gets the string the variable content is appended to.
+     * @return the string
+     */
+    public StringBuilder getString() {
+        return string;
+    }
+
+    /**
+     * Gets the number of segments that were added, without the variable
+     * content that was appended after the last literal.
+     * @return number of segments
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Adds the given literal with its buffer for the charset of the segments.
+     * @param literal the literal
+     */
+    public void addLiteral(Literal literal) {
+        addLiteral(literal.getEncoded(charset));
+    }
+
+    /**
+     * Adds the given literal, which is encoded with the charset and kept by
+     * the caller to be shared by all messages.
+     * @param literal the encoded literal, which is not changed
+     */
+    public void addLiteral(ByteBuffer literal) {
+        closeRun();
+        if (literal.hasRemaining()) {
+            add(literal, string.length(), string.length());
+        }
+    }
+
+    private void closeRun() {
+        if (string.length() > runStart) {
+            add(null, runStart, string.length());
+            runStart = string.length();
+        }
+    }
+
+    private void add(ByteBuffer literal, int start, int end) {
+        if (size == literals.length) {
+            literals = Arrays.copyOf(literals, size * 2);
+            starts = Arrays.copyOf(starts, size * 2);
+            ends = Arrays.copyOf(ends, size * 2);
+        }
+        literals[size] = literal;
+        starts[size] = start;
+        ends[size] = end;
+        size++;
+    }
+
+    /**
+     * Removes the segments and the variable content after the given number of
+     * segments and string length, like of a message that could not be
+     * serialized.
+     * @param size the number of segments to keep
+     * @param length the length of the string to keep
+     */
+    public void reset(int size, int length) {
+        for (int i = size; i < this.size; i++) {
+            literals[i] = null;
+        }
+        this.size = size;
+        string.setLength(length);
+        runStart = Math.min(size > 0 ? ends[size - 1] : 0, length);
+    }
+
+    /**
+     * Removes all segments, so the segments can be used for the next
+     * messages.
+     */
+    public void clear() {
+        reset(0, 0);
+        contentBuffer = null;
+    }
+
+    /**
+     * Returns {@link #getBuffers(java.util.function.IntFunction) } with
+     * buffers of {@link ByteBuffer#allocate(int) }.
+     * @return the buffers
+     */
+    public ByteBuffer[] getBuffers() {
+        return getBuffers(ByteBuffer::allocate);
+    }
+
+    /**
+     * Encodes the variable content into a buffer of the given allocator and
+     * gets the buffers of all segments in order, ready to be written.
+     * @param allocator allocator of the buffer for the variable content with
+     * at least the given capacity, like {@link de.iisys.libinterface.protocol.BufferPool#lease(int) }
+     * @return the buffers
+     */
+    public ByteBuffer[] getBuffers(IntFunction<ByteBuffer> allocator) {
+        closeRun();
+
+        boolean singleByte = charset.equals(StandardCharsets.ISO_8859_1) || charset.equals(StandardCharsets.US_ASCII);
+        int capacity = singleByte ? string.length() : (int) Math.ceil(string.length() * (double) charset.newEncoder().maxBytesPerChar());
+        contentBuffer = string.length() > 0 ? allocator.apply(capacity) : null;
+
+        ByteBuffer[] buffers = new ByteBuffer[size];
+        for (int i = 0; i < size; i++) {
+            if (literals[i] != null) {
+                buffers[i] = literals[i].duplicate();
+                continue;
+            }
+
+            int position = contentBuffer.position();
+            CharSequences.encode(CharBuffer.wrap(string, starts[i], ends[i]), contentBuffer, charset);
+            ByteBuffer slice = contentBuffer.duplicate();
+            slice.position(position).limit(contentBuffer.position());
+            buffers[i] = slice.slice();
+        }
+        return buffers;
+    }
+
+    /**
+     * Gets the buffer the variable content was encoded into by the last
+     * {@link #getBuffers(java.util.function.IntFunction) }, which can be
+     * given back to its allocator after the buffers were written.
+     * @return the buffer or null if there was no variable content
+     */
+    public ByteBuffer getContentBuffer() {
+        return contentBuffer;
+    }
+
+    /**
+     * Literal of a template with its encoded bytes, which are shared by all
+     * segments. The last encoding is kept, so a literal that is always
+     * written with the same charset is encoded only once.
+     */
+    public static final class Literal {
+
+        private final String literal;
+        private volatile Encoding encoding;
+
+        /**
+         * Initializes {@link #literal} with the given literal.
+         * @param literal the literal
+         */
+        public Literal(String literal) {
+            this.literal = literal;
+        }
+
+        public String getLiteral() {
+            return literal;
+        }
+
+        /**
+         * Gets the literal encoded with the given charset.
+         * @param charset the charset
+         * @return the shared read-only buffer of the literal
+         */
+        public ByteBuffer getEncoded(Charset charset) {
+            Encoding current = encoding;
+            if (current == null || !current.charset.equals(charset)) {
+                current = new Encoding(charset, ByteBuffer.wrap(literal.getBytes(charset)).asReadOnlyBuffer());
+                encoding = current;
+            }
+            return current.buffer;
+        }
+
+    }
+
+    private static final class Encoding {
+
+        private final Charset charset;
+        private final ByteBuffer buffer;
+
+        private Encoding(Charset charset, ByteBuffer buffer) {
+            this.charset = charset;
+            this.buffer = buffer;
+        }
+
+    }
+
+}
@@ -0,0 +1,325 @@
+package de.iisys.libinterface.parser.node;
+
+import de.iisys.libinterface.parser.service.CharSequences;
+import de.iisys.libinterface.service.FieldAccessor;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import org.parboiled.errors.ParsingException;
+
+/**
+ * Class to process the array nodes.
+ */
+public class ArrayNode extends ParserNode {
+
+    private String delimiter;
+
+    /**
+     * Initializes {@link ParserNode#ParserNode() } and also initializes {@link #delimiter}
+     * with the given delimter string.
+     * @param delimiter delimeter
+     * @param childNodes the child nodes
+     */
+    public ArrayNode(String delimiter, ParserNode... childNodes) {
+        super(childNodes);
+        this.delimiter = delimiter;
+    }
+
+    public String getDelimiter() {
+        return delimiter;
+    }
+
+    /**
+     * Calls {@link #resetChildren(de.iisys.libinterface.parser.node.ParserContext) } and
+     * puts the content of the context to null and the array position to 0;
+     * @param context the parser context
+     */
+    @Override
+    public void reset(ParserContext context) {
+        resetChildren(context);
+        context.setContent(this, null);
+        context.setArrayPosition(this, 0);
+    }
+
+    /**
+     * Returns whether the content is null or not.
+     * @param context the parser context
+     * @returns Whether {@link #getContent(de.iisys.libinterface.parser.node.ParserContext) } is not null
+     */
+    @Override
+    protected boolean isDefined(ParserContext context) {
+        return context.hasContent(this);
+    }
+
+    @Override
+    public String getContent(ParserContext context) {
+        return context.getContent(this);
+    }
+
+    @Override
+    public int getLength(ParserContext context) {
+        return context.getContentLength(this);
+    }
+
+    public int getArrayPosition(ParserContext context) {
+        return context.getArrayPosition(this);
+    }
+
+    /**
+     * Increases the array position.
+     * @param context the parser context
+     */
+    public void increaseArrayPosition(ParserContext context) {
+        context.setArrayPosition(this, context.getArrayPosition(this) + 1);
+    }
+
+    /**
+     * Decreases the array position.
+     * @param context the parser context
+     */
+    public void decreaseArrayPosition(ParserContext context) {
+        context.setArrayPosition(this, context.getArrayPosition(this) - 1);
+    }
+
+    /**
+     * Gets the current array data.
+     * @param context the parser context
+     * @param data the data object
+     * @return array position object
+     */
+    public Object getCurrentArrayData(ParserContext context, Object data) {
+        return getElement(data, getArrayPosition(context));
+    }
+
+    /**
+     * Gets the element at the given array position of an array or list.
+     * @param data the array or list
+     * @param arrayPosition the array position
+     * @return the element or null if the data is neither array nor list
+     */
+    public static Object getElement(Object data, int arrayPosition) {
+        try {
+            if (data.getClass().isArray()) {
+                return ((Object[]) data)[arrayPosition];
+            } else if (List.class.isAssignableFrom(data.getClass())) {
+                return ((List) data).get(arrayPosition);
+            }
+            return null;
+        } catch (IndexOutOfBoundsException ex) {
+            throw new ParsingException(ex);
+        }
+    }
+
+    /**
+     * Sets the current array data if the array position is higher then the given objects length
+     * and the field typ is array. Else the method creates a new ArrayList and adds the content of
+     * the array position in the array list.
+     * 
+     * @param context the parser context
+     * @param accessor the accessor of the field
+     * @param object object
+     * @param content content object
+     * @return the data
+     * @throws IllegalAccessException 
+     */
+    public Object setCurrentArrayData(ParserContext context, FieldAccessor accessor, Object object, Object content) throws IllegalAccessException {
+        return setElement(accessor, object, getArrayPosition(context), content);
+    }
+
+    /**
+     * Sets the element at the given array position of the array or list of
+     * the field, a missing array or list is created and an array is grown.
+     * @param accessor the accessor of the field
+     * @param object the object
+     * @param arrayPosition the array position
+     * @param content the element
+     * @return the array or list, which has to be set to the field
+     */
+    public static Object setElement(FieldAccessor accessor, Object object, int arrayPosition, Object content) {
+        try {
+            Field field = accessor.getField();
+            Object data = accessor.get(object);
+
+            if (field.getType().isArray()) {
+                if (data == null) {
+                    data = Array.newInstance(field.getType(), 16);
+                }
+
+                int length = ((Object[]) data).length;
+                if (arrayPosition >= length) {
+                    Object newData = Array.newInstance(field.getType(), length * 2);
+                    System.arraycopy(data, 0, newData, 0, length);
+                    data = newData;
+                }
+                ((Object[]) data)[arrayPosition] = content;
+            } else if (List.class.isAssignableFrom(field.getType())) {
+                if (data == null) {
+                    data = new ArrayList<>();
+                }
+
+                int length = ((List) data).size();
+                if (arrayPosition >= length) {
+                    ((List) data).add(content);
+                } else {
+                    ((List) data).set(arrayPosition, content);
+                }
+            }
+
+            return data;
+        } catch (IndexOutOfBoundsException ex) {
+            throw new ParsingException(ex);
+        }
+    }
+
+    /**
+     * Gets the field and object data.
+     * @param node the reflection field node
+     * @param object object
+     * @return data
+     */
+    protected Object getData(ReflectionFieldNode node, Object object) {
+        try {
+            return FieldAccessor.get(object.getClass(), node.getFieldName()).get(object);
+        } catch (NoSuchFieldException | IllegalArgumentException ex) {
+            throw new ParsingException(ex);
+        }
+    }
+
+    /**
+     * Gets all current lists sizes of the data.
+     * @param object the object
+     * @return the length
+     */
+    protected int getAllListsSize(Object object) {
+        List<ReflectionFieldNode> reflectionFieldChildren = getFilteredChildren(ReflectionFieldNode.class);
+
+        int length = -1;
+        for (ReflectionFieldNode reflectionFieldChild : reflectionFieldChildren) {
+            if (!reflectionFieldChild.hasContext(OptionalNode.class)) {
+                int currentLength = getSize(getData(reflectionFieldChild, object), reflectionFieldChild.getFieldName());
+
+                if (length == -1 || length == currentLength) {
+                    length = currentLength;
+                } else {
+                    return -1;
+                }
+            }
+        }
+
+        return length;
+    }
+
+    /**
+     * Gets the size of the array or list of a field.
+     * @param data the array or list
+     * @param fieldName the field name
+     * @return the size
+     * @throws ParsingException if the data is neither array nor list
+     */
+    public static int getSize(Object data, String fieldName) {
+        if (data != null && data.getClass().isArray()) {
+            return ((Object[]) data).length;
+        } else if (data != null && List.class.isAssignableFrom(data.getClass())) {
+            return ((List) data).size();
+        }
+        throw new ParsingException("Need array or list for field " + fieldName + ".");
+    }
+
+    /**
+     * Serializes the children for every element of the arrays or lists into
+     * the given string, separated by the delimiter, and keeps the part they
+     * wrote as content.
+     * @param context the parser context
+     * @param object the object
+     * @param string the string to append to
+     */
+    @Override
+    public void serialize(ParserContext context, Object object, StringBuilder string) {
+        // object contains lists or arrays that have to be written multiple times, all needed lists need equal size
+        int length = getAllListsSize(object);
+        if (length < 0) {
+            throw new ParsingException("Arrays or Lists in object all need to have same size, maybe add null elements in between.");
+        }
+
+        int start = string.length();
+        while (getArrayPosition(context) < length) {
+            serializeChildren(context, object, string);
+            string.append(delimiter);
+            increaseArrayPosition(context);
+        }
+
+        // delete last delimiter after while loop as increase might behave unexpected so that the inner loop may not be checked by position + 1 < length.
+        removeDelimiter(string, start, delimiter);
+
+        context.setContent(this, string.substring(start));
+    }
+
+    /**
+     * Removes the delimiter at the end of the string, if the elements that
+     * start at the given position of the string end with it.
+     * @param string the string
+     * @param start the start of the elements
+     * @param delimiter the delimiter
+     */
+    public static void removeDelimiter(StringBuilder string, int start, String delimiter) {
+        int last = string.length() - delimiter.length();
+        if (last >= start && string.indexOf(delimiter, last) == last) {
+            string.setLength(last);
+        }
+    }
+
+    /**
+     * Removes the delimiter at the end of the buffer, if the elements that
+     * start at the given position of the buffer end with it. The buffer has
+     * one byte per character, so characters of the delimiter above the
+     * maximum are compared as '?'.
+     * @param buffer the buffer
+     * @param start the start of the elements
+     * @param delimiter the delimiter
+     * @param maximum the largest character of the charset
+     */
+    public static void removeDelimiter(ByteBuffer buffer, int start, String delimiter, char maximum) {
+        int last = buffer.position() - delimiter.length();
+        if (last < start) {
+            return;
+        }
+        for (int i = 0; i < delimiter.length(); i++) {
+            char character = delimiter.charAt(i);
+            if (buffer.get(last + i) != (byte) (character > maximum ? '?' : character)) {
+                return;
+            }
+        }
+        buffer.position(last);
+    }
+
+    /**
+     * Deserializes children nodes, increases the array position and resets children if the
+     * tokens length is over 0.
+     * @param context the parser context
+     * @param object the object
+     * @param message the message
+     * @return object
+     */
+    @Override
+    public Object deserialize(ParserContext context, Object object, CharSequence message) {
+        CharSequence content = extractDelimiteredMessage(context, message);
+        context.setContent(this, content);
+
+        int start = 0;
+        for (int i = 0; i <= content.length(); i++) {
+            if (i == content.length() || delimiter.indexOf(content.charAt(i)) >= 0) {
+                if (i > start) {
+                    deserializeChildren(context, object, CharSequences.slice(content, start, i));
+                    increaseArrayPosition(context);
+                    resetChildren(context);
+                }
+                start = i + 1;
+            }
+        }
+
+        return object;
+    }
+
+}
@@ -0,0 +1,24 @@
+package de.iisys.libinterface.parser.node;
+
+/**
+ * Class to process the content nodes.
+ */
+public class ContentNode extends LiteralNode {
+
+    private String content;
+
+
+    /**
+     * Initializes {@link #content} with the given content string.
+     * @param content the content
+     */
+    public ContentNode(String content) {
+        this.content = content;
+    }
+
+    @Override
+    public String getContent() {
+        return content;
+    }
+
+}
@@ -0,0 +1,103 @@
+package de.iisys.libinterface.parser.node;
+
+import org.parboiled.errors.ParsingException;
+
+/**
+ * Class to process the ECC block nodes.
+ */
+public class ECCBlockNode extends ParserNode {
+
+    private String reference;
+
+    /**
+     * Initializes {@link ParserNode#ParserNode() } and also {@link #reference}
+     * with the given reference string.
+     * @param reference reference
+     * @param children children nodes
+     */
+    public ECCBlockNode(String reference, ParserNode... children) {
+        super(children);
+        this.reference = reference;
+    }
+
+    /**
+     * Calls {@link #resetChildren(de.iisys.libinterface.parser.node.ParserContext) } and
+     * initiailizes the ecc block of the context with null.
+     * @param context the parser context
+     */
+    @Override
+    public void reset(ParserContext context) {
+        resetChildren(context);
+        context.setContent(this, null);
+    }
+
+    @Override
+    public String getContent(ParserContext context) {
+        return context.getContent(this);
+    }
+
+    /**
+     * Gets the length of the ecc block string.
+     * @param context the parser context
+     * @return length of the ecc block
+     */
+    @Override
+    public int getLength(ParserContext context) {
+        return context.getContentLength(this);
+    }
+
+    public String getEccBlock(ParserContext context) {
+        return context.getContent(this);
+    }
+
+    public String getReference() {
+        return reference;
+    }
+
+    /**
+     * Initializes the ecc block with {@link #serializeChildren(de.iisys.libinterface.parser.node.ParserContext, java.lang.Object) }
+     * and returns {@link #getContent(de.iisys.libinterface.parser.node.ParserContext) }.
+     * @param context the parser context
+     * @param object the object
+     * @return {@link #getContent(de.iisys.libinterface.parser.node.ParserContext) }
+     */
+    @Override
+    public String serialize(ParserContext context, Object object) {
+        context.setContent(this, serializeChildren(context, object));
+        return getContent(context);
+    }
+
+    /**
+     * Serializes the children into the given string and keeps the part they
+     * wrote as content, which the ECC is calculated of.
+     * @param context the parser context
+     * @param object the object
+     * @param string the string to append to
+     */
+    @Override
+    public void serialize(ParserContext context, Object object, StringBuilder string) {
+        int start = string.length();
+        serializeChildren(context, object, string);
+        context.setContent(this, string.substring(start));
+    }
+
+    /**
+     * Initializes the ecc block with {@link #extractDelimiteredMessage(de.iisys.libinterface.parser.node.ParserContext, java.lang.CharSequence) } 
+     * and returns {@link #deserializeChildren(de.iisys.libinterface.parser.node.ParserContext, java.lang.Object, java.lang.CharSequence) }.
+     * @param context the parser context
+     * @param object the object
+     * @param message the message
+     * @return 
+     */
+    @Override
+    public Object deserialize(ParserContext context, Object object, CharSequence message) {
+        try {
+            CharSequence eccBlock = extractDelimiteredMessage(context, message);
+            context.setContent(this, eccBlock);
+            return deserializeChildren(context, object, eccBlock);
+        } catch (IndexOutOfBoundsException ex) {
+            throw new ParsingException(ex);
+        }
+    }
+
+}
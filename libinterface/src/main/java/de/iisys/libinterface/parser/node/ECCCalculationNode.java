@@ -1,6 +1,7 @@
 package de.iisys.libinterface.parser.node;
 
 import de.iisys.libinterface.message.annotation.ECC;
+import de.iisys.libinterface.service.ReflectionService;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.List;
@@ -11,7 +12,6 @@ import org.parboiled.errors.ParsingException;
  */
 public class ECCCalculationNode extends ParserNode {
 
-    private String ecc;
     private String reference;
 
     /**
@@ -23,29 +23,31 @@ public class ECCCalculationNode extends ParserNode {
     }
 
     /**
-     * Initializes {@link #ecc} with null.
+     * Initializes the ecc of the context with null.
+     * @param context the parser context
      */
     @Override
-    public void reset() {
-        ecc = null;
+    public void reset(ParserContext context) {
+        context.setContent(this, null);
     }
 
     @Override
-    public String getContent() {
-        return ecc;
+    public String getContent(ParserContext context) {
+        return context.getContent(this);
     }
 
     /**
-     * Gets the length of {@link #ecc}.
-     * @return length of {@link #ecc} string
+     * Gets the length of the ecc.
+     * @param context the parser context
+     * @return length of the ecc string
      */
     @Override
-    public int getLength() {
-        return ecc.length();
+    public int getLength(ParserContext context) {
+        return getContent(context).length();
     }
 
-    public String getEcc() {
-        return ecc;
+    public String getEcc(ParserContext context) {
+        return context.getContent(this);
     }
 
     public String getReference() {
@@ -62,8 +64,8 @@ public class ECCCalculationNode extends ParserNode {
         String className;
         String methodName;
 
-        if (object.getClass().isAnnotationPresent(ECC.class)) {
-            ECC eccAnnotation = object.getClass().getAnnotation(ECC.class);
+        ECC eccAnnotation = ReflectionService.getAnnotation(object.getClass(), ECC.class);
+        if (eccAnnotation != null) {
 
             className = eccAnnotation.clazz();
             methodName = eccAnnotation.method();
@@ -104,35 +106,49 @@ public class ECCCalculationNode extends ParserNode {
 
     /**
      * Serializes with the given object.
+     * @param context the parser context
      * @param object the object
-     * @return {@link #getContent() }
+     * @return {@link #getContent(de.iisys.libinterface.parser.node.ParserContext) }
      */ 
     @Override
-    public String serialize(Object object) {
+    public String serialize(ParserContext context, Object object) {
         ECCBlockNode referenceECCBlockNode = findReferenceECCBlockNode();
-        char calculatedEcc = callECCCalculationMethod(object, referenceECCBlockNode.getContent());
+        char calculatedEcc = callECCCalculationMethod(object, referenceECCBlockNode.getContent(context));
 
-        ecc = Character.toString(calculatedEcc);
+        context.setContent(this, Character.toString(calculatedEcc));
 
-        return getContent();
+        return getContent(context);
+    }
+
+    /**
+     * Appends the result of {@link #serialize(de.iisys.libinterface.parser.node.ParserContext, java.lang.Object) }.
+     * @param context the parser context
+     * @param object the object
+     * @param string the string to append to
+     */
+    @Override
+    public void serialize(ParserContext context, Object object, StringBuilder string) {
+        string.append(serialize(context, object));
     }
 
     /**
      * Deserializes with the given object and message.
+     * @param context the parser context
      * @param object the object
      * @param message the message
      * @return deserialized object
      */
     @Override
-    public Object deserialize(Object object, String message) {
+    public Object deserialize(ParserContext context, Object object, CharSequence message) {
         try {
-            ecc = extractDelimiteredMessage(message);
+            CharSequence ecc = extractDelimiteredMessage(context, message);
+            context.setContent(this, ecc);
 
             ECCBlockNode referenceECCBlockNode = findReferenceECCBlockNode();
-            char calculatedEcc = callECCCalculationMethod(object, referenceECCBlockNode.getContent());
+            char calculatedEcc = callECCCalculationMethod(object, referenceECCBlockNode.getContent(context));
 
-            if (!getEcc().equals(Character.toString(calculatedEcc))) {
-                throw new ParsingException("ECC was not valid, message is corrupted as we got '" + getEcc() + "' but expected '" + calculatedEcc + "'.");
+            if (ecc.length() != 1 || ecc.charAt(0) != calculatedEcc) {
+                throw new ParsingException("ECC was not valid, message is corrupted as we got '" + ecc + "' but expected '" + calculatedEcc + "'.");
             }
 
             return object;
@@ -0,0 +1,119 @@
+package de.iisys.libinterface.parser.node;
+
+import de.iisys.libinterface.parser.service.CharSequences;
+
+/**
+ * Class to process the nodes whose content is given by the template.<br>
+ * The {@link ParserPlan} merges adjacent literal nodes: the first node of a
+ * run serializes and compares the content of the whole run at once, the other
+ * nodes of the run are skipped. Every node still keeps its own content, so the
+ * content a field searches for stays the one of the following node only.
+ */
+public abstract class LiteralNode extends ParserNode {
+
+    private String runContent;
+    private boolean merged;
+
+    /**
+     * Gets the content of the node, which does not depend on the message.
+     * @return the content
+     */
+    public abstract String getContent();
+
+    @Override
+    public String getContent(ParserContext context) {
+        return getContent();
+    }
+
+    @Override
+    public int getLength(ParserContext context) {
+        return getContent().length();
+    }
+
+    @Override
+    protected String getStaticContent() {
+        return getContent();
+    }
+
+    @Override
+    protected int getStaticLength() {
+        return getContent().length();
+    }
+
+    /**
+     * Sets the content of the run of literal nodes that starts with this node.
+     * @param runContent content of the run
+     */
+    void setRunContent(String runContent) {
+        this.runContent = runContent;
+    }
+
+    /**
+     * Marks this node as part of a run that is processed by its first node.
+     */
+    void setMerged() {
+        this.merged = true;
+    }
+
+    /**
+     * Gets the content this node has to process, which is the content of its
+     * run, nothing if it was merged into a previous node, or otherwise its
+     * own content.
+     * @return the content to process
+     */
+    protected String getRunContent() {
+        if (merged) {
+            return "";
+        }
+        return runContent != null ? runContent : getContent();
+    }
+
+    /**
+     * Returns {@link #getRunContent() }.
+     * @param context the parser context
+     * @param object the object
+     * @return {@link #getRunContent() }
+     */
+    @Override
+    public String serialize(ParserContext context, Object object) {
+        return getRunContent();
+    }
+
+    /**
+     * Appends {@link #getRunContent() }.
+     * @param context the parser context
+     * @param object the object
+     * @param string the string to append to
+     */
+    @Override
+    public void serialize(ParserContext context, Object object, StringBuilder string) {
+        string.append(getRunContent());
+    }
+
+    /**
+     * Deserializes with the given object and message. Returns the object if
+     * the message contains the {@link #getRunContent() } at the position of
+     * this node.
+     * @param context the parser context
+     * @param object the object
+     * @param message the message
+     * @return deserialized object
+     */
+    @Override
+    public Object deserialize(ParserContext context, Object object, CharSequence message) {
+        if (merged) {
+            return object;
+        }
+
+        String content = getRunContent();
+        int position = getPosition(context);
+        if (position + content.length() > message.length()) {
+            throw context.mismatch(() -> "Content does not match, expected '" + content + "' but the message ends at " + message.length() + ".");
+        }
+        if (!CharSequences.regionMatches(message, position, content)) {
+            throw context.mismatch(() -> "Content does not match, expected '" + content + "' but got '" + message.subSequence(position, position + content.length()) + "'.");
+        }
+        return object;
+    }
+
+}
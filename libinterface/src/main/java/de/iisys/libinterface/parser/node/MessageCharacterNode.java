@@ -0,0 +1,39 @@
+package de.iisys.libinterface.parser.node;
+
+import de.iisys.libinterface.parser.service.MessageCharacters;
+
+/**
+ * Class to process message character nodes.
+ */
+public class MessageCharacterNode extends LiteralNode {
+
+    private String messageCharacterName;
+    private String content;
+
+    /**
+     * Initializes {@link #messageCharacterName} with the given message character name
+     * string.
+     * @param messageCharacterName  message character name
+     */
+    public MessageCharacterNode(String messageCharacterName) {
+        this.messageCharacterName = messageCharacterName;
+    }
+
+    public String getMessageCharacterName() {
+        return messageCharacterName;
+    }
+
+    /**
+     * Returns the {@link MessageCharacters#nameToCharacter(java.lang.String) with the
+     * {@link #messageCharacterName} as parameter.
+     * @return name to the character
+     */
+    @Override
+    public String getContent() {
+        if (content == null) {
+            content = Character.toString(MessageCharacters.nameToCharacter(messageCharacterName));
+        }
+        return content;
+    }
+
+}
@@ -0,0 +1,138 @@
+package de.iisys.libinterface.parser.node;
+
+import org.parboiled.errors.ParsingException;
+
+/**
+ * Class to process the optional nodes.
+ */
+public class OptionalNode extends ParserNode {
+
+    /**
+     * Initilaizes {@link ParserNode#ParserNode() }.
+     * @param optionalChildren 
+     */
+    public OptionalNode(ParserNode... optionalChildren) {
+        super(optionalChildren);
+    }
+
+    /**
+     * Calls {@link #resetChildren(de.iisys.libinterface.parser.node.ParserContext) } and
+     * puts the optional failure of the context on false.
+     * @param context the parser context
+     */
+    @Override
+    public void reset(ParserContext context) {
+        resetChildren(context);
+        context.setOptionalFailure(this, false);
+    }
+
+    /**
+     * Return whether the optional content could be found.
+     * @param context the parser context
+     * @return whether there was no optional failure
+     */
+    @Override
+    protected boolean isDefined(ParserContext context) {
+        return !context.isOptionalFailure(this);
+    }
+
+    /**
+     * Returns {@code ""} or {@link ParserNode#getContent(de.iisys.libinterface.parser.node.ParserContext) } 
+     * whether the optional failure is true or false.
+     * @param context the parser context
+     * @return {@code ""} or {@link ParserNode#getContent(de.iisys.libinterface.parser.node.ParserContext) }
+     */
+    @Override
+    public String getContent(ParserContext context) {
+        return isDefined(context) ? super.getContent(context) : "";
+    }
+
+    /**
+     * Returns {@code 0} or {@link ParserNode#getLength(de.iisys.libinterface.parser.node.ParserContext) } 
+     * whether the optional failure is true or false.
+     * @param context the parser context
+     * @return {@code 0) or {@link ParserNode#getLength(de.iisys.libinterface.parser.node.ParserContext) } 
+     */
+    @Override
+    public int getLength(ParserContext context) {
+        return isDefined(context) ? super.getLength(context) : 0;
+    }
+
+    /**
+     * Sets whether the optional content could not be found.
+     * @param context the parser context
+     * @param optionalFailure the optinal failure
+     */
+    protected void setOptionalFailure(ParserContext context, boolean optionalFailure) {
+        context.setOptionalFailure(this, optionalFailure);
+    }
+
+    /**
+     * Returns {@link ParserNode#getEnd(de.iisys.libinterface.parser.node.ParserContext, java.lang.CharSequence, int, java.lang.String, boolean) }
+     * @param context the parser context
+     * @param message the message
+     * @param position the position
+     * @param followingContent the following content
+     * @return {@link ParserNode#getEnd(de.iisys.libinterface.parser.node.ParserContext, java.lang.CharSequence, int, java.lang.String, boolean) }
+     */
+    @Override
+    protected int getEnd(ParserContext context, CharSequence message, int position, String followingContent) {
+        if (followingContent != null && followingContent.length() > 0) {
+            int end = getScanner(followingContent).indexOf(message, position);
+            if (end >= 0) {
+                return end;
+            }
+            followingContent = getFollowingContent(context, OptionalNode.class);
+        }
+
+        return super.getEnd(context, message, position, followingContent, false);
+    }
+
+    /**
+     * Serializes the children nodes into the given string. If a child can
+     * not be serialized, the string is reset to its length before the
+     * children and the optional failure is set.
+     * @param context the parser context
+     * @param object the object
+     * @param string the string to append to
+     */
+    @Override
+    public void serialize(ParserContext context, Object object, StringBuilder string) {
+        int start = string.length();
+        context.enterOptional();
+        try {
+            serializeChildren(context, object, string);
+        } catch (ParsingException ex) {
+            setOptionalFailure(context, true);
+            string.setLength(start);
+        } finally {
+            context.exitOptional();
+        }
+    }
+
+    /**
+     * Returns {@link #deserializeChildren(de.iisys.libinterface.parser.node.ParserContext, java.lang.Object, java.lang.CharSequence) }
+     * @param context the parser context
+     * @param object the object
+     * @param message the message
+     * @return {@link #deserializeChildren(de.iisys.libinterface.parser.node.ParserContext, java.lang.Object, java.lang.CharSequence) }
+     */
+    @Override
+    public Object deserialize(ParserContext context, Object object, CharSequence message) {
+        try {
+            CharSequence delimiteredMessage = extractDelimiteredMessage(context, message);
+            context.enterOptional();
+            try {
+                return deserializeChildren(context, object, delimiteredMessage);
+            } catch (ParsingException ex) {
+                setOptionalFailure(context, true);
+                return object;
+            } finally {
+                context.exitOptional();
+            }
+        } catch (IndexOutOfBoundsException ex) {
+            throw new ParsingException(ex);
+        }
+    }
+
+}
@@ -0,0 +1,230 @@
+package de.iisys.libinterface.parser.node;
+
+import de.iisys.libinterface.parser.service.MessageMismatchException;
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * Class that holds the state of a single serialization or deserialization.<br>
+ * The nodes of a {@link ParserPlan} do not change during a run, every state
+ * like the parsed content, the length, the position or the array position is
+ * stored in the
+ * context by the index of the node instead. So a context must only be used by
+ * one run, while the plan can be shared by many threads.
+ */
+public class ParserContext {
+
+    private static final int NO_MATCH = Integer.MIN_VALUE;
+
+    private final ParserPlan plan;
+
+    private final CharSequence[] contents;
+    private final int[] lengths;
+    private final int[] positions;
+    private final int[] arrayPositions;
+    private final boolean[] optionalFailures;
+    private final int[] matchStarts;
+    private final int[] matchLengths;
+    private int optionalDepth;
+
+    /**
+     * Creates the state arrays for all nodes of the given plan and resets them
+     * with {@link ParserNode#reset(de.iisys.libinterface.parser.node.ParserContext) }.
+     * @param plan the plan
+     */
+    public ParserContext(ParserPlan plan) {
+        this.plan = plan;
+
+        contents = new CharSequence[plan.getSize()];
+        lengths = new int[plan.getSize()];
+        positions = new int[plan.getSize()];
+        Arrays.fill(positions, -1);
+        arrayPositions = new int[plan.getSize()];
+        optionalFailures = new boolean[plan.getSize()];
+        matchStarts = new int[plan.getSize()];
+        Arrays.fill(matchStarts, NO_MATCH);
+        matchLengths = new int[plan.getSize()];
+
+        plan.getRoot().reset(this);
+    }
+
+    public ParserPlan getPlan() {
+        return plan;
+    }
+
+    /**
+     * Gets the content of the given node. A content that was set as a part
+     * of the message is turned into a string once.
+     * @param node the node
+     * @return content of the node
+     */
+    public String getContent(ParserNode node) {
+        CharSequence content = contents[node.getIndex()];
+        if (content == null || content instanceof String) {
+            return (String) content;
+        }
+
+        String string = content.toString();
+        contents[node.getIndex()] = string;
+        return string;
+    }
+
+    /**
+     * Sets the content of the given node, which may be a part of the message.
+     * @param node the node
+     * @param content the content
+     */
+    public void setContent(ParserNode node, CharSequence content) {
+        contents[node.getIndex()] = content;
+    }
+
+    /**
+     * Returns whether the content of the given node is set.
+     * @param node the node
+     * @return whether the content is not null
+     */
+    public boolean hasContent(ParserNode node) {
+        return contents[node.getIndex()] != null;
+    }
+
+    /**
+     * Gets the length of the content of the given node without turning it
+     * into a string.
+     * @param node the node
+     * @return length of the content
+     */
+    public int getContentLength(ParserNode node) {
+        return contents[node.getIndex()].length();
+    }
+
+    /**
+     * Gets the length of the given node.
+     * @param node the node
+     * @return length of the node
+     */
+    public int getLength(ParserNode node) {
+        return lengths[node.getIndex()];
+    }
+
+    /**
+     * Sets the length of the given node.
+     * @param node the node
+     * @param length the length
+     */
+    public void setLength(ParserNode node, int length) {
+        lengths[node.getIndex()] = length;
+    }
+
+    /**
+     * Gets the length of the match of the given node at the given start,
+     * which was kept by {@link #setMatch(de.iisys.libinterface.parser.node.ParserNode, int, int) }.
+     * @param node the node
+     * @param start the start of the node
+     * @return length of the match or -1 if the node did not match at the start
+     */
+    public int getMatchLength(ParserNode node, int start) {
+        return matchStarts[node.getIndex()] == start ? matchLengths[node.getIndex()] : -1;
+    }
+
+    /**
+     * Keeps the length of the match of the given node at the given start, so
+     * that the length is not computed from the children again.
+     * @param node the node
+     * @param start the start of the node
+     * @param length the length of the match
+     */
+    public void setMatch(ParserNode node, int start, int length) {
+        matchStarts[node.getIndex()] = start;
+        matchLengths[node.getIndex()] = length;
+    }
+
+    /**
+     * Removes the match of the given node, before the node is matched again.
+     * @param node the node
+     */
+    public void clearMatch(ParserNode node) {
+        matchStarts[node.getIndex()] = NO_MATCH;
+    }
+
+    /**
+     * Gets the position of the given node in the message of its parent, which
+     * is set by the cursor of the parent during the deserialization.
+     * @param node the node
+     * @return position of the node or -1 if it is not known
+     */
+    public int getPosition(ParserNode node) {
+        return positions[node.getIndex()];
+    }
+
+    /**
+     * Sets the position of the given node in the message of its parent.
+     * @param node the node
+     * @param position the position
+     */
+    public void setPosition(ParserNode node, int position) {
+        positions[node.getIndex()] = position;
+    }
+
+    /**
+     * Gets the array position of the given node.
+     * @param node the node
+     * @return array position of the node
+     */
+    public int getArrayPosition(ParserNode node) {
+        return arrayPositions[node.getIndex()];
+    }
+
+    /**
+     * Sets the array position of the given node.
+     * @param node the node
+     * @param arrayPosition the array position
+     */
+    public void setArrayPosition(ParserNode node, int arrayPosition) {
+        arrayPositions[node.getIndex()] = arrayPosition;
+    }
+
+    /**
+     * Returns whether the optional content of the given node could not be found.
+     * @param node the node
+     * @return whether the optional content failed
+     */
+    public boolean isOptionalFailure(ParserNode node) {
+        return optionalFailures[node.getIndex()];
+    }
+
+    /**
+     * Sets whether the optional content of the given node could not be found.
+     * @param node the node
+     * @param optionalFailure the optional failure
+     */
+    public void setOptionalFailure(ParserNode node, boolean optionalFailure) {
+        optionalFailures[node.getIndex()] = optionalFailure;
+    }
+
+    /**
+     * Marks that the nodes of an optional content are processed, whose
+     * mismatches are caught by the optional node.
+     */
+    public void enterOptional() {
+        optionalDepth++;
+    }
+
+    /**
+     * Marks that the nodes of an optional content are processed.
+     */
+    public void exitOptional() {
+        optionalDepth--;
+    }
+
+    /**
+     * Gets the mismatch to throw with the given message. Inside of an
+     * optional content the mismatch is always caught, so the shared
+     * {@link MessageMismatchException#SIGNAL} is returned instead.
+     * @param messageSupplier the supplier of the message
+     * @return the mismatch
+     */
+    public MessageMismatchException mismatch(Supplier<String> messageSupplier) {
+        return optionalDepth > 0 ? MessageMismatchException.SIGNAL : new MessageMismatchException(messageSupplier);
+    }
+
+}
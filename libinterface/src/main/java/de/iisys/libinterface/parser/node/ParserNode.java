@@ -0,0 +1,651 @@
+package de.iisys.libinterface.parser.node;
+
+import de.iisys.libinterface.parser.service.CharSequences;
+import de.iisys.libinterface.parser.service.LiteralScanner;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import org.parboiled.trees.MutableTreeNodeImpl;
+
+/**
+ * Class to process the parser node.<br>
+ * Nodes only describe the template, the state of a run is kept in the given
+ * {@link ParserContext}. Everything that only depends on the template, like
+ * the position of a node behind nodes of a fixed length or the content a
+ * node searches for, is computed once by {@link #optimize() } when the node
+ * becomes part of a {@link ParserPlan}.
+ */
+public class ParserNode extends MutableTreeNodeImpl<ParserNode> {
+
+    private int index = -1;
+
+    private boolean optimized;
+    private int parentChildIndex = -1;
+    private ParserNode followingNode;
+    private String followingContent;
+    private LiteralScanner followingScanner;
+    private ParserNode lastChild;
+    private String lastChildContent;
+    private LiteralScanner lastChildScanner;
+    private ParserNode previousVariableNode;
+    private int staticOffset;
+
+    /**
+     * Default constructor.
+     */
+    public ParserNode() {
+    }
+
+    /**
+     * Fills the children array with nodes.
+     * 
+     * @param children 
+     */
+    public ParserNode(ParserNode... children) {
+        for (int i = 0; i < children.length; i++) {
+            if (children[i] != null) {
+                addChild(i, children[i]);
+            }
+        }
+    }
+
+    /**
+     * Gets the index of the node in its {@link ParserPlan}.
+     * @return index of the node
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Numbers this node and its children in pre-order, starting with the given
+     * index.
+     * @param next the index of this node
+     * @return the index after the last child
+     */
+    int index(int next) {
+        if (index >= 0) {
+            throw new IllegalStateException("Parser node is already part of a plan.");
+        }
+
+        index = next++;
+        for (ParserNode child : getChildren()) {
+            next = child.index(next);
+        }
+        return next;
+    }
+
+    /**
+     * Precomputes the siblings, the static contents and the offsets of the
+     * children of this node and merges adjacent {@link LiteralNode}s, then
+     * optimizes the children. The offset of a child is the sum of the
+     * {@link #getStaticLength() } of its left siblings after the last one
+     * with a variable length, so only those have to be added in a run.
+     */
+    void optimize() {
+        List<ParserNode> children = getChildren();
+
+        ParserNode previousVariable = null;
+        int offset = 0;
+        for (int i = 0; i < children.size(); i++) {
+            ParserNode child = children.get(i);
+            child.parentChildIndex = i;
+            child.followingNode = i + 1 < children.size() ? children.get(i + 1) : null;
+            child.followingContent = child.followingNode != null ? child.followingNode.getStaticContent() : null;
+            child.followingScanner = compileScanner(child.followingContent);
+            child.previousVariableNode = previousVariable;
+            child.staticOffset = offset;
+
+            int staticLength = child.getStaticLength();
+            if (staticLength >= 0) {
+                offset += staticLength;
+            } else {
+                previousVariable = child;
+                offset = 0;
+            }
+
+            child.optimize();
+        }
+
+        lastChild = children.isEmpty() ? null : children.get(children.size() - 1);
+        lastChildContent = lastChild != null ? lastChild.getStaticContent() : null;
+        lastChildScanner = compileScanner(lastChildContent);
+
+        for (int i = 0; i < children.size(); i++) {
+            if (!(children.get(i) instanceof LiteralNode)) {
+                continue;
+            }
+
+            LiteralNode first = (LiteralNode) children.get(i);
+            StringBuilder runContent = new StringBuilder(first.getContent());
+            while (i + 1 < children.size() && children.get(i + 1) instanceof LiteralNode) {
+                LiteralNode next = (LiteralNode) children.get(++i);
+                runContent.append(next.getContent());
+                next.setMerged();
+            }
+            first.setRunContent(runContent.toString());
+        }
+
+        optimized = true;
+    }
+
+    private static LiteralScanner compileScanner(String content) {
+        return content != null && !content.isEmpty() ? LiteralScanner.get(content) : null;
+    }
+
+    /**
+     * Gets the scanner of the given content the node searches for, which is
+     * the precomputed scanner of the following or last child content or the
+     * shared scanner of {@link LiteralScanner#get(java.lang.String) }.
+     * @param searchFor the content, not empty
+     * @return the scanner
+     */
+    protected LiteralScanner getScanner(String searchFor) {
+        if (followingScanner != null && searchFor == followingContent) {
+            return followingScanner;
+        } else if (lastChildScanner != null && searchFor == lastChildContent) {
+            return lastChildScanner;
+        }
+        return LiteralScanner.get(searchFor);
+    }
+
+    /**
+     * Gets the content of the node if it does not depend on the message,
+     * otherwise null.
+     * @return the static content or null
+     */
+    protected String getStaticContent() {
+        return null;
+    }
+
+    /**
+     * Gets the length of the node if it does not depend on the message,
+     * otherwise -1.
+     * @return the static length or -1
+     */
+    protected int getStaticLength() {
+        return -1;
+    }
+
+    /**
+     * Calls {@link #resetChildren(de.iisys.libinterface.parser.node.ParserContext) }
+     * @param context the parser context
+     */
+    public void reset(ParserContext context) {
+        resetChildren(context);
+    }
+
+    /**
+     * Resets the parser node childs.
+     * @param context the parser context
+     */
+    protected void resetChildren(ParserContext context) {
+        for (ParserNode child : getChildren()) {
+            child.reset(context);
+        }
+    }
+
+    /**
+     * Returns true.
+     * @param context the parser context
+     * @return true
+     */
+    protected boolean isDefined(ParserContext context) {
+        return true;
+    }
+
+    /**
+     * Returns whether the instance of {@link ParserNode} has context.
+     * @param contextClass istance of {@link ParserNode}
+     * @return whether has context or not
+     */
+    protected boolean hasContext(Class<? extends ParserNode> contextClass) {
+        return findParent(contextClass) != null;
+    }
+
+    /**
+     * Looks for the parents of the nodes of {@link ParserNode}. If not returns null.
+     * @param <T> Parser node type
+     * @param parentFilter parentfilter
+     * @return current {@link ParserNode} node
+     */
+    protected <T extends ParserNode> T findParent(Class<T> parentFilter) {
+        ParserNode currentNode = this;
+        while (currentNode != null) {
+            if (parentFilter.isAssignableFrom(currentNode.getClass())) {
+                return (T) currentNode;
+            }
+
+            currentNode = currentNode.getParent();
+        }
+
+        return null;
+    }
+
+    /**
+     * Gets the current filtered nodes.
+     * @param <T> parser node type
+     * @param filterClass instance of {@link ParserNode}
+     * @return current filtered nodes
+     */
+    protected <T extends ParserNode> List<T> getFilteredNodes(Class<T> filterClass) {
+        ParserNode current = this;
+        while (current.getParent() != null) {
+            current = current.getParent();
+        }
+
+        return current.getFilteredChildren(filterClass);
+    }
+
+    /**
+     * Gets the filtered children nodes and adds them in a array list.
+     * @param <T> parser node type
+     * @param filterClass instance of {@link ParserNode}
+     * @return children array list
+     */
+    protected <T extends ParserNode> List<T> getFilteredChildren(Class<T> filterClass) {
+        List<T> children = new ArrayList<>();
+        for (ParserNode child : getChildren()) {
+            if (filterClass != null && filterClass.isAssignableFrom(child.getClass())) {
+                children.add((T) child);
+            }
+            if (child.getChildren().size() > 0) {
+                children.addAll(child.getFilteredChildren(filterClass));
+            }
+        }
+        return children;
+    }
+
+    /**
+     * Gets the parent child index.
+     * @return index
+     */
+    protected int getParentChildIndex() {
+        if (optimized) {
+            return parentChildIndex;
+        }
+        if (getParent() != null) {
+            for (int i = 0; i < getParent().getChildren().size(); i++) {
+                if (getParent().getChildren().get(i) == this) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Processes the left sibling nodes.
+     * @return left sibling
+     */
+    protected List<ParserNode> leftSiblings() {
+        int parentChildIndex = getParentChildIndex();
+        if (parentChildIndex > 0) {
+            return getParent().getChildren().subList(0, parentChildIndex);
+        } else {
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Processes the right sibling nodes.
+     * @return right sibling
+     */
+    protected List<ParserNode> rightSiblings() {
+        int parentChildIndex = getParentChildIndex();
+        if (parentChildIndex + 1 < getParent().getChildren().size()) {
+            return getParent().getChildren().subList(parentChildIndex + 1, getParent().getChildren().size());
+        } else {
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Gets the position of the node in the message of its parent, which is
+     * the cursor of {@link #deserializeChildren(de.iisys.libinterface.parser.node.ParserContext, java.lang.Object, java.lang.CharSequence) }
+     * if it is known, otherwise the sum of the lengths of the left siblings.
+     * @param context the parser context
+     * @return length
+     */
+    protected int getPosition(ParserContext context) {
+        int cursor = context.getPosition(this);
+        if (cursor >= 0) {
+            return cursor;
+        }
+
+        if (optimized) {
+            int position = staticOffset;
+            for (ParserNode node = previousVariableNode; node != null; node = node.previousVariableNode) {
+                position += node.getLength(context) + node.staticOffset;
+            }
+            return position;
+        }
+
+        int length = 0;
+        for (ParserNode node : leftSiblings()) {
+            length += node.getLength(context);
+        }
+        return length;
+    }
+
+    /**
+     * Returns {@link #getFollowingNode(java.lang.Class) }
+     * @return {@link #getFollowingNode(java.lang.Class) }
+     */
+    protected ParserNode getFollowingNode() {
+        return getFollowingNode(null);
+    }
+
+    /**
+     * Gets the following right node.
+     * @param skipClass instance of {@link ParserNode}
+     * @return right siblings
+     */
+    protected ParserNode getFollowingNode(Class<? extends ParserNode> skipClass) {
+        if (optimized && skipClass == null) {
+            return followingNode;
+        }
+        List<ParserNode> rightSiblings = rightSiblings();
+        for (int i = 0; i < rightSiblings.size(); i++) {
+            ParserNode rightSibling = rightSiblings.get(i);
+            if (skipClass == null || !skipClass.isAssignableFrom(rightSibling.getClass())) {
+                return rightSibling;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns {@link #getFollowingContent(de.iisys.libinterface.parser.node.ParserContext, java.lang.Class) }
+     * @param context the parser context
+     * @return  {@link #getFollowingContent(de.iisys.libinterface.parser.node.ParserContext, java.lang.Class) }
+     */
+    protected String getFollowingContent(ParserContext context) {
+        return getFollowingContent(context, null);
+    }
+
+    /**
+     * Gets the following content if the following node is not null.
+     * @param context the parser context
+     * @param skipClass instance of {@link ParserNode}
+     * @return content of the following node
+     */
+    protected String getFollowingContent(ParserContext context, Class<? extends ParserNode> skipClass) {
+        if (optimized && skipClass == null && followingContent != null) {
+            return followingContent;
+        }
+        ParserNode followingNode = getFollowingNode(skipClass);
+        return followingNode != null
+                ? followingNode.getContent(context)
+                : null;
+    }
+
+    /**
+     * Returns {@link #getLastPreviousNode(java.lang.Class) }
+     * @return {@link #getLastPreviousNode(java.lang.Class) }
+     */
+    protected ParserNode getLastPreviousNode() {
+        return getLastPreviousNode(null);
+    }
+
+    /**
+     * Gets the last previous child node.
+     * @param skipClass instance of {@link ParserNode}
+     * @return child node
+     */
+    protected ParserNode getLastPreviousNode(Class<? extends ParserNode> skipClass) {
+        if (optimized && skipClass == null) {
+            return lastChild;
+        }
+        for (int i = getChildren().size() - 1; i >= 0; i--) {
+            ParserNode child = getChildren().get(i);
+            if (skipClass == null || !skipClass.isAssignableFrom(child.getClass())) {
+                return child;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns {@link #getLastPreviousContent(de.iisys.libinterface.parser.node.ParserContext, java.lang.Class) }
+     * @param context the parser context
+     * @return {@link #getLastPreviousContent(de.iisys.libinterface.parser.node.ParserContext, java.lang.Class) }
+     */
+    protected String getLastPreviousContent(ParserContext context) {
+        return getLastPreviousContent(context, null);
+    }
+
+    /**
+     * Gets the last previous content if the last previous node is null.
+     * @param context the parser context
+     * @param skipClass instance of {@link ParserNode}
+     * @return content of the last prevois node
+     */
+    protected String getLastPreviousContent(ParserContext context, Class<? extends ParserNode> skipClass) {
+        if (optimized && skipClass == null && lastChildContent != null) {
+            return lastChildContent;
+        }
+        ParserNode lastPreviousNode = getLastPreviousNode(skipClass);
+        return lastPreviousNode != null
+                ? lastPreviousNode.getContent(context)
+                : null;
+    }
+
+    /**
+     * Returns {@link #getEnd(de.iisys.libinterface.parser.node.ParserContext, java.lang.CharSequence, int) }
+     * @param context the parser context
+     * @param message the message
+     * @return {@link #getEnd(de.iisys.libinterface.parser.node.ParserContext, java.lang.CharSequence, int) }
+     */
+    protected int getEnd(ParserContext context, CharSequence message) {
+        return getEnd(context, message, message.length());
+    }
+
+    /**
+     * Returns {@link #getEnd(de.iisys.libinterface.parser.node.ParserContext, java.lang.CharSequence, int, java.lang.String) }
+     * @param context the parser context
+     * @param message the message
+     * @param position position of the message
+     * @return {@link #getEnd(de.iisys.libinterface.parser.node.ParserContext, java.lang.CharSequence, int, java.lang.String) }
+     */
+    protected int getEnd(ParserContext context, CharSequence message, int position) {
+        return getEnd(context, message, position, getFollowingContent(context));
+    }
+
+    /**
+     * Returns {@link #getEnd(de.iisys.libinterface.parser.node.ParserContext, java.lang.CharSequence, int, java.lang.String, boolean) }
+     * @param context the parser context
+     * @param message the message
+     * @param position the position of the message
+     * @param searchFor what will be searched for
+     * @return {@link #getEnd(de.iisys.libinterface.parser.node.ParserContext, java.lang.CharSequence, int, java.lang.String, boolean) }
+     */
+    protected int getEnd(ParserContext context, CharSequence message, int position, String searchFor) {
+        return getEnd(context, message, position, searchFor, true);
+    }
+
+    /**
+     * Returns the end or the position if the end value is over 0.
+     * @param context the parser context
+     * @param message the message
+     * @param position the position of the message
+     * @param searchFor what will be searched for
+     * @param reverseChildSearch whether the child search is reversed or not
+     * @return the position/length of the message
+     */
+    protected int getEnd(ParserContext context, CharSequence message, int position, String searchFor, boolean reverseChildSearch) {
+        if (searchFor != null) {
+            if (searchFor.length() > 0) {
+                int end = getScanner(searchFor).indexOf(message, position);
+                return end >= 0 ? end : position;
+            } else {
+                return position;
+            }
+        } else if (reverseChildSearch && getChildren().size() > 0) {
+            String lastPreviousContent = getLastPreviousContent(context);
+            return getEnd(context, message, position, lastPreviousContent, false) + lastPreviousContent.length();
+        }
+
+        return message.length();
+    }
+
+    /**
+     * Extracts the delimtered message of the given message.
+     * @param context the parser context
+     * @param message the message
+     * @return extracted message
+     */
+    protected CharSequence extractDelimiteredMessage(ParserContext context, CharSequence message) {
+        int position = getPosition(context);
+        return CharSequences.slice(message, position, getEnd(context, message, position));
+    }
+
+    /**
+     * Returns the content of the child node.
+     *
+     * @param context the parser context
+     * @return the content of the child node
+     */
+    public String getContent(ParserContext context) {
+        StringBuilder string = new StringBuilder();
+        for (ParserNode child : getChildren()) {
+            if (!child.isDefined(context)) {
+                break;
+            }
+            string.append(Objects.toString(child.getContent(context), ""));
+        }
+        return string.toString();
+    }
+
+    /**
+     * Returns the length of the children nodes.
+     *
+     * @param context the parser context
+     * @return the length of the children nodes
+     */
+    public int getLength(ParserContext context) {
+        int length = context.getMatchLength(this, context.getPosition(this));
+        if (length >= 0) {
+            return length;
+        }
+
+        length = 0;
+        for (ParserNode child : getChildren()) {
+            length += child.getLength(context);
+        }
+        return length;
+    }
+
+    /**
+     * Serializes the children nodes.
+     * @param context the parser context
+     * @param object the object
+     * @return serialized children nodes
+     */
+    public String serializeChildren(ParserContext context, Object object) {
+        StringBuilder string = new StringBuilder();
+        serializeChildren(context, object, string);
+        return string.toString();
+    }
+
+    /**
+     * Serializes the children nodes into the given string, every child
+     * appends to the same string.
+     * @param context the parser context
+     * @param object the object
+     * @param string the string to append to
+     */
+    public void serializeChildren(ParserContext context, Object object, StringBuilder string) {
+        for (ParserNode child : getChildren()) {
+            child.serialize(context, object, string);
+        }
+    }
+
+    /**
+     * 
+     * Returns {@link #serialize(de.iisys.libinterface.parser.node.ParserContext, java.lang.Object, java.lang.StringBuilder) }
+     * as a string.
+     * @param context the parser context
+     * @param object the object
+     * @return serialized node
+     */
+    public String serialize(ParserContext context, Object object) {
+        StringBuilder string = new StringBuilder();
+        serialize(context, object, string);
+        return string.toString();
+    }
+
+    /**
+     * Serializes the node into the given string, which is shared by all
+     * nodes of a serialization, so the message is written in a single pass
+     * without copying the parts of the children. Nodes that only override
+     * {@link #serialize(de.iisys.libinterface.parser.node.ParserContext, java.lang.Object) }
+     * must override this method too.
+     * @param context the parser context
+     * @param object the object
+     * @param string the string to append to
+     */
+    public void serialize(ParserContext context, Object object, StringBuilder string) {
+        serializeChildren(context, object, string);
+    }
+
+    /**
+     * Deserializes the children nodes in a single pass. A cursor starts at the
+     * beginning of the message and is moved by the length of every child
+     * after it was deserialized, so every child knows its position without
+     * looking at its left siblings again.<br>
+     * The length of the children is kept in the context as the match of this
+     * node at its position, so the length of nested nodes, like nested
+     * optional contents, is computed once per run instead of once for every
+     * node above them.
+     * @param context the parser context
+     * @param object the object
+     * @param message the message
+     * @return deserialized children nodes
+     */
+    public Object deserializeChildren(ParserContext context, Object object, CharSequence message) {
+        context.clearMatch(this);
+
+        List<ParserNode> children = getChildren();
+        int cursor = 0;
+        for (int i = 0; i < children.size(); i++) {
+            ParserNode child = children.get(i);
+            context.setPosition(child, cursor);
+            object = child.deserialize(context, object, message);
+            cursor += child.getLength(context);
+        }
+
+        context.setMatch(this, context.getPosition(this), cursor);
+        return object;
+    }
+
+    /**
+     * Returns {@link #deserializeChildren(de.iisys.libinterface.parser.node.ParserContext, java.lang.Object, java.lang.CharSequence) }
+     *
+     * @param context the parser context
+     * @param object the object
+     * @param message the message
+     * @return {@link #deserializeChildren(de.iisys.libinterface.parser.node.ParserContext, java.lang.Object, java.lang.CharSequence) }
+     */
+    public Object deserialize(ParserContext context, Object object, CharSequence message) {
+        return deserializeChildren(context, object, message);
+    }
+    
+    /**
+     * ToString method for the children nodes.
+     * @return toString for children nodes
+     */
+    @Override
+    public String toString() {
+        StringBuilder string = new StringBuilder();
+        for (int i = 0; i < getChildren().size(); i++) {
+            ParserNode child = getChildren().get(i);
+            string.append("Child ").append(i).append(": ").append(child.getClass().getSimpleName());
+            if (i + 1 < getChildren().size()) {
+                string.append("; ");
+            }
+        }
+        return string.toString();
+    }
+
+}
@@ -0,0 +1,304 @@
+package de.iisys.libinterface.parser.node;
+
+import de.iisys.libinterface.parser.service.CharSequences;
+import de.iisys.libinterface.parser.service.SizeEstimate;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Class that represents a parsed message template as an immutable plan.<br>
+ * Numbers and optimizes all nodes of the given tree, so that every run can
+ * keep its state in its own {@link ParserContext} and only has to compute what
+ * depends on the message. The tree must not be changed or used by
+ * another plan afterwards, then the plan can be used by many threads at the
+ * same time.
+ */
+public class ParserPlan {
+
+    private final String template;
+    private final ParserNode root;
+    private final int size;
+    private final List<ParserNode> nodes;
+
+    private final int minimumLength;
+    private final int[] anchorPositions;
+    private final String[] anchorContents;
+    private final SizeEstimate sizeEstimate;
+    private final String constant;
+
+    /**
+     * Initializes {@link #ParserPlan(java.lang.String, de.iisys.libinterface.parser.node.ParserNode) }
+     * without a template.
+     * @param root the root node
+     */
+    public ParserPlan(ParserNode root) {
+        this(null, root);
+    }
+
+    /**
+     * Initializes {@link #template} and {@link #root} with the given template
+     * and root node, numbers all nodes of the tree and optimizes them with
+     * {@link ParserNode#optimize() }.
+     * @param template the template the tree was parsed from
+     * @param root the root node
+     */
+    public ParserPlan(String template, ParserNode root) {
+        this.template = template;
+        this.root = root;
+        this.size = root.index(0);
+        root.optimize();
+
+        List<ParserNode> allNodes = new ArrayList<>(size);
+        collectNodes(root, allNodes);
+        this.nodes = Collections.unmodifiableList(allNodes);
+
+        List<ParserNode> children = root.getChildren();
+        List<Integer> positions = new ArrayList<>();
+        List<String> contents = new ArrayList<>();
+        int length = 0;
+        int requiredLength = 0;
+        boolean staticPosition = true;
+        for (ParserNode child : children) {
+            if (child instanceof LiteralNode) {
+                String content = ((LiteralNode) child).getContent();
+                if (staticPosition) {
+                    int last = contents.size() - 1;
+                    if (last >= 0 && positions.get(last) + contents.get(last).length() == length) {
+                        contents.set(last, contents.get(last) + content);
+                    } else {
+                        positions.add(length);
+                        contents.add(content);
+                    }
+                }
+                length += content.length();
+                requiredLength = length;
+            } else if (child.getStaticLength() >= 0) {
+                length += child.getStaticLength();
+            } else {
+                staticPosition = false;
+            }
+        }
+        this.minimumLength = requiredLength;
+        this.anchorPositions = new int[positions.size()];
+        for (int i = 0; i < anchorPositions.length; i++) {
+            anchorPositions[i] = positions.get(i);
+        }
+        this.anchorContents = contents.toArray(new String[contents.size()]);
+        this.sizeEstimate = new SizeEstimate(staticPosition ? length : requiredLength);
+        this.constant = createConstant(children);
+    }
+
+    /**
+     * Creates the serialized form of a template that only consists of
+     * literals, which is the same for every message.
+     * @param children the top level nodes
+     * @return the serialized form or null if the template has other nodes
+     */
+    private String createConstant(List<ParserNode> children) {
+        if (nodes.size() != children.size() + 1) {
+            return null;
+        }
+        StringBuilder string = new StringBuilder(sizeEstimate.get());
+        for (ParserNode child : children) {
+            if (!(child instanceof LiteralNode)) {
+                return null;
+            }
+            string.append(((LiteralNode) child).getContent());
+        }
+        return string.toString();
+    }
+
+    /**
+     * Adds the given node and all of its descendants to the list.
+     * @param node the node
+     * @param allNodes the list of nodes
+     */
+    private static void collectNodes(ParserNode node, List<ParserNode> allNodes) {
+        allNodes.add(node);
+        for (ParserNode child : node.getChildren()) {
+            collectNodes(child, allNodes);
+        }
+    }
+
+    public String getTemplate() {
+        return template;
+    }
+
+    public ParserNode getRoot() {
+        return root;
+    }
+
+    /**
+     * Gets the number of nodes of the plan.
+     * @return number of nodes
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Gets all nodes of the plan in the order of their index.
+     * @return unmodifiable list of nodes
+     */
+    public List<ParserNode> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Gets all nodes of the plan of the given class.
+     * @param <T> node type
+     * @param nodeClass the node class
+     * @return list of nodes
+     */
+    public <T extends ParserNode> List<T> getNodes(Class<T> nodeClass) {
+        List<T> filteredNodes = new ArrayList<>();
+        for (ParserNode node : nodes) {
+            if (nodeClass.isInstance(node)) {
+                filteredNodes.add(nodeClass.cast(node));
+            }
+        }
+        return filteredNodes;
+    }
+
+    /**
+     * Gets the length a message needs at least to match the template, which is
+     * the sum of the lengths of the top level literals and the top level nodes
+     * of a fixed length in front of them. Everything of a variable length may
+     * be empty, and characters after the template are not checked, so there is
+     * no maximum length.
+     * @return minimum length of a message
+     */
+    public int getMinimumLength() {
+        return minimumLength;
+    }
+
+    /**
+     * Gets the literal every message has to start with.
+     * @return the leading literal or null if the template does not start with
+     * a literal
+     */
+    public String getLeadingLiteral() {
+        return anchorPositions.length > 0 && anchorPositions[0] == 0 ? anchorContents[0] : null;
+    }
+
+    /**
+     * Returns whether the given message may match the template. It is checked
+     * whether the message has the {@link #getMinimumLength() } and contains
+     * the top level literals that have a fixed position, like control
+     * characters or a header, without deserializing anything. A message that
+     * is not a candidate would fail to deserialize for sure.
+     * @param message the message
+     * @return whether the message may match
+     */
+    public boolean isCandidate(CharSequence message) {
+        if (message.length() < minimumLength) {
+            return false;
+        }
+        for (int i = 0; i < anchorPositions.length; i++) {
+            if (!CharSequences.regionMatches(message, anchorPositions[i], anchorContents[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the estimate of the serialized size, which starts with the size of
+     * the top level nodes of a fixed length and follows the serialized
+     * messages.
+     * @return the size estimate
+     */
+    public SizeEstimate getSizeEstimate() {
+        return sizeEstimate;
+    }
+
+    /**
+     * Gets the serialized form of a template without fields, like a template
+     * of control characters, which is the same for every message and written
+     * without running the nodes.
+     * @return the serialized form or null if the template has fields or other
+     * nodes that depend on the message
+     */
+    public String getConstant() {
+        return constant;
+    }
+
+    /**
+     * Creates a new context for a single run of the plan.
+     * @return new {@link ParserContext}
+     */
+    public ParserContext createContext() {
+        return new ParserContext(this);
+    }
+
+    /**
+     * Serializes the object with a new context.
+     * @param object the object
+     * @return serialized object
+     */
+    public String serialize(Object object) {
+        if (constant != null) {
+            return constant;
+        }
+        StringBuilder string = new StringBuilder(sizeEstimate.get());
+        serialize(object, string);
+        return string.toString();
+    }
+
+    /**
+     * Serializes the object into the given string with a new context, or
+     * appends the {@link #getConstant() } of a template without fields. The
+     * string is presized with the {@link #getSizeEstimate() }, which is
+     * updated with the length of the serialized object.
+     * @param object the object
+     * @param string the string to append to
+     */
+    public void serialize(Object object, StringBuilder string) {
+        if (constant != null) {
+            string.append(constant);
+            return;
+        }
+        int start = string.length();
+        sizeEstimate.presize(string);
+        root.serialize(createContext(), object, string);
+        sizeEstimate.record(string.length() - start);
+    }
+
+    /**
+     * Deserializes the message into the object with a new context.
+     * @param object the object
+     * @param message the message
+     * @return deserialized object
+     */
+    public Object deserialize(Object object, CharSequence message) {
+        return root.deserialize(createContext(), object, message);
+    }
+
+    /**
+     * Deserializes the message in the given characters into the object with
+     * a new context, without copying the characters.
+     * @param object the object
+     * @param message the characters
+     * @param offset the offset of the message
+     * @param length the length of the message
+     * @return deserialized object
+     */
+    public Object deserialize(Object object, char[] message, int offset, int length) {
+        return deserialize(object, CharSequences.wrap(message, offset, length));
+    }
+
+    /**
+     * Deserializes the message from the position to the limit of the buffer,
+     * with one byte per character, into the object with a new context. The
+     * position of the buffer is not changed.
+     * @param object the object
+     * @param message the buffer
+     * @return deserialized object
+     */
+    public Object deserialize(Object object, ByteBuffer message) {
+        return deserialize(object, CharSequences.wrap(message));
+    }
+
+}
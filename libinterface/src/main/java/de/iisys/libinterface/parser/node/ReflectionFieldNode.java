@@ -0,0 +1,453 @@
+package de.iisys.libinterface.parser.node;
+
+import de.iisys.libinterface.message.annotation.Representation;
+import de.iisys.libinterface.message.annotation.Represented;
+import de.iisys.libinterface.parser.service.CharSequences;
+import de.iisys.libinterface.service.CallbackInvoker;
+import de.iisys.libinterface.service.FieldAccessor;
+import de.iisys.libinterface.service.ReflectionService;
+import de.iisys.libinterface.service.Representations;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import org.parboiled.errors.ParserRuntimeException;
+import org.parboiled.errors.ParsingException;
+import de.iisys.libinterface.message.annotation.Callback;
+
+/**
+ * Class to process the reflection field nodes.
+ */
+public class ReflectionFieldNode extends ParserNode {
+
+    private String fieldName;
+    private int fieldLength;
+
+    /**
+     * Initializes {@link #ReflectionFieldNode(java.lang.String, int) }
+     * @param fieldName 
+     */
+    public ReflectionFieldNode(String fieldName) {
+        this(fieldName, -1);
+    }
+
+    /**
+     * Initializes {@link ParserNode}. Also initializes {@link #fieldName}
+     * and {@link #fieldLength} with the given field name and field length.
+     * @param fieldName the field name
+     * @param fieldLength the field length
+     */
+    public ReflectionFieldNode(String fieldName, int fieldLength) {
+        super();
+        this.fieldName = fieldName;
+        this.fieldLength = fieldLength;
+    }
+
+    /**
+     * Initializes the content of the context with null and the length with {@link #fieldLength}.
+     * @param context the parser context
+     */
+    @Override
+    public void reset(ParserContext context) {
+        context.setContent(this, null);
+        context.setLength(this, fieldLength);
+    }
+
+    /**
+     * Returns {@link #getContent(de.iisys.libinterface.parser.node.ParserContext) } if not null
+     * @param context the parser context
+     * @return {@link #getContent(de.iisys.libinterface.parser.node.ParserContext) }
+     */
+    @Override
+    protected boolean isDefined(ParserContext context) {
+        return context.hasContent(this);
+    }
+
+    @Override
+    public String getContent(ParserContext context) {
+        return context.getContent(this);
+    }
+
+    @Override
+    public int getLength(ParserContext context) {
+        return context.getLength(this);
+    }
+
+    public String getFieldName() {
+        return fieldName;
+    }
+
+    public int getFieldLength() {
+        return fieldLength;
+    }
+
+    /**
+     * Returns the {@link #fieldLength}, which is -1 if the length depends on
+     * the message.
+     * @return the field length
+     */
+    @Override
+    protected int getStaticLength() {
+        return fieldLength;
+    }
+
+    /**
+     * Returns true for additional calculations.
+     * @param field the field
+     * @param object object
+     * @return true
+     */
+    protected boolean additionalGetCalculations(Field field, Object object) {
+        return true;
+    }
+
+    /**
+     * Method to process object content.
+     * @param context the parser context
+     * @param accessor the accessor of the field
+     * @param object object
+     * @return content
+     * @throws IllegalArgumentException
+     * @throws IllegalAccessException 
+     */
+    protected Object processObjectContent(ParserContext context, FieldAccessor accessor, Object object) throws IllegalArgumentException, IllegalAccessException {
+        Field field = accessor.getField();
+        if (!invokeCallbackMethod(field, object)) {
+            throw new ParserRuntimeException("Callback method for '" + field.getName() + "' did return false, so something went wrong.");
+        }
+
+        Object content = accessor.get(object);
+
+        // Represented
+        if (content != null && field.isAnnotationPresent(Represented.class)) {
+            content = Representations.represent(content);
+        }
+
+        // ArrayNode
+        ArrayNode arrayNode = findParent(ArrayNode.class);
+        if (arrayNode != null) {
+            content = arrayNode.getCurrentArrayData(context, content);
+        }
+
+        if (additionalGetCalculations(field, object)) {
+            return content;
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Gets the field data with the given fieldname and content.
+     * @param context the parser context
+     * @param fieldName the field name
+     * @param content the content
+     * @return field data
+     */
+    protected String getField(ParserContext context, String fieldName, Object content) {
+        String data = null;
+
+        try {
+            FieldAccessor accessor = FieldAccessor.get(content.getClass(), fieldName);
+            if (accessor.getField().getType().isPrimitive() && isPlainField(accessor.getField())) {
+                StringBuilder string = new StringBuilder(fieldLength >= 0 ? fieldLength : 16);
+                appendPrimitive(accessor, content, string);
+                return string.toString();
+            }
+
+            Object get = processObjectContent(context, accessor, content);
+            if (get != null) {
+                data = get.toString();
+            }
+        } catch (NoSuchFieldException | IllegalArgumentException | IllegalAccessException ex) {
+            throw new ParserRuntimeException("Could not get data of '" + fieldName + "'.", ex);
+        }
+
+        if (data != null && fieldLength >= 0) {
+            if (data.length() < fieldLength) {
+                StringBuilder string = new StringBuilder(fieldLength).append(data);
+                while (string.length() < fieldLength) {
+                    string.append(' ');
+                }
+                data = string.toString();
+            } else if (data.length() > fieldLength) {
+                data = data.substring(0, fieldLength);
+            }
+        }
+
+        return data;
+    }
+    
+    /**
+     * Appends the primitive field of the given content without boxing it,
+     * extended with spaces or cut off to the field length.
+     * @param accessor the accessor of the field
+     * @param content the content
+     * @param string the string to append to
+     */
+    private void appendPrimitive(FieldAccessor accessor, Object content, StringBuilder string) {
+        if (!invokeCallbackMethod(accessor.getField(), content)) {
+            throw new ParserRuntimeException("Callback method for '" + fieldName + "' did return false, so something went wrong.");
+        }
+        accessor.append(content, string, fieldLength);
+    }
+
+    /**
+     * Appends the field to the given string. Primitive fields of this class
+     * are appended without creating a string of the field first, subclasses
+     * append the string of {@link #serialize(de.iisys.libinterface.parser.node.ParserContext, java.lang.Object) }.
+     * @param context the parser context
+     * @param object the object
+     * @param string the string to append to
+     */
+    @Override
+    public void serialize(ParserContext context, Object object, StringBuilder string) {
+        if (getClass() == ReflectionFieldNode.class) {
+            try {
+                FieldAccessor accessor = FieldAccessor.get(object.getClass(), fieldName);
+                if (accessor.getField().getType().isPrimitive() && isPlainField(accessor.getField())) {
+                    appendPrimitive(accessor, object, string);
+                    return;
+                }
+            } catch (NoSuchFieldException | IllegalArgumentException ex) {
+                throw new ParserRuntimeException("Could not get data of '" + fieldName + "'.", ex);
+            }
+        }
+        string.append(serialize(context, object));
+    }
+
+    /**
+     * Serializes the field.
+     * @param context the parser context
+     * @param object the object
+     * @return serialized field data
+     */
+    @Override
+    public String serialize(ParserContext context, Object object) {
+        String data = getField(context, fieldName, object);
+        if (data == null) {
+            throw context.mismatch(() -> "Could not serialize " + fieldName + " because there is no data set for it.");
+        }
+        return data;
+    }
+
+    /**
+     * Returns true for additional set calculations.
+     * @param field the field
+     * @param object the object
+     * @param content the content
+     * @return true
+     */
+    protected boolean additionalSetCalculations(Field field, Object object, Object content) {
+        return true;
+    }
+
+    /**
+     * Method to filter declared fields.
+     * @param field the field
+     * @param object the object
+     * @param content the content
+     * @param declaredFields list of declared fields
+     * @return filtered declared fields
+     */
+    protected List<Field> filterDeclaredFields(Field field, Object object, Object content, List<Field> declaredFields) {
+        List<Field> filteredFieldList = new ArrayList<>(declaredFields.size());
+        for (Field declaredField : declaredFields) {
+            if (declaredField.isAnnotationPresent(Representation.class)) {
+                filteredFieldList.add(declaredField);
+            }
+        }
+        return filteredFieldList;
+    }
+
+    /**
+     * Gets the content of the given representation from the declared fields
+     * that {@link #filterDeclaredFields(java.lang.reflect.Field, java.lang.Object, java.lang.Object, java.util.List) }
+     * keeps. Nodes that do not override the filter use the precomputed
+     * {@link Representations} of the type instead.
+     * @param field the field
+     * @param object the object
+     * @param content the representation
+     * @return the content
+     * @throws IllegalArgumentException
+     * @throws IllegalAccessException 
+     */
+    protected Object filterRepresentation(Field field, Object object, Object content) throws IllegalArgumentException, IllegalAccessException {
+        Object newContent = null;
+        Object defaultContent = null;
+
+        List<Field> declaredFields = ReflectionService.getDeclaredFieldsWithSuperFields(field.getType());
+        List<Field> representationFields = filterDeclaredFields(field, object, content, declaredFields);
+        for (Field representationField : representationFields) {
+            String representation = representationField.getAnnotation(Representation.class).value();
+
+            if (representation.equals(Representation.DEFAULT)) {
+                defaultContent = representationField.get(null);
+            } else if (representation.equals(content)) {
+                newContent = representationField.get(null);
+            }
+        }
+
+        if (newContent != null) {
+            return newContent;
+        } else if (defaultContent != null) {
+            return defaultContent;
+        }
+        return content;
+    }
+
+    /**
+     * Method to process message content.
+     * @param context the parser context
+     * @param accessor the accessor of the field
+     * @param object the object
+     * @param content the object
+     * @throws IllegalArgumentException
+     * @throws IllegalAccessException 
+     */
+    protected void processMessageContent(ParserContext context, FieldAccessor accessor, Object object, Object content) throws IllegalArgumentException, IllegalAccessException {
+        Field field = accessor.getField();
+
+        // Represented
+        if (field.isAnnotationPresent(Represented.class)) {
+            if (getClass() == ReflectionFieldNode.class) {
+                content = Representations.get(field.getType()).parse(content);
+            } else {
+                content = filterRepresentation(field, object, content);
+            }
+        }
+
+        // ArrayNode
+        ArrayNode arrayNode = findParent(ArrayNode.class);
+        if (arrayNode != null) {
+            content = arrayNode.setCurrentArrayData(context, accessor, object, content);
+        }
+
+        if (additionalSetCalculations(field, object, content)) {
+            accessor.set(object, content);
+
+            if (!invokeCallbackMethod(field, object)) {
+                throw new ParserRuntimeException("Callback method for '" + field.getName() + "' did return false, so something went wrong.");
+            }
+        }
+    }
+
+    /**
+     * Invokes the callback method.
+     * @param field the field
+     * @param object the object
+     * @return whether the respone is true of false
+     */
+    protected boolean invokeCallbackMethod(Field field, Object object) {
+        Callback callback = field.getAnnotation(Callback.class);
+        if (callback != null) {
+            try {
+                return CallbackInvoker.get(object.getClass(), callback.value()).invoke(object);
+            } catch (NoSuchMethodException ex) {
+                throw new ParserRuntimeException("Could not call method '" + callback.value() + "'.", ex);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns whether the field is read and written by this node only, so
+     * its value can be converted without a string in between. This is the
+     * case for fields that are not represented and not part of an array, as
+     * long as the node is not a subclass that changes the conversion.
+     * @param field the field
+     * @return whether the field is plain
+     */
+    protected boolean isPlainField(Field field) {
+        return getClass() == ReflectionFieldNode.class
+                && !field.isAnnotationPresent(Represented.class)
+                && findParent(ArrayNode.class) == null;
+    }
+
+    /**
+     * Sets the field with the given field name to the given range of the
+     * message. A plain field is set from the range directly, otherwise the
+     * range is set as string by {@link #setField(de.iisys.libinterface.parser.node.ParserContext, java.lang.String, java.lang.String, java.lang.Object) }.
+     * @param context the parser context
+     * @param fieldName the field name
+     * @param message the message
+     * @param start the start of the content
+     * @param end the end of the content, exclusive
+     * @param newContent the new content
+     * @return the new content
+     */
+    protected Object setField(ParserContext context, String fieldName, CharSequence message, int start, int end, Object newContent) {
+        try {
+            FieldAccessor accessor = FieldAccessor.get(newContent.getClass(), fieldName);
+            if (!isPlainField(accessor.getField())) {
+                return setField(context, fieldName, message.subSequence(start, end).toString(), newContent);
+            }
+
+            accessor.setChars(newContent, message, start, end);
+            if (!invokeCallbackMethod(accessor.getField(), newContent)) {
+                throw new ParserRuntimeException("Callback method for '" + fieldName + "' did return false, so something went wrong.");
+            }
+            return newContent;
+        } catch (NoSuchFieldException | IllegalArgumentException ex) {
+            throw new ParserRuntimeException("Could not set data of '" + fieldName + "' to '" + message.subSequence(start, end) + "'.", ex);
+        }
+    }
+
+    /**
+     * Sets the field with the given field name, content and new content.
+     * @param context the parser context
+     * @param fieldName the field name
+     * @param content the content
+     * @param newContent the new content
+     * @return the new content
+     */
+    protected Object setField(ParserContext context, String fieldName, String content, Object newContent) {
+        if (content != null) {
+            try {
+                FieldAccessor accessor = FieldAccessor.get(newContent.getClass(), fieldName);
+
+                processMessageContent(context, accessor, newContent, content);
+            } catch (NoSuchFieldException | IllegalArgumentException | IllegalAccessException ex) {
+                throw new ParserRuntimeException("Could not set data of '" + fieldName + "' to '" + content + "'.", ex);
+            }
+        }
+
+        return newContent;
+    }
+
+    /**
+     * Deserializes the object.
+     * @param context the parser context
+     * @param object the object
+     * @param message the message
+     * @return deserialized object
+     */
+    @Override
+    public Object deserialize(ParserContext context, Object object, CharSequence message) {
+        int position = getPosition(context);
+
+        int length;
+        if (fieldLength < 0) {
+            int start = position;
+            int end = getEnd(context, message, position);
+
+            length = end - start;
+            position = start;
+        } else {
+            length = fieldLength;
+        }
+        context.setLength(this, length);
+
+        if (message.length() > 0 && length > 0 && position + length <= message.length()) {
+            try {
+                context.setContent(this, CharSequences.slice(message, position, position + length));
+
+                return setField(context, fieldName, message, position, position + length, object);
+            } catch (IndexOutOfBoundsException ex) {
+                throw new ParsingException(ex);
+            }
+        } else {
+            return object;
+        }
+    }
+
+}
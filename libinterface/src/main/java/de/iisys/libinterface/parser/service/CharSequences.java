@@ -0,0 +1,224 @@
+package de.iisys.libinterface.parser.service;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Class with methods for messages that are given as {@link CharSequence}.<br>
+ * Parts of a message are views of the message instead of copies, so a part
+ * only becomes a {@link String} when it is set to a field. Messages in char
+ * arrays and byte buffers are wrapped the same way, a byte buffer with one
+ * byte per character like ASCII or ISO-8859-1.
+ */
+public final class CharSequences {
+
+    private CharSequences() {
+    }
+
+    /**
+     * Wraps the given characters without copying them.
+     * @param message the characters
+     * @param offset the offset of the message
+     * @param length the length of the message
+     * @return the message
+     */
+    public static CharSequence wrap(char[] message, int offset, int length) {
+        return CharBuffer.wrap(message, offset, length).slice();
+    }
+
+    /**
+     * Wraps the bytes from the position to the limit of the given buffer with
+     * one byte per character without copying them. The position of the
+     * buffer is not changed.
+     * @param message the buffer
+     * @return the message
+     */
+    public static CharSequence wrap(ByteBuffer message) {
+        return new ByteSequence(message, message.position(), message.limit());
+    }
+
+    /**
+     * Gets the part of the message from the given start to the given end as a
+     * view of the message.
+     * @param message the message
+     * @param start the start
+     * @param end the end, exclusive
+     * @return the part of the message
+     * @throws IndexOutOfBoundsException if the part is not in the message
+     */
+    public static CharSequence slice(CharSequence message, int start, int end) {
+        if (message instanceof CharBuffer || message instanceof ByteSequence) {
+            return message.subSequence(start, end);
+        }
+        return CharBuffer.wrap(message, start, end);
+    }
+
+    /**
+     * Returns whether the message contains the given literal at the given
+     * position.
+     * @param message the message
+     * @param position the position
+     * @param literal the literal
+     * @return whether the literal matches
+     */
+    public static boolean regionMatches(CharSequence message, int position, String literal) {
+        if (message instanceof String) {
+            return ((String) message).regionMatches(position, literal, 0, literal.length());
+        }
+        if (position < 0 || position + literal.length() > message.length()) {
+            return false;
+        }
+        for (int i = 0; i < literal.length(); i++) {
+            if (message.charAt(position + i) != literal.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the largest character of a charset with one byte per character.
+     * @param charset the charset
+     * @return the largest character of ISO-8859-1 and US-ASCII, otherwise 0
+     */
+    public static char getSingleByteMaximum(Charset charset) {
+        if (charset.equals(StandardCharsets.ISO_8859_1)) {
+            return '\u00FF';
+        } else if (charset.equals(StandardCharsets.US_ASCII)) {
+            return '\u007F';
+        }
+        return 0;
+    }
+
+    /**
+     * Writes the content into the buffer with one byte per character.
+     * Characters above the maximum are replaced by '?', a surrogate pair by a
+     * single one, like by {@link String#getBytes(java.nio.charset.Charset) }.
+     * @param buffer the buffer
+     * @param content the content
+     * @param maximum the largest character of the charset
+     * @throws BufferOverflowException if the content does not fit into the
+     * buffer, the part that fits is written then
+     */
+    public static void put(ByteBuffer buffer, CharSequence content, char maximum) {
+        for (int i = 0; i < content.length(); i++) {
+            char character = content.charAt(i);
+            if (character > maximum) {
+                if (Character.isHighSurrogate(character) && i + 1 < content.length() && Character.isLowSurrogate(content.charAt(i + 1))) {
+                    i++;
+                }
+                character = '?';
+            }
+            buffer.put((byte) character);
+        }
+    }
+
+    /**
+     * Writes the character into the buffer with one byte, a character above
+     * the maximum is replaced by '?'.
+     * @param buffer the buffer
+     * @param character the character
+     * @param maximum the largest character of the charset
+     */
+    public static void put(ByteBuffer buffer, char character, char maximum) {
+        buffer.put((byte) (character > maximum ? '?' : character));
+    }
+
+    /**
+     * Encodes the message into the buffer from its position with the given
+     * charset and moves the position behind the message. Characters that
+     * the charset can not encode are replaced like by {@link String#getBytes(java.nio.charset.Charset) }.
+     * ISO-8859-1 and US-ASCII are written with one byte per character
+     * without an encoder.
+     * @param message the message
+     * @param buffer the buffer
+     * @param charset the charset
+     * @return the number of bytes written
+     * @throws BufferOverflowException if the message does not fit into the
+     * buffer, the position of the buffer is not changed then
+     */
+    public static int encode(CharSequence message, ByteBuffer buffer, Charset charset) {
+        int start = buffer.position();
+        char maximum = getSingleByteMaximum(charset);
+        if (maximum != 0) {
+            if (buffer.remaining() < message.length()) {
+                throw new BufferOverflowException();
+            }
+
+            put(buffer, message, maximum);
+            return buffer.position() - start;
+        }
+
+        CharsetEncoder encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        CoderResult result = encoder.encode(CharBuffer.wrap(message), buffer, true);
+        if (result.isUnderflow()) {
+            result = encoder.flush(buffer);
+        }
+        if (!result.isUnderflow()) {
+            buffer.position(start);
+            try {
+                result.throwException();
+            } catch (CharacterCodingException ex) {
+                throw new IllegalArgumentException("Could not encode message with " + charset.name() + ".", ex);
+            }
+        }
+        return buffer.position() - start;
+    }
+
+    /**
+     * View of the bytes of a buffer with one byte per character.
+     */
+    private static final class ByteSequence implements CharSequence {
+
+        private final ByteBuffer buffer;
+        private final int start;
+        private final int end;
+
+        private ByteSequence(ByteBuffer buffer, int start, int end) {
+            this.buffer = buffer;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= end - start) {
+                throw new IndexOutOfBoundsException("Index " + index + " is not in the message of length " + (end - start) + ".");
+            }
+            return (char) (buffer.get(start + index) & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            if (start < 0 || end > this.end - this.start || start > end) {
+                throw new IndexOutOfBoundsException("Part from " + start + " to " + end + " is not in the message of length " + (this.end - this.start) + ".");
+            }
+            return new ByteSequence(buffer, this.start + start, this.start + end);
+        }
+
+        @Override
+        public String toString() {
+            char[] characters = new char[end - start];
+            for (int i = 0; i < characters.length; i++) {
+                characters[i] = (char) (buffer.get(start + i) & 0xFF);
+            }
+            return new String(characters);
+        }
+
+    }
+
+}
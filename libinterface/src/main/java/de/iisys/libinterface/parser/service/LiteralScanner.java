@@ -0,0 +1,237 @@
+package de.iisys.libinterface.parser.service;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Class that searches a literal, like the terminator of a field, in a
+ * message.<br>
+ * A literal of a single character, like {@code <CR>} or {@code <ETX>}, is
+ * searched character by character. A longer literal is searched with the
+ * Boyer-Moore-Horspool algorithm, which skips ahead by the distance of the
+ * last compared character to the end of the literal. The skip table is
+ * computed once when the scanner is compiled, so scanners should be kept with
+ * the node or step they belong to or be taken from {@link #get(java.lang.String) }.
+ * <br>
+ * Messages can be searched as {@link CharSequence}, char array or byte buffer
+ * with one byte per character. A scanner has no state and can be used by many
+ * threads at the same time.
+ */
+public abstract class LiteralScanner {
+
+    private static final MessageTemplateCache<LiteralScanner> SCANNERS = new MessageTemplateCache<>(LiteralScanner::compile);
+
+    protected final String literal;
+
+    /**
+     * Initializes {@link #literal} with the given literal.
+     * @param literal the literal
+     */
+    protected LiteralScanner(String literal) {
+        this.literal = literal;
+    }
+
+    /**
+     * Compiles the scanner of the given literal, which must not be empty.
+     * @param literal the literal
+     * @return the scanner
+     */
+    public static LiteralScanner compile(String literal) {
+        if (literal.isEmpty()) {
+            throw new IllegalArgumentException("Literal must not be empty.");
+        }
+        return literal.length() == 1 ? new CharacterScanner(literal) : new HorspoolScanner(literal);
+    }
+
+    /**
+     * Gets the shared scanner of the given literal, which is compiled once.
+     * @param literal the literal
+     * @return the scanner
+     */
+    public static LiteralScanner get(String literal) {
+        return SCANNERS.get(literal);
+    }
+
+    public String getLiteral() {
+        return literal;
+    }
+
+    public int length() {
+        return literal.length();
+    }
+
+    /**
+     * Searches the literal in the message from the given position.
+     * @param message the message
+     * @param position the position
+     * @return index of the literal or -1
+     */
+    public int indexOf(String message, int position) {
+        return indexOf((CharSequence) message, position);
+    }
+
+    /**
+     * Searches the literal in the message from the given position.
+     * @param message the message
+     * @param position the position
+     * @return index of the literal or -1
+     */
+    public abstract int indexOf(CharSequence message, int position);
+
+    /**
+     * Searches the literal in the characters from the given position up to
+     * the given end.
+     * @param message the characters
+     * @param position the position
+     * @param end the end, exclusive
+     * @return index of the literal or -1
+     */
+    public abstract int indexOf(char[] message, int position, int end);
+
+    /**
+     * Searches the literal in the bytes of the buffer from the given absolute
+     * position up to the given end, with one byte per character. The position
+     * of the buffer is not changed.
+     * @param message the buffer
+     * @param position the position
+     * @param end the end, exclusive
+     * @return index of the literal or -1
+     */
+    public abstract int indexOf(ByteBuffer message, int position, int end);
+
+    /**
+     * Scanner of a literal with a single character.
+     */
+    protected static class CharacterScanner extends LiteralScanner {
+
+        private final char character;
+
+        protected CharacterScanner(String literal) {
+            super(literal);
+            character = literal.charAt(0);
+        }
+
+        @Override
+        public int indexOf(String message, int position) {
+            return message.indexOf(character, position);
+        }
+
+        @Override
+        public int indexOf(CharSequence message, int position) {
+            if (message instanceof String) {
+                return indexOf((String) message, position);
+            }
+            for (int i = Math.max(position, 0); i < message.length(); i++) {
+                if (message.charAt(i) == character) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public int indexOf(char[] message, int position, int end) {
+            for (int i = Math.max(position, 0); i < end; i++) {
+                if (message[i] == character) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public int indexOf(ByteBuffer message, int position, int end) {
+            for (int i = Math.max(position, 0); i < end; i++) {
+                if ((message.get(i) & 0xFF) == character) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+    }
+
+    /**
+     * Scanner of a literal with more than one character, which uses the
+     * Boyer-Moore-Horspool algorithm. Characters share the entries of the
+     * skip table by their lowest byte, and a shared entry keeps the smallest
+     * skip of its characters, so no occurrence is skipped.
+     */
+    protected static class HorspoolScanner extends LiteralScanner {
+
+        private static final int TABLE_SIZE = 256;
+
+        private final char[] characters;
+        private final int[] skips;
+
+        protected HorspoolScanner(String literal) {
+            super(literal);
+            characters = literal.toCharArray();
+            skips = new int[TABLE_SIZE];
+            for (int i = 0; i < skips.length; i++) {
+                skips[i] = characters.length;
+            }
+            for (int i = 0; i < characters.length - 1; i++) {
+                skips[characters[i] & (TABLE_SIZE - 1)] = characters.length - 1 - i;
+            }
+        }
+
+        @Override
+        public int indexOf(CharSequence message, int position) {
+            int last = characters.length - 1;
+            for (int i = Math.max(position, 0); i + last < message.length();) {
+                char character = message.charAt(i + last);
+                if (character == characters[last]) {
+                    int j = last - 1;
+                    while (j >= 0 && message.charAt(i + j) == characters[j]) {
+                        j--;
+                    }
+                    if (j < 0) {
+                        return i;
+                    }
+                }
+                i += skips[character & (TABLE_SIZE - 1)];
+            }
+            return -1;
+        }
+
+        @Override
+        public int indexOf(char[] message, int position, int end) {
+            int last = characters.length - 1;
+            for (int i = Math.max(position, 0); i + last < end;) {
+                char character = message[i + last];
+                if (character == characters[last]) {
+                    int j = last - 1;
+                    while (j >= 0 && message[i + j] == characters[j]) {
+                        j--;
+                    }
+                    if (j < 0) {
+                        return i;
+                    }
+                }
+                i += skips[character & (TABLE_SIZE - 1)];
+            }
+            return -1;
+        }
+
+        @Override
+        public int indexOf(ByteBuffer message, int position, int end) {
+            int last = characters.length - 1;
+            for (int i = Math.max(position, 0); i + last < end;) {
+                char character = (char) (message.get(i + last) & 0xFF);
+                if (character == characters[last]) {
+                    int j = last - 1;
+                    while (j >= 0 && (message.get(i + j) & 0xFF) == characters[j]) {
+                        j--;
+                    }
+                    if (j < 0) {
+                        return i;
+                    }
+                }
+                i += skips[character & (TABLE_SIZE - 1)];
+            }
+            return -1;
+        }
+
+    }
+
+}
@@ -0,0 +1,125 @@
+package de.iisys.libinterface.parser.service;
+
+import de.iisys.libinterface.message.annotation.MessageTemplate;
+import de.iisys.libinterface.message.interfaces.Message;
+import de.iisys.libinterface.parser.node.ParserPlan;
+import de.iisys.libinterface.service.ReflectionService;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.parboiled.errors.ParsingException;
+
+/**
+ * Class that narrows the candidate classes of a deserialization before any
+ * object is created.<br>
+ * The candidates are grouped by the first character of the leading literal of
+ * their template, and every candidate of the group is checked with
+ * {@link ParserPlan#isCandidate(java.lang.CharSequence) }. A class whose template
+ * can not be known without an instance, because it overrides
+ * {@link Message#getMessageTemplate() }, is abstract or has an invalid
+ * template, is always a candidate, so it fails like before.
+ */
+public class MessageDispatchIndex {
+
+    private final ParserPlan[] plans;
+    private final Map<Character, int[]> candidatesByCharacter;
+    private final int[] otherCandidates;
+
+    /**
+     * Creates the index of the given classes with the plans of the given
+     * template cache.
+     * @param templateCache the template cache
+     * @param classes the candidate classes in their order
+     */
+    public MessageDispatchIndex(MessageTemplateCache<ParserPlan> templateCache, Class<? extends Message>[] classes) {
+        plans = new ParserPlan[classes.length];
+        for (int i = 0; i < classes.length; i++) {
+            plans[i] = getPlan(templateCache, classes[i]);
+        }
+
+        Map<Character, List<Integer>> indicesByCharacter = new HashMap<>();
+        List<Integer> otherIndices = new ArrayList<>();
+        for (int i = 0; i < plans.length; i++) {
+            String leadingLiteral = plans[i] != null ? plans[i].getLeadingLiteral() : null;
+            if (leadingLiteral != null) {
+                indicesByCharacter.computeIfAbsent(leadingLiteral.charAt(0), character -> new ArrayList<>());
+            }
+        }
+        for (int i = 0; i < plans.length; i++) {
+            String leadingLiteral = plans[i] != null ? plans[i].getLeadingLiteral() : null;
+            if (leadingLiteral != null) {
+                indicesByCharacter.get(leadingLiteral.charAt(0)).add(i);
+            } else {
+                otherIndices.add(i);
+                for (List<Integer> indices : indicesByCharacter.values()) {
+                    indices.add(i);
+                }
+            }
+        }
+
+        candidatesByCharacter = new HashMap<>();
+        for (Map.Entry<Character, List<Integer>> entry : indicesByCharacter.entrySet()) {
+            candidatesByCharacter.put(entry.getKey(), toArray(entry.getValue()));
+        }
+        otherCandidates = toArray(otherIndices);
+    }
+
+    private static int[] toArray(List<Integer> indices) {
+        int[] array = new int[indices.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = indices.get(i);
+        }
+        return array;
+    }
+
+    /**
+     * Gets the plan of the template of the given class, if it is known without
+     * an instance of the class.
+     * @param templateCache the template cache
+     * @param clazz the class
+     * @return the plan or null
+     */
+    public static ParserPlan getPlan(MessageTemplateCache<ParserPlan> templateCache, Class<? extends Message> clazz) {
+        if (clazz.isInterface() || Modifier.isAbstract(clazz.getModifiers())
+                || ReflectionService.getClassMetadata(clazz).getMethod("getMessageTemplate") != null) {
+            return null;
+        }
+
+        MessageTemplate messageTemplate = ReflectionService.getAnnotation(clazz, MessageTemplate.class);
+        if (messageTemplate == null) {
+            return null;
+        }
+
+        try {
+            return templateCache.get(messageTemplate.value());
+        } catch (ParsingException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Gets the indices of the classes that may match the given message, in
+     * the order of the classes.
+     * @param message the message
+     * @return indices of the candidates
+     */
+    public int[] getCandidates(CharSequence message) {
+        int[] candidates = message.length() == 0 ? null : candidatesByCharacter.get(message.charAt(0));
+        if (candidates == null) {
+            candidates = otherCandidates;
+        }
+
+        int[] matching = new int[candidates.length];
+        int size = 0;
+        for (int candidate : candidates) {
+            if (plans[candidate] == null || plans[candidate].isCandidate(message)) {
+                matching[size++] = candidate;
+            }
+        }
+        return size == matching.length ? matching : Arrays.copyOf(matching, size);
+    }
+
+}
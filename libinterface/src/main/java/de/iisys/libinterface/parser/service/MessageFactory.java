@@ -0,0 +1,23 @@
+package de.iisys.libinterface.parser.service;
+
+import de.iisys.libinterface.message.interfaces.Message;
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * Factory that creates new instances of a message class for the
+ * deserialization.
+ *
+ * @param <C> message type
+ */
+@FunctionalInterface
+public interface MessageFactory<C extends Message> {
+
+    /**
+     * Creates a new instance with the given constructor arguments.
+     * @param arguments the constructor arguments, null or empty for none
+     * @return new instance
+     * @throws InvocationTargetException if the instance could not be created
+     */
+    C newInstance(Object[] arguments) throws InvocationTargetException;
+
+}
@@ -0,0 +1,247 @@
+package de.iisys.libinterface.parser.service;
+
+import de.iisys.libinterface.message.interfaces.Message;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * Class that caches a {@link MessageFactory} per message class and argument
+ * signature.<br>
+ * Public constructors without arguments become a {@link Supplier} created with
+ * the {@link LambdaMetafactory} where possible, every other constructor is
+ * called through a method handle. A registered factory replaces the
+ * constructors of its class for all arguments. Everything is stored in a
+ * {@link ClassValue}, so the factories do not keep their classes from being
+ * unloaded.
+ */
+public class MessageFactoryCache {
+
+    private final ClassValue<Entry> entries = new ClassValue<Entry>() {
+
+        @Override
+        protected Entry computeValue(Class<?> type) {
+            return new Entry();
+        }
+
+    };
+
+    /**
+     * Registers a factory that creates all instances of the given class.
+     * @param <C> message type
+     * @param clazz the message class
+     * @param factory the factory
+     */
+    public <C extends Message> void register(Class<C> clazz, MessageFactory<? extends C> factory) {
+        entries.get(clazz).registered = factory;
+    }
+
+    /**
+     * Removes the registered factory of the given class, so its constructors
+     * are used again.
+     * @param clazz the message class
+     */
+    public void unregister(Class<? extends Message> clazz) {
+        entries.get(clazz).registered = null;
+    }
+
+    /**
+     * Returns whether a factory is registered for the given class.
+     * @param clazz the message class
+     * @return whether a factory is registered
+     */
+    public boolean isRegistered(Class<? extends Message> clazz) {
+        return entries.get(clazz).registered != null;
+    }
+
+    /**
+     * Gets the factory of the given class for the runtime classes of the
+     * given arguments.
+     * @param <C> message type
+     * @param clazz the message class
+     * @param arguments the constructor arguments, null or empty for none
+     * @return the factory
+     * @throws NoSuchMethodException if there is no public constructor for the
+     * arguments
+     * @throws InstantiationException if the class can not be instantiated
+     * @throws IllegalAccessException if the constructor is not accessible
+     */
+    public <C extends Message> MessageFactory<C> get(Class<C> clazz, Object[] arguments) throws NoSuchMethodException, InstantiationException, IllegalAccessException {
+        Entry entry = entries.get(clazz);
+
+        MessageFactory<?> factory = entry.registered;
+        if (factory != null) {
+            return (MessageFactory<C>) factory;
+        }
+
+        if (arguments == null || arguments.length == 0) {
+            factory = entry.defaultFactory;
+            if (factory == null) {
+                factory = create(clazz, new Class<?>[0]);
+                entry.defaultFactory = factory;
+            }
+            return (MessageFactory<C>) factory;
+        }
+
+        Signature[] signatures = entry.signatures;
+        for (Signature signature : signatures) {
+            if (signature.matches(arguments)) {
+                return (MessageFactory<C>) signature.factory;
+            }
+        }
+
+        Class<?>[] parameterTypes = new Class<?>[arguments.length];
+        for (int i = 0; i < arguments.length; i++) {
+            parameterTypes[i] = arguments[i].getClass();
+        }
+
+        factory = create(clazz, parameterTypes);
+        Signature[] newSignatures = Arrays.copyOf(signatures, signatures.length + 1);
+        newSignatures[signatures.length] = new Signature(parameterTypes, factory);
+        entry.signatures = newSignatures;
+        return (MessageFactory<C>) factory;
+    }
+
+    /**
+     * Creates the factory for the public constructor with the given parameter
+     * types. Like with {@link Class#newInstance() }, the constructor and its
+     * class have to be accessible and unchecked exceptions of a constructor
+     * without parameters are thrown as they are.
+     * @param <C> message type
+     * @param clazz the message class
+     * @param parameterTypes the parameter types
+     * @return the factory
+     * @throws NoSuchMethodException
+     * @throws InstantiationException
+     * @throws IllegalAccessException
+     */
+    protected <C extends Message> MessageFactory<C> create(Class<C> clazz, Class<?>[] parameterTypes) throws NoSuchMethodException, InstantiationException, IllegalAccessException {
+        if (Modifier.isAbstract(clazz.getModifiers())) {
+            throw new InstantiationException("Can not instantiate abstract class " + clazz.getName() + ".");
+        }
+
+        Constructor<C> constructor = clazz.getConstructor(parameterTypes);
+
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        MethodHandle constructorHandle = lookup.unreflectConstructor(constructor);
+
+        if (parameterTypes.length == 0) {
+            Supplier<C> supplier = createSupplier(lookup, constructor, constructorHandle);
+            if (supplier != null) {
+                return arguments -> supplier.get();
+            }
+
+            MethodHandle handle = constructorHandle.asType(MethodType.methodType(Object.class));
+            return arguments -> {
+                try {
+                    Object instance = handle.invokeExact();
+                    return (C) instance;
+                } catch (RuntimeException | Error ex) {
+                    throw ex;
+                } catch (Throwable ex) {
+                    throw new InvocationTargetException(ex);
+                }
+            };
+        }
+
+        MethodHandle spreadHandle = constructorHandle
+                .asSpreader(Object[].class, parameterTypes.length)
+                .asType(MethodType.methodType(Object.class, Object[].class));
+        return arguments -> {
+            try {
+                Object instance = spreadHandle.invokeExact(arguments);
+                return (C) instance;
+            } catch (Throwable ex) {
+                throw new InvocationTargetException(ex);
+            }
+        };
+    }
+
+    /**
+     * Creates a supplier that calls the constructor directly, which is only
+     * possible for public classes and constructors that are visible to this
+     * class.
+     * @param <C> message type
+     * @param lookup the lookup of this class
+     * @param constructor the constructor without arguments
+     * @param constructorHandle handle of the constructor without arguments
+     * @return the supplier or null
+     */
+    protected <C extends Message> Supplier<C> createSupplier(MethodHandles.Lookup lookup, Constructor<C> constructor, MethodHandle constructorHandle) {
+        Class<C> clazz = constructor.getDeclaringClass();
+        if (!Modifier.isPublic(clazz.getModifiers()) || !Modifier.isPublic(constructor.getModifiers()) || !isVisible(clazz)) {
+            return null;
+        }
+
+        try {
+            CallSite callSite = LambdaMetafactory.metafactory(lookup, "get",
+                    MethodType.methodType(Supplier.class),
+                    MethodType.methodType(Object.class),
+                    constructorHandle,
+                    MethodType.methodType(clazz));
+            return (Supplier<C>) callSite.getTarget().invokeExact();
+        } catch (Throwable ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns whether the given class can be loaded by the class loader of
+     * this class, which defines the generated suppliers.
+     * @param clazz the class
+     * @return whether the class is visible
+     */
+    protected boolean isVisible(Class<?> clazz) {
+        try {
+            return Class.forName(clazz.getName(), false, MessageFactoryCache.class.getClassLoader()) == clazz;
+        } catch (ClassNotFoundException | LinkageError ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Factories of a single class.
+     */
+    private static class Entry {
+
+        private volatile MessageFactory<?> registered;
+        private volatile MessageFactory<?> defaultFactory;
+        private volatile Signature[] signatures = new Signature[0];
+
+    }
+
+    /**
+     * Immutable pair of argument classes and factory.
+     */
+    private static class Signature {
+
+        private final Class<?>[] parameterTypes;
+        private final MessageFactory<?> factory;
+
+        private Signature(Class<?>[] parameterTypes, MessageFactory<?> factory) {
+            this.parameterTypes = parameterTypes;
+            this.factory = factory;
+        }
+
+        private boolean matches(Object[] arguments) {
+            if (arguments.length != parameterTypes.length) {
+                return false;
+            }
+            for (int i = 0; i < arguments.length; i++) {
+                if (arguments[i].getClass() != parameterTypes[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+    }
+
+}
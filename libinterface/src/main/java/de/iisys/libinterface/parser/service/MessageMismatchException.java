@@ -0,0 +1,71 @@
+package de.iisys.libinterface.parser.service;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.function.Supplier;
+import org.parboiled.errors.ParsingException;
+
+/**
+ * Exception that signals that a message does not match a template, like a
+ * literal that differs or a field without data.<br>
+ * Mismatches are part of the normal processing of optional contents and of
+ * messages with several possible classes, so this exception has no stack
+ * trace and builds its message only when it is asked for. Where a mismatch is
+ * always caught, like inside of an optional content, the shared
+ * {@link #SIGNAL} is thrown, which only has a general message. A mismatch that
+ * reaches the {@link MessageParserService} is reported as a
+ * {@link ParsingException} with the messages of the mismatches. When the
+ * exception is serialized, its message is built first and serialized as a
+ * string.
+ */
+public class MessageMismatchException extends ParsingException {
+
+    /**
+     * Shared mismatch for mismatches that are always caught.
+     */
+    public static final MessageMismatchException SIGNAL = new MessageMismatchException(() -> "Message does not match.");
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient Supplier<String> messageSupplier;
+    private String message;
+
+    /**
+     * Initializes {@link #messageSupplier} with the given supplier, which is
+     * called once when the message is needed.
+     * @param messageSupplier the supplier of the message
+     */
+    public MessageMismatchException(Supplier<String> messageSupplier) {
+        this.messageSupplier = messageSupplier;
+    }
+
+    @Override
+    public String getMessage() {
+        if (message == null && messageSupplier != null) {
+            message = messageSupplier.get();
+        }
+        return message;
+    }
+
+    /**
+     * Builds the message before the exception is serialized, the supplier
+     * itself is not serialized.
+     * @param out the stream
+     * @throws IOException if the stream fails
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        getMessage();
+        out.defaultWriteObject();
+    }
+
+    /**
+     * Does not fill in the stack trace, a mismatch is not an error of the
+     * code that detects it.
+     * @return this exception
+     */
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+
+}
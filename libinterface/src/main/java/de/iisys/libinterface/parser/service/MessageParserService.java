@@ -0,0 +1,903 @@
+package de.iisys.libinterface.parser.service;
+
+import org.parboiled.Rule;
+import org.parboiled.parserunners.ParseRunner;
+import org.parboiled.support.ParsingResult;
+import de.iisys.libinterface.message.interfaces.ImmutableMessage;
+import de.iisys.libinterface.message.interfaces.Message;
+import de.iisys.libinterface.parser.MessageParser;
+import de.iisys.libinterface.parser.MessageTemplateCompiler;
+import de.iisys.libinterface.parser.codec.CompiledMessageCodec;
+import de.iisys.libinterface.parser.codec.GeneratedMessageCodec;
+import de.iisys.libinterface.parser.codec.MessageCodec;
+import de.iisys.libinterface.parser.codec.MessageCodecFactory;
+import de.iisys.libinterface.parser.codec.MessageSegments;
+import de.iisys.libinterface.parser.node.ParserNode;
+import de.iisys.libinterface.parser.node.ParserPlan;
+import de.iisys.libinterface.parser.node.ReflectionFieldNode;
+import de.iisys.libinterface.service.CallbackInvoker;
+import de.iisys.libinterface.service.ReflectionService;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.parboiled.BaseParser;
+import org.parboiled.Parboiled;
+import org.parboiled.errors.ParseError;
+import org.parboiled.errors.ParserRuntimeException;
+import org.parboiled.errors.ParsingException;
+import org.parboiled.parserunners.ReportingParseRunner;
+import de.iisys.libinterface.message.annotation.Callback;
+
+/**
+ * Class that processes the parsing of the messages.
+ */
+public class MessageParserService {
+
+    private MessageParser parser;
+    private MessageTemplateCompiler templateCompiler;
+    private MessageTemplateCache<ParserPlan> templateCache;
+    private MessageCodecFactory codecFactory;
+    private MessageFactoryCache factoryCache;
+    private final Map<List<Class<? extends Message>>, MessageDispatchIndex> dispatchIndices = new LinkedHashMap<List<Class<? extends Message>>, MessageDispatchIndex>(16, 0.75f, true) {
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<List<Class<? extends Message>>, MessageDispatchIndex> eldest) {
+            return size() > MessageTemplateCache.DEFAULT_MAXIMUM_SIZE;
+        }
+
+    };
+    private boolean generatedCodecs = true;
+    private static final int MAXIMUM_STAGING = 64 * 1024;
+    private static final ThreadLocal<StringBuilder[]> STAGING = new ThreadLocal<StringBuilder[]>() {
+        @Override
+        protected StringBuilder[] initialValue() {
+            return new StringBuilder[]{new StringBuilder()};
+        }
+    };
+
+    private final ClassValue<ParserPlan[]> checkedPlans = new ClassValue<ParserPlan[]>() {
+
+        @Override
+        protected ParserPlan[] computeValue(Class<?> type) {
+            return new ParserPlan[1];
+        }
+
+    };
+
+    /**
+     * Representation of the {@link MessageParserService} as a Object.
+     */
+    public MessageParserService() {
+        this(MessageParser.class);
+    }
+
+    /**
+     * Creates new parsers.
+     * @param clazz instance of the class {@link MessageParser}
+     */
+    public MessageParserService(Class<? extends MessageParser> clazz) {
+        parser = createParser(clazz);
+        templateCache = createTemplateCache();
+        factoryCache = createFactoryCache();
+    }
+
+    /**
+     * Uses the given compiler for the message templates instead of a
+     * parboiled parser, which is not created at all.
+     * @param templateCompiler the template compiler
+     */
+    public MessageParserService(MessageTemplateCompiler templateCompiler) {
+        this.templateCompiler = templateCompiler;
+        templateCache = createTemplateCache();
+        factoryCache = createFactoryCache();
+    }
+
+    /**
+     * Returns parboild parser of the instance of the class.
+     * @param <V> parsernode type
+     * @param <P> baseparser type
+     * @param clazz instance of class
+     * @return parboiled parser of the given instance of the class
+     */
+    protected <V extends ParserNode, P extends BaseParser<V>> P createParser(Class<P> clazz) {
+        return Parboiled.createParser(clazz);
+    }
+
+    /**
+     * Creats a new parboiled parse runner.
+     * @param <V> parsernode type
+     * @param rule parboiled rule
+     * @return returns the parboiled parse runner with the given parboiled rule.
+     */
+    protected <V extends ParserNode> ParseRunner<V> createParseRunner(Rule rule) {
+        return new ReportingParseRunner<>(rule);
+    }
+
+    /**
+     * Creates the cache for the plans of the message templates.
+     * @return template cache that plans with {@link #createPlan(java.lang.String) }
+     */
+    protected MessageTemplateCache<ParserPlan> createTemplateCache() {
+        return new MessageTemplateCache<>(this::createPlan);
+    }
+
+    public MessageTemplateCompiler getTemplateCompiler() {
+        return templateCompiler;
+    }
+
+    public MessageTemplateCache<ParserPlan> getTemplateCache() {
+        return templateCache;
+    }
+
+    /**
+     * Creates the cache for the factories that instantiate the messages.
+     * @return factory cache
+     */
+    protected MessageFactoryCache createFactoryCache() {
+        return new MessageFactoryCache();
+    }
+
+    public MessageFactoryCache getFactoryCache() {
+        return factoryCache;
+    }
+
+    /**
+     * Registers a factory that is used instead of the constructors of the
+     * given class for the deserialization.
+     * @param <C> message type
+     * @param clazz the message class
+     * @param factory the factory
+     */
+    public <C extends Message> void registerFactory(Class<C> clazz, MessageFactory<? extends C> factory) {
+        factoryCache.register(clazz, factory);
+    }
+
+    /**
+     * Removes the registered factory of the given class.
+     * @param clazz the message class
+     */
+    public void unregisterFactory(Class<? extends Message> clazz) {
+        factoryCache.unregister(clazz);
+    }
+
+    /**
+     * Parses the given message template.
+     * @param template the message template
+     * @return parsing result of the template
+     */
+    protected ParsingResult<ParserNode> parse(String template) {
+        ParseRunner<ParserNode> parseRunner = createParseRunner(parser.Parse());
+        return parseRunner.run(template);
+    }
+
+    public MessageCodecFactory getCodecFactory() {
+        return codecFactory;
+    }
+
+    /**
+     * Sets the factory for compiled message codecs, which are used instead of
+     * the plans for all templates the factory can compile. Codecs are disabled
+     * with null, which is the default.
+     * @param codecFactory the codec factory
+     */
+    public void setCodecFactory(MessageCodecFactory codecFactory) {
+        this.codecFactory = codecFactory;
+    }
+
+    public boolean isGeneratedCodecs() {
+        return generatedCodecs;
+    }
+
+    /**
+     * Sets whether codecs generated by the libinterface-processor are used,
+     * which is the default.
+     * @param generatedCodecs whether generated codecs are used
+     */
+    public void setGeneratedCodecs(boolean generatedCodecs) {
+        this.generatedCodecs = generatedCodecs;
+    }
+
+    /**
+     * Gets the generated codec of the given class if there is one and it was
+     * generated from the given template, so the template does not have to be
+     * parsed at all.
+     * @param <C> message type
+     * @param clazz the message class
+     * @param template the message template
+     * @return the generated codec or null if there is none
+     */
+    protected <C extends Message> MessageCodec<C> getGeneratedCodec(Class<C> clazz, String template) {
+        if (generatedCodecs) {
+            GeneratedMessageCodec<C> codec = GeneratedMessageCodec.getCodec(clazz);
+            if (codec != null && codec.getMessageTemplate().equals(template)) {
+                return codec;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the compiled codec of the given class for the given plan from the
+     * {@link #getCodecFactory() }.
+     * @param <C> message type
+     * @param clazz the message class
+     * @param plan the plan of the message template
+     * @return the codec or null if there is none
+     */
+    protected <C extends Message> MessageCodec<C> getCodec(Class<C> clazz, ParserPlan plan) {
+        MessageCodecFactory factory = codecFactory;
+        return factory != null ? factory.getCodec(clazz, plan) : null;
+    }
+
+    /**
+     * Parses the given message template with the template compiler or the
+     * parboiled parser and creates an immutable plan of it.
+     * @param template the message template
+     * @return plan of the template
+     * @throws ParsingException if the template could not be parsed
+     */
+    protected ParserPlan createPlan(String template) {
+        if (templateCompiler != null) {
+            return new ParserPlan(template, templateCompiler.compile(template));
+        }
+
+        ParsingResult<ParserNode> result = parse(template);
+        if (result.hasErrors()) {
+            throw new ParsingException(buildErrorString(result));
+        }
+        return new ParserPlan(template, result.resultValue);
+    }
+
+    /**
+     * Gets the plan of the template of the given message from the
+     * {@link #getTemplateCache() }.
+     * @param message the message
+     * @return plan of the message template
+     */
+    protected ParserPlan getParserPlan(Message message) {
+        return templateCache.get(message);
+    }
+
+    /**
+     * Gets the plan of the template of the given message and checks the
+     * callback methods of its class for the plan.
+     * @param clazz the message class
+     * @param message the message
+     * @return plan of the message template
+     */
+    protected ParserPlan getParserPlan(Class<?> clazz, Message message) {
+        ParserPlan plan = getParserPlan(message);
+        checkCallbacks(clazz, plan);
+        return plan;
+    }
+
+    /**
+     * Resolves the callback methods of the class and of all fields of the plan
+     * once per class and plan, so that a missing callback method is reported
+     * before the first message is processed.
+     * @param clazz the message class
+     * @param plan the plan of the message template
+     * @throws ParserRuntimeException if a callback method does not exist
+     */
+    protected void checkCallbacks(Class<?> clazz, ParserPlan plan) {
+        ParserPlan[] checkedPlan = checkedPlans.get(clazz);
+        if (checkedPlan[0] == plan) {
+            return;
+        }
+
+        String methodName = null;
+        try {
+            Callback callback = ReflectionService.getAnnotation(clazz, Callback.class);
+            if (callback != null) {
+                methodName = callback.value();
+                CallbackInvoker.get(clazz, methodName);
+            }
+
+            for (ReflectionFieldNode node : plan.getNodes(ReflectionFieldNode.class)) {
+                Field field = ReflectionService.getClassMetadata(clazz).getField(node.getFieldName());
+                callback = field != null ? field.getAnnotation(Callback.class) : null;
+                if (callback != null) {
+                    methodName = callback.value();
+                    CallbackInvoker.get(clazz, methodName);
+                }
+            }
+        } catch (NoSuchMethodException ex) {
+            throw new ParserRuntimeException("Could not find callback method '" + methodName + "' of '" + clazz.getName() + "'.", ex);
+        }
+
+        checkedPlan[0] = plan;
+    }
+
+    /**
+     * Builds a error String if the parsing result is a error.
+     * @param <V> parser node type
+     * @param result the parsing result
+     * @return error string
+     */
+    protected <V extends ParserNode> String buildErrorString(ParsingResult<V> result) {
+        StringBuilder errorString = new StringBuilder();
+        for (ParseError parseError : result.parseErrors) {
+            errorString.append(parseError.getClass().getSimpleName())
+                    .append(": ").append('\'').append(parseError.getErrorMessage()).append('\'')
+                    .append(" from ").append(parseError.getStartIndex())
+                    .append(" to ").append(parseError.getEndIndex())
+                    .append(" in ").append('\'').append(parseError.getInputBuffer().extract(0, parseError.getEndIndex())).append('\'').append('\n');
+        }
+        return errorString.toString();
+    }
+
+    /**
+     * Serializes the message. The serialized form of an
+     * {@link ImmutableMessage} is kept by the message and returned as it is.
+     * @param message the message
+     * @return serialized result of the parse
+     */
+    public String serialize(Message message) {
+        if (message instanceof ImmutableMessage) {
+            ImmutableMessage immutableMessage = (ImmutableMessage) message;
+            if (immutableMessage.getSerializedForm() == null) {
+                serialize(message, new StringBuilder());
+            }
+            return immutableMessage.getSerializedForm();
+        }
+        StringBuilder string = new StringBuilder();
+        serialize(message, string);
+        return string.toString();
+    }
+
+    /**
+     * Serializes the message into the given string, all nodes of the template
+     * append to the string in a single pass. If the message can not be
+     * serialized, the string is reset to its length before the message. An
+     * {@link ImmutableMessage} is serialized once and then appended from its
+     * kept form.
+     * @param message the message
+     * @param string the string to append to
+     */
+    public void serialize(Message message, StringBuilder string) {
+        serialize(message, string, null);
+    }
+
+    /**
+     * Serializes the message into the given segments, codecs of linear
+     * templates add their literals as shared buffers and append only the
+     * fields to the string of the segments, other templates append the whole
+     * message to it, like an {@link ImmutableMessage} with its kept form. If
+     * the message can not be serialized, the segments are reset to their
+     * state before the message.
+     * @param message the message
+     * @param segments the segments to add to
+     */
+    public void serialize(Message message, MessageSegments segments) {
+        serialize(message, segments.getString(), segments);
+    }
+
+    private void serialize(Message message, StringBuilder string, MessageSegments segments) {
+        ImmutableMessage immutableMessage = message instanceof ImmutableMessage ? (ImmutableMessage) message : null;
+        if (immutableMessage != null && immutableMessage.getSerializedForm() != null) {
+            string.append(immutableMessage.getSerializedForm());
+            return;
+        }
+
+        Class<Message> clazz = (Class<Message>) message.getClass();
+        MessageCodec<Message> codec = getGeneratedCodec(clazz, message.getMessageTemplate());
+        ParserPlan plan = codec == null ? getParserPlan(clazz, message) : null;
+        if (!invokeCallbackMethod(clazz, message)) {
+            throw new ParserRuntimeException("Callback method for '" + clazz.getName() + "' did return false, so something went wrong.");
+        }
+
+        if (codec == null) {
+            codec = getCodec(clazz, plan);
+        }
+        int start = string.length();
+        int size = segments != null ? segments.getSize() : 0;
+        try {
+            if (codec != null && segments != null && immutableMessage == null) {
+                codec.serialize(message, segments);
+            } else if (codec != null) {
+                codec.serialize(message, string);
+            } else {
+                plan.serialize(message, string);
+            }
+        } catch (RuntimeException ex) {
+            if (segments != null) {
+                segments.reset(size, start);
+            } else {
+                string.setLength(start);
+            }
+            if (ex instanceof MessageMismatchException) {
+                throw new ParsingException(ex.getMessage());
+            }
+            throw ex;
+        }
+        if (immutableMessage != null) {
+            immutableMessage.setSerializedForm(string.substring(start));
+        }
+    }
+
+    /**
+     * Serializes the message into the given appendable. A
+     * {@link StringBuilder} is appended to directly, other appendables get
+     * the whole message at once from a builder reused by the thread, so
+     * nothing is written if the message can not be serialized.
+     * @param message the message
+     * @param appendable the appendable
+     * @throws IOException if the appendable fails
+     */
+    public void serialize(Message message, Appendable appendable) throws IOException {
+        if (appendable instanceof StringBuilder) {
+            serialize(message, (StringBuilder) appendable);
+            return;
+        }
+
+        StringBuilder string = takeStaging();
+        try {
+            serialize(message, string);
+            appendable.append(string);
+        } finally {
+            releaseStaging(string);
+        }
+    }
+
+    /**
+     * Serializes the message into the buffer from its position with the given
+     * charset. Generated codecs of templates without an ecc write ISO-8859-1
+     * and US-ASCII straight into the buffer, other messages and charsets are
+     * serialized into a builder reused by the thread and encoded with
+     * {@link CharSequences#encode(java.lang.CharSequence, java.nio.ByteBuffer, java.nio.charset.Charset) }.
+     * If the message can not be serialized, the position of the buffer is not
+     * changed.
+     * @param message the message
+     * @param buffer the buffer
+     * @param charset the charset
+     * @return the number of bytes written
+     * @throws java.nio.BufferOverflowException if the message does not fit
+     * into the buffer
+     */
+    public int serialize(Message message, ByteBuffer buffer, Charset charset) {
+        if (message instanceof ImmutableMessage) {
+            return CharSequences.encode(serialize(message), buffer, charset);
+        }
+
+        if (CharSequences.getSingleByteMaximum(charset) != 0) {
+            Class<Message> clazz = (Class<Message>) message.getClass();
+            MessageCodec<Message> codec = getGeneratedCodec(clazz, message.getMessageTemplate());
+            if (codec == null) {
+                codec = getCodec(clazz, getParserPlan(clazz, message));
+            }
+            if (codec instanceof CompiledMessageCodec && ((CompiledMessageCodec<Message>) codec).isEncodable()) {
+                if (!invokeCallbackMethod(clazz, message)) {
+                    throw new ParserRuntimeException("Callback method for '" + clazz.getName() + "' did return false, so something went wrong.");
+                }
+                try {
+                    return ((CompiledMessageCodec<Message>) codec).serialize(message, buffer, charset);
+                } catch (MessageMismatchException ex) {
+                    throw new ParsingException(ex.getMessage());
+                }
+            }
+        }
+
+        StringBuilder string = takeStaging();
+        try {
+            serialize(message, string);
+            return CharSequences.encode(string, buffer, charset);
+        } finally {
+            releaseStaging(string);
+        }
+    }
+
+    private static StringBuilder takeStaging() {
+        StringBuilder[] holder = STAGING.get();
+        StringBuilder string = holder[0];
+        if (string == null) {
+            return new StringBuilder();
+        }
+        holder[0] = null;
+        return string;
+    }
+
+    private static void releaseStaging(StringBuilder string) {
+        if (string.capacity() <= MAXIMUM_STAGING) {
+            string.setLength(0);
+            STAGING.get()[0] = string;
+        }
+    }
+
+    /**
+     * Returns a new instance of the class, created by the registered factory or
+     * the cached constructor for the runtime classes of the given arguments.
+     * @param <C> message type
+     * @param clazz instance of the class
+     * @param constructorArguments the arguments of the constructor
+     * @return new instance of the class
+     * @throws InstantiationException
+     * @throws IllegalAccessException
+     * @throws NoSuchMethodException
+     * @throws IllegalArgumentException
+     * @throws InvocationTargetException 
+     */
+    protected <C extends Message> C instantiate(Class<C> clazz, Object... constructorArguments) throws InstantiationException, IllegalAccessException, NoSuchMethodException, IllegalArgumentException, InvocationTargetException {
+        return factoryCache.get(clazz, constructorArguments).newInstance(constructorArguments);
+    }
+
+    /**
+     * Deserializes the message.
+     * @param <C> message type
+     * @param message the message
+     * @param clazz instance of the class
+     * @return deserialized message
+     */
+    public <C extends Message> C deserialize(CharSequence message, Class<C> clazz) {
+        return deserialize(message, clazz, (Object[]) null);
+    }
+
+    /**
+     * Deserializes the message like
+     * {@link #deserialize(java.lang.CharSequence, java.lang.Class) }.
+     * @param <C> message type
+     * @param message the message
+     * @param clazz instance of the class
+     * @return deserialized message
+     */
+    public <C extends Message> C deserialize(String message, Class<C> clazz) {
+        return deserialize((CharSequence) message, clazz);
+    }
+
+    /**
+     * Deserializes with the given message, instance of the class, and arguments objects array.
+     * @param <C> message type
+     * @param message the message
+     * @param clazz instance of the class
+     * @param arguments the arguments
+     * @return deserialized message
+     */
+    public <C extends Message> C deserialize(CharSequence message, Class<C> clazz, Object[] arguments) {
+        return (C) deserialize(message, new Class[]{clazz}, new Object[][]{arguments});
+    }
+
+    /**
+     * Deserializes the message like
+     * {@link #deserialize(java.lang.CharSequence, java.lang.Class, java.lang.Object[]) }.
+     * @param <C> message type
+     * @param message the message
+     * @param clazz instance of the class
+     * @param arguments the arguments
+     * @return deserialized message
+     */
+    public <C extends Message> C deserialize(String message, Class<C> clazz, Object[] arguments) {
+        return deserialize((CharSequence) message, clazz, arguments);
+    }
+
+    /**
+     * Deserializes the message with the given message and instances of {@link Message}
+     * @param message the message
+     * @param classes instances of {@link Message}
+     * @return 
+     */
+    public Message deserialize(CharSequence message, Class<? extends Message>... classes) {
+        return deserialize(message, classes, (Object[][]) null);
+    }
+
+    /**
+     * Deserializes the message like
+     * {@link #deserialize(java.lang.CharSequence, java.lang.Class...) }.
+     * @param message the message
+     * @param classes instances of {@link Message}
+     * @return deserialized message
+     */
+    public Message deserialize(String message, Class<? extends Message>... classes) {
+        return deserialize((CharSequence) message, classes);
+    }
+
+    /**
+     * Deserializes the message in the given characters without copying them.
+     * @param message the characters
+     * @param offset the offset of the message
+     * @param length the length of the message
+     * @param classes instances of {@link Message}
+     * @return deserialized message
+     */
+    public Message deserialize(char[] message, int offset, int length, Class<? extends Message>... classes) {
+        return deserialize(CharSequences.wrap(message, offset, length), classes);
+    }
+
+    /**
+     * Deserializes the message from the position to the limit of the buffer,
+     * with one byte per character like ASCII, without copying it. The
+     * position of the buffer is not changed.
+     * @param message the buffer
+     * @param classes instances of {@link Message}
+     * @return deserialized message
+     */
+    public Message deserialize(ByteBuffer message, Class<? extends Message>... classes) {
+        return deserialize(CharSequences.wrap(message), classes);
+    }
+
+    /**
+     * Gets the dispatch index of the given classes. Like the templates, only
+     * the indices of the {@link MessageTemplateCache#DEFAULT_MAXIMUM_SIZE}
+     * most recently used combinations of classes are kept, so combinations
+     * that are built dynamically do not pile up and keep their classes from
+     * being unloaded. Callers with many combinations should keep a
+     * {@link #createMessageSet(java.lang.Class...) } for each of them.
+     * @param classes the classes
+     * @return dispatch index of the classes
+     */
+    protected MessageDispatchIndex getDispatchIndex(Class<? extends Message>[] classes) {
+        MessageDispatchIndex dispatchIndex;
+        synchronized (dispatchIndices) {
+            dispatchIndex = dispatchIndices.get(Arrays.asList(classes));
+        }
+
+        if (dispatchIndex == null) {
+            dispatchIndex = new MessageDispatchIndex(templateCache, classes);
+
+            synchronized (dispatchIndices) {
+                MessageDispatchIndex existing = dispatchIndices.putIfAbsent(Arrays.asList(classes.clone()), dispatchIndex);
+                if (existing != null) {
+                    dispatchIndex = existing;
+                }
+            }
+        }
+        return dispatchIndex;
+    }
+
+    /**
+     * Creates a {@link MessageSet} of the given classes, which deserializes
+     * like {@link #deserialize(java.lang.CharSequence, java.lang.Class[]) } with a
+     * single pass over the message for the templates it can merge.
+     * @param classes the classes in the order they are tried
+     * @return the message set
+     */
+    public MessageSet createMessageSet(Class<? extends Message>... classes) {
+        return new MessageSet(this, classes);
+    }
+
+    /**
+     * Deserializes the message with the given message, instances of {@link  Message} and the object arrays
+     * of the arguments of the constructor. Catches the errors in the processing.<br>
+     * Classes that can not match the message according to the
+     * {@link #getDispatchIndex(java.lang.Class[]) } are not instantiated,
+     * unless a factory is registered for them.
+     * @param message the message
+     * @param classes instances of {@link Message}
+     * @param constructorArguments arguments of the constructor
+     * @return object
+     */
+    public Message deserialize(CharSequence message, Class<? extends Message>[] classes, Object[][] constructorArguments) {
+        ParsingException[] errors = new ParsingException[classes.length];
+
+        int[] candidates = getDispatchIndex(classes).getCandidates(message);
+        int nextCandidate = 0;
+        for (int i = 0; i < classes.length; i++) {
+            Class<? extends Message> clazz = classes[i];
+            Object[] arguments = constructorArguments != null && constructorArguments[i] != null ? constructorArguments[i] : null;
+
+            if (nextCandidate < candidates.length && candidates[nextCandidate] == i) {
+                nextCandidate++;
+            } else if (!factoryCache.isRegistered(clazz)) {
+                continue;
+            }
+
+            try {
+                return deserializeCandidate(message, clazz, arguments);
+            } catch (ParsingException ex) {
+                errors[i] = ex;
+            }
+        }
+
+        throw buildMismatch(message, classes, constructorArguments, errors);
+    }
+
+    /**
+     * Deserializes the message like
+     * {@link #deserialize(java.lang.CharSequence, java.lang.Class[], java.lang.Object[][]) }.
+     * @param message the message
+     * @param classes instances of {@link Message}
+     * @param constructorArguments arguments of the constructor
+     * @return object
+     */
+    public Message deserialize(String message, Class<? extends Message>[] classes, Object[][] constructorArguments) {
+        return deserialize((CharSequence) message, classes, constructorArguments);
+    }
+
+    /**
+     * Deserializes the message like
+     * {@link #deserialize(java.lang.CharSequence, java.lang.Class[], java.lang.Object[][]) },
+     * but tries the candidate classes concurrently on the given executor.<br>
+     * The result of a class is only used when every class before it did not
+     * match, so the declared order of the classes still decides when more
+     * than one class matches. As soon as a class matched, the classes after
+     * it can not be used anymore, so they are cancelled if they did not start
+     * yet and otherwise stop before they instantiate their object or invoke a
+     * callback. A bounded executor or a
+     * {@link java.util.concurrent.ForkJoinPool} limits the number of threads
+     * that are used for a single message.
+     * @param message the message
+     * @param classes instances of {@link Message}
+     * @param constructorArguments arguments of the constructor
+     * @param executor the executor for the candidates
+     * @return object
+     */
+    public Message deserialize(CharSequence message, Class<? extends Message>[] classes, Object[][] constructorArguments, Executor executor) {
+        ParsingException[] errors = new ParsingException[classes.length];
+
+        int[] candidates = getDispatchIndex(classes).getCandidates(message);
+        AtomicInteger winner = new AtomicInteger(classes.length);
+        List<CompletableFuture<Message>> futures = new ArrayList<>(classes.length);
+        int nextCandidate = 0;
+        for (int i = 0; i < classes.length; i++) {
+            Class<? extends Message> clazz = classes[i];
+            Object[] arguments = constructorArguments != null && constructorArguments[i] != null ? constructorArguments[i] : null;
+
+            if (nextCandidate < candidates.length && candidates[nextCandidate] == i) {
+                nextCandidate++;
+            } else if (!factoryCache.isRegistered(clazz)) {
+                futures.add(null);
+                continue;
+            }
+            int index = i;
+            futures.add(CompletableFuture.supplyAsync(() -> deserializeCandidate(message, clazz, arguments, index, winner), executor));
+        }
+
+        try {
+            for (int i = 0; i < classes.length; i++) {
+                CompletableFuture<Message> future = futures.get(i);
+                if (future == null) {
+                    continue;
+                }
+
+                try {
+                    return future.join();
+                } catch (CompletionException ex) {
+                    if (ex.getCause() instanceof ParsingException) {
+                        errors[i] = (ParsingException) ex.getCause();
+                    } else if (ex.getCause() instanceof RuntimeException) {
+                        throw (RuntimeException) ex.getCause();
+                    } else if (ex.getCause() instanceof Error) {
+                        throw (Error) ex.getCause();
+                    } else {
+                        throw ex;
+                    }
+                }
+            }
+        } finally {
+            for (CompletableFuture<Message> future : futures) {
+                if (future != null) {
+                    future.cancel(false);
+                }
+            }
+        }
+
+        throw buildMismatch(message, classes, constructorArguments, errors);
+    }
+
+    /**
+     * Builds the exception for a message that none of the given classes
+     * matched, with the message of the error of every class. The messages of
+     * the errors are only built here, so classes that do not match cost no
+     * message while another class still matches. Classes that were skipped,
+     * because they can not match the message according to the dispatch
+     * index, are tried now, so their error is the same as if every class had
+     * been tried.
+     * @param message the message
+     * @param classes the classes
+     * @param constructorArguments arguments of the constructor
+     * @param errors the errors of the classes, null for classes that were
+     * skipped
+     * @return the exception
+     */
+    protected ParsingException buildMismatch(CharSequence message, Class<? extends Message>[] classes, Object[][] constructorArguments, ParsingException[] errors) {
+        StringBuilder errorString = new StringBuilder();
+        for (int i = 0; i < classes.length; i++) {
+            ParsingException error = errors[i];
+            if (error == null) {
+                Object[] arguments = constructorArguments != null && constructorArguments[i] != null ? constructorArguments[i] : null;
+                try {
+                    deserializeCandidate(message, classes[i], arguments);
+                } catch (ParsingException ex) {
+                    error = ex;
+                }
+            }
+
+            if (error != null) {
+                errorString.append(error.toString());
+            } else {
+                errorString.append(ParsingException.class.getName()).append(": Message does not match the template of '").append(classes[i].getName()).append("'.");
+            }
+            errorString.append(System.lineSeparator());
+        }
+        return new ParsingException(errorString.toString());
+    }
+
+    /**
+     * Deserializes the message into a new instance of the given class, which
+     * is tried concurrently with other classes. The class stops before it
+     * instantiates its object and before every callback as soon as a class
+     * before it matched, so callbacks are never invoked on objects that are
+     * discarded for sure. When the class matches, it becomes the winner for
+     * the classes after it.
+     * @param message the message
+     * @param clazz the class
+     * @param arguments arguments of the constructor or null
+     * @param index the index of the class
+     * @param winner the index of the first class that matched so far
+     * @return object
+     * @throws ParsingException if the message does not match the template of the class
+     * @throws CancellationException if a class before it matched
+     */
+    protected Message deserializeCandidate(CharSequence message, Class<? extends Message> clazz, Object[] arguments, int index, AtomicInteger winner) {
+        if (winner.get() < index) {
+            throw new CancellationException("Class '" + clazz.getName() + "' was not tried, because a class before it matched.");
+        }
+
+        Message object = CallbackInvoker.guard(() -> winner.get() > index, () -> deserializeCandidate(message, clazz, arguments));
+        winner.accumulateAndGet(index, Math::min);
+        return object;
+    }
+
+    /**
+     * Deserializes the message into a new instance of the given class.
+     * @param message the message
+     * @param clazz the class
+     * @param arguments arguments of the constructor or null
+     * @return object
+     * @throws ParsingException if the message does not match the template of the class
+     */
+    protected Message deserializeCandidate(CharSequence message, Class<? extends Message> clazz, Object[] arguments) {
+        try {
+            Message object = instantiate(clazz, arguments);
+
+            Class<Message> objectClass = (Class<Message>) object.getClass();
+            MessageCodec<Message> codec = getGeneratedCodec(objectClass, object.getMessageTemplate());
+            ParserPlan plan = null;
+            if (codec == null) {
+                plan = getParserPlan(objectClass, object);
+                codec = getCodec(objectClass, plan);
+            }
+            if (codec != null) {
+                object = codec.deserialize(message, object);
+            } else {
+                object = (Message) plan.deserialize(object, message);
+            }
+            if (!invokeCallbackMethod(clazz, object)) {
+                throw new ParserRuntimeException("Callback method for '" + clazz.getName() + "' did return false, so something went wrong.");
+            }
+            return object;
+        } catch (NoSuchMethodException | IllegalArgumentException | InvocationTargetException | InstantiationException | IllegalAccessException ex) {
+            throw new RuntimeException("Given class " + clazz.getName() + " must define an accessible constructor.", ex);
+        }
+    }
+
+    /**
+     * Invokes the callback method.
+     * @param clazz instance of {@link Message}
+     * @param object object
+     * @return true
+     */
+    protected boolean invokeCallbackMethod(Class<? extends Message> clazz, Object object) {
+        Callback callback = ReflectionService.getAnnotation(clazz, Callback.class);
+        if (callback != null) {
+            try {
+                return CallbackInvoker.get(clazz, callback.value()).invoke(object);
+            } catch (NoSuchMethodException ex) {
+                throw new ParserRuntimeException("Could not call method '" + callback.value() + "'.", ex);
+            }
+        }
+
+        return true;
+    }
+
+}
@@ -0,0 +1,326 @@
+package de.iisys.libinterface.parser.service;
+
+import de.iisys.libinterface.message.interfaces.Message;
+import de.iisys.libinterface.parser.codec.LinearMessageCodec;
+import de.iisys.libinterface.parser.codec.MessageCodecFactory;
+import de.iisys.libinterface.parser.node.ParserPlan;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import org.parboiled.errors.ParserRuntimeException;
+import org.parboiled.errors.ParsingException;
+
+/**
+ * Class that deserializes messages of a fixed set of message classes.<br>
+ * The templates that can be compiled to a {@link LinearMessageCodec} are
+ * merged into a single automaton, in which templates share the states of
+ * their common beginning, like a control character and a common header. A
+ * message is walked once through the automaton, which finds the first class
+ * of the set that matches and the positions and lengths of its fields at the
+ * same time, so only that class is instantiated and its fields are read
+ * without searching the message again.<br>
+ * Every other class of the set is deserialized by the
+ * {@link MessageParserService} when it is its turn, so the result is the one
+ * of {@link MessageParserService#deserialize(java.lang.CharSequence, java.lang.Class[], java.lang.Object[][]) }
+ * for the same classes. A message set can be used by many threads at the
+ * same time.
+ */
+public class MessageSet {
+
+    private final MessageParserService messageParserService;
+    private final Class<? extends Message>[] classes;
+    private final LinearMessageCodec<Message>[] codecs;
+    private final State start;
+    private int fieldCount;
+
+    /**
+     * Compiles the automaton of the templates of the given classes.
+     * @param messageParserService the service for the other classes
+     * @param classes the classes in the order they are tried
+     */
+    public MessageSet(MessageParserService messageParserService, Class<? extends Message>... classes) {
+        this.messageParserService = messageParserService;
+        this.classes = classes.clone();
+        this.codecs = new LinearMessageCodec[classes.length];
+        this.start = new State();
+
+        MessageCodecFactory codecFactory = new MessageCodecFactory();
+        for (int i = 0; i < classes.length; i++) {
+            Class<Message> clazz = (Class<Message>) classes[i];
+            ParserPlan plan = MessageDispatchIndex.getPlan(messageParserService.getTemplateCache(), clazz);
+            LinearMessageCodec<Message> codec = plan != null ? codecFactory.createLinearCodec(clazz, plan) : null;
+            if (codec != null && !messageParserService.getFactoryCache().isRegistered(clazz)) {
+                codecs[i] = codec;
+                add(i, codec);
+            }
+        }
+        start.sort();
+    }
+
+    /**
+     * Adds the steps of the codec of the class with the given index to the
+     * automaton.
+     * @param index index of the class
+     * @param codec the codec of the class
+     */
+    private void add(int index, LinearMessageCodec<Message> codec) {
+        State state = start;
+        int fields = 0;
+        for (LinearMessageCodec.Step step : codec.getSteps()) {
+            if (step instanceof LinearMessageCodec.LiteralStep) {
+                String literal = ((LinearMessageCodec.LiteralStep) step).getLiteral();
+                while (!literal.isEmpty()) {
+                    Transition transition = state.getLiteralTransition(literal.charAt(0));
+                    if (transition == null) {
+                        transition = new Transition(literal, null, new State());
+                        state.transitions.add(transition);
+                    }
+
+                    int common = commonLength(transition.literal, literal);
+                    if (common < transition.literal.length()) {
+                        State middle = new State();
+                        middle.transitions.add(new Transition(transition.literal.substring(common), null, transition.target));
+                        transition.literal = transition.literal.substring(0, common);
+                        transition.target = middle;
+                    }
+                    state = transition.target;
+                    literal = literal.substring(common);
+                }
+            } else {
+                LinearMessageCodec.FieldStep fieldStep = (LinearMessageCodec.FieldStep) step;
+                Transition transition = state.getFieldTransition(fieldStep);
+                if (transition == null) {
+                    transition = new Transition(null, fieldStep, new State());
+                    state.transitions.add(transition);
+                }
+                state = transition.target;
+                fields++;
+            }
+        }
+
+        if (state.classIndex < 0) {
+            state.classIndex = index;
+        }
+        fieldCount = Math.max(fieldCount, fields);
+    }
+
+    private static int commonLength(String first, String second) {
+        int length = Math.min(first.length(), second.length());
+        for (int i = 0; i < length; i++) {
+            if (first.charAt(i) != second.charAt(i)) {
+                return i;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Gets the classes of the set in the order they are tried.
+     * @return the classes
+     */
+    public List<Class<? extends Message>> getClasses() {
+        return Arrays.asList(classes.clone());
+    }
+
+    /**
+     * Returns whether the class with the given index is part of the automaton.
+     * @param index index of the class
+     * @return whether the class is matched by the automaton
+     */
+    public boolean isMerged(int index) {
+        return codecs[index] != null;
+    }
+
+    /**
+     * Deserializes the message into the first class of the set that matches.
+     * @param message the message
+     * @return deserialized message
+     */
+    public Message deserialize(CharSequence message) {
+        return deserialize(message, null);
+    }
+
+    /**
+     * Deserializes the message into the first class of the set that matches,
+     * with the given arguments of the constructors of the classes.
+     * @param message the message
+     * @param constructorArguments arguments of the constructors or null
+     * @return deserialized message
+     */
+    public Message deserialize(CharSequence message, Object[][] constructorArguments) {
+        Match match = new Match(fieldCount);
+        match(start, message, 0, match, 0);
+
+        ParsingException[] errors = new ParsingException[classes.length];
+        for (int i = 0; i < classes.length; i++) {
+            Object[] arguments = constructorArguments != null && constructorArguments[i] != null ? constructorArguments[i] : null;
+
+            if (i == match.classIndex) {
+                return read(i, message, arguments, match);
+            } else if (codecs[i] == null) {
+                try {
+                    return messageParserService.deserializeCandidate(message, classes[i], arguments);
+                } catch (ParsingException ex) {
+                    errors[i] = ex;
+                }
+            }
+        }
+
+        StringBuilder errorString = new StringBuilder();
+        for (ParsingException error : errors) {
+            if (error != null) {
+                errorString.append(error.toString()).append(System.lineSeparator());
+            }
+        }
+        throw new ParsingException("Message does not match any template of the message set." + System.lineSeparator() + errorString);
+    }
+
+    /**
+     * Walks the automaton from the given state and position and keeps the
+     * match of the class with the lowest index. Transitions whose states only
+     * lead to classes of a higher index than the current match are skipped.
+     * @param state the state
+     * @param message the message
+     * @param position the position in the message
+     * @param match the match
+     * @param field the number of fields before the state
+     */
+    private void match(State state, CharSequence message, int position, Match match, int field) {
+        if (state.classIndex >= 0 && state.classIndex < match.classIndex) {
+            match.classIndex = state.classIndex;
+            System.arraycopy(match.currentPositions, 0, match.positions, 0, field);
+            System.arraycopy(match.currentLengths, 0, match.lengths, 0, field);
+        }
+
+        for (Transition transition : state.transitions) {
+            if (transition.target.minimumClassIndex >= match.classIndex) {
+                break;
+            }
+
+            if (transition.literal != null) {
+                if (CharSequences.regionMatches(message, position, transition.literal)) {
+                    match(transition.target, message, position + transition.literal.length(), match, field);
+                }
+            } else {
+                int length = transition.fieldStep.getLength(message, position);
+                match.currentPositions[field] = position;
+                match.currentLengths[field] = length;
+                match(transition.target, message, position + length, match, field + 1);
+            }
+        }
+    }
+
+    /**
+     * Instantiates the class with the given index and reads its fields at the
+     * positions of the match.
+     * @param index index of the class
+     * @param message the message
+     * @param arguments arguments of the constructor or null
+     * @param match the match
+     * @return deserialized message
+     */
+    private Message read(int index, CharSequence message, Object[] arguments, Match match) {
+        Class<? extends Message> clazz = classes[index];
+        try {
+            Message object = messageParserService.instantiate(clazz, arguments);
+            if (object.getClass() != clazz) {
+                return messageParserService.deserialize(message, new Class[]{clazz}, new Object[][]{arguments});
+            }
+
+            object = codecs[index].deserialize(message, object, match.positions, match.lengths);
+            if (!messageParserService.invokeCallbackMethod(clazz, object)) {
+                throw new ParserRuntimeException("Callback method for '" + clazz.getName() + "' did return false, so something went wrong.");
+            }
+            return object;
+        } catch (NoSuchMethodException | IllegalArgumentException | InvocationTargetException | InstantiationException | IllegalAccessException ex) {
+            throw new RuntimeException("Given class " + clazz.getName() + " must define an accessible constructor.", ex);
+        }
+    }
+
+    /**
+     * State of the automaton, the transitions are ordered by the lowest class
+     * index they lead to.
+     */
+    private static class State {
+
+        private final List<Transition> transitions = new ArrayList<>();
+        private int classIndex = -1;
+        private int minimumClassIndex = Integer.MAX_VALUE;
+
+        private Transition getLiteralTransition(char character) {
+            for (Transition transition : transitions) {
+                if (transition.literal != null && transition.literal.charAt(0) == character) {
+                    return transition;
+                }
+            }
+            return null;
+        }
+
+        private Transition getFieldTransition(LinearMessageCodec.FieldStep fieldStep) {
+            for (Transition transition : transitions) {
+                if (transition.fieldStep != null
+                        && transition.fieldStep.getFieldLength() == fieldStep.getFieldLength()
+                        && Objects.equals(transition.fieldStep.getTerminator(), fieldStep.getTerminator())) {
+                    return transition;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Computes the lowest class index of this state and its successors
+         * and orders the transitions by it.
+         * @return the lowest class index
+         */
+        private int sort() {
+            minimumClassIndex = classIndex >= 0 ? classIndex : Integer.MAX_VALUE;
+            for (Transition transition : transitions) {
+                minimumClassIndex = Math.min(minimumClassIndex, transition.target.sort());
+            }
+            transitions.sort(Comparator.comparingInt(transition -> transition.target.minimumClassIndex));
+            return minimumClassIndex;
+        }
+
+    }
+
+    /**
+     * Transition of the automaton, either a literal or a field.
+     */
+    private static class Transition {
+
+        private String literal;
+        private final LinearMessageCodec.FieldStep fieldStep;
+        private State target;
+
+        private Transition(String literal, LinearMessageCodec.FieldStep fieldStep, State target) {
+            this.literal = literal;
+            this.fieldStep = fieldStep;
+            this.target = target;
+        }
+
+    }
+
+    /**
+     * The best match of a single message and the fields of the current path.
+     */
+    private static class Match {
+
+        private int classIndex = Integer.MAX_VALUE;
+        private final int[] positions;
+        private final int[] lengths;
+        private final int[] currentPositions;
+        private final int[] currentLengths;
+
+        private Match(int fields) {
+            positions = new int[fields];
+            lengths = new int[fields];
+            currentPositions = new int[fields];
+            currentLengths = new int[fields];
+        }
+
+    }
+
+}
@@ -0,0 +1,177 @@
+package de.iisys.libinterface.parser.service;
+
+import de.iisys.libinterface.message.interfaces.Message;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Class that caches compiled message templates.<br>
+ * Compiled templates are stored by their template string, so message classes
+ * with an identical template share one compiled entry. As templates may be
+ * produced dynamically by an overridden {@link Message#getMessageTemplate()},
+ * only the {@link #getMaximumSize()} most recently used templates are kept.<br>
+ * The last compiled template of every message class is additionally remembered
+ * in a {@link ClassValue}, which does not prevent the class or its class loader
+ * from being unloaded. These entries belong to a generation of the cache, so
+ * {@link #clear()} invalidates them as well.
+ *
+ * @param <T> compiled template type
+ */
+public class MessageTemplateCache<T> {
+
+    /**
+     * Default maximum number of cached templates.
+     */
+    public static final int DEFAULT_MAXIMUM_SIZE = 256;
+
+    private final Function<String, T> compiler;
+    private final int maximumSize;
+
+    private final Map<String, T> templates;
+    private final ClassValue<Entry<T>[]> classEntries;
+    private volatile int generation;
+
+    /**
+     * Initializes {@link #MessageTemplateCache(java.util.function.Function, int) }
+     * with {@link #DEFAULT_MAXIMUM_SIZE}.
+     * @param compiler function that compiles a template string
+     */
+    public MessageTemplateCache(Function<String, T> compiler) {
+        this(compiler, DEFAULT_MAXIMUM_SIZE);
+    }
+
+    /**
+     * Creates a new cache with the given compiler and maximum size.
+     * @param compiler function that compiles a template string
+     * @param maximumSize maximum number of cached templates
+     */
+    public MessageTemplateCache(Function<String, T> compiler, int maximumSize) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("Maximum size must be at least 1.");
+        }
+
+        this.compiler = compiler;
+        this.maximumSize = maximumSize;
+
+        templates = new LinkedHashMap<String, T>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, T> eldest) {
+                return size() > MessageTemplateCache.this.maximumSize;
+            }
+
+        };
+        classEntries = new ClassValue<Entry<T>[]>() {
+
+            @Override
+            protected Entry<T>[] computeValue(Class<?> type) {
+                return new Entry[1];
+            }
+
+        };
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * Returns the number of currently cached templates.
+     * @return number of cached templates
+     */
+    public int size() {
+        synchronized (templates) {
+            return templates.size();
+        }
+    }
+
+    /**
+     * Removes all cached templates, including the last templates of the
+     * classes.
+     */
+    public void clear() {
+        synchronized (templates) {
+            templates.clear();
+            generation++;
+        }
+    }
+
+    /**
+     * Gets the compiled template of the given message.
+     * @param message the message
+     * @return compiled template
+     */
+    public T get(Message message) {
+        return get(message.getClass(), message.getMessageTemplate());
+    }
+
+    /**
+     * Gets the compiled template for the given class and template string. Looks
+     * up the last template of the class first, then the shared templates and
+     * compiles the template only if it is not cached yet.
+     * @param clazz the message class
+     * @param template the template string
+     * @return compiled template
+     */
+    public T get(Class<?> clazz, String template) {
+        Entry<T>[] classEntry = classEntries.get(clazz);
+
+        int currentGeneration = generation;
+        Entry<T> entry = classEntry[0];
+        if (entry != null && entry.generation == currentGeneration && (entry.template == template || entry.template.equals(template))) {
+            return entry.compiled;
+        }
+
+        T compiled = get(template);
+        classEntry[0] = new Entry<>(template, compiled, currentGeneration);
+        return compiled;
+    }
+
+    /**
+     * Gets the compiled template for the given template string, compiles the
+     * template if it is not cached yet.
+     * @param template the template string
+     * @return compiled template
+     */
+    public T get(String template) {
+        T compiled;
+        synchronized (templates) {
+            compiled = templates.get(template);
+        }
+
+        if (compiled == null) {
+            compiled = compiler.apply(template);
+
+            synchronized (templates) {
+                T existing = templates.putIfAbsent(template, compiled);
+                if (existing != null) {
+                    compiled = existing;
+                }
+            }
+        }
+
+        return compiled;
+    }
+
+    /**
+     * Immutable pair of template string and compiled template of a
+     * generation of the cache.
+     *
+     * @param <T> compiled template type
+     */
+    private static class Entry<T> {
+
+        private final String template;
+        private final T compiled;
+        private final int generation;
+
+        private Entry(String template, T compiled, int generation) {
+            this.template = template;
+            this.compiled = compiled;
+            this.generation = generation;
+        }
+
+    }
+
+}
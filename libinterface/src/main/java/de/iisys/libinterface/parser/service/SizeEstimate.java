@@ -0,0 +1,63 @@
+package de.iisys.libinterface.parser.service;
+
+/**
+ * Running estimate of the serialized size of the messages of a template, which
+ * is used to presize the string a message is serialized into, so large
+ * messages do not grow their string several times.<br>
+ * The estimate starts with the size that is known from the template, which is
+ * the exact size of a template with a fixed layout. Every serialized size
+ * above the estimate raises it at once, smaller sizes lower it by a 32nd of
+ * the difference, so the estimate is a maximum of the recent sizes that
+ * decays when the messages get smaller. Estimates above
+ * {@value #MAXIMUM_ESTIMATE} characters are not used to presize. The estimate
+ * is shared by all threads without synchronization, a size that is lost by a
+ * concurrent update only delays the adaption.
+ */
+public final class SizeEstimate {
+
+    /**
+     * Maximum number of characters a string is presized with.
+     */
+    public static final int MAXIMUM_ESTIMATE = 1024 * 1024;
+
+    private volatile int estimate;
+
+    /**
+     * Initializes {@link #estimate} with the given size.
+     * @param size the initial size
+     */
+    public SizeEstimate(int size) {
+        this.estimate = Math.max(size, 0);
+    }
+
+    /**
+     * Gets the estimated size.
+     * @return the estimated size
+     */
+    public int get() {
+        return Math.min(estimate, MAXIMUM_ESTIMATE);
+    }
+
+    /**
+     * Adds the size of a serialized message to the estimate.
+     * @param size the size
+     */
+    public void record(int size) {
+        int current = estimate;
+        if (size > current) {
+            estimate = size;
+        } else if (size < current) {
+            estimate = current - ((current - size + 31) >> 5);
+        }
+    }
+
+    /**
+     * Ensures that the given string has capacity for the estimated size after
+     * its length.
+     * @param string the string
+     */
+    public void presize(StringBuilder string) {
+        string.ensureCapacity(string.length() + get());
+    }
+
+}
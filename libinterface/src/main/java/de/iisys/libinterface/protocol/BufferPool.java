@@ -0,0 +1,382 @@
+package de.iisys.libinterface.protocol;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Pool of direct byte buffers for encoding messages before they are written.
+ * <br>
+ * Buffers are kept in size classes of powers of two between the minimum and
+ * the maximum size. A leased buffer has at least the requested capacity and
+ * its limit set to the requested size. Released buffers go to a small cache
+ * of the releasing thread first and to a shared queue of their size class
+ * when the cache is full, so a thread that leases and releases in turn does
+ * not touch shared state. Sizes above the maximum are allocated on the heap
+ * and not pooled.
+ * <br>
+ * With leak detection, the pool remembers where every buffer was leased and
+ * logs buffers that were garbage collected without being released, as well
+ * as releases of buffers that are not leased. Leak detection is meant for
+ * debugging, it is enabled for the {@link #getDefault() } pool by the system
+ * property {@value #LEAK_DETECTION_PROPERTY}.
+ */
+public class BufferPool {
+
+    /**
+     * System property that enables the leak detection of the default pool.
+     */
+    public static final String LEAK_DETECTION_PROPERTY = "de.iisys.libinterface.bufferpool.leakDetection";
+
+    private static final Logger LOGGER = Logger.getLogger(BufferPool.class.getName());
+
+    private static final BufferPool DEFAULT = new BufferPool(256, 64 * 1024, 8, 64, Boolean.getBoolean(LEAK_DETECTION_PROPERTY));
+
+    private final int minimumShift;
+    private final int maximumSize;
+    private final int cacheSize;
+    private final int queueSize;
+
+    private final Queue<ByteBuffer>[] queues;
+    private final AtomicInteger[] queueLengths;
+    private final ThreadLocal<ByteBuffer[][]> caches;
+    private final ThreadLocal<int[]> cacheLengths;
+
+    private final boolean leakDetection;
+    private final Map<Integer, Lease> leases;
+    private final ReferenceQueue<ByteBuffer> collected;
+
+    private final LongAdder leased = new LongAdder();
+    private final LongAdder released = new LongAdder();
+    private final LongAdder allocated = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder queueHits = new LongAdder();
+    private final LongAdder unpooled = new LongAdder();
+    private final LongAdder leaks = new LongAdder();
+
+    /**
+     * Creates a pool with the given sizes.
+     * @param minimumSize the capacity of the smallest buffers, rounded up to
+     * a power of two
+     * @param maximumSize the capacity of the largest pooled buffers, rounded
+     * up to a power of two
+     * @param cacheSize the number of buffers of each size class a thread keeps
+     * @param queueSize the number of buffers of each size class the pool
+     * keeps for all threads
+     * @param leakDetection whether leases are tracked to detect leaks
+     */
+    public BufferPool(int minimumSize, int maximumSize, int cacheSize, int queueSize, boolean leakDetection) {
+        if (minimumSize <= 0 || maximumSize < minimumSize || maximumSize > 1 << 30 || cacheSize < 0 || queueSize < 0) {
+            throw new IllegalArgumentException("Invalid sizes of buffer pool.");
+        }
+
+        this.minimumShift = shift(minimumSize);
+        this.maximumSize = 1 << shift(maximumSize);
+        this.cacheSize = cacheSize;
+        this.queueSize = queueSize;
+
+        int classes = shift(maximumSize) - minimumShift + 1;
+        queues = new Queue[classes];
+        queueLengths = new AtomicInteger[classes];
+        for (int i = 0; i < classes; i++) {
+            queues[i] = new ConcurrentLinkedQueue<>();
+            queueLengths[i] = new AtomicInteger();
+        }
+        caches = ThreadLocal.withInitial(() -> new ByteBuffer[classes][cacheSize]);
+        cacheLengths = ThreadLocal.withInitial(() -> new int[classes]);
+
+        this.leakDetection = leakDetection;
+        leases = leakDetection ? new ConcurrentHashMap<>() : null;
+        collected = leakDetection ? new ReferenceQueue<>() : null;
+    }
+
+    /**
+     * Gets the pool that is shared by all runners that do not create their
+     * own, with buffers from 256 bytes to 64 KiB.
+     * @return the default pool
+     */
+    public static BufferPool getDefault() {
+        return DEFAULT;
+    }
+
+    private static int shift(int size) {
+        return size <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(size - 1);
+    }
+
+    private int sizeClass(int size) {
+        return Math.max(shift(size), minimumShift) - minimumShift;
+    }
+
+    /**
+     * Leases a buffer with at least the given capacity, its position is 0 and
+     * its limit the given size. The buffer must be given back with
+     * {@link #release(java.nio.ByteBuffer) } once it was written and must not
+     * be used after that.
+     * @param size the size
+     * @return the buffer
+     */
+    public ByteBuffer lease(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Size must not be negative.");
+        }
+        leased.increment();
+        if (leakDetection) {
+            pollLeaks();
+        }
+
+        ByteBuffer buffer;
+        if (size > maximumSize) {
+            unpooled.increment();
+            buffer = ByteBuffer.allocate(size);
+        } else {
+            int sizeClass = sizeClass(size);
+            buffer = take(sizeClass);
+            if (buffer == null) {
+                allocated.increment();
+                buffer = ByteBuffer.allocateDirect(1 << (sizeClass + minimumShift));
+            }
+            buffer.clear().limit(size);
+        }
+
+        if (leakDetection) {
+            Lease lease = new Lease(buffer, collected);
+            leases.compute(lease.id, (id, next) -> {
+                lease.next = next;
+                return lease;
+            });
+        }
+        return buffer;
+    }
+
+    private ByteBuffer take(int sizeClass) {
+        int[] lengths = cacheLengths.get();
+        if (lengths[sizeClass] > 0) {
+            ByteBuffer[] cache = caches.get()[sizeClass];
+            ByteBuffer buffer = cache[--lengths[sizeClass]];
+            cache[lengths[sizeClass]] = null;
+            cacheHits.increment();
+            return buffer;
+        }
+
+        ByteBuffer buffer = queues[sizeClass].poll();
+        if (buffer != null) {
+            queueLengths[sizeClass].decrementAndGet();
+            queueHits.increment();
+        }
+        return buffer;
+    }
+
+    /**
+     * Gives a leased buffer back to the pool.
+     * @param buffer the buffer
+     * @throws IllegalStateException with leak detection, if the buffer is not
+     * leased from this pool
+     */
+    public void release(ByteBuffer buffer) {
+        if (leakDetection) {
+            Lease lease = removeLease(System.identityHashCode(buffer), buffer, null);
+            if (lease == null) {
+                throw new IllegalStateException("Buffer is not leased from this pool.");
+            }
+            lease.clear();
+        }
+        released.increment();
+
+        int capacity = buffer.capacity();
+        if (!buffer.isDirect() || capacity > maximumSize || Integer.bitCount(capacity) != 1 || capacity < 1 << minimumShift) {
+            return;
+        }
+
+        int sizeClass = sizeClass(capacity);
+        int[] lengths = cacheLengths.get();
+        if (lengths[sizeClass] < cacheSize) {
+            caches.get()[sizeClass][lengths[sizeClass]++] = buffer;
+        } else if (queueLengths[sizeClass].incrementAndGet() <= queueSize) {
+            queues[sizeClass].offer(buffer);
+        } else {
+            queueLengths[sizeClass].decrementAndGet();
+        }
+    }
+
+    /**
+     * Removes the lease of the given buffer or the given lease from the
+     * leases with the given identity hash code.
+     * @param id the identity hash code of the buffer
+     * @param buffer the buffer or null
+     * @param lease the lease or null
+     * @return the removed lease or null
+     */
+    private Lease removeLease(int id, ByteBuffer buffer, Lease lease) {
+        Lease[] removed = new Lease[1];
+        leases.computeIfPresent(id, (key, first) -> {
+            Lease previous = null;
+            for (Lease current = first; current != null; previous = current, current = current.next) {
+                if (current == lease || buffer != null && current.get() == buffer) {
+                    removed[0] = current;
+                    if (previous == null) {
+                        return current.next;
+                    }
+                    previous.next = current.next;
+                    break;
+                }
+            }
+            return first;
+        });
+        return removed[0];
+    }
+
+    /**
+     * Logs the buffers that were garbage collected without being released.
+     */
+    private void pollLeaks() {
+        Reference<? extends ByteBuffer> reference;
+        while ((reference = collected.poll()) != null) {
+            Lease lease = (Lease) reference;
+            if (removeLease(lease.id, null, lease) != null) {
+                leaks.increment();
+                LOGGER.log(Level.WARNING, "Buffer was not released before it was garbage collected.", lease.site);
+            }
+        }
+    }
+
+    public boolean isLeakDetection() {
+        return leakDetection;
+    }
+
+    /**
+     * Gets a snapshot of the statistics of the pool.
+     * @return the statistics
+     */
+    public Statistics getStatistics() {
+        if (leakDetection) {
+            pollLeaks();
+        }
+        return new Statistics(leased.sum(), released.sum(), allocated.sum(), cacheHits.sum(), queueHits.sum(), unpooled.sum(), leaks.sum());
+    }
+
+    /**
+     * Lease of a buffer with the place it was leased at, which is enqueued
+     * when the buffer is garbage collected before it was released. Leases of
+     * buffers with the same identity hash code are chained.
+     */
+    private static final class Lease extends WeakReference<ByteBuffer> {
+
+        private final int id;
+        private final Throwable site = new Throwable("Buffer leased here.");
+        private Lease next;
+
+        private Lease(ByteBuffer buffer, ReferenceQueue<ByteBuffer> queue) {
+            super(buffer, queue);
+            id = System.identityHashCode(buffer);
+        }
+
+    }
+
+    /**
+     * Statistics of a {@link BufferPool}.
+     */
+    public static final class Statistics {
+
+        private final long leased;
+        private final long released;
+        private final long allocated;
+        private final long cacheHits;
+        private final long queueHits;
+        private final long unpooled;
+        private final long leaks;
+
+        private Statistics(long leased, long released, long allocated, long cacheHits, long queueHits, long unpooled, long leaks) {
+            this.leased = leased;
+            this.released = released;
+            this.allocated = allocated;
+            this.cacheHits = cacheHits;
+            this.queueHits = queueHits;
+            this.unpooled = unpooled;
+            this.leaks = leaks;
+        }
+
+        /**
+         * Gets the number of leased buffers.
+         * @return number of leases
+         */
+        public long getLeased() {
+            return leased;
+        }
+
+        /**
+         * Gets the number of released buffers.
+         * @return number of releases
+         */
+        public long getReleased() {
+            return released;
+        }
+
+        /**
+         * Gets the number of buffers that are leased and not released yet.
+         * @return number of outstanding leases
+         */
+        public long getOutstanding() {
+            return leased - released - leaks;
+        }
+
+        /**
+         * Gets the number of direct buffers the pool allocated.
+         * @return number of allocations
+         */
+        public long getAllocated() {
+            return allocated;
+        }
+
+        /**
+         * Gets the number of leases that were served by the cache of the
+         * leasing thread.
+         * @return number of cache hits
+         */
+        public long getCacheHits() {
+            return cacheHits;
+        }
+
+        /**
+         * Gets the number of leases that were served by the shared queues.
+         * @return number of queue hits
+         */
+        public long getQueueHits() {
+            return queueHits;
+        }
+
+        /**
+         * Gets the number of leases above the maximum size, which are not
+         * pooled.
+         * @return number of unpooled leases
+         */
+        public long getUnpooled() {
+            return unpooled;
+        }
+
+        /**
+         * Gets the number of buffers that were garbage collected without
+         * being released, only counted with leak detection.
+         * @return number of leaks
+         */
+        public long getLeaks() {
+            return leaks;
+        }
+
+        @Override
+        public String toString() {
+            return "leased=" + leased + ", released=" + released + ", allocated=" + allocated + ", cacheHits=" + cacheHits
+                    + ", queueHits=" + queueHits + ", unpooled=" + unpooled + ", leaks=" + leaks;
+        }
+
+    }
+
+}
@@ -0,0 +1,256 @@
+package de.iisys.libinterface.protocol;
+
+import de.iisys.libinterface.message.interfaces.Message;
+import de.iisys.libinterface.parser.codec.MessageSegments;
+import de.iisys.libinterface.parser.service.CharSequences;
+import de.iisys.libinterface.parser.service.MessageParserService;
+import de.iisys.libstate.interfaces.State;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Class to write, read, receive, prepare and process the messages.
+ */
+public abstract class NetworkProtocolRunner extends ProtocolRunner {
+
+    protected final String PREPARED_MESSAGE = "preparedMessage";
+    protected final String RECEIVED_MESSAGE = "receivedMessage";
+
+    private static final int MAXIMUM_STRING_CAPACITY = 64 * 1024;
+    private static final ThreadLocal<StringBuilder> STRINGS = ThreadLocal.withInitial(StringBuilder::new);
+
+    private final BufferPool bufferPool = createBufferPool();
+
+    /**
+     * Returns {@link BufferPool#getDefault() }, runners that need their own
+     * sizes or leak detection return a new pool.
+     * @return the buffer pool of the runner
+     */
+    protected BufferPool createBufferPool() {
+        return BufferPool.getDefault();
+    }
+
+    public BufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    /**
+     * Returns {@link StandardCharsets#US_ASCII}, the charset messages are
+     * encoded with by {@link #encode(de.iisys.libinterface.parser.service.MessageParserService, de.iisys.libinterface.message.interfaces.Message) }.
+     * @return the charset
+     */
+    protected Charset getCharset() {
+        return StandardCharsets.US_ASCII;
+    }
+
+    /**
+     * Encodes the message into a buffer of the {@link #getBufferPool() },
+     * which is ready to be written from its position to its limit.
+     * {@link #write(de.iisys.libinterface.message.interfaces.Message) }
+     * implementations must give the buffer back with {@link #release(java.nio.ByteBuffer) }
+     * after it was written. The message is serialized into a string builder
+     * that is kept by the thread, so neither a string nor a heap buffer is
+     * created for the message.
+     * @param messageParserService the service to serialize with
+     * @param message the message
+     * @return the leased buffer with the message
+     */
+    protected ByteBuffer encode(MessageParserService messageParserService, Message message) {
+        StringBuilder string = STRINGS.get();
+        string.setLength(0);
+        try {
+            messageParserService.serialize(message, string);
+
+            Charset charset = getCharset();
+            int size = charset.equals(StandardCharsets.US_ASCII) || charset.equals(StandardCharsets.ISO_8859_1)
+                    ? string.length()
+                    : (int) Math.ceil(string.length() * (double) charset.newEncoder().maxBytesPerChar());
+            ByteBuffer buffer = bufferPool.lease(size);
+            try {
+                CharSequences.encode(string, buffer, charset);
+            } catch (RuntimeException ex) {
+                bufferPool.release(buffer);
+                throw ex;
+            }
+            buffer.flip();
+            return buffer;
+        } finally {
+            if (string.capacity() > MAXIMUM_STRING_CAPACITY) {
+                STRINGS.remove();
+            }
+        }
+    }
+
+    /**
+     * Gives a buffer of {@link #encode(de.iisys.libinterface.parser.service.MessageParserService, de.iisys.libinterface.message.interfaces.Message) }
+     * back to the {@link #getBufferPool() } after it was written.
+     * @param buffer the buffer
+     */
+    protected void release(ByteBuffer buffer) {
+        bufferPool.release(buffer);
+    }
+
+    /**
+     * Creates segments with the {@link #getCharset() } for
+     * {@link #encode(de.iisys.libinterface.parser.service.MessageParserService, de.iisys.libinterface.parser.codec.MessageSegments, de.iisys.libinterface.message.interfaces.Message...) },
+     * which can be kept and reused by the thread that writes.
+     * @return new segments
+     */
+    protected MessageSegments createSegments() {
+        return new MessageSegments(getCharset());
+    }
+
+    /**
+     * Encodes the messages into buffers for a single gathering write, like
+     * {@link java.nio.channels.GatheringByteChannel#write(java.nio.ByteBuffer[]) }.
+     * The literals of the templates are shared read-only buffers and the
+     * fields are encoded into one buffer of the {@link #getBufferPool() }, so
+     * a large message with mostly constant content is not copied into a new
+     * string for every write. The segments must be given back with
+     * {@link #release(de.iisys.libinterface.parser.codec.MessageSegments) }
+     * after the buffers were written.
+     * @param messageParserService the service to serialize with
+     * @param segments the empty segments
+     * @param messages the messages
+     * @return the buffers with the messages
+     */
+    protected ByteBuffer[] encode(MessageParserService messageParserService, MessageSegments segments, Message... messages) {
+        try {
+            for (Message message : messages) {
+                messageParserService.serialize(message, segments);
+            }
+            return segments.getBuffers(bufferPool::lease);
+        } catch (RuntimeException ex) {
+            segments.clear();
+            throw ex;
+        }
+    }
+
+    /**
+     * Gives the buffer of the fields of {@link #encode(de.iisys.libinterface.parser.service.MessageParserService, de.iisys.libinterface.parser.codec.MessageSegments, de.iisys.libinterface.message.interfaces.Message...) }
+     * back to the {@link #getBufferPool() } and clears the segments, so they
+     * can be used for the next messages.
+     * @param segments the segments
+     */
+    protected void release(MessageSegments segments) {
+        ByteBuffer buffer = segments.getContentBuffer();
+        segments.clear();
+        if (buffer != null) {
+            bufferPool.release(buffer);
+        }
+    }
+
+    /**
+     * Abstract method to write message.
+     * @param message the message
+     * @return message
+     * @throws IOException 
+     */
+    protected abstract Message write(Message message) throws IOException;
+
+    /**
+     * Returns {@link State#put(java.lang.Object, java.lang.Object) } to prepare
+     * the message.
+     * @param state {@link State} reference
+     * @param clazz instance of {@link Message}
+     * @return {@link State#put(java.lang.Object, java.lang.Object) } 
+     * @throws IOException 
+     */
+    protected Message prepare(State state, Class<? extends Message> clazz) throws IOException {
+        return state.put(PREPARED_MESSAGE, askSupplier(clazz));
+    }
+
+    /**
+     * Gets the prepared message.
+     * @param <C> message type
+     * @param state {@link State} reference
+     * @return 
+     */
+    protected <C extends Message> C getPreparedMessage(State state) {
+        return state.get(PREPARED_MESSAGE);
+    }
+
+    /**
+     * Sends the Message.
+     * @param state {@link State} reference
+     * @return message the message
+     * @throws IOException 
+     */
+    protected Message send(State state) throws IOException {
+        Message message = getPreparedMessage(state);
+        if (message != null) {
+            write(message);
+        }
+        return message;
+    }
+
+    /**
+     * Prepares and sends the message.
+     * @param state {@link State} reference
+     * @param clazz instance of {@link Message}
+     * @return {@link #send(de.iisys.libstate.interfaces.State) }
+     * @throws IOException 
+     */
+    protected Message prepareAndSend(State state, Class<? extends Message> clazz) throws IOException {
+        prepare(state, clazz);
+        return send(state);
+    }
+
+    /**
+     * Abstract method to read messages.
+     * @param classes instances of {@link Message}.
+     * @return message
+     * @throws IOException 
+     */
+    protected abstract Message read(Class<? extends Message>... classes) throws IOException;
+
+    /**
+     * Method for the receive of the messages.
+     * @param state {@link State} reference
+     * @param classes instances of {@link Message}
+     * @return {@link State#put(java.lang.Object, java.lang.Object) }
+     * @throws IOException 
+     */
+    protected Message receive(State state, Class<? extends Message>... classes) throws IOException {
+        return state.put(RECEIVED_MESSAGE, read(classes));
+    }
+
+    /**
+     * Gets the received messages.
+     * @param <C> message type
+     * @param state {@link State} reference
+     * @return {@link State#get(java.lang.Object) }
+     */
+    protected <C extends Message> C getReceivedMessage(State state) {
+        return state.get(RECEIVED_MESSAGE);
+    }
+
+    /**
+     * Method to process messages.
+     * @param state {@link State} reference
+     * @return message
+     * @throws IOException 
+     */
+    protected Message process(State state) throws IOException {
+        Message message = getReceivedMessage(state);
+        if (message != null) {
+            processListeners(message);
+        }
+        return message;
+    }
+
+    /**
+     * Receives and processes messages.
+     * @param state {@link State} reference
+     * @param classes instances of {@link Message}
+     * @return {@link #process(de.iisys.libstate.interfaces.State) }
+     * @throws IOException 
+     */
+    protected Message receiveAndProcess(State state, Class<? extends Message>... classes) throws IOException {
+        receive(state, classes);
+        return process(state);
+    }
+
+}
@@ -0,0 +1,127 @@
+package de.iisys.libinterface.service;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+import org.parboiled.errors.ParserRuntimeException;
+
+/**
+ * Class that invokes a callback method through a method handle.<br>
+ * The method is resolved once per class and method name by
+ * {@link #get(java.lang.Class, java.lang.String) }, so that a missing method
+ * can be reported before the first message is processed.<br>
+ * Work that may be discarded, like a candidate class that is tried
+ * concurrently, runs with a guard by {@link #guard(java.util.function.BooleanSupplier, java.util.function.Supplier) },
+ * then no callback is invoked on its thread once the guard is false.
+ */
+public class CallbackInvoker {
+
+    private static final ClassValue<Map<String, CallbackInvoker>> INVOKERS = new ClassValue<Map<String, CallbackInvoker>>() {
+
+        @Override
+        protected Map<String, CallbackInvoker> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+
+    };
+
+    private static final ThreadLocal<BooleanSupplier> GUARDS = new ThreadLocal<>();
+
+    private final Method method;
+    private final MethodHandle handle;
+
+    /**
+     * Initializes the invoker with the handle of the given method.
+     * @param method the callback method without parameters
+     */
+    public CallbackInvoker(Method method) {
+        method.setAccessible(true);
+        this.method = method;
+
+        try {
+            MethodHandle methodHandle = MethodHandles.lookup().unreflect(method);
+            if (Modifier.isStatic(method.getModifiers())) {
+                methodHandle = MethodHandles.dropArguments(methodHandle, 0, Object.class);
+            }
+            this.handle = methodHandle.asType(MethodType.methodType(Object.class, Object.class));
+        } catch (IllegalAccessException ex) {
+            throw new IllegalArgumentException("Could not access method '" + method.getName() + "'.", ex);
+        }
+    }
+
+    /**
+     * Gets the cached invoker of the method without parameters with the given
+     * name of the class or its super classes.
+     * @param clazz the class
+     * @param methodName the method name
+     * @return the invoker
+     * @throws NoSuchMethodException
+     */
+    public static CallbackInvoker get(Class<?> clazz, String methodName) throws NoSuchMethodException {
+        Map<String, CallbackInvoker> invokers = INVOKERS.get(clazz);
+
+        CallbackInvoker invoker = invokers.get(methodName);
+        if (invoker == null) {
+            invoker = new CallbackInvoker(ReflectionService.getDeclaredMethodWithSuperMethod(clazz, methodName));
+            invokers.putIfAbsent(methodName, invoker);
+        }
+        return invoker;
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    /**
+     * Runs the given action with the given guard, which is checked before
+     * every callback the action invokes on this thread.
+     * @param <T> result type
+     * @param guard returns whether callbacks may still be invoked
+     * @param action the action
+     * @return the result of the action
+     * @throws CancellationException if a callback was about to be invoked
+     * after the guard became false
+     */
+    public static <T> T guard(BooleanSupplier guard, Supplier<T> action) {
+        BooleanSupplier previous = GUARDS.get();
+        GUARDS.set(guard);
+        try {
+            return action.get();
+        } finally {
+            if (previous != null) {
+                GUARDS.set(previous);
+            } else {
+                GUARDS.remove();
+            }
+        }
+    }
+
+    /**
+     * Invokes the callback method on the given object.
+     * @param object the object
+     * @return false if the method did return false, otherwise true
+     * @throws CancellationException if the guard of this thread is false
+     */
+    public boolean invoke(Object object) {
+        BooleanSupplier guard = GUARDS.get();
+        if (guard != null && !guard.getAsBoolean()) {
+            throw new CancellationException("Callback method '" + method.getName() + "' was not called, because its result is not used.");
+        }
+
+        Object response;
+        try {
+            response = handle.invokeExact(object);
+        } catch (Throwable ex) {
+            throw new ParserRuntimeException("Could not call method '" + method.getName() + "'.", ex);
+        }
+        return !Boolean.FALSE.equals(response);
+    }
+
+}
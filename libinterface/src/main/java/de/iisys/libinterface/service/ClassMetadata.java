@@ -0,0 +1,145 @@
+package de.iisys.libinterface.service;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class that holds the resolved fields, methods and annotations of a class and
+ * its super classes.<br>
+ * The metadata is created once per class by
+ * {@link ReflectionService#getClassMetadata(java.lang.Class) } and does not
+ * change afterwards, so it can be read by many threads at the same time. Fields
+ * and methods of a class hide the ones of its super classes with the same name,
+ * like for {@link ReflectionService#getDeclaredFieldWithSuperField(java.lang.Class, java.lang.String) }.
+ * A lookup that does not find anything returns null instead of throwing.
+ */
+public class ClassMetadata {
+
+    private final Class<?> type;
+
+    private final List<Field> fields;
+    private final Map<String, Field> fieldsByName;
+    private final Map<String, Method[]> methodsByName;
+    private final Map<Class<? extends Annotation>, Annotation> annotations;
+
+    /**
+     * Resolves the declared fields, methods and annotations of the given class
+     * and adds the ones of the super class metadata.
+     * @param type the class
+     * @param superMetadata metadata of the super class or null
+     */
+    protected ClassMetadata(Class<?> type, ClassMetadata superMetadata) {
+        this.type = type;
+
+        Field[] declaredFields = type.getDeclaredFields();
+        List<Field> allFields = new ArrayList<>(Arrays.asList(declaredFields));
+        Map<String, Field> allFieldsByName = new HashMap<>();
+        Map<String, Method[]> allMethodsByName = new HashMap<>();
+        if (superMetadata != null) {
+            allFields.addAll(superMetadata.fields);
+            allFieldsByName.putAll(superMetadata.fieldsByName);
+            allMethodsByName.putAll(superMetadata.methodsByName);
+        }
+        for (Field field : declaredFields) {
+            allFieldsByName.put(field.getName(), field);
+        }
+
+        Map<String, List<Method>> declaredMethods = new HashMap<>();
+        for (Method method : type.getDeclaredMethods()) {
+            declaredMethods.computeIfAbsent(method.getName(), name -> new ArrayList<>()).add(method);
+        }
+        for (Map.Entry<String, List<Method>> entry : declaredMethods.entrySet()) {
+            List<Method> methods = entry.getValue();
+            Method[] superMethods = allMethodsByName.get(entry.getKey());
+            if (superMethods != null) {
+                methods.addAll(Arrays.asList(superMethods));
+            }
+            allMethodsByName.put(entry.getKey(), methods.toArray(new Method[methods.size()]));
+        }
+
+        Map<Class<? extends Annotation>, Annotation> allAnnotations = new HashMap<>();
+        for (Annotation annotation : type.getAnnotations()) {
+            allAnnotations.put(annotation.annotationType(), annotation);
+        }
+
+        this.fields = Collections.unmodifiableList(allFields);
+        this.fieldsByName = allFieldsByName;
+        this.methodsByName = allMethodsByName;
+        this.annotations = allAnnotations;
+    }
+
+    public Class<?> getType() {
+        return type;
+    }
+
+    /**
+     * Gets all declared fields of the class and its super classes, beginning
+     * with the fields of the class.
+     * @return unmodifiable list of fields
+     */
+    public List<Field> getFields() {
+        return fields;
+    }
+
+    /**
+     * Gets the field with the given name of the class or its super classes.
+     * @param fieldName the field name
+     * @return the field or null
+     */
+    public Field getField(String fieldName) {
+        return fieldsByName.get(fieldName);
+    }
+
+    /**
+     * Gets the method with the given name and parameter types of the class or
+     * its super classes, bridge methods are only used if there is no other.
+     * @param methodName the method name
+     * @param parameterTypes the parameter types
+     * @return the method or null
+     */
+    public Method getMethod(String methodName, Class<?>... parameterTypes) {
+        Method[] methods = methodsByName.get(methodName);
+        if (methods == null) {
+            return null;
+        }
+
+        Method bridge = null;
+        for (Method method : methods) {
+            if (method.getParameterCount() == parameterTypes.length && Arrays.equals(method.getParameterTypes(), parameterTypes)) {
+                if (!method.isBridge()) {
+                    return method;
+                } else if (bridge == null) {
+                    bridge = method;
+                }
+            }
+        }
+        return bridge;
+    }
+
+    /**
+     * Gets the annotation of the class, including inherited annotations.
+     * @param <A> annotation type
+     * @param annotationClass the annotation class
+     * @return the annotation or null
+     */
+    public <A extends Annotation> A getAnnotation(Class<A> annotationClass) {
+        return annotationClass.cast(annotations.get(annotationClass));
+    }
+
+    /**
+     * Returns whether the class has the given annotation.
+     * @param annotationClass the annotation class
+     * @return whether the annotation is present
+     */
+    public boolean isAnnotationPresent(Class<? extends Annotation> annotationClass) {
+        return annotations.containsKey(annotationClass);
+    }
+
+}
@@ -0,0 +1,633 @@
+package de.iisys.libinterface.service;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Class that accesses a single field through method handles.<br>
+ * The handles are resolved once per field, every primitive field type has its
+ * own accessor with get and set methods that do not box the value. Accessors
+ * are cached per class and field name by
+ * {@link #get(java.lang.Class, java.lang.String) }, with the same conversions
+ * as {@link ReflectionService#getData(java.lang.reflect.Field, java.lang.Object) }
+ * and {@link ReflectionService#setData(java.lang.reflect.Field, java.lang.Object, java.lang.Object) }.
+ */
+public abstract class FieldAccessor {
+
+    private static final ClassValue<Map<String, FieldAccessor>> ACCESSORS = new ClassValue<Map<String, FieldAccessor>>() {
+
+        @Override
+        protected Map<String, FieldAccessor> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+
+    };
+
+    protected final Field field;
+    protected final MethodHandle getter;
+    protected final MethodHandle setter;
+
+    private final MethodHandle objectGetter;
+    private final MethodHandle objectSetter;
+
+    /**
+     * Initializes the accessor with the handles of the field.
+     * @param field the field
+     * @param getter getter of type {@code (Object)type}
+     * @param setter setter of type {@code (Object, type)void}
+     */
+    protected FieldAccessor(Field field, MethodHandle getter, MethodHandle setter) {
+        this.field = field;
+        this.getter = getter;
+        this.setter = setter;
+        this.objectGetter = getter.asType(MethodType.methodType(Object.class, Object.class));
+        this.objectSetter = setter.asType(MethodType.methodType(void.class, Object.class, Object.class));
+    }
+
+    /**
+     * Gets the cached accessor of the field with the given name of the class or
+     * its super classes.
+     * @param clazz the class
+     * @param fieldName the field name
+     * @return the accessor
+     * @throws NoSuchFieldException
+     */
+    public static FieldAccessor get(Class<?> clazz, String fieldName) throws NoSuchFieldException {
+        Map<String, FieldAccessor> accessors = ACCESSORS.get(clazz);
+
+        FieldAccessor accessor = accessors.get(fieldName);
+        if (accessor == null) {
+            accessor = of(ReflectionService.getDeclaredFieldWithSuperField(clazz, fieldName));
+            accessors.putIfAbsent(fieldName, accessor);
+        }
+        return accessor;
+    }
+
+    /**
+     * Creates a new accessor for the given field.
+     * @param field the field
+     * @return the accessor
+     */
+    public static FieldAccessor of(Field field) {
+        field.setAccessible(true);
+
+        Class<?> type = field.getType();
+        Class<?> handleType = type.isPrimitive() ? type : Object.class;
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+        MethodHandle getter;
+        MethodHandle setter;
+        try {
+            getter = lookup.unreflectGetter(field);
+        } catch (IllegalAccessException ex) {
+            throw new IllegalArgumentException("Could not access field '" + field.getName() + "'.", ex);
+        }
+        try {
+            setter = lookup.unreflectSetter(field);
+        } catch (IllegalAccessException ex) {
+            // final fields can only be written by the field itself
+            try {
+                setter = lookup.findVirtual(Field.class, "set", MethodType.methodType(void.class, Object.class, Object.class)).bindTo(field);
+                if (Modifier.isStatic(field.getModifiers())) {
+                    setter = MethodHandles.insertArguments(setter, 0, (Object) null);
+                }
+            } catch (NoSuchMethodException | IllegalAccessException exception) {
+                throw new IllegalArgumentException("Could not access field '" + field.getName() + "'.", exception);
+            }
+        }
+
+        if (Modifier.isStatic(field.getModifiers())) {
+            getter = MethodHandles.dropArguments(getter, 0, Object.class);
+            setter = MethodHandles.dropArguments(setter, 0, Object.class);
+        }
+        getter = getter.asType(MethodType.methodType(handleType, Object.class));
+        setter = setter.asType(MethodType.methodType(void.class, Object.class, handleType));
+
+        if (type == boolean.class) {
+            return new BooleanAccessor(field, getter, setter);
+        } else if (type == byte.class) {
+            return new ByteAccessor(field, getter, setter);
+        } else if (type == short.class) {
+            return new ShortAccessor(field, getter, setter);
+        } else if (type == int.class) {
+            return new IntAccessor(field, getter, setter);
+        } else if (type == long.class) {
+            return new LongAccessor(field, getter, setter);
+        } else if (type == float.class) {
+            return new FloatAccessor(field, getter, setter);
+        } else if (type == double.class) {
+            return new DoubleAccessor(field, getter, setter);
+        } else if (type == char.class) {
+            return new CharAccessor(field, getter, setter);
+        } else {
+            return new ObjectAccessor(field, getter, setter);
+        }
+    }
+
+    public Field getField() {
+        return field;
+    }
+
+    public String getName() {
+        return field.getName();
+    }
+
+    /**
+     * Gets the getter of the field, a primitive field type is kept and every
+     * other type is erased to {@link Object}.
+     * @return getter of type {@code (Object)type}
+     */
+    public MethodHandle getGetter() {
+        return getter;
+    }
+
+    /**
+     * Gets the setter of the field, a primitive field type is kept and every
+     * other type is erased to {@link Object}.
+     * @return setter of type {@code (Object, type)void}
+     */
+    public MethodHandle getSetter() {
+        return setter;
+    }
+
+    /**
+     * Gets the data of the field, primitives are boxed.
+     * @param object the object
+     * @return the data
+     */
+    public Object get(Object object) {
+        try {
+            return objectGetter.invokeExact(object);
+        } catch (Throwable ex) {
+            throw rethrow(ex);
+        }
+    }
+
+    /**
+     * Sets the field, a string content is converted to the field type.
+     * @param object the object
+     * @param content the content
+     */
+    public void set(Object object, Object content) {
+        if (content != null && content.getClass() == String.class) {
+            setString(object, (String) content);
+        } else {
+            setObject(object, content);
+        }
+    }
+
+    /**
+     * Converts the string to the field type and sets the field.
+     * @param object the object
+     * @param value the string value
+     */
+    public abstract void setString(Object object, String value);
+
+    /**
+     * Converts the given range of the message to the field type and sets the
+     * field. Numbers are parsed in place, only fields of other types get a
+     * string of the range.
+     * @param object the object
+     * @param message the message
+     * @param start the start of the value
+     * @param end the end of the value, exclusive
+     */
+    public void setChars(Object object, CharSequence message, int start, int end) {
+        setString(object, message.subSequence(start, end).toString());
+    }
+
+    /**
+     * Appends the data of the field to the string, extended with spaces or
+     * cut off to the field length if it is not negative.
+     * @param object the object
+     * @param string the string to append to
+     * @param fieldLength the field length
+     * @return false if there is no data set for the field
+     */
+    public boolean append(Object object, StringBuilder string, int fieldLength) {
+        int start = string.length();
+        if (!append(object, string)) {
+            return false;
+        }
+
+        if (fieldLength >= 0) {
+            int end = start + fieldLength;
+            if (string.length() > end) {
+                string.setLength(end);
+            }
+            while (string.length() < end) {
+                string.append(' ');
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Sets the field to the given content, primitives are unboxed.
+     * @param object the object
+     * @param content the content
+     */
+    public void setObject(Object object, Object content) {
+        if (content == null && field.getType().isPrimitive()) {
+            throw new IllegalArgumentException("Can not set " + field.getType().getName() + " field '" + field.getName() + "' to null.");
+        }
+
+        try {
+            objectSetter.invokeExact(object, content);
+        } catch (Throwable ex) {
+            throw rethrow(ex);
+        }
+    }
+
+    /**
+     * Appends the data of the field to the string.
+     * @param object the object
+     * @param string the string to append to
+     * @return false if there is no data set for the field
+     */
+    public boolean append(Object object, StringBuilder string) {
+        Object content = get(object);
+        if (content == null) {
+            return false;
+        }
+        string.append(content);
+        return true;
+    }
+
+    /**
+     * Converts a throwable of a handle invocation into a runtime exception,
+     * wrong object or content types become an {@link IllegalArgumentException}
+     * like for {@link Field}.
+     * @param ex the throwable
+     * @return the runtime exception to throw
+     */
+    protected RuntimeException rethrow(Throwable ex) {
+        if (ex instanceof ClassCastException) {
+            return new IllegalArgumentException("Can not access field '" + field.getName() + "': " + ex.getMessage(), ex);
+        } else if (ex instanceof RuntimeException) {
+            return (RuntimeException) ex;
+        } else if (ex instanceof Error) {
+            throw (Error) ex;
+        }
+        return new IllegalArgumentException("Can not access field '" + field.getName() + "'.", ex);
+    }
+
+    /**
+     * Accessor of a boolean field.
+     */
+    public static final class BooleanAccessor extends FieldAccessor {
+
+        private BooleanAccessor(Field field, MethodHandle getter, MethodHandle setter) {
+            super(field, getter, setter);
+        }
+
+        public boolean getBoolean(Object object) {
+            try {
+                return (boolean) getter.invokeExact(object);
+            } catch (Throwable ex) {
+                throw rethrow(ex);
+            }
+        }
+
+        public void setBoolean(Object object, boolean value) {
+            try {
+                setter.invokeExact(object, value);
+            } catch (Throwable ex) {
+                throw rethrow(ex);
+            }
+        }
+
+        @Override
+        public void setString(Object object, String value) {
+            setBoolean(object, Boolean.parseBoolean(value));
+        }
+
+        @Override
+        public void setChars(Object object, CharSequence message, int start, int end) {
+            setBoolean(object, Numbers.parseBoolean(message, start, end));
+        }
+
+        @Override
+        public boolean append(Object object, StringBuilder string) {
+            string.append(getBoolean(object));
+            return true;
+        }
+
+    }
+
+    /**
+     * Accessor of a byte field.
+     */
+    public static final class ByteAccessor extends FieldAccessor {
+
+        private ByteAccessor(Field field, MethodHandle getter, MethodHandle setter) {
+            super(field, getter, setter);
+        }
+
+        public byte getByte(Object object) {
+            try {
+                return (byte) getter.invokeExact(object);
+            } catch (Throwable ex) {
+                throw rethrow(ex);
+            }
+        }
+
+        public void setByte(Object object, byte value) {
+            try {
+                setter.invokeExact(object, value);
+            } catch (Throwable ex) {
+                throw rethrow(ex);
+            }
+        }
+
+        @Override
+        public void setString(Object object, String value) {
+            setByte(object, Byte.parseByte(value));
+        }
+
+        @Override
+        public void setChars(Object object, CharSequence message, int start, int end) {
+            setByte(object, Numbers.parseByte(message, start, end));
+        }
+
+        @Override
+        public boolean append(Object object, StringBuilder string) {
+            string.append(getByte(object));
+            return true;
+        }
+
+    }
+
+    /**
+     * Accessor of a short field.
+     */
+    public static final class ShortAccessor extends FieldAccessor {
+
+        private ShortAccessor(Field field, MethodHandle getter, MethodHandle setter) {
+            super(field, getter, setter);
+        }
+
+        public short getShort(Object object) {
+            try {
+                return (short) getter.invokeExact(object);
+            } catch (Throwable ex) {
+                throw rethrow(ex);
+            }
+        }
+
+        public void setShort(Object object, short value) {
+            try {
+                setter.invokeExact(object, value);
+            } catch (Throwable ex) {
+                throw rethrow(ex);
+            }
+        }
+
+        @Override
+        public void setString(Object object, String value) {
+            setShort(object, Short.parseShort(value));
+        }
+
+        @Override
+        public void setChars(Object object, CharSequence message, int start, int end) {
+            setShort(object, Numbers.parseShort(message, start, end));
+        }
+
+        @Override
+        public boolean append(Object object, StringBuilder string) {
+            string.append(getShort(object));
+            return true;
+        }
+
+    }
+
+    /**
+     * Accessor of an int field.
+     */
+    public static final class IntAccessor extends FieldAccessor {
+
+        private IntAccessor(Field field, MethodHandle getter, MethodHandle setter) {
+            super(field, getter, setter);
+        }
+
+        public int getInt(Object object) {
+            try {
+                return (int) getter.invokeExact(object);
+            } catch (Throwable ex) {
+                throw rethrow(ex);
+            }
+        }
+
+        public void setInt(Object object, int value) {
+            try {
+                setter.invokeExact(object, value);
+            } catch (Throwable ex) {
+                throw rethrow(ex);
+            }
+        }
+
+        @Override
+        public void setString(Object object, String value) {
+            setInt(object, Integer.parseInt(value));
+        }
+
+        @Override
+        public void setChars(Object object, CharSequence message, int start, int end) {
+            setInt(object, Numbers.parseInt(message, start, end));
+        }
+
+        @Override
+        public boolean append(Object object, StringBuilder string) {
+            string.append(getInt(object));
+            return true;
+        }
+
+    }
+
+    /**
+     * Accessor of a long field.
+     */
+    public static final class LongAccessor extends FieldAccessor {
+
+        private LongAccessor(Field field, MethodHandle getter, MethodHandle setter) {
+            super(field, getter, setter);
+        }
+
+        public long getLong(Object object) {
+            try {
+                return (long) getter.invokeExact(object);
+            } catch (Throwable ex) {
+                throw rethrow(ex);
+            }
+        }
+
+        public void setLong(Object object, long value) {
+            try {
+                setter.invokeExact(object, value);
+            } catch (Throwable ex) {
+                throw rethrow(ex);
+            }
+        }
+
+        @Override
+        public void setString(Object object, String value) {
+            setLong(object, Long.parseLong(value));
+        }
+
+        @Override
+        public void setChars(Object object, CharSequence message, int start, int end) {
+            setLong(object, Numbers.parseLong(message, start, end));
+        }
+
+        @Override
+        public boolean append(Object object, StringBuilder string) {
+            string.append(getLong(object));
+            return true;
+        }
+
+    }
+
+    /**
+     * Accessor of a float field.
+     */
+    public static final class FloatAccessor extends FieldAccessor {
+
+        private FloatAccessor(Field field, MethodHandle getter, MethodHandle setter) {
+            super(field, getter, setter);
+        }
+
+        public float getFloat(Object object) {
+            try {
+                return (float) getter.invokeExact(object);
+            } catch (Throwable ex) {
+                throw rethrow(ex);
+            }
+        }
+
+        public void setFloat(Object object, float value) {
+            try {
+                setter.invokeExact(object, value);
+            } catch (Throwable ex) {
+                throw rethrow(ex);
+            }
+        }
+
+        @Override
+        public void setString(Object object, String value) {
+            setFloat(object, Float.parseFloat(value));
+        }
+
+        @Override
+        public boolean append(Object object, StringBuilder string) {
+            string.append(getFloat(object));
+            return true;
+        }
+
+    }
+
+    /**
+     * Accessor of a double field.
+     */
+    public static final class DoubleAccessor extends FieldAccessor {
+
+        private DoubleAccessor(Field field, MethodHandle getter, MethodHandle setter) {
+            super(field, getter, setter);
+        }
+
+        public double getDouble(Object object) {
+            try {
+                return (double) getter.invokeExact(object);
+            } catch (Throwable ex) {
+                throw rethrow(ex);
+            }
+        }
+
+        public void setDouble(Object object, double value) {
+            try {
+                setter.invokeExact(object, value);
+            } catch (Throwable ex) {
+                throw rethrow(ex);
+            }
+        }
+
+        @Override
+        public void setString(Object object, String value) {
+            setDouble(object, Double.parseDouble(value));
+        }
+
+        @Override
+        public boolean append(Object object, StringBuilder string) {
+            string.append(getDouble(object));
+            return true;
+        }
+
+    }
+
+    /**
+     * Accessor of a char field.
+     */
+    public static final class CharAccessor extends FieldAccessor {
+
+        private CharAccessor(Field field, MethodHandle getter, MethodHandle setter) {
+            super(field, getter, setter);
+        }
+
+        public char getChar(Object object) {
+            try {
+                return (char) getter.invokeExact(object);
+            } catch (Throwable ex) {
+                throw rethrow(ex);
+            }
+        }
+
+        public void setChar(Object object, char value) {
+            try {
+                setter.invokeExact(object, value);
+            } catch (Throwable ex) {
+                throw rethrow(ex);
+            }
+        }
+
+        @Override
+        public void setString(Object object, String value) {
+            setChar(object, value.charAt(0));
+        }
+
+        @Override
+        public void setChars(Object object, CharSequence message, int start, int end) {
+            if (start >= end) {
+                throw new StringIndexOutOfBoundsException(0);
+            }
+            setChar(object, message.charAt(start));
+        }
+
+        @Override
+        public boolean append(Object object, StringBuilder string) {
+            string.append(getChar(object));
+            return true;
+        }
+
+    }
+
+    /**
+     * Accessor of a reference field, a string content is set as it is.
+     */
+    public static final class ObjectAccessor extends FieldAccessor {
+
+        private ObjectAccessor(Field field, MethodHandle getter, MethodHandle setter) {
+            super(field, getter, setter);
+        }
+
+        @Override
+        public void setString(Object object, String value) {
+            setObject(object, value);
+        }
+
+    }
+
+}
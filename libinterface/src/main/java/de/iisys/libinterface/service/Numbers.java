@@ -0,0 +1,174 @@
+package de.iisys.libinterface.service;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Class that parses numbers from a range of a {@link CharSequence} without
+ * creating a string of the range, and writes numbers into a
+ * {@link ByteBuffer} without creating a string of the number.<br>
+ * The methods accept and reject the same input as {@link Integer#parseInt(java.lang.String) },
+ * {@link Long#parseLong(java.lang.String) } and the other parse methods of the
+ * primitive wrappers, and throw the same {@link NumberFormatException}s. The
+ * string of the range is only created for the message of an exception.
+ */
+public final class Numbers {
+
+    private Numbers() {
+    }
+
+    /**
+     * Parses a long from the given range.
+     * @param message the message
+     * @param start the start
+     * @param end the end, exclusive
+     * @param min the minimum value
+     * @param max the maximum value
+     * @return the value
+     * @throws NumberFormatException if the range is not a number between the
+     * minimum and maximum value
+     */
+    private static long parse(CharSequence message, int start, int end, long min, long max) {
+        if (start >= end) {
+            throw forInputString(message, start, end);
+        }
+
+        boolean negative = false;
+        long limit = -max;
+        int i = start;
+        char first = message.charAt(i);
+        if (first < '0') {
+            if (first == '-') {
+                negative = true;
+                limit = min;
+            } else if (first != '+') {
+                throw forInputString(message, start, end);
+            }
+            if (++i == end) {
+                throw forInputString(message, start, end);
+            }
+        }
+
+        long multiplicationLimit = limit / 10;
+        long result = 0;
+        while (i < end) {
+            int digit = Character.digit(message.charAt(i++), 10);
+            if (digit < 0 || result < multiplicationLimit) {
+                throw forInputString(message, start, end);
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                throw forInputString(message, start, end);
+            }
+            result -= digit;
+        }
+        return negative ? result : -result;
+    }
+
+    /**
+     * Parses an int from the given range like {@link Integer#parseInt(java.lang.String) }.
+     * @param message the message
+     * @param start the start
+     * @param end the end, exclusive
+     * @return the value
+     */
+    public static int parseInt(CharSequence message, int start, int end) {
+        return (int) parse(message, start, end, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Parses a long from the given range like {@link Long#parseLong(java.lang.String) }.
+     * @param message the message
+     * @param start the start
+     * @param end the end, exclusive
+     * @return the value
+     */
+    public static long parseLong(CharSequence message, int start, int end) {
+        return parse(message, start, end, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Parses a short from the given range like {@link Short#parseShort(java.lang.String) }.
+     * @param message the message
+     * @param start the start
+     * @param end the end, exclusive
+     * @return the value
+     */
+    public static short parseShort(CharSequence message, int start, int end) {
+        int value = parseInt(message, start, end);
+        if (value < Short.MIN_VALUE || value > Short.MAX_VALUE) {
+            throw outOfRange(message, start, end);
+        }
+        return (short) value;
+    }
+
+    /**
+     * Parses a byte from the given range like {@link Byte#parseByte(java.lang.String) }.
+     * @param message the message
+     * @param start the start
+     * @param end the end, exclusive
+     * @return the value
+     */
+    public static byte parseByte(CharSequence message, int start, int end) {
+        int value = parseInt(message, start, end);
+        if (value < Byte.MIN_VALUE || value > Byte.MAX_VALUE) {
+            throw outOfRange(message, start, end);
+        }
+        return (byte) value;
+    }
+
+    /**
+     * Parses a boolean from the given range like {@link Boolean#parseBoolean(java.lang.String) }.
+     * @param message the message
+     * @param start the start
+     * @param end the end, exclusive
+     * @return true if the range is {@code "true"} ignoring the case
+     */
+    public static boolean parseBoolean(CharSequence message, int start, int end) {
+        if (end - start != 4) {
+            return false;
+        }
+        return Character.toLowerCase(message.charAt(start)) == 't'
+                && Character.toLowerCase(message.charAt(start + 1)) == 'r'
+                && Character.toLowerCase(message.charAt(start + 2)) == 'u'
+                && Character.toLowerCase(message.charAt(start + 3)) == 'e';
+    }
+
+    /**
+     * Writes the decimal digits of the value into the buffer with one byte
+     * per character, like {@link Long#toString(long) }.
+     * @param buffer the buffer
+     * @param value the value
+     * @throws BufferOverflowException if the value does not fit into the
+     * buffer
+     */
+    public static void write(ByteBuffer buffer, long value) {
+        int digits = value < 0 ? 2 : 1;
+        for (long rest = value; rest <= -10 || rest >= 10; rest /= 10) {
+            digits++;
+        }
+        int position = buffer.position();
+        if (buffer.limit() - position < digits) {
+            throw new BufferOverflowException();
+        }
+
+        int first = position;
+        if (value < 0) {
+            buffer.put(first++, (byte) '-');
+        }
+        for (int i = position + digits - 1; i >= first; i--) {
+            buffer.put(i, (byte) ('0' + Math.abs(value % 10)));
+            value /= 10;
+        }
+        buffer.position(position + digits);
+    }
+
+    private static NumberFormatException forInputString(CharSequence message, int start, int end) {
+        return new NumberFormatException("For input string: \"" + message.subSequence(start, end) + "\"");
+    }
+
+    private static NumberFormatException outOfRange(CharSequence message, int start, int end) {
+        return new NumberFormatException("Value out of range. Value:\"" + message.subSequence(start, end) + "\" Radix:10");
+    }
+
+}
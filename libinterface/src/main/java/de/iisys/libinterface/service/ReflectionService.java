@@ -1,31 +1,59 @@
 package de.iisys.libinterface.service;
 
+import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 /**
- * Class that works as reflection service.
+ * Class that works as reflection service.<br>
+ * Fields, methods and annotations are resolved once per class into a
+ * {@link ClassMetadata}, which is stored in a {@link ClassValue} so that it
+ * does not keep its class from being unloaded.
  */
 public class ReflectionService {
 
+    private static final ClassValue<ClassMetadata> METADATA = new ClassValue<ClassMetadata>() {
+
+        @Override
+        protected ClassMetadata computeValue(Class<?> type) {
+            Class<?> superclass = type.getSuperclass();
+            return new ClassMetadata(type, superclass != null ? METADATA.get(superclass) : null);
+        }
+
+    };
+
+    /**
+     * Gets the cached metadata of the given class.
+     * @param clazz the class
+     * @return metadata of the class
+     */
+    public static ClassMetadata getClassMetadata(Class<?> clazz) {
+        return METADATA.get(clazz);
+    }
+
+    /**
+     * Gets the annotation of the given class from its cached metadata.
+     * @param <A> annotation type
+     * @param clazz the class
+     * @param annotationClass the annotation class
+     * @return the annotation or null
+     */
+    public static <A extends Annotation> A getAnnotation(Class<?> clazz, Class<A> annotationClass) {
+        return METADATA.get(clazz).getAnnotation(annotationClass);
+    }
+
     /**
      * Gets declared fields with super fields.
      * 
      * @param clazz Instances of the class {@code Class} represent classes and
      * interfaces in a running Java application
-     * @return declared field
+     * @return new list of the declared fields, which is a copy of the
+     * {@link ClassMetadata#getFields() }
      */
     public static List<Field> getDeclaredFieldsWithSuperFields(Class<?> clazz) {
-        List<Field> fields = new ArrayList<>();
-        while (clazz != null) {
-            Field[] declaredFields = clazz.getDeclaredFields();
-            fields.addAll(Arrays.asList(declaredFields));
-            clazz = clazz.getSuperclass();
-        }
-        return fields;
+        return new ArrayList<>(METADATA.get(clazz).getFields());
     }
 
     /**
@@ -38,13 +66,9 @@ public class ReflectionService {
      * @throws NoSuchFieldException 
      */
     public static Field getDeclaredFieldWithSuperField(Class<?> clazz, String fieldName) throws NoSuchFieldException {
-        Class<?> currentClass = clazz;
-        while (currentClass != null) {
-            try {
-                return currentClass.getDeclaredField(fieldName);
-            } catch (NoSuchFieldException | SecurityException ex) {
-                currentClass = currentClass.getSuperclass();
-            }
+        Field field = METADATA.get(clazz).getField(fieldName);
+        if (field != null) {
+            return field;
         }
 
         throw new NoSuchFieldException("Could not find field '" + fieldName + "' in class '" + clazz.getName() + "'.");
@@ -60,13 +84,9 @@ public class ReflectionService {
      * @throws NoSuchMethodException 
      */
     public static Method getDeclaredMethodWithSuperMethod(Class<?> clazz, String methodName, Class<?>... parameterTypes) throws NoSuchMethodException {
-        Class<?> currentClass = clazz;
-        while (currentClass != null) {
-            try {
-                return currentClass.getDeclaredMethod(methodName, parameterTypes);
-            } catch (NoSuchMethodException | SecurityException ex) {
-                currentClass = currentClass.getSuperclass();
-            }
+        Method method = METADATA.get(clazz).getMethod(methodName, parameterTypes);
+        if (method != null) {
+            return method;
         }
 
         throw new NoSuchMethodException("Could not find method '" + methodName + "' in class '" + clazz.getName() + "'.");
@@ -82,7 +102,7 @@ public class ReflectionService {
      * @throws IllegalAccessException 
      */
     public static Field getDeclaredFieldWithSuperFieldByContent(Class<?> clazz, String content) throws NoSuchFieldException, IllegalAccessException {
-        return getFieldByContent(getDeclaredFieldsWithSuperFields(clazz), null, content);
+        return getFieldByContent(METADATA.get(clazz).getFields(), null, content);
     }
 
     /**
@@ -94,7 +114,7 @@ public class ReflectionService {
      * @throws IllegalAccessException 
      */
     public static Field getDeclaredFieldWithSuperFieldByContent(Object object, Object content) throws NoSuchFieldException, IllegalAccessException {
-        return getFieldByContent(getDeclaredFieldsWithSuperFields(object.getClass()), object, content);
+        return getFieldByContent(METADATA.get(object.getClass()).getFields(), object, content);
     }
 
     /**
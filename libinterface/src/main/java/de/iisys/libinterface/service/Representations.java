@@ -0,0 +1,137 @@
+package de.iisys.libinterface.service;
+
+import de.iisys.libinterface.message.annotation.Representation;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Class with the lookup tables of the {@link Representation}s of a type, which
+ * are built once per type.<br>
+ * A content is represented by the {@link Representation} of the field of its
+ * class whose name is the string of the content, like an enum constant, and a
+ * representation is parsed to the value of the last field of the type with
+ * this representation, or the value of the {@link Representation#DEFAULT}
+ * field. Enum constants are represented through an {@link EnumMap}, so
+ * neither their string nor their field has to be looked up.
+ */
+public final class Representations {
+
+    private static final ClassValue<Representations> REPRESENTATIONS = new ClassValue<Representations>() {
+
+        @Override
+        protected Representations computeValue(Class<?> type) {
+            return new Representations(type);
+        }
+
+    };
+
+    private final Map<String, String> representationsByName;
+    private final Map<?, String> enumRepresentations;
+    private final Map<String, Object> contents;
+    private final Object defaultContent;
+
+    private Representations(Class<?> type) {
+        ClassMetadata metadata = ReflectionService.getClassMetadata(type);
+
+        Map<String, String> byName = new HashMap<>();
+        Map<String, Object> byRepresentation = new HashMap<>();
+        Object defaultValue = null;
+        for (Field field : metadata.getFields()) {
+            Representation representation = field.getAnnotation(Representation.class);
+            if (representation == null) {
+                continue;
+            }
+
+            if (!representation.value().equals(Representation.DEFAULT) && metadata.getField(field.getName()) == field) {
+                byName.put(field.getName(), representation.value());
+            }
+
+            if (!Modifier.isStatic(field.getModifiers())) {
+                continue;
+            }
+            Object value;
+            try {
+                field.setAccessible(true);
+                value = field.get(null);
+            } catch (IllegalAccessException ex) {
+                throw new IllegalArgumentException("Could not get representation '" + representation.value() + "' of '" + type.getName() + "'.", ex);
+            }
+            if (representation.value().equals(Representation.DEFAULT)) {
+                defaultValue = value;
+            } else {
+                byRepresentation.put(representation.value(), value);
+            }
+        }
+
+        representationsByName = byName.isEmpty() ? Collections.emptyMap() : byName;
+        contents = byRepresentation.isEmpty() ? Collections.emptyMap() : byRepresentation;
+        defaultContent = defaultValue;
+        enumRepresentations = type.isEnum() ? createEnumRepresentations(type) : null;
+    }
+
+    private <E extends Enum<E>> Map<E, String> createEnumRepresentations(Class<?> type) {
+        Class<E> enumType = (Class<E>) type;
+        Map<E, String> representations = new EnumMap<>(enumType);
+        for (E constant : enumType.getEnumConstants()) {
+            Map<String, String> byName = constant.getClass() == type ? representationsByName : REPRESENTATIONS.get(constant.getClass()).representationsByName;
+            String representation = byName.get(constant.toString());
+            if (representation != null) {
+                representations.put(constant, representation);
+            }
+        }
+        return representations;
+    }
+
+    /**
+     * Gets the representations of the given type.
+     * @param type the type
+     * @return the representations
+     */
+    public static Representations get(Class<?> type) {
+        return REPRESENTATIONS.get(type);
+    }
+
+    /**
+     * Gets the representation of the given content, if its class has one for
+     * it, otherwise the content itself.
+     * @param content the content
+     * @return the representation or the content
+     */
+    public static Object represent(Object content) {
+        if (content == null) {
+            return null;
+        }
+
+        String representation;
+        if (content instanceof Enum) {
+            representation = REPRESENTATIONS.get(((Enum<?>) content).getDeclaringClass()).enumRepresentations.get(content);
+        } else {
+            representation = REPRESENTATIONS.get(content.getClass()).representationsByName.get(content.toString());
+        }
+        return representation != null ? representation : content;
+    }
+
+    /**
+     * Gets the content of the given representation, which is the value of
+     * the field with this representation, otherwise the default content or,
+     * if the type has no default, the representation itself.
+     * @param content the representation
+     * @return the content
+     */
+    public Object parse(Object content) {
+        Object parsed = content instanceof String ? contents.get(content) : null;
+        if (parsed != null) {
+            return parsed;
+        }
+        return defaultContent != null ? defaultContent : content;
+    }
+
+    public Object getDefaultContent() {
+        return defaultContent;
+    }
+
+}
@@ -0,0 +1,77 @@
+package de.iisys.libinterface.parser;
+
+import de.iisys.libinterface.message.ContentMessage;
+import de.iisys.libinterface.message.ECCMessage;
+import de.iisys.libinterface.message.EnumContentMessage;
+import de.iisys.libinterface.message.MegaMessage;
+import de.iisys.libinterface.message.MyNameMessage;
+import de.iisys.libinterface.parser.codec.CompiledMessageCodec;
+import de.iisys.libinterface.parser.codec.LinearMessageCodec;
+import de.iisys.libinterface.parser.codec.MessageCodec;
+import de.iisys.libinterface.parser.codec.MessageCodecFactory;
+import de.iisys.libinterface.parser.node.ParserPlan;
+import de.iisys.libinterface.parser.service.MessageParserService;
+import static org.junit.Assert.*;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Class to test every message type with compiled message codecs.
+ */
+public class MessageCodecTest extends MessageParserTest {
+
+    @BeforeClass
+    public static void setUpCodecs() {
+        messageParserService = new MessageParserService();
+        messageParserService.setCodecFactory(new MessageCodecFactory());
+    }
+
+    /**
+     * Tests that the templates are compiled to a {@link CompiledMessageCodec}
+     * and linear templates to a {@link LinearMessageCodec}. Only templates
+     * without an ecc are written into byte buffers directly.
+     */
+    @Test
+    public void testCompiledTemplates() {
+        MessageCodecFactory codecFactory = messageParserService.getCodecFactory();
+
+        MyNameMessage myNameMessage = new MyNameMessage("John Doe");
+        assertTrue(codecFactory.getCodec(MyNameMessage.class, messageParserService.getTemplateCache().get(myNameMessage)) instanceof CompiledMessageCodec);
+        assertEquals(2, codecFactory.createLinearCodec(MyNameMessage.class, messageParserService.getTemplateCache().get(myNameMessage)).getSteps().size());
+
+        ContentMessage contentMessage = new ContentMessage();
+        assertTrue(codecFactory.getCodec(ContentMessage.class, messageParserService.getTemplateCache().get(contentMessage)) instanceof CompiledMessageCodec);
+
+        EnumContentMessage enumContentMessage = new EnumContentMessage();
+        assertTrue(codecFactory.getCodec(EnumContentMessage.class, messageParserService.getTemplateCache().get(enumContentMessage)) instanceof CompiledMessageCodec);
+
+        MegaMessage megaMessage = new MegaMessage();
+        MessageCodec<MegaMessage> megaCodec = codecFactory.getCodec(MegaMessage.class, messageParserService.getTemplateCache().get(megaMessage));
+        assertTrue(megaCodec instanceof CompiledMessageCodec);
+        assertTrue(((CompiledMessageCodec<MegaMessage>) megaCodec).isEncodable());
+
+        ECCMessage eccMessage = new ECCMessage();
+        MessageCodec<ECCMessage> eccCodec = codecFactory.getCodec(ECCMessage.class, messageParserService.getTemplateCache().get(eccMessage));
+        assertTrue(eccCodec instanceof CompiledMessageCodec);
+        assertFalse(((CompiledMessageCodec<ECCMessage>) eccCodec).isEncodable());
+    }
+
+    /**
+     * Tests that a class whose template changes is not compiled anymore.
+     */
+    @Test
+    public void testDynamicTemplates() {
+        MessageCodecFactory codecFactory = new MessageCodecFactory();
+        ParserPlan first = messageParserService.getTemplateCache().get("my-{myName}");
+        ParserPlan second = messageParserService.getTemplateCache().get("your-{myName}");
+
+        MessageCodec<MyNameMessage> codec = codecFactory.getCodec(MyNameMessage.class, first);
+        assertTrue(codec instanceof CompiledMessageCodec);
+        assertSame(codec, codecFactory.getCodec(MyNameMessage.class, first));
+
+        assertNull(codecFactory.getCodec(MyNameMessage.class, second));
+        assertNull(codecFactory.getCodec(MyNameMessage.class, first));
+        assertTrue(codecFactory.getCodec(ContentMessage.class, messageParserService.getTemplateCache().get(new ContentMessage())) instanceof CompiledMessageCodec);
+    }
+
+}
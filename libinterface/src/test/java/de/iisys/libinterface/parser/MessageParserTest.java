@@ -0,0 +1,1114 @@
+package de.iisys.libinterface.parser;
+
+import de.iisys.libinterface.message.ArrayMessage;
+import de.iisys.libinterface.message.CallbackMessage;
+import de.iisys.libinterface.message.MyNameMessage;
+import de.iisys.libinterface.message.ContentMessage;
+import de.iisys.libinterface.message.ECCMessage;
+import de.iisys.libinterface.message.EndingMessage;
+import de.iisys.libinterface.message.MegaMessage;
+import de.iisys.libinterface.message.MessageCharacterMessage;
+import de.iisys.libinterface.message.OptionalContentMessage;
+import de.iisys.libinterface.message.EnumContentMessage;
+import de.iisys.libinterface.message.StringContentMessage;
+import de.iisys.libinterface.message.annotation.Callback;
+import de.iisys.libinterface.message.annotation.MessageTemplate;
+import de.iisys.libinterface.message.interfaces.ImmutableMessage;
+import de.iisys.libinterface.message.interfaces.Message;
+import de.iisys.libinterface.parser.codec.MessageSegments;
+import de.iisys.libinterface.parser.node.ParserPlan;
+import de.iisys.libinterface.parser.service.LiteralScanner;
+import de.iisys.libinterface.parser.service.MessageCharacters;
+import de.iisys.libinterface.parser.service.MessageDispatchIndex;
+import de.iisys.libinterface.parser.service.MessageFactoryCache;
+import de.iisys.libinterface.parser.service.MessageMismatchException;
+import de.iisys.libinterface.parser.service.MessageParserService;
+import de.iisys.libinterface.parser.service.MessageSet;
+import de.iisys.libinterface.parser.service.MessageTemplateCache;
+import de.iisys.libinterface.parser.service.SizeEstimate;
+import de.iisys.libinterface.protocol.BufferPool;
+import de.iisys.libinterface.service.ClassMetadata;
+import de.iisys.libinterface.service.FieldAccessor;
+import de.iisys.libinterface.service.Numbers;
+import de.iisys.libinterface.service.ReflectionService;
+import de.iisys.libinterface.service.Representations;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StringWriter;
+import java.lang.reflect.Field;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.*;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.parboiled.errors.ParserRuntimeException;
+import org.parboiled.errors.ParsingException;
+
+/**
+ * Class to test every message type.
+ */
+public class MessageParserTest {
+
+    protected static MessageParserService messageParserService;
+
+    @BeforeClass
+    public static void setUpBeforeClass() {
+        messageParserService = new MessageParserService();
+    }
+
+    /**
+     * Creates and tests the {@link ContentMessage}.
+     */
+    @Test
+    public void testContent() {
+        ContentMessage message = new ContentMessage();
+        String serialized = messageParserService.serialize(message);
+        assertEquals("/?messageContent[]", serialized);
+
+        ContentMessage deserialized = messageParserService.deserialize(serialized, ContentMessage.class);
+        assertEquals(message.getClass(), deserialized.getClass());
+    }
+
+    /**
+     * Creates and tests the {@link MessageCharacterMessage}
+     */
+    @Test
+    public void testMessageCharacterName() {
+        MessageCharacterMessage message = new MessageCharacterMessage();
+        String serialized = messageParserService.serialize(message);
+        assertEquals("/?" + MessageCharacters.ACK + "message" + MessageCharacters.CR + MessageCharacters.LF, serialized);
+
+        MessageCharacterMessage deserialized = messageParserService.deserialize(serialized, MessageCharacterMessage.class);
+        assertEquals(message.getClass(), deserialized.getClass());
+    }
+
+    /**
+     * Tests that every part of merged literals is compared.
+     */
+    @Test
+    public void testMergedLiterals() {
+        String[] messages = {
+            "/?" + MessageCharacters.ACK + "message" + MessageCharacters.CR,
+            "/?" + MessageCharacters.ACK + "message" + MessageCharacters.CR + MessageCharacters.CR,
+            "/?" + MessageCharacters.NAK + "message" + MessageCharacters.CR + MessageCharacters.LF
+        };
+        for (String message : messages) {
+            try {
+                messageParserService.deserialize(message, MessageCharacterMessage.class);
+                fail("Message '" + message + "' must not match.");
+            } catch (ParsingException ex) {
+            }
+        }
+    }
+
+    /**
+     * Creates and tests the {@link MyNameMessage}.
+     */
+    @Test
+    public void testFieldResolving() {
+        MyNameMessage message = new MyNameMessage("John Doe");
+        String serialized = messageParserService.serialize(message);
+        assertEquals("my-{name}-is-John Doe", serialized);
+
+        MyNameMessage deserialized = messageParserService.deserialize(serialized, MyNameMessage.class);
+        assertEquals("John Doe", deserialized.getMyName());
+    }
+
+    /**
+     * Creates and tests the {@link OptionalContentMessage}.
+     */
+    @Test
+    public void testOptionalFieldResolving() {
+        OptionalContentMessage message = new OptionalContentMessage("nicer");
+        String serialized = messageParserService.serialize(message);
+        assertEquals("a--nicer-message" + MessageCharacters.CR + MessageCharacters.LF, serialized);
+
+        OptionalContentMessage deserialized = messageParserService.deserialize(serialized, OptionalContentMessage.class);
+        assertNull(deserialized.getOptional());
+        assertEquals("nicer", deserialized.getSetting());
+
+        message = new OptionalContentMessage("very", "great");
+        serialized = messageParserService.serialize(message);
+        assertEquals("a-?very!-great-message" + MessageCharacters.CR + MessageCharacters.LF, serialized);
+
+        deserialized = messageParserService.deserialize(serialized, OptionalContentMessage.class);
+        assertEquals("very", deserialized.getOptional());
+        assertEquals("great", deserialized.getSetting());
+
+        // expands to five characters with space as defined
+        message = new OptionalContentMessage("totally", "fine");
+        serialized = messageParserService.serialize(message);
+        assertEquals("a-?totally!-fine -message" + MessageCharacters.CR + MessageCharacters.LF, serialized);
+
+        deserialized = messageParserService.deserialize(serialized, OptionalContentMessage.class);
+        assertEquals("totally", deserialized.getOptional());
+        assertEquals("fine ", deserialized.getSetting());
+
+        // will be cut off after five characters
+        message = new OptionalContentMessage("not", "perfect");
+        serialized = messageParserService.serialize(message);
+        assertEquals("a-?not!-perfe-message" + MessageCharacters.CR + MessageCharacters.LF, serialized);
+
+        deserialized = messageParserService.deserialize(serialized, OptionalContentMessage.class);
+        assertEquals("not", deserialized.getOptional());
+        assertEquals("perfe", deserialized.getSetting());
+    }
+
+    /**
+     * Creates and tests {@link EndingMessage}.
+     */
+    @Test
+    public void testEnding() {
+        EndingMessage message = new EndingMessage("one", "ending");
+        String serialized = messageParserService.serialize(message);
+        assertEquals("one-ending", serialized);
+
+        EndingMessage deserialized = messageParserService.deserialize(serialized, EndingMessage.class);
+        assertEquals("one", deserialized.getBeginning());
+        assertEquals("ending", deserialized.getEnding());
+
+        message = new EndingMessage(null, "ending");
+        serialized = messageParserService.serialize(message);
+        assertEquals("ending", serialized);
+
+        deserialized = messageParserService.deserialize(serialized, EndingMessage.class);
+        assertNull(deserialized.getBeginning());
+        assertEquals("ending", deserialized.getEnding());
+    }
+
+    /**
+     * Creates and tests the {@link EnumContentMessage}.
+     */
+    @Test
+    public void testEnumContent() {
+        EnumContentMessage message = new EnumContentMessage(EnumContentMessage.Content.VALUE_B);
+        String serialized = messageParserService.serialize(message);
+        assertEquals("test-B-1" + MessageCharacters.CR, serialized);
+
+        EnumContentMessage deserialized = messageParserService.deserialize(serialized, EnumContentMessage.class);
+        assertEquals(EnumContentMessage.Content.VALUE_B, deserialized.getContent());
+    }
+
+    /**
+     * Creates and tests the {@link StringContentMessage}.
+     * @throws NoSuchFieldException
+     * @throws IllegalAccessException 
+     */
+    @Test
+    public void testStringContent() throws NoSuchFieldException, IllegalAccessException {
+        StringContentMessage message = new StringContentMessage(StringContentMessage.Content.VALUE_A);
+        String serialized = messageParserService.serialize(message);
+        assertEquals("test-A-2", serialized);
+
+        StringContentMessage deserialized = messageParserService.deserialize(serialized, StringContentMessage.class);
+        assertEquals(StringContentMessage.Content.VALUE_A, deserialized.getContent());
+        assertEquals("VALUE_A", ReflectionService.getDeclaredFieldWithSuperFieldByContent(StringContentMessage.Content.class, deserialized.getContent()).getName());
+
+        message = new StringContentMessage(StringContentMessage.SubContent.TEST_A);
+        serialized = messageParserService.serialize(message);
+        assertEquals("test-A-2", serialized);
+
+        deserialized = messageParserService.deserialize(serialized, StringContentMessage.class);
+        assertEquals(StringContentMessage.SubContent.TEST_A, deserialized.getContent());
+        assertEquals("TEST_A", ReflectionService.getDeclaredFieldWithSuperFieldByContent(StringContentMessage.SubContent.class, deserialized.getContent()).getName());
+
+        message = new StringContentMessage(StringContentMessage.SubContent.TEST_E);
+        serialized = messageParserService.serialize(message);
+        assertEquals("test-E-2", serialized);
+
+        deserialized = messageParserService.deserialize(serialized, StringContentMessage.class);
+        assertEquals(StringContentMessage.SubContent.TEST_E, deserialized.getContent());
+        assertEquals("TEST_E", ReflectionService.getDeclaredFieldWithSuperFieldByContent(StringContentMessage.SubContent.class, deserialized.getContent()).getName());
+    }
+
+    /**
+     * Creates and tests the {@link CallbackMessage}.
+     */
+    @Test
+    public void testCallback() {
+        CallbackMessage message = new CallbackMessage("hello");
+        String serialized = messageParserService.serialize(message);
+        assertEquals("call-hello-message", serialized);
+        assertEquals("hello", message.getBack());
+        assertEquals("HELLO", message.getCallback());
+        assertEquals("hellohello", message.getClassCallback());
+
+        CallbackMessage deserialized = messageParserService.deserialize(serialized, CallbackMessage.class);
+        assertEquals("hello", deserialized.getBack());
+        assertEquals("HELLO", message.getCallback());
+        assertEquals("hellohello", message.getClassCallback());
+    }
+
+    /**
+     * Tests that a missing callback method is reported before the message is
+     * processed, even if the field does not occur in the message.
+     */
+    @Test
+    public void testMissingCallback() {
+        try {
+            messageParserService.deserialize("missing", MissingCallbackMessage.class);
+            fail("A missing callback method must be reported.");
+        } catch (ParserRuntimeException ex) {
+            assertTrue(ex.getMessage().contains("nothing"));
+        }
+    }
+
+    /**
+     * Tests that a registered factory creates the deserialized messages and
+     * that the constructor factories are cached.
+     */
+    @Test
+    public void testRegisteredFactory() throws Exception {
+        StringContentMessage instance = new StringContentMessage();
+        messageParserService.registerFactory(StringContentMessage.class, arguments -> instance);
+        try {
+            assertSame(instance, messageParserService.deserialize("test-A-2", StringContentMessage.class));
+        } finally {
+            messageParserService.unregisterFactory(StringContentMessage.class);
+        }
+        assertNotSame(instance, messageParserService.deserialize("test-A-2", StringContentMessage.class));
+
+        MessageFactoryCache factoryCache = messageParserService.getFactoryCache();
+        assertSame(factoryCache.get(StringContentMessage.class, null), factoryCache.get(StringContentMessage.class, new Object[0]));
+        assertSame(factoryCache.get(StringContentMessage.class, new Object[]{"A"}), factoryCache.get(StringContentMessage.class, new Object[]{"B"}));
+        assertEquals("B", factoryCache.get(StringContentMessage.class, new Object[]{"B"}).newInstance(new Object[]{"B"}).getContent());
+
+        try {
+            messageParserService.deserialize("private-A;", PrivateConstructorMessage.class);
+            fail("Private constructor must not be accessible.");
+        } catch (RuntimeException ex) {
+            assertTrue(ex.getCause() instanceof IllegalAccessException || ex.getCause() instanceof NoSuchMethodException);
+        }
+    }
+
+    /**
+     * Tests that the dispatch index only keeps the classes that may match.
+     */
+    @Test
+    public void testDispatchIndex() {
+        Class<? extends Message>[] classes = new Class[]{ContentMessage.class, MessageCharacterMessage.class, MyNameMessage.class, EndingMessage.class};
+        MessageDispatchIndex dispatchIndex = new MessageDispatchIndex(messageParserService.getTemplateCache(), classes);
+
+        assertArrayEquals(new int[]{2, 3}, dispatchIndex.getCandidates("my-{name}-is-John Doe"));
+        assertArrayEquals(new int[]{0, 3}, dispatchIndex.getCandidates("/?messageContent[]"));
+        assertArrayEquals(new int[]{3}, dispatchIndex.getCandidates("/?"));
+        assertArrayEquals(new int[]{3}, dispatchIndex.getCandidates(""));
+
+        Message deserialized = messageParserService.deserialize("my-{name}-is-John Doe", classes);
+        assertEquals(MyNameMessage.class, deserialized.getClass());
+        assertEquals("John Doe", ((MyNameMessage) deserialized).getMyName());
+
+        assertArrayEquals(new int[0], new MessageDispatchIndex(messageParserService.getTemplateCache(), new Class[]{MyNameMessage.class}).getCandidates("my-{nome}-is-John Doe"));
+        try {
+            messageParserService.deserialize("my-{nome}-is-John Doe", MyNameMessage.class);
+            fail("Message must not match.");
+        } catch (ParsingException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().contains("Content does not match, expected 'my-{name}-is-' but got 'my-{nome}-is-'."));
+        }
+    }
+
+    /**
+     * Tests the {@link MessageSet} against the deserialization with multiple
+     * classes.
+     */
+    @Test
+    public void testMessageSet() {
+        Class<? extends Message>[] classes = new Class[]{EnumContentMessage.class, StringContentMessage.class, MyNameMessage.class, EndingMessage.class};
+        MessageSet messageSet = messageParserService.createMessageSet(classes);
+        assertTrue(messageSet.isMerged(0));
+        assertTrue(messageSet.isMerged(1));
+
+        String[] messages = {"test-B-1" + MessageCharacters.CR, "test-B-2", "my-{name}-is-John Doe", "begin-end", "end"};
+        for (String message : messages) {
+            Message expected = messageParserService.deserialize(message, classes);
+            Message deserialized = messageSet.deserialize(message);
+            assertEquals(expected.getClass(), deserialized.getClass());
+            assertEquals(messageParserService.serialize(expected), messageParserService.serialize(deserialized));
+        }
+
+        assertEquals(EnumContentMessage.Content.VALUE_B, ((EnumContentMessage) messageSet.deserialize(messages[0])).getContent());
+        assertEquals("B", ((StringContentMessage) messageSet.deserialize(messages[1])).getContent());
+    }
+
+    /**
+     * Tests the {@link LiteralScanner}s against {@link String#indexOf(java.lang.String, int) }.
+     */
+    @Test
+    public void testLiteralScanner() {
+        String message = "ab" + MessageCharacters.CR + "abcab\u0163c" + MessageCharacters.CR + MessageCharacters.LF + "abcabc";
+        String[] literals = {Character.toString(MessageCharacters.CR), "abc", "cab", "b\u0163c", "c" + MessageCharacters.CR + MessageCharacters.LF, "bcd"};
+        for (String literal : literals) {
+            LiteralScanner scanner = LiteralScanner.compile(literal);
+            for (int position = 0; position <= message.length(); position++) {
+                int expected = message.indexOf(literal, position);
+                assertEquals(expected, scanner.indexOf(message, position));
+                assertEquals(expected, scanner.indexOf(new StringBuilder(message), position));
+                assertEquals(expected, scanner.indexOf(message.toCharArray(), position, message.length()));
+                if (literal.indexOf('\u0163') < 0) {
+                    ByteBuffer buffer = ByteBuffer.wrap(message.replace('\u0163', '?').getBytes(StandardCharsets.ISO_8859_1));
+                    assertEquals(expected, scanner.indexOf(buffer, position, buffer.limit()));
+                }
+            }
+        }
+        assertSame(LiteralScanner.get("abc"), LiteralScanner.get("abc"));
+    }
+
+    /**
+     * Tests that {@link Numbers} parses like the primitive wrappers.
+     */
+    @Test
+    public void testNumbers() {
+        String[] values = {"0", "-0", "+7", "42", "-128", "128", "32767", "-32769", "2147483647", "-2147483648", "2147483648",
+            "9223372036854775807", "-9223372036854775808", "9223372036854775808", "", "-", "+", "1a", " 1", "\u0661\u0662", "true", "TRUE", "tru"};
+        for (String value : values) {
+            String message = "[" + value + "]";
+            int end = message.length() - 1;
+            assertEquals(parse(() -> Integer.parseInt(value)), parse(() -> Numbers.parseInt(message, 1, end)));
+            assertEquals(parse(() -> Long.parseLong(value)), parse(() -> Numbers.parseLong(message, 1, end)));
+            assertEquals(parse(() -> Short.parseShort(value)), parse(() -> Numbers.parseShort(message, 1, end)));
+            assertEquals(parse(() -> Byte.parseByte(value)), parse(() -> Numbers.parseByte(message, 1, end)));
+            assertEquals(Boolean.parseBoolean(value), Numbers.parseBoolean(message, 1, end));
+        }
+    }
+
+    private static Object parse(Callable<Object> parser) {
+        try {
+            return parser.call();
+        } catch (Exception ex) {
+            return ex.getClass();
+        }
+    }
+
+    /**
+     * Tests the serialization into a string builder, an appendable and a
+     * byte buffer, which must not change if the message does not fit.
+     */
+    @Test
+    public void testSerializeSinks() throws Exception {
+        Message[] messages = {
+            new StringContentMessage("\u00e4\u20ac"),
+            new OptionalContentMessage("setting"),
+            new ArrayMessage(new String[]{"one", "two"}, new String[]{"first", "second"}),
+            new OptionalContentMessage("very", "gr\u00e9at"),
+            new EnumContentMessage(EnumContentMessage.Content.VALUE_B),
+            new ECCMessage("eccTest1"),
+            new NumberContentMessage(-7, Long.MIN_VALUE, '\u00e9', -0.5, true),
+            new ImmutableContentMessage("kept")
+        };
+        for (Message message : messages) {
+            String expected = messageParserService.serialize(message);
+
+            StringBuilder string = new StringBuilder("prefix");
+            messageParserService.serialize(message, string);
+            assertEquals("prefix" + expected, string.toString());
+
+            StringWriter writer = new StringWriter();
+            messageParserService.serialize(message, writer);
+            assertEquals(expected, writer.toString());
+
+            for (Charset charset : new Charset[]{StandardCharsets.ISO_8859_1, StandardCharsets.US_ASCII, StandardCharsets.UTF_8}) {
+                ByteBuffer buffer = ByteBuffer.allocate(64);
+                buffer.put((byte) 'x');
+                int length = messageParserService.serialize(message, buffer, charset);
+                assertEquals(expected.getBytes(charset).length + 1, buffer.position());
+                assertEquals(expected.getBytes(charset).length, length);
+                assertArrayEquals(expected.getBytes(charset), Arrays.copyOfRange(buffer.array(), 1, buffer.position()));
+            }
+        }
+
+        for (Message message : messages) {
+            ByteBuffer buffer = ByteBuffer.allocate(6);
+            buffer.put((byte) 'x');
+            try {
+                messageParserService.serialize(message, buffer, StandardCharsets.ISO_8859_1);
+                fail("The message must not fit into the buffer.");
+            } catch (BufferOverflowException ex) {
+                assertEquals(1, buffer.position());
+            }
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        try {
+            messageParserService.serialize(new ArrayMessage(new String[]{"one", "two"}, new String[]{"first"}), buffer, StandardCharsets.US_ASCII);
+            fail("An array without an element must be reported.");
+        } catch (ParsingException ex) {
+            assertEquals(0, buffer.position());
+        }
+
+        StringBuilder string = new StringBuilder("prefix");
+        try {
+            messageParserService.serialize(new StringContentMessage(null), string);
+            fail("A field without data must be reported.");
+        } catch (ParsingException ex) {
+            assertEquals("prefix", string.toString());
+        }
+    }
+
+    /**
+     * Tests that the {@link BufferPool} reuses released buffers and detects
+     * releases of buffers that are not leased.
+     */
+    @Test
+    public void testBufferPool() {
+        BufferPool pool = new BufferPool(256, 1024, 1, 1, true);
+
+        ByteBuffer buffer = pool.lease(100);
+        assertTrue(buffer.isDirect());
+        assertEquals(256, buffer.capacity());
+        assertEquals(100, buffer.limit());
+        pool.release(buffer);
+        try {
+            pool.release(buffer);
+            fail("A buffer must only be released once.");
+        } catch (IllegalStateException ex) {
+            // expected
+        }
+
+        assertSame(buffer, pool.lease(200));
+        ByteBuffer other = pool.lease(300);
+        assertEquals(512, other.capacity());
+        ByteBuffer large = pool.lease(2000);
+        assertFalse(large.isDirect());
+        pool.release(buffer);
+        pool.release(other);
+        pool.release(large);
+
+        BufferPool.Statistics statistics = pool.getStatistics();
+        assertEquals(4, statistics.getLeased());
+        assertEquals(4, statistics.getReleased());
+        assertEquals(0, statistics.getOutstanding());
+        assertEquals(2, statistics.getAllocated());
+        assertEquals(1, statistics.getCacheHits());
+        assertEquals(1, statistics.getUnpooled());
+    }
+
+    /**
+     * Tests that messages are serialized into segments with shared buffers
+     * for the literals and that a failed message is removed again.
+     */
+    @Test
+    public void testSegments() {
+        Message[] messages = {
+            new StringContentMessage("one"),
+            new StringContentMessage("\u00e4"),
+            new OptionalContentMessage("setting")
+        };
+        for (Charset charset : new Charset[]{StandardCharsets.US_ASCII, StandardCharsets.UTF_8}) {
+            MessageSegments segments = new MessageSegments(charset);
+            StringBuilder expected = new StringBuilder();
+            for (Message message : messages) {
+                messageParserService.serialize(message, segments);
+                expected.append(messageParserService.serialize(message));
+            }
+
+            int size = segments.getSize();
+            try {
+                messageParserService.serialize(new StringContentMessage(null), segments);
+                fail("A field without data must be reported.");
+            } catch (ParsingException ex) {
+                assertEquals(size, segments.getSize());
+            }
+
+            ByteBuffer[] buffers = segments.getBuffers();
+            ByteBuffer written = ByteBuffer.allocate(64);
+            for (ByteBuffer buffer : buffers) {
+                written.put(buffer);
+            }
+            assertArrayEquals(expected.toString().getBytes(charset), Arrays.copyOf(written.array(), written.position()));
+
+            segments.clear();
+            assertEquals(0, segments.getBuffers().length);
+
+            MessageSegments.Literal literal = new MessageSegments.Literal("test-");
+            assertTrue(literal.getEncoded(charset).isReadOnly());
+            assertSame(literal.getEncoded(charset), literal.getEncoded(charset));
+        }
+    }
+
+    /**
+     * Tests that the size estimate of a plan is exact for a fixed layout and
+     * follows the sizes of the serialized messages otherwise.
+     */
+    @Test
+    public void testSizeEstimate() {
+        ContentMessage contentMessage = new ContentMessage();
+        ParserPlan contentPlan = messageParserService.getTemplateCache().get(contentMessage);
+        assertEquals(contentPlan.serialize(contentMessage).length(), contentPlan.getSizeEstimate().get());
+
+        String[] keys = new String[200];
+        String[] values = new String[200];
+        Arrays.fill(keys, "key");
+        Arrays.fill(values, "value");
+        ArrayMessage arrayMessage = new ArrayMessage(keys, values);
+        ParserPlan arrayPlan = messageParserService.getTemplateCache().get(arrayMessage);
+        int length = arrayPlan.serialize(arrayMessage).length();
+        assertEquals(length, arrayPlan.getSizeEstimate().get());
+
+        SizeEstimate estimate = new SizeEstimate(100);
+        estimate.record(40);
+        assertEquals(98, estimate.get());
+        estimate.record(500);
+        assertEquals(500, estimate.get());
+        estimate.record(Integer.MAX_VALUE);
+        assertEquals(SizeEstimate.MAXIMUM_ESTIMATE, estimate.get());
+    }
+
+    /**
+     * Tests that templates without fields are serialized from their constant
+     * and that immutable messages keep their serialized form.
+     */
+    @Test
+    public void testConstantMessages() {
+        ContentMessage contentMessage = new ContentMessage();
+        ParserPlan contentPlan = messageParserService.getTemplateCache().get(contentMessage);
+        assertEquals("/?messageContent[]", contentPlan.getConstant());
+        assertEquals(contentPlan.getConstant(), messageParserService.serialize(contentMessage));
+        assertEquals("/?" + MessageCharacters.ACK + "message" + MessageCharacters.CR + MessageCharacters.LF,
+                messageParserService.getTemplateCache().get(new MessageCharacterMessage()).getConstant());
+        assertNull(messageParserService.getTemplateCache().get(new StringContentMessage("content")).getConstant());
+
+        ImmutableContentMessage message = new ImmutableContentMessage("content");
+        String serialized = messageParserService.serialize(message);
+        assertEquals("immutable-content;", serialized);
+        assertSame(serialized, message.getSerializedForm());
+        assertSame(serialized, messageParserService.serialize(message));
+
+        StringBuilder string = new StringBuilder("prefix");
+        messageParserService.serialize(message, string);
+        assertEquals("prefix" + serialized, string.toString());
+
+        MessageSegments segments = new MessageSegments(StandardCharsets.US_ASCII);
+        messageParserService.serialize(new ImmutableContentMessage("other"), segments);
+        assertEquals("immutable-other;", segments.getString().toString());
+    }
+
+    /**
+     * Tests nested optional contents, whose lengths are kept as matches in
+     * the context.
+     */
+    @Test
+    public void testNestedOptionals() {
+        String[][] values = {{"A", "B", "C"}, {"A", "B", null}, {"A", null, null}, {null, null, null}};
+        for (String[] value : values) {
+            NestedOptionalMessage message = new NestedOptionalMessage();
+            message.a = value[0];
+            message.b = value[1];
+            message.c = value[2];
+            String serialized = messageParserService.serialize(message);
+
+            NestedOptionalMessage deserialized = messageParserService.deserialize(serialized, NestedOptionalMessage.class);
+            assertEquals(value[0], deserialized.a);
+            assertEquals(value[1], deserialized.b);
+            assertEquals(value[2], deserialized.c);
+            assertEquals(serialized, messageParserService.serialize(deserialized));
+        }
+    }
+
+    /**
+     * Tests that mismatches have no stack trace and that a message that does
+     * not match is still reported with the messages of the mismatches.
+     */
+    @Test
+    public void testMismatch() throws Exception {
+        MessageMismatchException mismatch = new MessageMismatchException(() -> "mismatch");
+        assertEquals(0, mismatch.getStackTrace().length);
+        assertEquals("mismatch", mismatch.getMessage());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(new MessageMismatchException(() -> "serialized mismatch"));
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            assertEquals("serialized mismatch", ((MessageMismatchException) in.readObject()).getMessage());
+        }
+
+        try {
+            messageParserService.deserialize("test-B-3", EnumContentMessage.class, StringContentMessage.class);
+            fail("The message must not match.");
+        } catch (ParsingException ex) {
+            assertFalse(ex instanceof MessageMismatchException);
+            assertTrue(ex.getMessage().contains("does not match"));
+        }
+
+        try {
+            messageParserService.serialize(new StringContentMessage(null));
+            fail("A field without data must be reported.");
+        } catch (ParsingException ex) {
+            assertFalse(ex instanceof MessageMismatchException);
+            assertTrue(ex.getMessage().contains("no data set"));
+        }
+    }
+
+    /**
+     * Tests the lookup tables of {@link Representations}.
+     */
+    @Test
+    public void testRepresentations() {
+        Representations representations = Representations.get(EnumContentMessage.Content.class);
+        for (EnumContentMessage.Content content : EnumContentMessage.Content.values()) {
+            Object representation = Representations.represent(content);
+            assertEquals(content.name().substring(content.name().length() - 1), representation);
+            assertSame(content, representations.parse(representation));
+        }
+        assertEquals("D", representations.parse("D"));
+        assertEquals("VALUE_A", Representations.represent("VALUE_A"));
+        assertNull(representations.getDefaultContent());
+    }
+
+    /**
+     * Tests that the concurrent deserialization with multiple classes keeps
+     * the order of the classes.
+     */
+    @Test
+    public void testConcurrentCandidates() {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Class<? extends Message>[] classes = new Class[]{EndingMessage.class, StringContentMessage.class, MyNameMessage.class};
+            Message deserialized = messageParserService.deserialize("test-B-2", classes, null, executor);
+            assertEquals(EndingMessage.class, deserialized.getClass());
+
+            classes = new Class[]{StringContentMessage.class, MyNameMessage.class, EndingMessage.class};
+            deserialized = messageParserService.deserialize("test-B-2", classes, null, executor);
+            assertEquals("B", ((StringContentMessage) deserialized).getContent());
+
+            try {
+                messageParserService.deserialize("test-B-1", new Class[]{StringContentMessage.class, MyNameMessage.class}, null, executor);
+                fail("Message must not match.");
+            } catch (ParsingException ex) {
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        CountingCallbackMessage.CALLBACKS.set(0);
+        Message deserialized = messageParserService.deserialize("test-B-2", new Class[]{StringContentMessage.class, CountingCallbackMessage.class}, null, Runnable::run);
+        assertEquals(StringContentMessage.class, deserialized.getClass());
+        assertEquals(0, CountingCallbackMessage.CALLBACKS.get());
+
+        deserialized = messageParserService.deserialize("test-B-2", new Class[]{MyNameMessage.class, CountingCallbackMessage.class}, null, Runnable::run);
+        assertEquals(CountingCallbackMessage.class, deserialized.getClass());
+        assertEquals(2, CountingCallbackMessage.CALLBACKS.get());
+    }
+
+    /**
+     * Creates and tests the {@link ECCMessage}.
+     */
+    @Test
+    public void testECC() {
+        ECCMessage message = new ECCMessage("eccTest1");
+        String serialized = messageParserService.serialize(message);
+        assertEquals(MessageCharacters.STX + "coming-*eccTest1" + MessageCharacters.ETX + "g", serialized);
+
+        ECCMessage deserialized = messageParserService.deserialize(serialized, ECCMessage.class);
+        assertEquals("eccTest1", deserialized.getPart());
+
+        // one higher, we get N instead of M
+        message = new ECCMessage("eccTest2");
+        serialized = messageParserService.serialize(message);
+        assertEquals(MessageCharacters.STX + "coming-*eccTest2" + MessageCharacters.ETX + "d", serialized);
+
+        deserialized = messageParserService.deserialize(serialized, ECCMessage.class);
+        assertEquals("eccTest2", deserialized.getPart());
+
+        message = new ECCMessage("eccTest3");
+        serialized = messageParserService.serialize(message);
+        assertEquals(MessageCharacters.STX + "coming-*eccTest3" + MessageCharacters.ETX + "e", serialized);
+
+        // defective message
+        try {
+            messageParserService.deserialize(serialized.replace('e', 'f'), ECCMessage.class);
+            assertFalse(true); // always crashes if the deserialization works
+        } catch (ParsingException ex) {
+            assertTrue(ex.getMessage().contains("ECC was not valid"));
+        }
+    }
+
+    /**
+     * Creates and tests the {@link ArrayMessage}.
+     */
+    @Test
+    public void testArray() {
+        ArrayMessage message = new ArrayMessage(
+                new String[]{"one", "two", "three"},
+                new String[]{"first", "second", "third"}
+        );
+        String serialized = messageParserService.serialize(message);
+        assertEquals("message-data->(one:first,two:second,three:third)" + MessageCharacters.CR + MessageCharacters.LF, serialized);
+
+        ArrayMessage deserialized = messageParserService.deserialize(serialized, ArrayMessage.class);
+        assertArrayEquals(new String[]{"one", "two", "three"}, deserialized.getKeys());
+        assertArrayEquals(new String[]{"first", "second", "third"}, deserialized.getValues());
+    }
+
+    /**
+     * Deserializes messages from char arrays and byte buffers and compares
+     * them with the messages deserialized from strings.
+     */
+    @Test
+    public void testMessageSequences() {
+        Message[] messages = {
+            new ArrayMessage(new String[]{"one", "two"}, new String[]{"first", "second"}),
+            new MegaMessage(new String[]{"one", "two"}, new String[]{"first", "second"}, MegaMessage.Tag.NEW, 2),
+            new ECCMessage("eccTest1"),
+            new OptionalContentMessage("very", "great"),
+            new EnumContentMessage(EnumContentMessage.Content.VALUE_C)
+        };
+        for (Message message : messages) {
+            String serialized = messageParserService.serialize(message);
+            String expected = messageParserService.serialize(messageParserService.deserialize(serialized, message.getClass()));
+
+            char[] characters = ("--" + serialized + "--").toCharArray();
+            Message deserialized = messageParserService.deserialize(characters, 2, serialized.length(), message.getClass());
+            assertEquals(expected, messageParserService.serialize(deserialized));
+
+            ByteBuffer buffer = ByteBuffer.wrap(("--" + serialized + "--").getBytes(StandardCharsets.ISO_8859_1));
+            buffer.position(2).limit(2 + serialized.length());
+            deserialized = messageParserService.deserialize(buffer, message.getClass());
+            assertEquals(expected, messageParserService.serialize(deserialized));
+            assertEquals(2, buffer.position());
+        }
+    }
+
+    /**
+     * Tests that messages of type String are still deserialized by the
+     * String methods, so callers and subclasses of the String methods keep
+     * working.
+     * @throws NoSuchMethodException if a String method is missing
+     */
+    @Test
+    public void testStringMessages() throws NoSuchMethodException {
+        final List<String> calls = new ArrayList<>();
+        MessageParserService stringParserService = new MessageParserService() {
+
+            @Override
+            public <C extends Message> C deserialize(String message, Class<C> clazz) {
+                calls.add(message);
+                return super.deserialize(message, clazz);
+            }
+
+        };
+
+        String message = "my-{name}-is-John Doe";
+        assertEquals("John Doe", stringParserService.deserialize(message, MyNameMessage.class).getMyName());
+        assertEquals(Arrays.asList(message), calls);
+        assertEquals("John Doe", messageParserService.deserialize(message, MyNameMessage.class, (Object[]) null).getMyName());
+        assertEquals("John Doe", ((MyNameMessage) messageParserService.deserialize(message, ContentMessage.class, MyNameMessage.class)).getMyName());
+        assertEquals("John Doe", ((MyNameMessage) messageParserService.deserialize(message, new Class[]{MyNameMessage.class}, null)).getMyName());
+
+        MessageParserService.class.getMethod("deserialize", String.class, Class.class);
+        MessageParserService.class.getMethod("deserialize", String.class, Class.class, Object[].class);
+        MessageParserService.class.getMethod("deserialize", String.class, Class[].class);
+        MessageParserService.class.getMethod("deserialize", String.class, Class[].class, Object[][].class);
+    }
+
+    /**
+     * Creates and tests the {@link MegaMessage}.
+     */
+    @Test
+    public void testMega() {
+        // first round
+        MegaMessage message = new MegaMessage(
+                new String[]{"one", "two", "three"},
+                new String[]{"first", "second", "third"},
+                MegaMessage.Tag.NEW, 2);
+        String serialized = messageParserService.serialize(message);
+        assertEquals(MessageCharacters.STX + "\\mega\\"
+                + "(one:first)" + MessageCharacters.CR + MessageCharacters.LF
+                + "(two:second)" + MessageCharacters.CR + MessageCharacters.LF
+                + "(three:third)"
+                + "\\!NEW[4]!" + MessageCharacters.ETX, serialized);
+
+        serialized = serialized.replace("[4]", "[2]");
+        MegaMessage deserialized = messageParserService.deserialize(serialized, MegaMessage.class);
+        assertArrayEquals(new String[]{"one", "two", "three"}, deserialized.getKeys());
+        assertArrayEquals(new String[]{"first", "second", "third"}, deserialized.getValues());
+        assertEquals(MegaMessage.Tag.NEW, deserialized.getTag());
+        assertEquals(4, deserialized.getExtra()); // doubled by callback method
+
+        // second round
+        message = new MegaMessage(
+                new String[]{"one", "two"},
+                new String[]{"first", "second"},
+                null, 0);
+        serialized = messageParserService.serialize(message);
+        assertEquals(MessageCharacters.STX + "\\mega\\"
+                + "(one:first)" + MessageCharacters.CR + MessageCharacters.LF
+                + "(two:second)"
+                + "\\" + MessageCharacters.ETX, serialized);
+
+        deserialized = messageParserService.deserialize(serialized, MegaMessage.class);
+        assertArrayEquals(new String[]{"one", "two"}, deserialized.getKeys());
+        assertArrayEquals(new String[]{"first", "second"}, deserialized.getValues());
+        assertNull(deserialized.getTag());
+        assertEquals(0, deserialized.getExtra()); // doubled by callback method
+
+        // third round
+        message = new MegaMessage(new String[]{}, new String[]{}, null, 0);
+        serialized = messageParserService.serialize(message);
+        assertEquals(MessageCharacters.STX + "\\mega\\\\" + MessageCharacters.ETX, serialized);
+
+        deserialized = messageParserService.deserialize(serialized.replaceFirst("!.*?!", ""), MegaMessage.class);
+        assertNull(deserialized.getKeys()); // is uninitialized because no information available
+        assertNull(deserialized.getValues()); // is uninitialized because no information available
+        assertNull(deserialized.getTag());
+        assertEquals(0, deserialized.getExtra()); // is zero because we removed that part from the message
+    }
+
+    /**
+     * Tests that the {@link MessageTemplateCache} compiles every template once,
+     * shares it between classes, evicts the least recently used template and
+     * clears the templates of the classes.
+     */
+    @Test
+    public void testTemplateCache() {
+        int[] compilations = new int[1];
+        MessageTemplateCache<String> cache = new MessageTemplateCache<>(template -> {
+            compilations[0]++;
+            return template.toUpperCase();
+        }, 2);
+
+        assertEquals("A", cache.get(ContentMessage.class, "a"));
+        assertSame(cache.get(ContentMessage.class, "a"), cache.get(MyNameMessage.class, "a"));
+        assertEquals(1, compilations[0]);
+
+        cache.get(ContentMessage.class, "b");
+        cache.get(ContentMessage.class, "c");
+        assertEquals(2, cache.size());
+        assertEquals(3, compilations[0]);
+
+        // the class still remembers its template, the evicted template is compiled again
+        cache.get(MyNameMessage.class, "a");
+        assertEquals(3, compilations[0]);
+        cache.get("a");
+        assertEquals(4, compilations[0]);
+
+        // clearing the cache also forgets the templates of the classes
+        cache.clear();
+        assertEquals(0, cache.size());
+        cache.get(ContentMessage.class, "c");
+        assertEquals(5, compilations[0]);
+        assertEquals(1, cache.size());
+
+        MyNameMessage message = new MyNameMessage("Jane Doe");
+        assertEquals(messageParserService.serialize(message), messageParserService.serialize(message));
+        assertSame(messageParserService.getTemplateCache().get(message), messageParserService.getTemplateCache().get(message.getMessageTemplate()));
+    }
+
+    /**
+     * Tests the cached field accessors with a primitive and an object field.
+     * @throws Exception
+     */
+    @Test
+    public void testFieldAccessor() throws Exception {
+        MegaMessage message = new MegaMessage(null, null, MegaMessage.Tag.OLD, 7);
+
+        FieldAccessor extra = FieldAccessor.get(MegaMessage.class, "extra");
+        assertSame(extra, FieldAccessor.get(MegaMessage.class, "extra"));
+        assertTrue(extra instanceof FieldAccessor.IntAccessor);
+        assertEquals(7, ((FieldAccessor.IntAccessor) extra).getInt(message));
+
+        extra.set(message, "42");
+        assertEquals(42, extra.get(message));
+        StringBuilder string = new StringBuilder();
+        assertTrue(extra.append(message, string));
+        assertEquals("42", string.toString());
+
+        FieldAccessor tag = FieldAccessor.get(MegaMessage.class, "tag");
+        assertEquals(MegaMessage.Tag.OLD, tag.get(message));
+        tag.set(message, MegaMessage.Tag.NEW);
+        assertEquals(MegaMessage.Tag.NEW, tag.get(message));
+
+        try {
+            tag.set(message, "NEW");
+            fail("A string must not be set to an enum field.");
+        } catch (IllegalArgumentException ex) {
+        }
+        try {
+            extra.set(message, null);
+            fail("Null must not be set to an int field.");
+        } catch (IllegalArgumentException ex) {
+        }
+    }
+
+    /**
+     * Tests the cached class metadata and its lookups without exceptions.
+     * @throws Exception
+     */
+    @Test
+    public void testClassMetadata() throws Exception {
+        ClassMetadata metadata = ReflectionService.getClassMetadata(MegaMessage.class);
+        assertSame(metadata, ReflectionService.getClassMetadata(MegaMessage.class));
+        List<Field> fields = ReflectionService.getDeclaredFieldsWithSuperFields(MegaMessage.class);
+        assertEquals(metadata.getFields(), fields);
+        assertNotSame(fields, ReflectionService.getDeclaredFieldsWithSuperFields(MegaMessage.class));
+        fields.add(fields.remove(0));
+        assertEquals(fields.size(), metadata.getFields().size());
+
+        assertEquals("extra", metadata.getField("extra").getName());
+        assertSame(metadata.getField("extra"), ReflectionService.getDeclaredFieldWithSuperField(MegaMessage.class, "extra"));
+        assertNull(metadata.getField("missing"));
+        assertNotNull(metadata.getMethod("extra"));
+        assertNull(metadata.getMethod("extra", int.class));
+        assertNotNull(metadata.getMethod("hashCode"));
+        assertNotNull(metadata.getAnnotation(MessageTemplate.class));
+
+        try {
+            ReflectionService.getDeclaredFieldWithSuperField(MegaMessage.class, "missing");
+            fail("A missing field must not be found.");
+        } catch (NoSuchFieldException ex) {
+        }
+    }
+
+    /**
+     * Tests that one plan can be used by many threads at the same time.
+     * @throws Exception
+     */
+    @Test
+    public void testConcurrentPlan() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                String key = "key" + i;
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < 100; j++) {
+                        MegaMessage message = new MegaMessage(
+                                new String[]{key, "two"},
+                                new String[]{"first", "second"},
+                                MegaMessage.Tag.OLD, j);
+                        String serialized = messageParserService.serialize(message);
+
+                        MegaMessage deserialized = messageParserService.deserialize(serialized, MegaMessage.class);
+                        if (!key.equals(deserialized.getKeys()[0]) || deserialized.getExtra() != j * 4) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }));
+            }
+
+            for (Future<Boolean> future : futures) {
+                assertTrue(future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Message with nested optional contents.
+     */
+    @MessageTemplate("nested[/{a},[/{b},[/{c},]]];")
+    public static class NestedOptionalMessage implements Message {
+
+        private String a;
+        private String b;
+        private String c;
+
+    }
+
+    /**
+     * Message with a callback method that does not exist.
+     */
+    @MessageTemplate("missing[-{optional}]")
+    public static class MissingCallbackMessage implements Message {
+
+        @Callback("nothing")
+        private String optional;
+
+    }
+
+    /**
+     * Message that counts the invocations of its callbacks.
+     */
+    @Callback("count")
+    @MessageTemplate("test-{content}-2")
+    public static class CountingCallbackMessage implements Message {
+
+        private static final AtomicInteger CALLBACKS = new AtomicInteger();
+
+        @Callback("count")
+        private String content;
+
+        private void count() {
+            CALLBACKS.incrementAndGet();
+        }
+
+    }
+
+    /**
+     * Message that can only be created by itself.
+     */
+    @MessageTemplate("private-{content};")
+    public static class PrivateConstructorMessage implements Message {
+
+        private String content;
+
+        private PrivateConstructorMessage() {
+        }
+
+    }
+
+    /**
+     * Message with primitive fields.
+     */
+    @MessageTemplate("numbers-{count};{total};{letter};{ratio};{flag}")
+    public static class NumberContentMessage implements Message {
+
+        private int count;
+        private long total;
+        private char letter;
+        private double ratio;
+        private boolean flag;
+
+        public NumberContentMessage() {
+        }
+
+        public NumberContentMessage(int count, long total, char letter, double ratio, boolean flag) {
+            this.count = count;
+            this.total = total;
+            this.letter = letter;
+            this.ratio = ratio;
+            this.flag = flag;
+        }
+
+    }
+
+    /**
+     * Message that keeps its serialized form.
+     */
+    @MessageTemplate("immutable-{content};")
+    public static class ImmutableContentMessage implements ImmutableMessage {
+
+        private final String content;
+        private transient String serializedForm;
+
+        public ImmutableContentMessage(String content) {
+            this.content = content;
+        }
+
+        @Override
+        public String getSerializedForm() {
+            return serializedForm;
+        }
+
+        @Override
+        public void setSerializedForm(String serializedForm) {
+            this.serializedForm = serializedForm;
+        }
+
+    }
+
+}
@@ -0,0 +1,88 @@
+package de.iisys.libinterface.parser;
+
+import de.iisys.libinterface.parser.node.ArrayNode;
+import de.iisys.libinterface.parser.node.ContentNode;
+import de.iisys.libinterface.parser.node.ECCBlockNode;
+import de.iisys.libinterface.parser.node.ECCCalculationNode;
+import de.iisys.libinterface.parser.node.MessageCharacterNode;
+import de.iisys.libinterface.parser.node.ParserNode;
+import de.iisys.libinterface.parser.node.ReflectionFieldNode;
+import de.iisys.libinterface.parser.service.MessageParserService;
+import static org.junit.Assert.*;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.parboiled.errors.ParsingException;
+
+/**
+ * Class to test every message type with the {@link MessageTemplateCompiler}.
+ */
+public class MessageTemplateCompilerTest extends MessageParserTest {
+
+    @BeforeClass
+    public static void setUpCompiler() {
+        messageParserService = new MessageParserService(new MessageTemplateCompiler());
+    }
+
+    /**
+     * Tests that the compiler creates the same nodes as the parboiled parser.
+     */
+    @Test
+    public void testSameNodes() {
+        MessageParserService parboiledService = new MessageParserService();
+        MessageTemplateCompiler compiler = messageParserService.getTemplateCompiler();
+
+        String[] templates = {
+            "message-data-\\>\\(({keys}\\:{values}:,)\\)<CR><LF>",
+            "<STX>~coming-[*{part}]<ETX>:eccRef~!eccRef!",
+            "<STX>\\\\mega\\\\(\\([{keys}\\:]{values}\\):<CR><LF>)\\\\[\\!{tag}[\\[{extra}\\]]\\!]<ETX>",
+            "a-[?{optional}\\!]-{5:setting}-message<CR><LF>",
+            "<SO><SOH>{12:a1}"
+        };
+        for (String template : templates) {
+            assertEquals(template,
+                    describe(parboiledService.getTemplateCache().get(template).getRoot()),
+                    describe(compiler.compile(template)));
+        }
+    }
+
+    /**
+     * Tests that invalid templates are rejected.
+     */
+    @Test
+    public void testInvalidTemplates() {
+        MessageTemplateCompiler compiler = messageParserService.getTemplateCompiler();
+
+        String[] templates = {"", "{", "{1:}", "<NOPE>", "[a", "(a:)", "~a:~", "a\\"};
+        for (String template : templates) {
+            try {
+                compiler.compile(template);
+                fail("Template '" + template + "' must be invalid.");
+            } catch (ParsingException ex) {
+            }
+        }
+    }
+
+    private static String describe(ParserNode node) {
+        StringBuilder description = new StringBuilder(node.getClass().getSimpleName());
+        if (node instanceof ContentNode) {
+            description.append('"').append(((ContentNode) node).getContent()).append('"');
+        } else if (node instanceof MessageCharacterNode) {
+            description.append('<').append(((MessageCharacterNode) node).getMessageCharacterName()).append('>');
+        } else if (node instanceof ReflectionFieldNode) {
+            description.append('{').append(((ReflectionFieldNode) node).getFieldLength())
+                    .append(':').append(((ReflectionFieldNode) node).getFieldName()).append('}');
+        } else if (node instanceof ArrayNode) {
+            description.append(':').append(((ArrayNode) node).getDelimiter());
+        } else if (node instanceof ECCBlockNode) {
+            description.append(':').append(((ECCBlockNode) node).getReference());
+        } else if (node instanceof ECCCalculationNode) {
+            description.append('!').append(((ECCCalculationNode) node).getReference());
+        }
+        description.append('[');
+        for (ParserNode child : node.getChildren()) {
+            description.append(describe(child)).append(',');
+        }
+        return description.append(']').toString();
+    }
+
+}